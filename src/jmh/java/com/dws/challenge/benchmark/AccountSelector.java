@@ -0,0 +1,75 @@
+package com.dws.challenge.benchmark;
+
+import java.util.Arrays;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Picks account indexes following a contention profile.
+ */
+public enum AccountSelector {
+
+  /** Every account is equally likely. */
+  UNIFORM,
+
+  /** A few accounts receive most of the traffic (Zipf exponent 1). */
+  ZIPFIAN,
+
+  /** Every transfer touches account 0. */
+  HOT_ACCOUNT;
+
+  private static final double ZIPF_EXPONENT = 1.0;
+
+  /**
+   * Returns two distinct account indexes out of {@code accountCount}.
+   */
+  public void selectPair(final int accountCount, final double[] zipfCumulative, final int[] pair) {
+    final ThreadLocalRandom random = ThreadLocalRandom.current();
+    int first;
+    int second;
+    switch (this) {
+      case UNIFORM:
+        first = random.nextInt(accountCount);
+        second = random.nextInt(accountCount - 1);
+        break;
+      case ZIPFIAN:
+        first = zipf(zipfCumulative, random);
+        do {
+          second = zipf(zipfCumulative, random);
+        } while (second == first);
+        pair[0] = first;
+        pair[1] = second;
+        return;
+      case HOT_ACCOUNT:
+        first = 0;
+        second = random.nextInt(accountCount - 1);
+        if (random.nextBoolean()) {
+          pair[0] = second + 1;
+          pair[1] = first;
+          return;
+        }
+        break;
+      default:
+        throw new IllegalStateException("Unknown selector " + this);
+    }
+    pair[0] = first;
+    pair[1] = second >= first ? second + 1 : second;
+  }
+
+  public static double[] zipfCumulative(final int accountCount) {
+    final double[] cumulative = new double[accountCount];
+    double sum = 0;
+    for (int i = 0; i < accountCount; i++) {
+      sum += 1 / Math.pow(i + 1, ZIPF_EXPONENT);
+      cumulative[i] = sum;
+    }
+    for (int i = 0; i < accountCount; i++) {
+      cumulative[i] /= sum;
+    }
+    return cumulative;
+  }
+
+  private static int zipf(final double[] cumulative, final ThreadLocalRandom random) {
+    final int index = Arrays.binarySearch(cumulative, random.nextDouble());
+    return index >= 0 ? index : Math.min(-index - 1, cumulative.length - 1);
+  }
+}
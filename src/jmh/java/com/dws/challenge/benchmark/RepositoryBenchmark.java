@@ -0,0 +1,94 @@
+package com.dws.challenge.benchmark;
+
+import com.dws.challenge.domain.Account;
+import com.dws.challenge.repository.AccountsRepositoryInMemory;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+
+import java.math.BigDecimal;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * {@link AccountsRepositoryInMemory#getAccount(String)} and
+ * {@link AccountsRepositoryInMemory#createAccount(Account)} throughput.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class RepositoryBenchmark {
+
+  @State(Scope.Benchmark)
+  public static class Lookup {
+
+    @Param({"1000", "1000000"})
+    int accountCount;
+
+    AccountsRepositoryInMemory accountsRepository;
+    String[] accountIds;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+      this.accountsRepository = new AccountsRepositoryInMemory();
+      this.accountIds = new String[this.accountCount];
+      for (int i = 0; i < this.accountCount; i++) {
+        this.accountIds[i] = "Id-" + i;
+        this.accountsRepository.createAccount(new Account(this.accountIds[i], BigDecimal.TEN));
+      }
+    }
+  }
+
+  @State(Scope.Benchmark)
+  public static class Creation {
+
+    final AtomicLong sequence = new AtomicLong();
+    AccountsRepositoryInMemory accountsRepository;
+
+    @Setup(Level.Iteration)
+    public void setUp() {
+      this.accountsRepository = new AccountsRepositoryInMemory();
+    }
+  }
+
+  @Benchmark
+  @Threads(1)
+  public Account getAccountSingleThread(final Lookup lookup) {
+    return getAccount(lookup);
+  }
+
+  @Benchmark
+  @Threads(Threads.MAX)
+  public Account getAccountMaxThreads(final Lookup lookup) {
+    return getAccount(lookup);
+  }
+
+  @Benchmark
+  @Threads(1)
+  public void createAccountSingleThread(final Creation creation) {
+    createAccount(creation);
+  }
+
+  @Benchmark
+  @Threads(Threads.MAX)
+  public void createAccountMaxThreads(final Creation creation) {
+    createAccount(creation);
+  }
+
+  private static Account getAccount(final Lookup lookup) {
+    return lookup.accountsRepository.getAccount(
+      lookup.accountIds[ThreadLocalRandom.current().nextInt(lookup.accountCount)]);
+  }
+
+  private static void createAccount(final Creation creation) {
+    creation.accountsRepository.createAccount(
+      new Account("Id-" + creation.sequence.incrementAndGet(), BigDecimal.TEN));
+  }
+}
@@ -0,0 +1,148 @@
+package com.dws.challenge.benchmark;
+
+import com.dws.challenge.cache.AccountViewCache;
+import com.dws.challenge.config.BalanceProperties;
+import com.dws.challenge.config.BalanceRepresentation;
+import com.dws.challenge.domain.Account;
+import com.dws.challenge.domain.MoneyTransfer;
+import com.dws.challenge.engine.CasTransferEngine;
+import com.dws.challenge.engine.LockingTransferEngine;
+import com.dws.challenge.engine.ShardedTransferEngine;
+import com.dws.challenge.engine.TransferEngine;
+import com.dws.challenge.fx.FxRateTable;
+import com.dws.challenge.index.AccountIndex;
+import com.dws.challenge.ledger.TransactionLedger;
+import com.dws.challenge.lock.AccountLockManager;
+import com.dws.challenge.metrics.TransferMetrics;
+import com.dws.challenge.repository.AccountsRepositoryInMemory;
+import com.dws.challenge.service.AccountsService;
+import com.dws.challenge.service.MoneyTransferService;
+import com.dws.challenge.snapshot.SnapshotCoordinator;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+
+import java.math.BigDecimal;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link MoneyTransferService#transferMoney(MoneyTransfer)} throughput per engine, balance
+ * representation and contention profile, at 1, 4 and as many threads as there are cores.
+ *
+ * Balances start high enough for the random walk never to hit insufficient funds.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class TransferBenchmark {
+
+  private static final int WORKLOAD_SIZE = 1 << 16;
+
+  @State(Scope.Benchmark)
+  public static class Bank {
+
+    @Param({"locking", "cas", "sharded"})
+    String engine;
+
+    @Param({"DECIMAL", "FIXED_POINT"})
+    BalanceRepresentation representation;
+
+    @Param({"UNIFORM", "ZIPFIAN", "HOT_ACCOUNT"})
+    AccountSelector selector;
+
+    @Param({"1000"})
+    int accountCount;
+
+    MoneyTransfer[] workload;
+    MoneyTransferService moneyTransferService;
+    TransferEngine transferEngine;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+      final AccountsRepositoryInMemory accountsRepository = new AccountsRepositoryInMemory();
+      final BalanceProperties balanceProperties = new BalanceProperties();
+      balanceProperties.setRepresentation(this.representation);
+      final SnapshotCoordinator snapshotCoordinator = new SnapshotCoordinator();
+      // Transfers mark their accounts changed as in the application, without a refresher thread moving them
+      final AccountIndex accountIndex = AccountIndex.manual(accountsRepository);
+      final AccountsService accountsService = new AccountsService(accountsRepository, balanceProperties,
+        TransferMetrics.disabled(), snapshotCoordinator, AccountViewCache.disabled(), accountIndex);
+      for (int i = 0; i < this.accountCount; i++) {
+        accountsService.createAccount(new Account(accountId(i), new BigDecimal("1000000000")));
+      }
+
+      switch (this.engine) {
+        case "cas":
+          this.transferEngine = new CasTransferEngine("in-memory");
+          break;
+        case "sharded":
+          this.transferEngine = new ShardedTransferEngine(accountsRepository, 0);
+          break;
+        default:
+          this.transferEngine = new LockingTransferEngine(new AccountLockManager(1024), accountsRepository);
+      }
+      this.moneyTransferService = new MoneyTransferService(accountsService, (account, description) -> { },
+        this.transferEngine, TransferMetrics.disabled(), new TransactionLedger(true), snapshotCoordinator,
+        AccountViewCache.disabled(), new FxRateTable(balanceProperties, Map.of()), accountIndex);
+
+      // Requests are sampled upfront so the benchmark measures the transfer, not the sampling
+      final BigDecimal amount = new BigDecimal("1.25");
+      final double[] zipfCumulative = AccountSelector.zipfCumulative(this.accountCount);
+      final int[] pair = new int[2];
+      this.workload = new MoneyTransfer[WORKLOAD_SIZE];
+      for (int i = 0; i < WORKLOAD_SIZE; i++) {
+        this.selector.selectPair(this.accountCount, zipfCumulative, pair);
+        this.workload[i] = new MoneyTransfer(accountId(pair[0]), accountId(pair[1]), amount);
+      }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws InterruptedException {
+      if (this.transferEngine instanceof ShardedTransferEngine) {
+        ((ShardedTransferEngine) this.transferEngine).destroy();
+      }
+    }
+
+    private static String accountId(final int index) {
+      return "Id-" + index;
+    }
+  }
+
+  @State(Scope.Thread)
+  public static class Cursor {
+
+    int position = ThreadLocalRandom.current().nextInt(WORKLOAD_SIZE);
+
+    MoneyTransfer next(final Bank bank) {
+      this.position = (this.position + 1) & (WORKLOAD_SIZE - 1);
+      return bank.workload[this.position];
+    }
+  }
+
+  @Benchmark
+  @Threads(1)
+  public void transferSingleThread(final Bank bank, final Cursor cursor) {
+    bank.moneyTransferService.transferMoney(cursor.next(bank));
+  }
+
+  @Benchmark
+  @Threads(4)
+  public void transferFourThreads(final Bank bank, final Cursor cursor) {
+    bank.moneyTransferService.transferMoney(cursor.next(bank));
+  }
+
+  @Benchmark
+  @Threads(Threads.MAX)
+  public void transferMaxThreads(final Bank bank, final Cursor cursor) {
+    bank.moneyTransferService.transferMoney(cursor.next(bank));
+  }
+}
@@ -0,0 +1,86 @@
+package com.dws.challenge.loadtest;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Counts latencies in microseconds into log-linear buckets: 32 buckets per power of two, so a
+ * reported percentile is at most about 3% above the true value. Recording is a single atomic
+ * increment, and the counts can be copied at any time to compute percentiles of an interval.
+ */
+final class LatencyHistogram {
+
+  private static final int SUB_BUCKET_BITS = 5;
+  private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+  private static final int BUCKETS = (Long.SIZE - SUB_BUCKET_BITS + 1) * SUB_BUCKETS;
+
+  private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+
+  void record(final long micros) {
+    this.counts.incrementAndGet(bucketOf(Math.max(0, micros)));
+  }
+
+  long[] snapshot() {
+    final long[] copy = new long[BUCKETS];
+    for (int i = 0; i < BUCKETS; i++) {
+      copy[i] = this.counts.get(i);
+    }
+    return copy;
+  }
+
+  /**
+   * @return the counts recorded between the two snapshots
+   */
+  static long[] difference(final long[] later, final long[] earlier) {
+    final long[] difference = new long[BUCKETS];
+    for (int i = 0; i < BUCKETS; i++) {
+      difference[i] = later[i] - earlier[i];
+    }
+    return difference;
+  }
+
+  static long total(final long[] counts) {
+    long total = 0;
+    for (long count : counts) {
+      total += count;
+    }
+    return total;
+  }
+
+  /**
+   * @return the upper bound in microseconds of the bucket holding the percentile, 0 without counts
+   */
+  static long percentile(final long[] counts, final double percentile) {
+    final long total = total(counts);
+    if (total == 0) {
+      return 0;
+    }
+    final long rank = Math.max(1, (long) Math.ceil(total * percentile / 100));
+    long seen = 0;
+    for (int i = 0; i < BUCKETS; i++) {
+      seen += counts[i];
+      if (seen >= rank) {
+        return upperBoundOf(i);
+      }
+    }
+    return upperBoundOf(BUCKETS - 1);
+  }
+
+  private static int bucketOf(final long micros) {
+    if (micros < SUB_BUCKETS) {
+      return (int) micros;
+    }
+    final int exponent = Long.SIZE - 1 - Long.numberOfLeadingZeros(micros);
+    final int subBucket = (int) (micros >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+    return (exponent - SUB_BUCKET_BITS + 1) * SUB_BUCKETS + subBucket;
+  }
+
+  private static long upperBoundOf(final int bucket) {
+    if (bucket < SUB_BUCKETS) {
+      return bucket;
+    }
+    final int exponent = bucket / SUB_BUCKETS + SUB_BUCKET_BITS - 1;
+    final long subBucket = bucket % SUB_BUCKETS;
+    final long width = 1L << (exponent - SUB_BUCKET_BITS);
+    return ((SUB_BUCKETS + subBucket) << (exponent - SUB_BUCKET_BITS)) + width - 1;
+  }
+}
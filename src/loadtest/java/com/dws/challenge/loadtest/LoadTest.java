@@ -0,0 +1,379 @@
+package com.dws.challenge.loadtest;
+
+import com.dws.challenge.loadtest.LoadTestOptions.Operation;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.math.BigDecimal;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Drives the REST API of a running application and reports throughput, latency percentiles and
+ * whether money was conserved. Run it with {@code ./gradlew loadTest -PloadTestArgs="--accounts=10000"},
+ * see {@link LoadTestOptions} for the settings. {@code ./gradlew compareWebStacks} runs it against
+ * the servlet and the reactive stack in turn, each started in an app of its own.
+ *
+ * The accounts of a run get ids with a prefix of their own, so runs don't interfere with each other
+ * or with accounts already in the application. After creating them in bulk, {@code concurrency}
+ * clients each send one request at a time, picking transfers, reads and creations by the mix weights
+ * and accounts by the skew. Latencies are only recorded once the warmup is over.
+ *
+ * Every client sends an {@code X-Client-Id} of its own, so admission control rates them one by one
+ * as it would separate callers rather than rejecting most of the run as one flooding client. The
+ * per-account rate still applies and, under a strong skew, rejects transfers from the hottest
+ * accounts; start the application with {@code challenge.admission.enabled=false} to measure it
+ * without admission control.
+ *
+ * Transfers only move money between the accounts of the run, so once all clients stopped, the
+ * balances in the NDJSON export must add up to the initial balance of every account created, all
+ * in the currency the application assigns to accounts created without one. The
+ * run fails when they don't, when a balance went negative or when more than {@code max-error-ratio}
+ * of the requests failed. Rejected transfers, e.g. for insufficient funds, are expected and don't count
+ * as failures.
+ */
+public final class LoadTest {
+
+  private static final String CLIENT_ID = "load-test";
+  private static final int SETUP_BATCH_SIZE = 1_000;
+
+  private enum Outcome {
+    OK, REJECTED, ERROR
+  }
+
+  private static final class Stats {
+
+    final LongAdder ok = new LongAdder();
+    final LongAdder rejected = new LongAdder();
+    final LongAdder errors = new LongAdder();
+    final LatencyHistogram latencies = new LatencyHistogram();
+    long[] lastReported = this.latencies.snapshot();
+
+    void record(final Outcome outcome, final long micros) {
+      switch (outcome) {
+        case OK:
+          this.ok.increment();
+          break;
+        case REJECTED:
+          this.rejected.increment();
+          break;
+        default:
+          this.errors.increment();
+      }
+      this.latencies.record(micros);
+    }
+  }
+
+  private final LoadTestOptions options;
+  private final HttpClient client;
+  private final ObjectMapper objectMapper = new ObjectMapper().enable(DeserializationFeature.USE_BIG_DECIMAL_FOR_FLOATS);
+  private final String runId = "lt" + Long.toString(System.currentTimeMillis(), Character.MAX_RADIX);
+  private final double[] zipfCumulative;
+  private final int[] cumulativeWeights = new int[Operation.values().length];
+  private final long maxAmountCents;
+  private final Map<Operation, Stats> stats = new EnumMap<>(Operation.class);
+  private final AtomicLong createdDuringRun = new AtomicLong();
+  private volatile long measureStartNanos;
+
+  LoadTest(final LoadTestOptions options) {
+    this.options = options;
+    this.client = HttpClient.newBuilder()
+      .version(HttpClient.Version.HTTP_1_1)
+      .connectTimeout(options.requestTimeout)
+      .build();
+    this.zipfCumulative = options.skew.zipfCumulative(options.accounts);
+    int weights = 0;
+    for (Operation operation : Operation.values()) {
+      weights += options.mix.getOrDefault(operation, 0);
+      this.cumulativeWeights[operation.ordinal()] = weights;
+      this.stats.put(operation, new Stats());
+    }
+    this.maxAmountCents = options.maxAmount.movePointRight(2).longValue();
+  }
+
+  public static void main(String[] args) throws Exception {
+    final boolean passed = new LoadTest(LoadTestOptions.parse(args)).run();
+    System.exit(passed ? 0 : 1);
+  }
+
+  boolean run() throws Exception {
+    System.out.println("Load test " + this.runId + ": " + this.options);
+    final long setupStart = System.nanoTime();
+    createAccounts();
+    System.out.printf("Created %d accounts in %.1f s%n", this.options.accounts,
+      (System.nanoTime() - setupStart) / 1e9);
+
+    final long start = System.nanoTime();
+    this.measureStartNanos = start + this.options.warmup.toNanos();
+    final long end = this.measureStartNanos + this.options.duration.toNanos();
+    final ScheduledExecutorService reporter = Executors.newSingleThreadScheduledExecutor();
+    final long intervalMillis = this.options.reportInterval.toMillis();
+    reporter.scheduleAtFixedRate(() -> reportInterval(start), intervalMillis, intervalMillis, TimeUnit.MILLISECONDS);
+    final ExecutorService clients = Executors.newFixedThreadPool(this.options.concurrency);
+    try {
+      final List<Future<?>> running = new ArrayList<>();
+      for (int i = 0; i < this.options.concurrency; i++) {
+        final String clientId = CLIENT_ID + "-" + i;
+        running.add(clients.submit(() -> drive(end, clientId)));
+      }
+      for (Future<?> client : running) {
+        client.get();
+      }
+    } finally {
+      clients.shutdownNow();
+      reporter.shutdownNow();
+    }
+
+    final long errorCount = report();
+    return checkErrors(errorCount) & checkConservation();
+  }
+
+  private void createAccounts() throws IOException, InterruptedException {
+    for (int first = 0; first < this.options.accounts; first += SETUP_BATCH_SIZE) {
+      final int last = Math.min(first + SETUP_BATCH_SIZE, this.options.accounts);
+      final StringBuilder body = new StringBuilder("[");
+      for (int i = first; i < last; i++) {
+        body.append(i > first ? "," : "").append(accountJson(accountId(i)));
+      }
+      final HttpResponse<String> response = this.client.send(
+        post("/v1/accounts/batch", body.append(']').toString(), CLIENT_ID), HttpResponse.BodyHandlers.ofString());
+      if (response.statusCode() != 200
+        || this.objectMapper.readTree(response.body()).path("created").asInt() != last - first) {
+        throw new IllegalStateException("Failed to create accounts " + first + " to " + (last - 1) + ": "
+          + response.statusCode() + " " + response.body());
+      }
+    }
+  }
+
+  private void drive(final long endNanos, final String clientId) {
+    final int[] pair = new int[2];
+    long now;
+    while ((now = System.nanoTime()) < endNanos) {
+      final Operation operation = nextOperation();
+      final String createdId = operation == Operation.CREATE
+        ? this.runId + "-new-" + ThreadLocalRandom.current().nextLong(Long.MAX_VALUE)
+        : null;
+      final HttpRequest request = request(operation, createdId, pair, clientId);
+      Outcome outcome;
+      try {
+        outcome = outcomeOf(operation, this.client.send(request, HttpResponse.BodyHandlers.ofString()));
+      } catch (IOException e) {
+        outcome = Outcome.ERROR;
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        return;
+      }
+      final long finished = System.nanoTime();
+      if (operation == Operation.CREATE && outcome == Outcome.OK) {
+        this.createdDuringRun.incrementAndGet();
+      }
+      if (now >= this.measureStartNanos) {
+        this.stats.get(operation).record(outcome, TimeUnit.NANOSECONDS.toMicros(finished - now));
+      }
+    }
+  }
+
+  private Operation nextOperation() {
+    final int weight = ThreadLocalRandom.current().nextInt(this.cumulativeWeights[this.cumulativeWeights.length - 1]);
+    for (Operation operation : Operation.values()) {
+      if (weight < this.cumulativeWeights[operation.ordinal()]) {
+        return operation;
+      }
+    }
+    throw new IllegalStateException("Weight " + weight + " outside of the mix");
+  }
+
+  private HttpRequest request(final Operation operation, final String createdId, final int[] pair,
+                              final String clientId) {
+    switch (operation) {
+      case TRANSFER:
+        this.options.skew.selectPair(this.options.accounts, this.zipfCumulative, pair);
+        final BigDecimal amount = BigDecimal.valueOf(
+          ThreadLocalRandom.current().nextLong(1, this.maxAmountCents + 1), 2);
+        return post("/v1/accounts/transferMoney", "{\"fromAccountId\":\"" + accountId(pair[0])
+          + "\",\"toAccountId\":\"" + accountId(pair[1]) + "\",\"amount\":" + amount.toPlainString() + "}",
+          clientId);
+      case GET:
+        return HttpRequest.newBuilder(uri("/v1/accounts/"
+            + accountId(this.options.skew.select(this.options.accounts, this.zipfCumulative))))
+          .timeout(this.options.requestTimeout)
+          .header("X-Client-Id", clientId)
+          .GET()
+          .build();
+      case CREATE:
+        return post("/v1/accounts", accountJson(createdId), clientId);
+      default:
+        throw new IllegalStateException("Unknown operation " + operation);
+    }
+  }
+
+  /**
+   * Accounts of the run always exist, so a missing one is an error rather than a rejection.
+   */
+  private static Outcome outcomeOf(final Operation operation, final HttpResponse<String> response) {
+    final int status = response.statusCode();
+    if (status >= 200 && status < 300) {
+      return operation == Operation.GET && response.body().isEmpty() ? Outcome.ERROR : Outcome.OK;
+    }
+    return status >= 400 && status < 500 && status != 404 ? Outcome.REJECTED : Outcome.ERROR;
+  }
+
+  private void reportInterval(final long startNanos) {
+    final long elapsedSeconds = TimeUnit.NANOSECONDS.toSeconds(System.nanoTime() - startNanos);
+    if (System.nanoTime() < this.measureStartNanos) {
+      System.out.printf("[%5d s] warming up%n", elapsedSeconds);
+      return;
+    }
+    final double intervalSeconds = this.options.reportInterval.toMillis() / 1e3;
+    this.stats.forEach((operation, operationStats) -> {
+      final long[] current = operationStats.latencies.snapshot();
+      final long[] interval = LatencyHistogram.difference(current, operationStats.lastReported);
+      operationStats.lastReported = current;
+      final long requests = LatencyHistogram.total(interval);
+      if (requests > 0) {
+        System.out.printf("[%5d s] %-8s %10.1f req/s  p50 %8.2f ms  p99 %8.2f ms  errors %d%n", elapsedSeconds,
+          operation.name().toLowerCase(), requests / intervalSeconds,
+          millis(LatencyHistogram.percentile(interval, 50)), millis(LatencyHistogram.percentile(interval, 99)),
+          operationStats.errors.sum());
+      }
+    });
+  }
+
+  /**
+   * Prints the totals of the measured part of the run.
+   *
+   * @return the number of failed requests
+   */
+  private long report() {
+    final double seconds = this.options.duration.toMillis() / 1e3;
+    System.out.println();
+    System.out.printf("%-8s %10s %10s %10s %8s %11s %10s %10s %10s %10s%n", "", "requests", "ok", "rejected",
+      "errors", "req/s", "p50 ms", "p99 ms", "p99.9 ms", "max ms");
+    long errors = 0;
+    for (Map.Entry<Operation, Stats> entry : this.stats.entrySet()) {
+      final Stats operationStats = entry.getValue();
+      final long[] latencies = operationStats.latencies.snapshot();
+      final long requests = LatencyHistogram.total(latencies);
+      errors += operationStats.errors.sum();
+      System.out.printf("%-8s %10d %10d %10d %8d %11.1f %10.2f %10.2f %10.2f %10.2f%n",
+        entry.getKey().name().toLowerCase(), requests, operationStats.ok.sum(), operationStats.rejected.sum(),
+        operationStats.errors.sum(), requests / seconds, millis(LatencyHistogram.percentile(latencies, 50)),
+        millis(LatencyHistogram.percentile(latencies, 99)), millis(LatencyHistogram.percentile(latencies, 99.9)),
+        millis(LatencyHistogram.percentile(latencies, 100)));
+    }
+    return errors;
+  }
+
+  private boolean checkErrors(final long errors) {
+    final long requests = this.stats.values().stream().mapToLong(operationStats -> operationStats.ok.sum()
+      + operationStats.rejected.sum() + operationStats.errors.sum()).sum();
+    final double ratio = requests == 0 ? 0 : (double) errors / requests;
+    if (ratio > this.options.maxErrorRatio) {
+      System.out.printf("FAILED: %d of %d requests failed, more than the allowed ratio %s%n", errors, requests,
+        this.options.maxErrorRatio);
+      return false;
+    }
+    return true;
+  }
+
+  /**
+   * Sums the balances of the run's accounts in the export, a single snapshot of all balances, by
+   * currency. Accounts are created without one and so all get the application's default currency:
+   * the run's money must be held in a single currency.
+   */
+  private boolean checkConservation() throws IOException, InterruptedException {
+    final HttpRequest export = HttpRequest.newBuilder(uri("/v1/accounts"))
+      .header("Accept", "application/x-ndjson")
+      .GET()
+      .build();
+    final HttpResponse<Stream<String>> response = this.client.send(export, HttpResponse.BodyHandlers.ofLines());
+    if (response.statusCode() != 200) {
+      throw new IllegalStateException("Failed to export the accounts: " + response.statusCode());
+    }
+    final String prefix = this.runId + "-";
+    final AtomicLong accounts = new AtomicLong();
+    final AtomicLong negative = new AtomicLong();
+    final Map<String, BigDecimal> totals = new TreeMap<>();
+    try (Stream<String> lines = response.body()) {
+      lines.filter(line -> !line.isBlank())
+        .map(this::readTree)
+        .filter(account -> account.path("accountId").asText().startsWith(prefix))
+        .forEach(account -> {
+          final BigDecimal balance = account.path("balance").decimalValue();
+          accounts.incrementAndGet();
+          if (balance.signum() < 0) {
+            negative.incrementAndGet();
+          }
+          totals.merge(account.path("currency").asText(), balance, BigDecimal::add);
+        });
+    }
+
+    final long expectedAccounts = this.options.accounts + this.createdDuringRun.get();
+    final BigDecimal expectedTotal = this.options.initialBalance.multiply(BigDecimal.valueOf(expectedAccounts));
+    System.out.println();
+    System.out.printf("Conservation: %d accounts holding %s, expected %d accounts holding %s in one currency%n",
+      accounts.get(), totals.isEmpty() ? "nothing" : totals.entrySet().stream()
+        .map(total -> total.getValue().toPlainString() + " " + total.getKey())
+        .collect(Collectors.joining(", ")),
+      expectedAccounts, expectedTotal.toPlainString());
+    final boolean conserved = accounts.get() == expectedAccounts && totals.size() == 1
+      && totals.values().iterator().next().compareTo(expectedTotal) == 0 && negative.get() == 0;
+    if (!conserved) {
+      System.out.printf("FAILED: money was not conserved, %d accounts have a negative balance%n", negative.get());
+    }
+    return conserved;
+  }
+
+  private JsonNode readTree(final String line) {
+    try {
+      return this.objectMapper.readTree(line);
+    } catch (IOException e) {
+      throw new UncheckedIOException("Malformed export line " + line, e);
+    }
+  }
+
+  private HttpRequest post(final String path, final String json, final String clientId) {
+    return HttpRequest.newBuilder(uri(path))
+      .timeout(this.options.requestTimeout)
+      .header("Content-Type", "application/json")
+      .header("X-Client-Id", clientId)
+      .POST(HttpRequest.BodyPublishers.ofString(json))
+      .build();
+  }
+
+  private URI uri(final String path) {
+    return URI.create(this.options.baseUrl + path);
+  }
+
+  private String accountId(final int index) {
+    return this.runId + "-" + index;
+  }
+
+  private String accountJson(final String accountId) {
+    return "{\"accountId\":\"" + accountId + "\",\"balance\":" + this.options.initialBalance.toPlainString() + "}";
+  }
+
+  private static double millis(final long micros) {
+    return micros / 1e3;
+  }
+}
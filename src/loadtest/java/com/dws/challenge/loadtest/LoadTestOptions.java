@@ -0,0 +1,173 @@
+package com.dws.challenge.loadtest;
+
+import java.math.BigDecimal;
+import java.net.URI;
+import java.time.Duration;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Settings of a load test run, given as {@code --name=value} arguments. A {@code --scenario}
+ * preset is applied first, so any other argument overrides it:
+ * <ul>
+ *   <li>{@code default}: a one minute run after 10 seconds of warmup</li>
+ *   <li>{@code soak}: 30 minutes at a moderate, Zipf skewed load, reported every minute, to find
+ *   latency drift, leaks and lost money that only show after many requests</li>
+ * </ul>
+ */
+final class LoadTestOptions {
+
+  enum Operation {
+    TRANSFER, GET, CREATE
+  }
+
+  private static final Map<String, Map<String, String>> SCENARIOS = Map.of(
+    "default", Map.of(),
+    "soak", Map.of(
+      "duration", "30m",
+      "warmup", "1m",
+      "concurrency", "32",
+      "accounts", "10000",
+      "mix", "transfer:70,get:25,create:5",
+      "skew", "zipfian",
+      "report-interval", "1m"));
+
+  URI baseUrl = URI.create("http://localhost:8080");
+  int accounts = 1_000;
+  BigDecimal initialBalance = new BigDecimal("1000");
+  BigDecimal maxAmount = new BigDecimal("10");
+  int concurrency = 16;
+  Duration warmup = Duration.ofSeconds(10);
+  Duration duration = Duration.ofMinutes(1);
+  Duration reportInterval = Duration.ofSeconds(10);
+  Duration requestTimeout = Duration.ofSeconds(10);
+  Map<Operation, Integer> mix = parseMix("transfer:80,get:15,create:5");
+  Skew skew = Skew.UNIFORM;
+  double maxErrorRatio = 0.001;
+
+  static LoadTestOptions parse(final String[] args) {
+    final Map<String, String> values = new LinkedHashMap<>();
+    for (String arg : args) {
+      final int separator = arg.indexOf('=');
+      if (!arg.startsWith("--") || separator < 0) {
+        throw new IllegalArgumentException("Expected --name=value but got " + arg);
+      }
+      values.put(arg.substring(2, separator), arg.substring(separator + 1));
+    }
+    final String scenarioName = values.getOrDefault("scenario", "default");
+    final Map<String, String> scenario = SCENARIOS.get(scenarioName);
+    if (scenario == null) {
+      throw new IllegalArgumentException("Unknown scenario " + scenarioName + ", expected one of " + SCENARIOS.keySet());
+    }
+
+    final LoadTestOptions options = new LoadTestOptions();
+    scenario.forEach(options::set);
+    values.forEach((name, value) -> {
+      if (!name.equals("scenario")) {
+        options.set(name, value);
+      }
+    });
+    if (options.accounts < 2 || options.concurrency < 1 || options.initialBalance.signum() <= 0
+      || options.maxAmount.compareTo(new BigDecimal("0.01")) < 0) {
+      throw new IllegalArgumentException("Need at least 2 accounts, 1 client, a positive initial balance and a "
+        + "maximum amount of at least 0.01");
+    }
+    return options;
+  }
+
+  private void set(final String name, final String value) {
+    switch (name) {
+      case "base-url":
+        this.baseUrl = URI.create(value.endsWith("/") ? value.substring(0, value.length() - 1) : value);
+        break;
+      case "accounts":
+        this.accounts = Integer.parseInt(value);
+        break;
+      case "initial-balance":
+        this.initialBalance = new BigDecimal(value);
+        break;
+      case "max-amount":
+        this.maxAmount = new BigDecimal(value);
+        break;
+      case "concurrency":
+        this.concurrency = Integer.parseInt(value);
+        break;
+      case "warmup":
+        this.warmup = parseDuration(value);
+        break;
+      case "duration":
+        this.duration = parseDuration(value);
+        break;
+      case "report-interval":
+        this.reportInterval = parseDuration(value);
+        break;
+      case "request-timeout":
+        this.requestTimeout = parseDuration(value);
+        break;
+      case "mix":
+        this.mix = parseMix(value);
+        break;
+      case "skew":
+        this.skew = Skew.parse(value);
+        break;
+      case "max-error-ratio":
+        this.maxErrorRatio = Double.parseDouble(value);
+        break;
+      default:
+        throw new IllegalArgumentException("Unknown option --" + name);
+    }
+  }
+
+  /**
+   * Parses weights like {@code transfer:80,get:15,create:5}, operations left out get no requests.
+   */
+  private static Map<Operation, Integer> parseMix(final String value) {
+    final Map<Operation, Integer> mix = new EnumMap<>(Operation.class);
+    for (String entry : value.split(",")) {
+      final String[] parts = entry.split(":");
+      if (parts.length != 2) {
+        throw new IllegalArgumentException("Expected operation:weight in the mix but got " + entry);
+      }
+      final int weight = Integer.parseInt(parts[1].trim());
+      if (weight < 0) {
+        throw new IllegalArgumentException("Negative weight in the mix: " + entry);
+      }
+      mix.put(Operation.valueOf(parts[0].trim().toUpperCase(Locale.ROOT)), weight);
+    }
+    if (mix.values().stream().mapToInt(Integer::intValue).sum() == 0) {
+      throw new IllegalArgumentException("The mix needs at least one operation with a positive weight");
+    }
+    return mix;
+  }
+
+  /**
+   * Parses durations like {@code 90s}, {@code 5m} or {@code 1h}, a plain number is in seconds.
+   */
+  private static Duration parseDuration(final String value) {
+    final String trimmed = value.trim().toLowerCase(Locale.ROOT);
+    final char unit = trimmed.charAt(trimmed.length() - 1);
+    if (Character.isDigit(unit)) {
+      return Duration.ofSeconds(Long.parseLong(trimmed));
+    }
+    final long amount = Long.parseLong(trimmed.substring(0, trimmed.length() - 1));
+    switch (unit) {
+      case 's':
+        return Duration.ofSeconds(amount);
+      case 'm':
+        return Duration.ofMinutes(amount);
+      case 'h':
+        return Duration.ofHours(amount);
+      default:
+        throw new IllegalArgumentException("Unknown duration unit in " + value);
+    }
+  }
+
+  @Override
+  public String toString() {
+    return "baseUrl=" + this.baseUrl + ", accounts=" + this.accounts + ", initialBalance=" + this.initialBalance
+      + ", maxAmount=" + this.maxAmount + ", concurrency=" + this.concurrency + ", warmup=" + this.warmup
+      + ", duration=" + this.duration + ", mix=" + this.mix + ", skew=" + this.skew;
+  }
+}
@@ -0,0 +1,93 @@
+package com.dws.challenge.loadtest;
+
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * How requests spread over the accounts, the same profiles as the JMH {@code AccountSelector}.
+ */
+enum Skew {
+
+  /** Every account is equally likely. */
+  UNIFORM,
+
+  /** A few accounts receive most of the traffic (Zipf exponent 1). */
+  ZIPFIAN,
+
+  /** Every transfer touches account 0, half of the reads go to it. */
+  HOT_ACCOUNT;
+
+  static Skew parse(final String name) {
+    return valueOf(name.trim().toUpperCase(Locale.ROOT).replace('-', '_'));
+  }
+
+  /**
+   * Returns one account index out of {@code accountCount}.
+   */
+  int select(final int accountCount, final double[] zipfCumulative) {
+    final ThreadLocalRandom random = ThreadLocalRandom.current();
+    switch (this) {
+      case UNIFORM:
+        return random.nextInt(accountCount);
+      case ZIPFIAN:
+        return zipf(zipfCumulative, random);
+      case HOT_ACCOUNT:
+        return random.nextBoolean() ? 0 : random.nextInt(accountCount);
+      default:
+        throw new IllegalStateException("Unknown skew " + this);
+    }
+  }
+
+  /**
+   * Returns two distinct account indexes out of {@code accountCount}.
+   */
+  void selectPair(final int accountCount, final double[] zipfCumulative, final int[] pair) {
+    final ThreadLocalRandom random = ThreadLocalRandom.current();
+    switch (this) {
+      case UNIFORM:
+        pair[0] = random.nextInt(accountCount);
+        final int other = random.nextInt(accountCount - 1);
+        pair[1] = other >= pair[0] ? other + 1 : other;
+        return;
+      case ZIPFIAN:
+        pair[0] = zipf(zipfCumulative, random);
+        do {
+          pair[1] = zipf(zipfCumulative, random);
+        } while (pair[1] == pair[0]);
+        return;
+      case HOT_ACCOUNT:
+        final int counterparty = 1 + random.nextInt(accountCount - 1);
+        final boolean hotPays = random.nextBoolean();
+        pair[0] = hotPays ? 0 : counterparty;
+        pair[1] = hotPays ? counterparty : 0;
+        return;
+      default:
+        throw new IllegalStateException("Unknown skew " + this);
+    }
+  }
+
+  /**
+   * @return the cumulative Zipf distribution over the accounts, null unless the skew is Zipfian
+   */
+  double[] zipfCumulative(final int accountCount) {
+    if (this != ZIPFIAN) {
+      return null;
+    }
+    final double[] cumulative = new double[accountCount];
+    double sum = 0;
+    for (int i = 0; i < accountCount; i++) {
+      sum += 1.0 / (i + 1);
+      cumulative[i] = sum;
+    }
+    for (int i = 0; i < accountCount; i++) {
+      cumulative[i] /= sum;
+    }
+    return cumulative;
+  }
+
+  private static int zipf(final double[] cumulative, final ThreadLocalRandom random) {
+    final int index = Arrays.binarySearch(cumulative, random.nextDouble());
+    return index >= 0 ? index : Math.min(-index - 1, cumulative.length - 1);
+  }
+}
@@ -0,0 +1,83 @@
+package com.dws.challenge.admission;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Limit on concurrent requests adapting to their latency, by additive increase and multiplicative
+ * decrease. A request completing within the latency target counts towards an increase by one,
+ * which happens once as many requests as the limit completed in time and only while at least half
+ * of the limit is in use, so an idle service doesn't inflate it. A request exceeding the target
+ * cuts the limit by a tenth, at most once per target latency, so the late requests of one overload
+ * count once. The limit stays between its minimum and maximum.
+ *
+ * All state is in atomics updated with compare-and-set. A lost update only skips one adjustment.
+ */
+final class AdaptiveConcurrencyLimit {
+
+  private static final double BACKOFF = 0.9;
+
+  private final int minLimit;
+  private final int maxLimit;
+  private final long latencyTargetNanos;
+  private final AtomicInteger limit;
+  private final AtomicInteger inFlight = new AtomicInteger();
+  private final AtomicInteger completedInTime = new AtomicInteger();
+  private final AtomicLong lastDecrease;
+
+  AdaptiveConcurrencyLimit(final int initialLimit, final int minLimit, final int maxLimit,
+                           final long latencyTargetNanos, final long now) {
+    if (minLimit < 1 || maxLimit < minLimit || initialLimit < minLimit || initialLimit > maxLimit
+      || latencyTargetNanos <= 0) {
+      throw new IllegalArgumentException("Invalid concurrency limit: initial=" + initialLimit + ", min=" + minLimit
+        + ", max=" + maxLimit + ", latencyTargetNanos=" + latencyTargetNanos);
+    }
+    this.minLimit = minLimit;
+    this.maxLimit = maxLimit;
+    this.latencyTargetNanos = latencyTargetNanos;
+    this.limit = new AtomicInteger(initialLimit);
+    this.lastDecrease = new AtomicLong(now - latencyTargetNanos);
+  }
+
+  /**
+   * @return false if the limit is reached, the request must then not be run
+   */
+  boolean tryAcquire() {
+    while (true) {
+      final int current = this.inFlight.get();
+      if (current >= this.limit.get()) {
+        return false;
+      }
+      if (this.inFlight.compareAndSet(current, current + 1)) {
+        return true;
+      }
+    }
+  }
+
+  /**
+   * Ends a request admitted by {@link #tryAcquire()}.
+   */
+  void release(final long latencyNanos, final long now) {
+    final int inFlightBefore = this.inFlight.getAndDecrement();
+    final int current = this.limit.get();
+    if (latencyNanos > this.latencyTargetNanos) {
+      final long last = this.lastDecrease.get();
+      if (now - last >= this.latencyTargetNanos && this.lastDecrease.compareAndSet(last, now)) {
+        this.limit.compareAndSet(current, Math.max(this.minLimit, (int) (current * BACKOFF)));
+        this.completedInTime.set(0);
+      }
+    } else if (inFlightBefore * 2 >= current && current < this.maxLimit
+      && this.completedInTime.incrementAndGet() >= current) {
+      this.completedInTime.set(0);
+      this.limit.compareAndSet(current, current + 1);
+    }
+  }
+
+  int getLimit() {
+    return this.limit.get();
+  }
+
+  int getInFlight() {
+    return this.inFlight.get();
+  }
+}
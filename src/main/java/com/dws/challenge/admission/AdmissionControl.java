@@ -0,0 +1,230 @@
+package com.dws.challenge.admission;
+
+import com.dws.challenge.exception.AdmissionRejectedException;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+
+/**
+ * Decides whether a transfer request may run, before it parses anything further or takes a lock.
+ * A request needs a token from the bucket of its client, one from the bucket of its source account,
+ * and a slot under the {@link AdaptiveConcurrencyLimit} of all transfers in flight. Requests that
+ * don't get them are rejected at once rather than queued, so one client flooding the service only
+ * slows itself down. A batch takes one token per transfer from its client's bucket and from the
+ * bucket of each account it debits, but only one slot. A request rejected by one limit gets back
+ * the tokens it already took from the others.
+ *
+ * Buckets are configured with {@code challenge.admission.client.*} and {@code challenge.admission.account.*},
+ * a rate of 0 disabling them. Full buckets are dropped every {@value #EVICTION_INTERVAL_SECONDS}
+ * seconds, so clients and accounts that went quiet take no memory.
+ */
+@Component
+public class AdmissionControl implements DisposableBean {
+
+  private static final long EVICTION_INTERVAL_SECONDS = 10;
+
+  /**
+   * A slot taken by an admitted request, to be closed once it completed.
+   */
+  public interface Permit extends AutoCloseable {
+
+    @Override
+    void close();
+  }
+
+  private static final Permit UNLIMITED = () -> { };
+
+  private final boolean enabled;
+  private final TokenBucketLimiter clientLimiter;
+  private final TokenBucketLimiter accountLimiter;
+  private final AdaptiveConcurrencyLimit concurrencyLimit;
+  private final LongSupplier nanoClock;
+  private final LongAdder clientRejections = new LongAdder();
+  private final LongAdder accountRejections = new LongAdder();
+  private final LongAdder concurrencyRejections = new LongAdder();
+  private final ScheduledExecutorService evictor;
+
+  @Autowired
+  public AdmissionControl(@Value("${challenge.admission.enabled:true}") boolean enabled,
+                          @Value("${challenge.admission.client.rate-per-second:1000}") double clientRate,
+                          @Value("${challenge.admission.client.burst:2000}") int clientBurst,
+                          @Value("${challenge.admission.account.rate-per-second:500}") double accountRate,
+                          @Value("${challenge.admission.account.burst:1000}") int accountBurst,
+                          @Value("${challenge.admission.concurrency.initial-limit:64}") int initialLimit,
+                          @Value("${challenge.admission.concurrency.min-limit:8}") int minLimit,
+                          @Value("${challenge.admission.concurrency.max-limit:1024}") int maxLimit,
+                          @Value("${challenge.admission.concurrency.latency-target-millis:50}") long latencyTargetMillis) {
+    this(enabled, clientRate, clientBurst, accountRate, accountBurst, initialLimit, minLimit, maxLimit,
+      TimeUnit.MILLISECONDS.toNanos(latencyTargetMillis), System::nanoTime, true);
+  }
+
+  AdmissionControl(boolean enabled, double clientRate, int clientBurst, double accountRate, int accountBurst,
+                   int initialLimit, int minLimit, int maxLimit, long latencyTargetNanos, LongSupplier nanoClock,
+                   boolean evicting) {
+    this.enabled = enabled;
+    this.clientLimiter = enabled && clientRate > 0 ? new TokenBucketLimiter(clientRate, clientBurst) : null;
+    this.accountLimiter = enabled && accountRate > 0 ? new TokenBucketLimiter(accountRate, accountBurst) : null;
+    this.concurrencyLimit = enabled
+      ? new AdaptiveConcurrencyLimit(initialLimit, minLimit, maxLimit, latencyTargetNanos, nanoClock.getAsLong())
+      : null;
+    this.nanoClock = nanoClock;
+    if (evicting && (this.clientLimiter != null || this.accountLimiter != null)) {
+      this.evictor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        final Thread thread = new Thread(runnable, "admission-evictor");
+        thread.setDaemon(true);
+        return thread;
+      });
+      this.evictor.scheduleWithFixedDelay(this::evictFullBuckets, EVICTION_INTERVAL_SECONDS,
+        EVICTION_INTERVAL_SECONDS, TimeUnit.SECONDS);
+    } else {
+      this.evictor = null;
+    }
+  }
+
+  public static AdmissionControl disabled() {
+    return new AdmissionControl(false, 0, 1, 0, 1, 1, 1, 1, 1, System::nanoTime, false);
+  }
+
+  /**
+   * @param clientId  the client sending the request
+   * @param accountId the account debited, null if the request isn't limited per account
+   * @throws AdmissionRejectedException if a rate or the concurrency limit is exceeded
+   */
+  public Permit admit(final String clientId, final String accountId) {
+    if (!this.enabled) {
+      return UNLIMITED;
+    }
+    return admit(clientId, 1, accountId == null ? Map.of() : Map.of(accountId, 1));
+  }
+
+  /**
+   * Admits a batch as many transfers for the rates and as one request for the concurrency limit.
+   *
+   * @param clientId          the client sending the batch
+   * @param debitedAccountIds the source account of every transfer in the batch
+   * @throws AdmissionRejectedException if a rate or the concurrency limit is exceeded
+   */
+  public Permit admitBatch(final String clientId, final List<String> debitedAccountIds) {
+    if (!this.enabled) {
+      return UNLIMITED;
+    }
+    final Map<String, Integer> debits = new HashMap<>();
+    if (this.accountLimiter != null) {
+      for (String accountId : debitedAccountIds) {
+        debits.merge(accountId, 1, Integer::sum);
+      }
+    }
+    return admit(clientId, Math.max(1, debitedAccountIds.size()), debits);
+  }
+
+  /**
+   * Takes the tokens and the slot in turn, giving back those already taken if a later one is
+   * refused, so a rejected request costs its client and accounts nothing.
+   */
+  private Permit admit(final String clientId, final int transfers, final Map<String, Integer> debits) {
+    final long now = this.nanoClock.getAsLong();
+    acquireClientTokens(clientId, now, transfers);
+    final List<Map.Entry<String, Integer>> acquired = new ArrayList<>(debits.size());
+    try {
+      for (Map.Entry<String, Integer> debit : debits.entrySet()) {
+        acquireAccountTokens(debit.getKey(), now, debit.getValue());
+        acquired.add(debit);
+      }
+      return acquireSlot(now);
+    } catch (AdmissionRejectedException ex) {
+      if (this.clientLimiter != null) {
+        this.clientLimiter.release(clientId, transfers);
+      }
+      if (this.accountLimiter != null) {
+        for (Map.Entry<String, Integer> debit : acquired) {
+          this.accountLimiter.release(debit.getKey(), debit.getValue());
+        }
+      }
+      throw ex;
+    }
+  }
+
+  private void acquireClientTokens(final String clientId, final long now, final int permits) {
+    if (this.clientLimiter != null) {
+      final long wait = this.clientLimiter.tryAcquire(clientId, now, permits);
+      if (wait > 0) {
+        this.clientRejections.increment();
+        throw new AdmissionRejectedException("Too many requests from client " + clientId, retryAfterSeconds(wait));
+      }
+    }
+  }
+
+  private void acquireAccountTokens(final String accountId, final long now, final int permits) {
+    if (this.accountLimiter != null) {
+      final long wait = this.accountLimiter.tryAcquire(accountId, now, permits);
+      if (wait > 0) {
+        this.accountRejections.increment();
+        throw new AdmissionRejectedException("Too many transfers from account " + accountId,
+          retryAfterSeconds(wait));
+      }
+    }
+  }
+
+  private Permit acquireSlot(final long now) {
+    if (!this.concurrencyLimit.tryAcquire()) {
+      this.concurrencyRejections.increment();
+      throw new AdmissionRejectedException("Too many transfers in progress", 1);
+    }
+    return () -> {
+      final long end = this.nanoClock.getAsLong();
+      this.concurrencyLimit.release(end - now, end);
+    };
+  }
+
+  public int getConcurrencyLimit() {
+    return this.concurrencyLimit != null ? this.concurrencyLimit.getLimit() : 0;
+  }
+
+  public int getInFlight() {
+    return this.concurrencyLimit != null ? this.concurrencyLimit.getInFlight() : 0;
+  }
+
+  public long getClientRejections() {
+    return this.clientRejections.sum();
+  }
+
+  public long getAccountRejections() {
+    return this.accountRejections.sum();
+  }
+
+  public long getConcurrencyRejections() {
+    return this.concurrencyRejections.sum();
+  }
+
+  @Override
+  public void destroy() {
+    if (this.evictor != null) {
+      this.evictor.shutdownNow();
+    }
+  }
+
+  void evictFullBuckets() {
+    final long now = this.nanoClock.getAsLong();
+    if (this.clientLimiter != null) {
+      this.clientLimiter.evictFull(now);
+    }
+    if (this.accountLimiter != null) {
+      this.accountLimiter.evictFull(now);
+    }
+  }
+
+  private static long retryAfterSeconds(final long waitNanos) {
+    return Math.max(1, TimeUnit.NANOSECONDS.toSeconds(waitNanos + TimeUnit.SECONDS.toNanos(1) - 1));
+  }
+}
@@ -0,0 +1,88 @@
+package com.dws.challenge.admission;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Token buckets by key, each kept in a single {@code long} as in the generic cell rate algorithm:
+ * the time at which the bucket would be full again, its theoretical arrival time. A request is
+ * admitted if that time is at most {@code burst - 1} intervals ahead, and moves it one interval
+ * further. Admitting is a read and a compare-and-set, there are no locks.
+ *
+ * A request may take several tokens at once. One taking more than the burst is admitted from a
+ * full bucket and leaves it in debt, so it isn't refused forever but still can't exceed the rate
+ * on average.
+ *
+ * A bucket whose time has passed is full, which is the same as having none, so such buckets can
+ * be dropped by {@link #evictFull(long)} to bound the memory taken by keys seen once.
+ */
+final class TokenBucketLimiter {
+
+  private final long intervalNanos;
+  private final long toleranceNanos;
+  private final int burst;
+  private final Map<String, AtomicLong> buckets = new ConcurrentHashMap<>();
+
+  TokenBucketLimiter(final double ratePerSecond, final int burst) {
+    if (ratePerSecond <= 0 || burst < 1) {
+      throw new IllegalArgumentException("Invalid token bucket: ratePerSecond=" + ratePerSecond + ", burst=" + burst);
+    }
+    this.intervalNanos = Math.max(1, (long) (1_000_000_000L / ratePerSecond));
+    this.toleranceNanos = this.intervalNanos * (burst - 1);
+    this.burst = burst;
+  }
+
+  /**
+   * @return 0 if a token was taken, otherwise the nanoseconds until the next one is available
+   */
+  long tryAcquire(final String key, final long now) {
+    return tryAcquire(key, now, 1);
+  }
+
+  /**
+   * @return 0 if the tokens were taken, otherwise the nanoseconds until enough are available
+   */
+  long tryAcquire(final String key, final long now, final int permits) {
+    final long neededAhead = (long) (Math.min(permits, this.burst) - 1) * this.intervalNanos;
+    AtomicLong bucket = this.buckets.get(key);
+    if (bucket == null) {
+      bucket = this.buckets.computeIfAbsent(key, k -> new AtomicLong(now));
+    }
+    while (true) {
+      final long arrival = bucket.get();
+      final long start = Math.max(arrival, now);
+      final long ahead = start - now + neededAhead;
+      if (ahead > this.toleranceNanos) {
+        return ahead - this.toleranceNanos;
+      }
+      if (bucket.compareAndSet(arrival, start + permits * this.intervalNanos)) {
+        return 0;
+      }
+    }
+  }
+
+  /**
+   * Gives back tokens taken by a request that was then rejected by another limit. A bucket dropped
+   * in the meantime was full and stays so, and one that refilled can't go over its burst since a
+   * time in the past counts as now.
+   */
+  void release(final String key, final int permits) {
+    final AtomicLong bucket = this.buckets.get(key);
+    if (bucket != null) {
+      bucket.addAndGet(-permits * this.intervalNanos);
+    }
+  }
+
+  /**
+   * Drops the buckets that are full. A request taking a token from a bucket while it is dropped
+   * loses that token, which at worst admits one more request.
+   */
+  void evictFull(final long now) {
+    this.buckets.values().removeIf(bucket -> bucket.get() - now <= 0);
+  }
+
+  int size() {
+    return this.buckets.size();
+  }
+}
@@ -0,0 +1,88 @@
+package com.dws.challenge.binary;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Serves the requests of one client connection, on a channel in blocking mode. Every complete
+ * frame read is handled in order, and the responses of all frames of one read are written
+ * together, so a client pipelining requests gets them answered with few reads and writes.
+ */
+@Slf4j
+final class BinaryConnection {
+
+  private static final int RESPONSE_BUFFER_SIZE = 64 * 1024;
+
+  private final SocketChannel channel;
+  private final BinaryRequestHandler handler;
+  private final LongAdder requests;
+  private final ByteBuffer in = ByteBuffer.allocate(2 * (4 + BinaryProtocol.MAX_FRAME_LENGTH));
+  private final ByteBuffer out = ByteBuffer.allocate(RESPONSE_BUFFER_SIZE);
+  private final BinaryRequest request = new BinaryRequest();
+
+  BinaryConnection(final SocketChannel channel, final BinaryRequestHandler handler, final LongAdder requests) {
+    this.channel = channel;
+    this.handler = handler;
+    this.requests = requests;
+  }
+
+  /**
+   * Serves requests until the client closes the connection or sends a frame of an invalid length.
+   */
+  void run() throws IOException {
+    while (this.channel.read(this.in) >= 0) {
+      this.in.flip();
+      final boolean framed = handleFrames();
+      this.in.compact();
+      flush();
+      if (!framed) {
+        return;
+      }
+    }
+  }
+
+  /**
+   * @return false if the next frame has an invalid length, after which the stream can't be read on
+   */
+  private boolean handleFrames() throws IOException {
+    while (this.in.remaining() >= 4) {
+      final int length = this.in.getInt(this.in.position());
+      if (length < 5 || length > BinaryProtocol.MAX_FRAME_LENGTH) {
+        log.warn("Closing binary transport connection from {} after a frame length of {}",
+          this.channel.getRemoteAddress(), length);
+        return false;
+      }
+      if (this.in.remaining() < 4 + length) {
+        return true;
+      }
+      if (this.out.remaining() < BinaryProtocol.MAX_RESPONSE_SIZE) {
+        flush();
+      }
+
+      final int limit = this.in.limit();
+      final int frameEnd = this.in.position() + 4 + length;
+      this.in.position(this.in.position() + 4).limit(frameEnd);
+      try {
+        this.request.decode(this.in);
+        this.handler.handle(this.request, this.out);
+      } catch (IllegalArgumentException ex) {
+        BinaryProtocol.putFailure(this.out, this.request.requestId, BinaryProtocol.INVALID_REQUEST, ex.getMessage());
+      }
+      this.in.limit(limit).position(frameEnd);
+      this.requests.increment();
+    }
+    return true;
+  }
+
+  private void flush() throws IOException {
+    this.out.flip();
+    while (this.out.hasRemaining()) {
+      this.channel.write(this.out);
+    }
+    this.out.clear();
+  }
+}
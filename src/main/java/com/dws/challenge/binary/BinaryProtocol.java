@@ -0,0 +1,119 @@
+package com.dws.challenge.binary;
+
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+/**
+ * Wire format of the binary transport. All numbers are big-endian.
+ *
+ * A request frame is {@code int length, byte opcode, int requestId, payload}, the length counting
+ * the bytes after it. A response frame is {@code int length, int requestId, byte status, payload},
+ * with a failure's payload being its message. Strings are an unsigned short byte length followed by
+ * UTF-8; amounts are a byte scale followed by the unscaled value as a long, so at most
+ * {@link Long#MAX_VALUE} minor units.
+ *
+ * <ul>
+ *   <li>{@link #GET_ACCOUNT}: {@code string accountId}, answered with {@code amount balance,
+ *   string currency}</li>
+ *   <li>{@link #CREATE_ACCOUNT}: {@code string accountId, amount balance, string currency}, an
+ *   empty currency for the default one</li>
+ *   <li>{@link #TRANSFER}: {@code string fromAccountId, string toAccountId, amount amount}</li>
+ * </ul>
+ */
+final class BinaryProtocol {
+
+  static final byte GET_ACCOUNT = 1;
+  static final byte CREATE_ACCOUNT = 2;
+  static final byte TRANSFER = 3;
+
+  static final byte OK = 0;
+  static final byte ACCOUNT_NOT_FOUND = 1;
+  static final byte INSUFFICIENT_FUNDS = 2;
+  /** The accounts of a transfer are the same, or the id of a new account is taken. */
+  static final byte DUPLICATE_ACCOUNT_ID = 3;
+  static final byte INVALID_AMOUNT = 4;
+  static final byte INVALID_REQUEST = 5;
+  static final byte ERROR = 6;
+
+  /** Longest frame accepted, a longer one closes the connection. */
+  static final int MAX_FRAME_LENGTH = 64 * 1024;
+  /** Longest message of a failure response, longer ones are cut. */
+  static final int MAX_MESSAGE_LENGTH = 1024;
+  /** Room a response takes at most: its frame header, a status and a message or an account. */
+  static final int MAX_RESPONSE_SIZE = 4 + 4 + 1 + 2 + MAX_MESSAGE_LENGTH * 3;
+
+  private BinaryProtocol() {
+  }
+
+  /**
+   * @throws IllegalArgumentException if the string is empty
+   */
+  static String getString(final ByteBuffer buffer) {
+    final int length = Short.toUnsignedInt(buffer.getShort());
+    if (length == 0) {
+      throw new IllegalArgumentException("Account ids must not be empty");
+    }
+    return getOptionalString(buffer, length);
+  }
+
+  /**
+   * @return null for an empty string
+   */
+  static String getOptionalString(final ByteBuffer buffer) {
+    return getOptionalString(buffer, Short.toUnsignedInt(buffer.getShort()));
+  }
+
+  static void putString(final ByteBuffer buffer, final String value) {
+    final byte[] bytes = value == null ? new byte[0] : value.getBytes(UTF_8);
+    buffer.putShort((short) bytes.length);
+    buffer.put(bytes);
+  }
+
+  static BigDecimal getAmount(final ByteBuffer buffer) {
+    final byte scale = buffer.get();
+    if (scale < 0) {
+      throw new IllegalArgumentException("Negative amount scale " + scale);
+    }
+    return BigDecimal.valueOf(buffer.getLong(), scale);
+  }
+
+  /**
+   * @throws ArithmeticException if the amount has a negative scale or too many digits
+   */
+  static void putAmount(final ByteBuffer buffer, final BigDecimal amount) {
+    if (amount.scale() < 0 || amount.scale() > Byte.MAX_VALUE) {
+      throw new ArithmeticException("Amount " + amount + " has a scale outside of 0 to " + Byte.MAX_VALUE);
+    }
+    final long unscaled = amount.unscaledValue().longValueExact();
+    buffer.put((byte) amount.scale());
+    buffer.putLong(unscaled);
+  }
+
+  /**
+   * Writes a failure response, the message cut to {@link #MAX_MESSAGE_LENGTH} characters.
+   */
+  static void putFailure(final ByteBuffer buffer, final int requestId, final byte status, final String message) {
+    final String text = message == null ? "" : message;
+    final byte[] bytes = (text.length() > MAX_MESSAGE_LENGTH ? text.substring(0, MAX_MESSAGE_LENGTH) : text)
+      .getBytes(UTF_8);
+    buffer.putInt(4 + 1 + 2 + bytes.length);
+    buffer.putInt(requestId);
+    buffer.put(status);
+    buffer.putShort((short) bytes.length);
+    buffer.put(bytes);
+  }
+
+  private static String getOptionalString(final ByteBuffer buffer, final int length) {
+    if (length == 0) {
+      return null;
+    }
+    if (buffer.remaining() < length) {
+      throw new IllegalArgumentException("String of " + length + " bytes exceeds the frame");
+    }
+    final String value = new String(buffer.array(), buffer.arrayOffset() + buffer.position(), length, UTF_8);
+    buffer.position(buffer.position() + length);
+    return value;
+  }
+}
@@ -0,0 +1,61 @@
+package com.dws.challenge.binary;
+
+import java.math.BigDecimal;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+
+/**
+ * A decoded request frame. Every connection reuses one instance for all its requests, which are
+ * handled one at a time, so decoding allocates nothing but the ids and the amount.
+ */
+final class BinaryRequest {
+
+  byte opcode;
+  int requestId;
+  /** The account read or created, or the source of a transfer. */
+  String accountId;
+  String toAccountId;
+  /** The balance of a new account or the transfer amount. */
+  BigDecimal amount;
+  String currency;
+
+  /**
+   * Reads the frame between the buffer's position and limit, the length field excluded. The opcode
+   * and request id are kept even when the payload turns out to be malformed, so the failure can
+   * be answered.
+   *
+   * @throws IllegalArgumentException if the opcode is unknown or the payload doesn't match it
+   */
+  void decode(final ByteBuffer frame) {
+    this.opcode = frame.get();
+    this.requestId = frame.getInt();
+    this.accountId = null;
+    this.toAccountId = null;
+    this.amount = null;
+    this.currency = null;
+    try {
+      switch (this.opcode) {
+        case BinaryProtocol.GET_ACCOUNT:
+          this.accountId = BinaryProtocol.getString(frame);
+          break;
+        case BinaryProtocol.CREATE_ACCOUNT:
+          this.accountId = BinaryProtocol.getString(frame);
+          this.amount = BinaryProtocol.getAmount(frame);
+          this.currency = BinaryProtocol.getOptionalString(frame);
+          break;
+        case BinaryProtocol.TRANSFER:
+          this.accountId = BinaryProtocol.getString(frame);
+          this.toAccountId = BinaryProtocol.getString(frame);
+          this.amount = BinaryProtocol.getAmount(frame);
+          break;
+        default:
+          throw new IllegalArgumentException("Unknown opcode " + this.opcode);
+      }
+    } catch (BufferUnderflowException e) {
+      throw new IllegalArgumentException("Frame too short for opcode " + this.opcode);
+    }
+    if (frame.hasRemaining()) {
+      throw new IllegalArgumentException(frame.remaining() + " unexpected bytes after the payload");
+    }
+  }
+}
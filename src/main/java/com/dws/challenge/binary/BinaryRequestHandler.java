@@ -0,0 +1,115 @@
+package com.dws.challenge.binary;
+
+import com.dws.challenge.domain.Account;
+import com.dws.challenge.domain.MoneyTransfer;
+import com.dws.challenge.exception.AccountNotFoundException;
+import com.dws.challenge.exception.DuplicateAccountIdException;
+import com.dws.challenge.exception.InsufficientFundsException;
+import com.dws.challenge.exception.InvalidAmountException;
+import com.dws.challenge.logging.RequestLogSampler;
+import com.dws.challenge.logging.RequestLogSampler.Endpoint;
+import com.dws.challenge.service.AccountsService;
+import com.dws.challenge.service.MoneyTransferService;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Runs decoded requests against the same services as the HTTP endpoints and writes their
+ * responses. The checks bean validation does for HTTP requests are done here, with the same messages.
+ */
+@Slf4j
+@RequiredArgsConstructor
+class BinaryRequestHandler {
+
+  private final AccountsService accountsService;
+  private final MoneyTransferService moneyTransferService;
+  private final RequestLogSampler requestLogSampler;
+
+  /**
+   * Writes the response to the request, the buffer must have {@link BinaryProtocol#MAX_RESPONSE_SIZE} bytes left.
+   */
+  void handle(final BinaryRequest request, final ByteBuffer response) {
+    final int start = response.position();
+    try {
+      switch (request.opcode) {
+        case BinaryProtocol.GET_ACCOUNT:
+          getAccount(request, response);
+          break;
+        case BinaryProtocol.CREATE_ACCOUNT:
+          createAccount(request, response);
+          break;
+        default:
+          transfer(request, response);
+          break;
+      }
+    } catch (AccountNotFoundException ex) {
+      fail(response, start, request, BinaryProtocol.ACCOUNT_NOT_FOUND, ex);
+    } catch (InsufficientFundsException ex) {
+      fail(response, start, request, BinaryProtocol.INSUFFICIENT_FUNDS, ex);
+    } catch (DuplicateAccountIdException ex) {
+      fail(response, start, request, BinaryProtocol.DUPLICATE_ACCOUNT_ID, ex);
+    } catch (InvalidAmountException ex) {
+      fail(response, start, request, BinaryProtocol.INVALID_AMOUNT, ex);
+    } catch (RuntimeException ex) {
+      log.error("Failed to handle binary request {} with opcode {}", request.requestId, request.opcode, ex);
+      fail(response, start, request, BinaryProtocol.ERROR, ex);
+    }
+  }
+
+  private void getAccount(final BinaryRequest request, final ByteBuffer response) {
+    if (this.requestLogSampler.shouldLog(Endpoint.GET_ACCOUNT)) {
+      log.info("Retrieving account for id {} over the binary transport", request.accountId);
+    }
+    final Account account = this.accountsService.getAccount(request.accountId);
+    if (account == null) {
+      throw new AccountNotFoundException(request.accountId);
+    }
+    final int start = response.position();
+    response.position(start + 4);
+    response.putInt(request.requestId);
+    response.put(BinaryProtocol.OK);
+    BinaryProtocol.putAmount(response, account.getBalance());
+    BinaryProtocol.putString(response, account.getCurrency());
+    response.putInt(start, response.position() - start - 4);
+  }
+
+  private void createAccount(final BinaryRequest request, final ByteBuffer response) {
+    if (this.requestLogSampler.shouldLog(Endpoint.CREATE_ACCOUNT)) {
+      log.info("Creating account {} over the binary transport", request.accountId);
+    }
+    if (request.amount.signum() < 0) {
+      throw new InvalidAmountException("Initial balance must be positive.");
+    }
+    this.accountsService.createAccount(new Account(request.accountId, request.amount, request.currency));
+    putOk(response, request.requestId);
+  }
+
+  private void transfer(final BinaryRequest request, final ByteBuffer response) {
+    if (this.requestLogSampler.shouldLog(Endpoint.TRANSFER)) {
+      log.info("Transferring {} from account {} to account {} over the binary transport", request.amount,
+        request.accountId, request.toAccountId);
+    }
+    if (request.amount.signum() <= 0) {
+      throw new InvalidAmountException("Transfer amount must be positive.");
+    }
+    this.moneyTransferService.transferMoney(new MoneyTransfer(request.accountId, request.toAccountId, request.amount));
+    putOk(response, request.requestId);
+  }
+
+  /**
+   * Replaces whatever part of the response was written with the failure.
+   */
+  private static void fail(final ByteBuffer response, final int start, final BinaryRequest request,
+                           final byte status, final RuntimeException failure) {
+    response.position(start);
+    BinaryProtocol.putFailure(response, request.requestId, status, failure.getMessage());
+  }
+
+  private static void putOk(final ByteBuffer response, final int requestId) {
+    response.putInt(4 + 1);
+    response.putInt(requestId);
+    response.put(BinaryProtocol.OK);
+  }
+}
@@ -0,0 +1,132 @@
+package com.dws.challenge.binary;
+
+import com.dws.challenge.logging.RequestLogSampler;
+import com.dws.challenge.service.AccountsService;
+import com.dws.challenge.service.MoneyTransferService;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * TCP listener speaking the {@link BinaryProtocol}, for internal clients sending transfers at high
+ * rates. Requests skip JSON parsing and bean validation and go to the same services as the HTTP
+ * endpoints, so both transports can be used side by side.
+ *
+ * Each connection is served by its own thread, up to {@code challenge.binary.max-connections};
+ * further connections are closed right away. Clients are expected to keep a few connections open
+ * and pipeline requests on them rather than connect per request. Responses come back in request
+ * order, the request id only helps clients match them.
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(name = "challenge.binary.enabled", havingValue = "true")
+public class BinaryTransportServer implements DisposableBean {
+
+  private final BinaryRequestHandler handler;
+  private final int maxConnections;
+  private final ServerSocketChannel serverChannel;
+  private final int port;
+  private final Set<SocketChannel> connections = ConcurrentHashMap.newKeySet();
+  private final ExecutorService connectionThreads;
+  private final LongAdder requests = new LongAdder();
+
+  /**
+   * @param port the port to listen on, 0 for any free one
+   */
+  @Autowired
+  public BinaryTransportServer(AccountsService accountsService, MoneyTransferService moneyTransferService,
+                               RequestLogSampler requestLogSampler,
+                               @Value("${challenge.binary.port:7070}") int port,
+                               @Value("${challenge.binary.max-connections:64}") int maxConnections)
+    throws IOException {
+    if (maxConnections <= 0) {
+      throw new IllegalArgumentException("Binary transport connection limit must be positive: " + maxConnections);
+    }
+    this.handler = new BinaryRequestHandler(accountsService, moneyTransferService, requestLogSampler);
+    this.maxConnections = maxConnections;
+    this.serverChannel = ServerSocketChannel.open();
+    this.serverChannel.bind(new InetSocketAddress(port));
+    this.port = ((InetSocketAddress) this.serverChannel.getLocalAddress()).getPort();
+
+    final AtomicInteger threadCount = new AtomicInteger();
+    this.connectionThreads = Executors.newCachedThreadPool(runnable -> {
+      final Thread thread = new Thread(runnable, "binary-connection-" + threadCount.incrementAndGet());
+      thread.setDaemon(true);
+      return thread;
+    });
+    final Thread acceptor = new Thread(this::accept, "binary-acceptor");
+    acceptor.setDaemon(true);
+    acceptor.start();
+    log.info("Binary transport listening on port {}", this.port);
+  }
+
+  public int getPort() {
+    return this.port;
+  }
+
+  public int getConnectionCount() {
+    return this.connections.size();
+  }
+
+  public long getRequests() {
+    return this.requests.sum();
+  }
+
+  @Override
+  public void destroy() throws IOException {
+    this.serverChannel.close();
+    for (SocketChannel connection : this.connections) {
+      connection.close();
+    }
+    this.connectionThreads.shutdownNow();
+  }
+
+  private void accept() {
+    while (this.serverChannel.isOpen()) {
+      try {
+        final SocketChannel channel = this.serverChannel.accept();
+        if (this.connections.size() >= this.maxConnections) {
+          log.warn("Refusing binary transport connection from {}, {} connections are open",
+            channel.getRemoteAddress(), this.maxConnections);
+          channel.close();
+          continue;
+        }
+        channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+        this.connections.add(channel);
+        this.connectionThreads.execute(() -> serve(channel));
+      } catch (ClosedChannelException e) {
+        return;
+      } catch (IOException e) {
+        log.warn("Failed to accept a binary transport connection", e);
+      }
+    }
+  }
+
+  private void serve(final SocketChannel channel) {
+    try (channel) {
+      new BinaryConnection(channel, this.handler, this.requests).run();
+    } catch (IOException e) {
+      if (this.serverChannel.isOpen()) {
+        log.info("Binary transport connection failed: {}", e.getMessage());
+      }
+    } finally {
+      this.connections.remove(channel);
+    }
+  }
+}
@@ -0,0 +1,152 @@
+package com.dws.challenge.cache;
+
+import com.dws.challenge.domain.Account;
+import com.dws.challenge.domain.AccountView;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLongFieldUpdater;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Serialized views of recently read accounts, so an account that didn't change since it was last
+ * read is answered without serializing it again.
+ *
+ * Every entry has a version that is bumped once a change of the account is committed. A view is
+ * taken after reading the version and is only served while the version is still the same, so a
+ * view is never older than the last committed change it could have missed. Accounts that were
+ * never read have no entry and their changes cost a single map lookup.
+ *
+ * The cache holds up to {@code challenge.account-cache.max-entries} accounts; when it is full,
+ * arbitrary entries are dropped, which only costs the next read of those accounts a serialization.
+ */
+@Component
+public class AccountViewCache {
+
+  private final ObjectMapper objectMapper;
+  private final int maxEntries;
+  private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+  private final LongAdder hits = new LongAdder();
+  private final LongAdder misses = new LongAdder();
+
+  @Autowired
+  public AccountViewCache(ObjectMapper objectMapper,
+                          @Value("${challenge.account-cache.max-entries:100000}") int maxEntries) {
+    if (maxEntries < 0) {
+      throw new IllegalArgumentException("Account cache size must not be negative: " + maxEntries);
+    }
+    this.objectMapper = objectMapper;
+    this.maxEntries = maxEntries;
+  }
+
+  public static AccountViewCache disabled() {
+    return new AccountViewCache(new ObjectMapper(), 0);
+  }
+
+  /**
+   * Marks the cached view of the account as outdated, called once a change of it is committed.
+   */
+  public void invalidate(final String accountId) {
+    final Entry entry = this.entries.get(accountId);
+    if (entry != null) {
+      entry.bump();
+    }
+  }
+
+  /**
+   * @return the account as JSON, which must not be modified as it may be shared with other reads
+   */
+  public byte[] getJson(final Account account) {
+    if (this.maxEntries == 0) {
+      return serialize(AccountView.of(account, 0));
+    }
+    final Entry entry = entryOf(account.getAccountId());
+    // The version is read before the balance, see the class comment
+    final long version = entry.version;
+    final SerializedView cached = entry.view;
+    if (cached != null && cached.view.getVersion() == version) {
+      this.hits.increment();
+      return cached.json;
+    }
+
+    this.misses.increment();
+    final AccountView view = AccountView.of(account, version);
+    final byte[] json = serialize(view);
+    entry.view = new SerializedView(view, json);
+    return json;
+  }
+
+  public long getHits() {
+    return this.hits.sum();
+  }
+
+  public long getMisses() {
+    return this.misses.sum();
+  }
+
+  public int getEntries() {
+    return this.entries.size();
+  }
+
+  private Entry entryOf(final String accountId) {
+    final Entry entry = this.entries.get(accountId);
+    if (entry != null) {
+      return entry;
+    }
+    if (this.entries.size() >= this.maxEntries) {
+      evict();
+    }
+    return this.entries.computeIfAbsent(accountId, id -> new Entry());
+  }
+
+  /**
+   * Drops about an eighth of the entries. A reader still holding a dropped entry serves its own
+   * view once, later reads start over with a new entry.
+   */
+  private void evict() {
+    int toEvict = Math.max(1, this.maxEntries / 8);
+    final Iterator<Entry> iterator = this.entries.values().iterator();
+    while (toEvict-- > 0 && iterator.hasNext()) {
+      iterator.next();
+      iterator.remove();
+    }
+  }
+
+  private byte[] serialize(final AccountView view) {
+    try {
+      return this.objectMapper.writeValueAsBytes(view);
+    } catch (JsonProcessingException e) {
+      throw new IllegalStateException("Failed to serialize account " + view.getAccountId(), e);
+    }
+  }
+
+  private static final class Entry {
+
+    private static final AtomicLongFieldUpdater<Entry> VERSION =
+      AtomicLongFieldUpdater.newUpdater(Entry.class, "version");
+
+    volatile long version;
+    volatile SerializedView view;
+
+    void bump() {
+      VERSION.incrementAndGet(this);
+    }
+  }
+
+  private static final class SerializedView {
+
+    final AccountView view;
+    final byte[] json;
+
+    SerializedView(final AccountView view, final byte[] json) {
+      this.view = view;
+      this.json = json;
+    }
+  }
+}
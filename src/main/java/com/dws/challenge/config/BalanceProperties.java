@@ -0,0 +1,36 @@
+package com.dws.challenge.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.util.Currency;
+import java.util.HashMap;
+import java.util.Map;
+
+@Data
+@Component
+@ConfigurationProperties(prefix = "challenge.balance")
+public class BalanceProperties {
+
+  private BalanceRepresentation representation = BalanceRepresentation.DECIMAL;
+
+  /** ISO 4217 code of the currency balances are kept in. */
+  private String currency = "EUR";
+
+  /** Minor unit scale per currency code, overriding the ISO 4217 number of fraction digits. */
+  private Map<String, Integer> scales = new HashMap<>();
+
+  public boolean isFixedPoint() {
+    return this.representation == BalanceRepresentation.FIXED_POINT;
+  }
+
+  public int scaleOf(final String currencyCode) {
+    final Integer scale = this.scales.get(currencyCode);
+    if (scale != null) {
+      return scale;
+    }
+    // Pseudo-currencies such as XAU report -1 fraction digits
+    return Math.max(Currency.getInstance(currencyCode).getDefaultFractionDigits(), 0);
+  }
+}
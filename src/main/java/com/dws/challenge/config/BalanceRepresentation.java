@@ -0,0 +1,10 @@
+package com.dws.challenge.config;
+
+public enum BalanceRepresentation {
+
+  /** Balances are {@link java.math.BigDecimal} values. */
+  DECIMAL,
+
+  /** Balances are scaled {@code long} minor units, see {@link com.dws.challenge.domain.FixedPoint}. */
+  FIXED_POINT
+}
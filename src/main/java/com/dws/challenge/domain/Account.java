@@ -1,9 +1,21 @@
 package com.dws.challenge.domain;
 
+import com.dws.challenge.exception.InsufficientFundsException;
+import com.dws.challenge.exception.InvalidAmountException;
 import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.annotation.JsonProperty;
 import java.math.BigDecimal;
+import java.time.Instant;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReferenceFieldUpdater;
+import lombok.AccessLevel;
 import lombok.Data;
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+import lombok.Setter;
+import lombok.ToString;
 
 import javax.validation.constraints.Min;
 import javax.validation.constraints.NotEmpty;
@@ -12,23 +24,264 @@ import javax.validation.constraints.NotNull;
 @Data
 public class Account {
 
+  private static final AtomicReferenceFieldUpdater<Account, BigDecimal> BALANCE =
+    AtomicReferenceFieldUpdater.newUpdater(Account.class, BigDecimal.class, "balance");
+  private static final AtomicReferenceFieldUpdater<Account, PreservedBalance> PRESERVED_BALANCE =
+    AtomicReferenceFieldUpdater.newUpdater(Account.class, PreservedBalance.class, "preservedBalance");
+  private static final AtomicReferenceFieldUpdater<Account, AccountHolds> HOLDS =
+    AtomicReferenceFieldUpdater.newUpdater(Account.class, AccountHolds.class, "holds");
+
   @NotNull
   @NotEmpty
   private final String accountId;
 
   @NotNull
   @Min(value = 0, message = "Initial balance must be positive.")
-  private BigDecimal balance;
+  private volatile BigDecimal balance;
+
+  /** ISO 4217 code, the configured default currency is assigned on creation when absent. */
+  private String currency;
+
+  /**
+   * Set once the account is switched to the fixed-point representation,
+   * from then on it holds the balance and {@link #balance} is unused.
+   */
+  @JsonIgnore
+  @ToString.Exclude
+  @EqualsAndHashCode.Exclude
+  @Setter(AccessLevel.NONE)
+  private volatile FixedPointBalance fixedPointBalance;
+
+  /** Balance as of the latest snapshot epoch that saw the account change, see {@link #preserveBalance(long)}. */
+  @JsonIgnore
+  @ToString.Exclude
+  @EqualsAndHashCode.Exclude
+  @Getter(AccessLevel.NONE)
+  @Setter(AccessLevel.NONE)
+  private volatile PreservedBalance preservedBalance;
+
+  /** Snapshot epoch in which the account was created. */
+  @JsonIgnore
+  @ToString.Exclude
+  @EqualsAndHashCode.Exclude
+  private volatile long createdEpoch;
+
+  /**
+   * Funds reserved for later captures, created with the first hold. The balance still includes
+   * them, only what exceeds their total can be debited. Kept in memory only, a restart releases them.
+   */
+  @JsonIgnore
+  @ToString.Exclude
+  @EqualsAndHashCode.Exclude
+  @Getter(AccessLevel.NONE)
+  @Setter(AccessLevel.NONE)
+  private volatile AccountHolds holds;
 
   public Account(String accountId) {
     this.accountId = accountId;
     this.balance = BigDecimal.ZERO;
   }
 
+  public Account(String accountId, BigDecimal balance) {
+    this(accountId, balance, null);
+  }
+
   @JsonCreator
   public Account(@JsonProperty("accountId") String accountId,
-    @JsonProperty("balance") BigDecimal balance) {
+    @JsonProperty("balance") BigDecimal balance,
+    @JsonProperty("currency") String currency) {
     this.accountId = accountId;
     this.balance = balance;
+    this.currency = currency;
+  }
+
+  /**
+   * Creates an account whose balance is kept by the given holder, for repositories that store
+   * balances outside of the account.
+   */
+  public Account(String accountId, FixedPointBalance fixedPointBalance) {
+    this.accountId = accountId;
+    this.fixedPointBalance = fixedPointBalance;
+  }
+
+  public BigDecimal getBalance() {
+    final FixedPointBalance fixedPoint = this.fixedPointBalance;
+    return fixedPoint != null ? fixedPoint.toDecimal() : this.balance;
+  }
+
+  public void setBalance(BigDecimal balance) {
+    if (this.fixedPointBalance != null) {
+      this.fixedPointBalance.set(FixedPoint.toUnits(balance, this.fixedPointBalance.getScale()));
+    } else {
+      this.balance = balance;
+    }
+  }
+
+  /**
+   * Atomically replaces a decimal balance if it is still the {@code expected} instance,
+   * as returned by {@link #getBalance()}.
+   */
+  public boolean compareAndSetBalance(BigDecimal expected, BigDecimal balance) {
+    if (this.fixedPointBalance != null) {
+      throw new IllegalStateException("Account " + this.accountId + " holds a fixed-point balance");
+    }
+    return BALANCE.compareAndSet(this, expected, balance);
+  }
+
+  /**
+   * Moves the balance into scaled {@code long} minor units.
+   *
+   * @throws com.dws.challenge.exception.InvalidAmountException if the balance has more fractional
+   *                                                            digits than the scale or doesn't fit
+   */
+  public void switchToFixedPoint(int scale) {
+    this.fixedPointBalance = new FixedPointBalance(FixedPoint.toUnits(this.balance, scale), scale);
+    this.balance = null;
+  }
+
+  /**
+   * Moves a plain fixed-point balance to a {@link StripedBalance}. Must be called while holding the
+   * account lock, and code changing the balance under the lock must read the holder under it too.
+   *
+   * @return false if the balance isn't a plain fixed-point balance
+   */
+  public boolean switchToStripedBalance() {
+    final FixedPointBalance current = this.fixedPointBalance;
+    if (current == null || current.getClass() != FixedPointBalance.class) {
+      return false;
+    }
+    this.fixedPointBalance = new StripedBalance(current.get(), current.getScale());
+    return true;
+  }
+
+  /**
+   * Keeps the current balance as the balance of the snapshot {@code epoch}, unless a balance was
+   * already kept for it. Must be called before the first change of the balance within the epoch.
+   */
+  public void preserveBalance(long epoch) {
+    final PreservedBalance preserved = this.preservedBalance;
+    if (preserved == null || preserved.epoch < epoch) {
+      // Losing the race means another transfer kept the same balance first
+      PRESERVED_BALANCE.compareAndSet(this, preserved, new PreservedBalance(epoch, getBalance()));
+    }
+  }
+
+  /**
+   * @return the balance at the start of the snapshot {@code epoch}
+   */
+  public BigDecimal getBalanceAt(long epoch) {
+    final PreservedBalance preserved = this.preservedBalance;
+    return preserved != null && preserved.epoch == epoch ? preserved.balance : getBalance();
+  }
+
+  /**
+   * Checks that the amount can be stored as this account's balance without losing precision.
+   */
+  public void requireRepresentable(BigDecimal amount) {
+    if (this.fixedPointBalance != null) {
+      FixedPoint.toUnits(amount, this.fixedPointBalance.getScale());
+    }
+  }
+
+  /**
+   * @return the total of the active holds, which debits can't take from the balance
+   */
+  @JsonIgnore
+  public BigDecimal getHeldAmount() {
+    final AccountHolds current = holds(false);
+    return current == null ? BigDecimal.ZERO : current.getTotal();
+  }
+
+  /**
+   * @return the held amount in the minor units of the fixed-point balance
+   */
+  @JsonIgnore
+  public long getHeldUnits() {
+    final BigDecimal held = getHeldAmount();
+    return held.signum() == 0 ? 0 : FixedPoint.toUnits(held, this.fixedPointBalance.getScale());
+  }
+
+  /**
+   * @return the active holds in the order they were placed
+   */
+  @JsonIgnore
+  public List<Hold> getHolds() {
+    final AccountHolds current = holds(false);
+    return current == null ? Collections.emptyList() : current.list();
+  }
+
+  /**
+   * Reserves the hold's amount if the balance not held yet covers it. Must be called in the
+   * critical section in which the transfer engine checks the account's funds for debits.
+   *
+   * @throws InsufficientFundsException if the available balance is lower than the amount
+   */
+  public void authorize(Hold hold) {
+    requireRepresentable(hold.getAmount());
+    if (getBalance().subtract(getHeldAmount()).compareTo(hold.getAmount()) < 0) {
+      throw new InsufficientFundsException(this.accountId);
+    }
+    holds(true).add(hold);
+  }
+
+  /**
+   * Releases the hold so the captured amount can be debited right after, in the same critical
+   * section as the debit. The rest of a partial capture is released too. A hold that expired is
+   * left to the sweeper, even if it hasn't released it yet.
+   *
+   * @param now the time in the critical section, checked against the hold's expiry
+   * @return the released hold, null if it was already captured, voided or expired
+   * @throws InvalidAmountException if the amount is more than the hold reserves
+   */
+  public Hold capture(String holdId, BigDecimal amount, Instant now) {
+    final AccountHolds current = holds(false);
+    final Hold hold = current == null ? null : current.get(holdId);
+    if (hold == null || !hold.getExpiresAt().isAfter(now)) {
+      return null;
+    }
+    if (amount.compareTo(hold.getAmount()) > 0) {
+      throw new InvalidAmountException("Cannot capture " + amount.toPlainString() + " from hold " + holdId
+        + " of " + hold.getAmount().toPlainString());
+    }
+    return current.remove(holdId);
+  }
+
+  /**
+   * Puts back a hold released by {@link #capture(String, BigDecimal, Instant)} whose debit failed.
+   */
+  public void restoreHold(Hold hold) {
+    holds(true).add(hold);
+  }
+
+  /**
+   * @return the released hold, null if it was already captured, voided or expired
+   */
+  public Hold voidHold(String holdId) {
+    final AccountHolds current = holds(false);
+    return current == null ? null : current.remove(holdId);
+  }
+
+  /**
+   * @param create whether to create the holds of an account that has none yet
+   * @return the account's holds, null if it has none and {@code create} is false
+   */
+  protected AccountHolds holds(boolean create) {
+    final AccountHolds current = this.holds;
+    if (current != null || !create) {
+      return current;
+    }
+    HOLDS.compareAndSet(this, null, new AccountHolds());
+    return this.holds;
+  }
+
+  private static final class PreservedBalance {
+
+    final long epoch;
+    final BigDecimal balance;
+
+    PreservedBalance(long epoch, BigDecimal balance) {
+      this.epoch = epoch;
+      this.balance = balance;
+    }
   }
 }
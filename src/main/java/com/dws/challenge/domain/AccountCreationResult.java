@@ -0,0 +1,28 @@
+package com.dws.challenge.domain;
+
+import com.dws.challenge.exception.DuplicateAccountIdException;
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.Value;
+
+@Value
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class AccountCreationResult {
+
+  int index;
+  AccountCreationStatus status;
+  String message;
+
+  public static AccountCreationResult created(int index) {
+    return new AccountCreationResult(index, AccountCreationStatus.CREATED, null);
+  }
+
+  public static AccountCreationResult invalid(int index, String message) {
+    return new AccountCreationResult(index, AccountCreationStatus.INVALID_ACCOUNT, message);
+  }
+
+  public static AccountCreationResult failed(int index, RuntimeException failure) {
+    return new AccountCreationResult(index, failure instanceof DuplicateAccountIdException
+      ? AccountCreationStatus.DUPLICATE_ACCOUNT_ID
+      : AccountCreationStatus.INVALID_ACCOUNT, failure.getMessage());
+  }
+}
@@ -0,0 +1,10 @@
+package com.dws.challenge.domain;
+
+public enum AccountCreationStatus {
+
+  CREATED,
+  DUPLICATE_ACCOUNT_ID,
+
+  /** Unreadable, failing bean validation, or with a balance the configured representation can't hold. */
+  INVALID_ACCOUNT
+}
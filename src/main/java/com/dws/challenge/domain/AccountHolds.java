@@ -0,0 +1,48 @@
+package com.dws.challenge.domain;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The holds of one account and their total. Changes are synchronized on the instance, the total
+ * can be read at any time without locking.
+ */
+public final class AccountHolds {
+
+  private final Map<String, Hold> holds = new LinkedHashMap<>();
+  private volatile BigDecimal total = BigDecimal.ZERO;
+
+  public BigDecimal getTotal() {
+    return this.total;
+  }
+
+  public synchronized Hold get(final String holdId) {
+    return this.holds.get(holdId);
+  }
+
+  public synchronized void add(final Hold hold) {
+    this.holds.put(hold.getId(), hold);
+    this.total = this.total.add(hold.getAmount());
+  }
+
+  /**
+   * @return the removed hold, null if there was none with the id
+   */
+  public synchronized Hold remove(final String holdId) {
+    final Hold hold = this.holds.remove(holdId);
+    if (hold != null) {
+      this.total = this.holds.isEmpty() ? BigDecimal.ZERO : this.total.subtract(hold.getAmount());
+    }
+    return hold;
+  }
+
+  /**
+   * @return the holds in the order they were placed
+   */
+  public synchronized List<Hold> list() {
+    return new ArrayList<>(this.holds.values());
+  }
+}
@@ -0,0 +1,19 @@
+package com.dws.challenge.domain;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.Value;
+
+import java.util.List;
+
+/**
+ * One page of accounts matching an index query, {@code nextCursor} is passed back to get the
+ * following page and is absent on the last one.
+ */
+@Value
+public class AccountPage {
+
+  List<AccountView> accounts;
+
+  @JsonInclude(JsonInclude.Include.NON_NULL)
+  String nextCursor;
+}
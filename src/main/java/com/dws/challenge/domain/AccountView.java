@@ -0,0 +1,33 @@
+package com.dws.challenge.domain;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.Value;
+
+import java.math.BigDecimal;
+
+/**
+ * Immutable copy of an account as returned by the API, taken at a version of the account.
+ * Serializes to the same JSON as {@link Account}, plus the amount reserved by holds while there is any.
+ */
+@Value
+public class AccountView {
+
+  String accountId;
+  BigDecimal balance;
+
+  @JsonInclude(JsonInclude.Include.NON_NULL)
+  String currency;
+
+  @JsonInclude(JsonInclude.Include.NON_NULL)
+  BigDecimal heldAmount;
+
+  @JsonIgnore
+  long version;
+
+  public static AccountView of(final Account account, final long version) {
+    final BigDecimal heldAmount = account.getHeldAmount();
+    return new AccountView(account.getAccountId(), account.getBalance(), account.getCurrency(),
+      heldAmount.signum() == 0 ? null : heldAmount, version);
+  }
+}
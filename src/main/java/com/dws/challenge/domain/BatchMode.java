@@ -0,0 +1,10 @@
+package com.dws.challenge.domain;
+
+public enum BatchMode {
+
+  /** Either every transfer of the batch is applied or none is. */
+  ALL_OR_NOTHING,
+
+  /** Every transfer is applied on its own, failures don't affect the rest of the batch. */
+  BEST_EFFORT
+}
@@ -0,0 +1,33 @@
+package com.dws.challenge.domain;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import lombok.AccessLevel;
+import lombok.Data;
+import lombok.experimental.FieldDefaults;
+
+import javax.validation.Valid;
+import javax.validation.constraints.NotEmpty;
+import javax.validation.constraints.NotNull;
+import javax.validation.constraints.Size;
+import java.util.List;
+
+@Data
+@FieldDefaults(level = AccessLevel.PRIVATE, makeFinal = true)
+public class BatchTransferRequest {
+
+  @NotNull
+  BatchMode mode;
+
+  @NotNull
+  @NotEmpty
+  @Size(max = 10_000, message = "Batch must not contain more than 10000 transfers.")
+  List<@Valid @NotNull MoneyTransfer> transfers;
+
+  @JsonCreator
+  public BatchTransferRequest(@JsonProperty("mode") BatchMode mode,
+                              @JsonProperty("transfers") List<MoneyTransfer> transfers) {
+    this.mode = mode;
+    this.transfers = transfers;
+  }
+}
@@ -0,0 +1,16 @@
+package com.dws.challenge.domain;
+
+import lombok.Value;
+
+import java.util.List;
+
+/**
+ * Outcome of a bulk creation: the number of accounts created and, in request order, the items
+ * that were not.
+ */
+@Value
+public class BulkAccountCreationResult {
+
+  int created;
+  List<AccountCreationResult> failures;
+}
@@ -0,0 +1,41 @@
+package com.dws.challenge.domain;
+
+import com.dws.challenge.exception.InvalidAmountException;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+
+/**
+ * Conversions between decimal amounts and scaled {@code long} minor units (cents for a scale of 2).
+ * Nothing is ever rounded: amounts with more fractional digits than the scale and values outside
+ * the {@code long} range are rejected.
+ */
+public final class FixedPoint {
+
+  private FixedPoint() {
+  }
+
+  public static long toUnits(final BigDecimal amount, final int scale) {
+    if (amount.scale() > scale && amount.stripTrailingZeros().scale() > scale) {
+      throw new InvalidAmountException("Amount " + amount.toPlainString()
+        + " has more than " + scale + " fractional digits");
+    }
+    try {
+      return amount.setScale(scale, RoundingMode.UNNECESSARY).unscaledValue().longValueExact();
+    } catch (ArithmeticException e) {
+      throw new InvalidAmountException("Amount " + amount.toPlainString() + " is out of the supported range");
+    }
+  }
+
+  public static BigDecimal toDecimal(final long units, final int scale) {
+    return BigDecimal.valueOf(units, scale);
+  }
+
+  public static long add(final long units, final long addend) {
+    try {
+      return Math.addExact(units, addend);
+    } catch (ArithmeticException e) {
+      throw new InvalidAmountException("Balance overflow");
+    }
+  }
+}
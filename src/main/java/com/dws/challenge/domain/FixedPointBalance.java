@@ -0,0 +1,50 @@
+package com.dws.challenge.domain;
+
+import java.math.BigDecimal;
+import java.util.concurrent.atomic.AtomicLongFieldUpdater;
+
+/**
+ * Balance held as a scaled {@code long} in minor units, so transfers don't allocate.
+ *
+ * Subclasses may keep the units elsewhere, such as off-heap, by overriding the accessors.
+ */
+public class FixedPointBalance {
+
+  private static final AtomicLongFieldUpdater<FixedPointBalance> UNITS =
+    AtomicLongFieldUpdater.newUpdater(FixedPointBalance.class, "units");
+
+  private final int scale;
+  private volatile long units;
+
+  public FixedPointBalance(final long units, final int scale) {
+    this.units = units;
+    this.scale = scale;
+  }
+
+  public int getScale() {
+    return this.scale;
+  }
+
+  public long get() {
+    return this.units;
+  }
+
+  public void set(final long units) {
+    this.units = units;
+  }
+
+  /**
+   * Atomically adds the units, which are negative for a debit. Range checks are up to the caller.
+   */
+  public void add(final long units) {
+    UNITS.addAndGet(this, units);
+  }
+
+  public boolean compareAndSet(final long expectedUnits, final long units) {
+    return UNITS.compareAndSet(this, expectedUnits, units);
+  }
+
+  public BigDecimal toDecimal() {
+    return FixedPoint.toDecimal(get(), this.scale);
+  }
+}
@@ -0,0 +1,18 @@
+package com.dws.challenge.domain;
+
+import lombok.Value;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+
+/**
+ * Funds of an account reserved for a later capture, in the account's currency.
+ */
+@Value
+public class Hold {
+
+  String id;
+  String accountId;
+  BigDecimal amount;
+  Instant expiresAt;
+}
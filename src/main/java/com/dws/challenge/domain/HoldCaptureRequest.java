@@ -0,0 +1,32 @@
+package com.dws.challenge.domain;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import lombok.AccessLevel;
+import lombok.Data;
+import lombok.experimental.FieldDefaults;
+
+import javax.validation.constraints.NotEmpty;
+import javax.validation.constraints.NotNull;
+import javax.validation.constraints.Positive;
+import java.math.BigDecimal;
+
+@Data
+@FieldDefaults(level = AccessLevel.PRIVATE, makeFinal = true)
+public class HoldCaptureRequest {
+
+  @NotNull
+  @NotEmpty
+  String toAccountId;
+
+  /** Part of the held amount to transfer, all of it when absent. */
+  @Positive(message = "Capture amount must be positive.")
+  BigDecimal amount;
+
+  @JsonCreator
+  public HoldCaptureRequest(@JsonProperty("toAccountId") String toAccountId,
+                            @JsonProperty("amount") BigDecimal amount) {
+    this.toAccountId = toAccountId;
+    this.amount = amount;
+  }
+}
@@ -0,0 +1,31 @@
+package com.dws.challenge.domain;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import lombok.AccessLevel;
+import lombok.Data;
+import lombok.experimental.FieldDefaults;
+
+import javax.validation.constraints.NotNull;
+import javax.validation.constraints.Positive;
+import java.math.BigDecimal;
+
+@Data
+@FieldDefaults(level = AccessLevel.PRIVATE, makeFinal = true)
+public class HoldRequest {
+
+  @NotNull
+  @Positive(message = "Hold amount must be positive.")
+  BigDecimal amount;
+
+  /** How long the hold lasts unless captured or voided, the configured default when absent. */
+  @Positive(message = "Hold time to live must be positive.")
+  Long ttlSeconds;
+
+  @JsonCreator
+  public HoldRequest(@JsonProperty("amount") BigDecimal amount,
+                     @JsonProperty("ttlSeconds") Long ttlSeconds) {
+    this.amount = amount;
+    this.ttlSeconds = ttlSeconds;
+  }
+}
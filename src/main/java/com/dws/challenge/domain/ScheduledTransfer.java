@@ -0,0 +1,23 @@
+package com.dws.challenge.domain;
+
+import lombok.Value;
+
+import java.time.Instant;
+import java.util.Comparator;
+
+@Value
+public class ScheduledTransfer {
+
+  /** Execution order: by time, then by id for transfers due at the same instant. */
+  public static final Comparator<ScheduledTransfer> EXECUTION_ORDER = Comparator
+    .comparing(ScheduledTransfer::getExecuteAt)
+    .thenComparing(ScheduledTransfer::getId);
+
+  String id;
+  MoneyTransfer transfer;
+  Instant executeAt;
+
+  public boolean involves(String accountId) {
+    return this.transfer.getFromAccountId().equals(accountId) || this.transfer.getToAccountId().equals(accountId);
+  }
+}
@@ -0,0 +1,31 @@
+package com.dws.challenge.domain;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import lombok.AccessLevel;
+import lombok.Data;
+import lombok.experimental.FieldDefaults;
+
+import javax.validation.Valid;
+import javax.validation.constraints.NotNull;
+import java.time.Instant;
+
+@Data
+@FieldDefaults(level = AccessLevel.PRIVATE, makeFinal = true)
+public class ScheduledTransferRequest {
+
+  @NotNull
+  @Valid
+  MoneyTransfer transfer;
+
+  /** When the transfer is executed, at the latest one scheduler tick after this instant. */
+  @NotNull
+  Instant executeAt;
+
+  @JsonCreator
+  public ScheduledTransferRequest(@JsonProperty("transfer") MoneyTransfer transfer,
+                                  @JsonProperty("executeAt") Instant executeAt) {
+    this.transfer = transfer;
+    this.executeAt = executeAt;
+  }
+}
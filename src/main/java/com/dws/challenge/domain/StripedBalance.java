@@ -0,0 +1,45 @@
+package com.dws.challenge.domain;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Fixed-point balance of a hot account: credits go to a striped counter, so concurrent credits
+ * don't contend for the account, and are merged with the base balance on every read. Debits and
+ * the funds check still go through the base balance under the account lock; as credits only ever
+ * raise the balance, a debit checked against a read that misses a concurrent credit stays covered.
+ *
+ * {@link #set(long)} is only exact while no credit runs concurrently, and there is no atomic
+ * compare-and-set, so striped balances are only used by the locking engine.
+ */
+public final class StripedBalance extends FixedPointBalance {
+
+  private final LongAdder credits = new LongAdder();
+
+  public StripedBalance(final long units, final int scale) {
+    super(units, scale);
+  }
+
+  @Override
+  public long get() {
+    return super.get() + this.credits.sum();
+  }
+
+  @Override
+  public void set(final long units) {
+    super.set(units - this.credits.sum());
+  }
+
+  @Override
+  public void add(final long units) {
+    if (units > 0) {
+      this.credits.add(units);
+    } else {
+      super.add(units);
+    }
+  }
+
+  @Override
+  public boolean compareAndSet(final long expectedUnits, final long units) {
+    throw new UnsupportedOperationException("Striped balances can't be compared and set");
+  }
+}
@@ -0,0 +1,31 @@
+package com.dws.challenge.domain;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.Value;
+
+@Value
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class TransferResult {
+
+  int index;
+  TransferStatus status;
+  String message;
+
+  public static TransferResult completed(int index) {
+    return new TransferResult(index, TransferStatus.COMPLETED, null);
+  }
+
+  public static TransferResult aborted(int index) {
+    return new TransferResult(index, TransferStatus.ABORTED, "Batch aborted because another transfer failed");
+  }
+
+  public static TransferResult failed(int index, RuntimeException failure) {
+    return new TransferResult(index, TransferStatus.of(failure), failure.getMessage());
+  }
+
+  @JsonIgnore
+  public boolean isCompleted() {
+    return this.status == TransferStatus.COMPLETED;
+  }
+}
@@ -0,0 +1,34 @@
+package com.dws.challenge.domain;
+
+import com.dws.challenge.exception.AccountNotFoundException;
+import com.dws.challenge.exception.DuplicateAccountIdException;
+import com.dws.challenge.exception.InsufficientFundsException;
+import com.dws.challenge.exception.InvalidAmountException;
+
+public enum TransferStatus {
+
+  COMPLETED,
+  ACCOUNT_NOT_FOUND,
+  INSUFFICIENT_FUNDS,
+  SAME_ACCOUNT,
+  INVALID_AMOUNT,
+
+  /** Valid on its own, but not applied because another transfer of an all-or-nothing batch failed. */
+  ABORTED;
+
+  public static TransferStatus of(RuntimeException failure) {
+    if (failure instanceof AccountNotFoundException) {
+      return ACCOUNT_NOT_FOUND;
+    }
+    if (failure instanceof InsufficientFundsException) {
+      return INSUFFICIENT_FUNDS;
+    }
+    if (failure instanceof DuplicateAccountIdException) {
+      return SAME_ACCOUNT;
+    }
+    if (failure instanceof InvalidAmountException) {
+      return INVALID_AMOUNT;
+    }
+    throw failure;
+  }
+}
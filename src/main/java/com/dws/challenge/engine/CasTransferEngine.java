@@ -0,0 +1,205 @@
+package com.dws.challenge.engine;
+
+import com.dws.challenge.domain.Account;
+import com.dws.challenge.domain.FixedPoint;
+import com.dws.challenge.domain.FixedPointBalance;
+import com.dws.challenge.domain.Hold;
+import com.dws.challenge.domain.MoneyTransfer;
+import com.dws.challenge.exception.InsufficientFundsException;
+import com.dws.challenge.exception.InvalidAmountException;
+import com.dws.challenge.exception.TransferBatchAbortedException;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Lock-free engine: each balance is an atomic cell updated with compare-and-set.
+ *
+ * A transfer first debits the source with a CAS loop that refuses to go below zero, then credits
+ * the destination with a CAS loop that always succeeds. A failed CAS means another transfer changed
+ * the balance in between; the step is retried against the fresh value, so no update is lost.
+ * Between the two steps the amount is in flight and the total of both balances is briefly lower,
+ * but neither balance is ever negative. A credit that would overflow a fixed-point balance fails
+ * after the debit, which is then credited back to the source.
+ *
+ * The journaled repository relies on balances being recorded in commit order under the account
+ * locks, which this engine doesn't take, so the two can't be combined. Holds aren't supported
+ * either: a hold would have to be checked together with the balance, which a CAS on the balance
+ * alone can't do. Neither are atomic batches of fixed-point accounts, see
+ * {@link #transferAtomically(List, List, Map)}.
+ */
+@Component
+@ConditionalOnProperty(name = "challenge.transfer.engine", havingValue = "cas")
+public class CasTransferEngine implements TransferEngine {
+
+  private final LongAdder attempts = new LongAdder();
+  private final LongAdder retries = new LongAdder();
+
+  @Autowired
+  public CasTransferEngine(@Value("${challenge.repository.type:in-memory}") String repositoryType) {
+    if ("journal".equals(repositoryType)) {
+      throw new IllegalStateException("The cas transfer engine can't be combined with the journal repository");
+    }
+  }
+
+  @Override
+  public void transfer(final Account fromAccount, final Account toAccount, final BigDecimal amount,
+                       final BigDecimal creditedAmount) {
+    // Fails fast on scale violations before anything is debited
+    toAccount.requireRepresentable(creditedAmount);
+    if (!tryAdd(fromAccount, amount, true)) {
+      throw new InsufficientFundsException(fromAccount.getAccountId());
+    }
+    try {
+      tryAdd(toAccount, creditedAmount, false);
+    } catch (RuntimeException ex) {
+      tryAdd(fromAccount, amount, false);
+      throw ex;
+    }
+  }
+
+  @Override
+  public void authorize(final Account account, final Hold hold) {
+    throw new UnsupportedOperationException("Holds need the locking or sharded transfer engine");
+  }
+
+  /**
+   * No hold is ever placed, so there is none to capture.
+   */
+  @Override
+  public boolean capture(final Account fromAccount, final Account toAccount, final String holdId,
+                         final BigDecimal amount, final BigDecimal creditedAmount) {
+    return false;
+  }
+
+  @Override
+  public int releaseHolds(final Account account, final Collection<String> holdIds) {
+    return 0;
+  }
+
+  /**
+   * Without locks the accounts of a batch can't be checked and updated in one step, so the batch
+   * is checked against its net effect per account instead of transfer by transfer: all net debits
+   * are applied first, and if one of them fails the ones already applied are credited back. Then
+   * the net credits are applied, which can't fail for decimal balances.
+   *
+   * A credit to a fixed-point balance can overflow once the debits are applied, and a credit
+   * already applied can't be taken back without risking a negative balance, since it may have been
+   * spent in between. Batches involving fixed-point accounts are therefore refused.
+   *
+   * @throws UnsupportedOperationException if an account of the batch has a fixed-point balance
+   */
+  @Override
+  public void transferAtomically(final List<MoneyTransfer> moneyTransfers, final List<BigDecimal> creditedAmounts,
+                                 final Map<String, Account> accounts) {
+    final Map<String, BigDecimal> netAmounts = new LinkedHashMap<>();
+    for (int i = 0; i < moneyTransfers.size(); i++) {
+      final MoneyTransfer moneyTransfer = moneyTransfers.get(i);
+      netAmounts.merge(moneyTransfer.getFromAccountId(), moneyTransfer.getAmount().negate(), BigDecimal::add);
+      netAmounts.merge(moneyTransfer.getToAccountId(), creditedAmounts.get(i), BigDecimal::add);
+    }
+    for (Map.Entry<String, BigDecimal> netAmount : netAmounts.entrySet()) {
+      if (accounts.get(netAmount.getKey()).getFixedPointBalance() != null) {
+        throw new UnsupportedOperationException(
+          "Atomic batches of fixed-point accounts need the locking or sharded transfer engine");
+      }
+    }
+
+    final List<Map.Entry<String, BigDecimal>> debited = new ArrayList<>();
+    for (Map.Entry<String, BigDecimal> netAmount : netAmounts.entrySet()) {
+      if (netAmount.getValue().signum() >= 0) {
+        continue;
+      }
+      if (!tryAdd(accounts.get(netAmount.getKey()), netAmount.getValue().negate(), true)) {
+        for (Map.Entry<String, BigDecimal> refund : debited) {
+          tryAdd(accounts.get(refund.getKey()), refund.getValue().negate(), false);
+        }
+        throw new TransferBatchAbortedException(firstDebitOf(moneyTransfers, netAmount.getKey()),
+          new InsufficientFundsException(netAmount.getKey()));
+      }
+      debited.add(netAmount);
+    }
+    for (Map.Entry<String, BigDecimal> netAmount : netAmounts.entrySet()) {
+      if (netAmount.getValue().signum() > 0) {
+        tryAdd(accounts.get(netAmount.getKey()), netAmount.getValue(), false);
+      }
+    }
+  }
+
+  public long getAttempts() {
+    return this.attempts.sum();
+  }
+
+  public long getRetries() {
+    return this.retries.sum();
+  }
+
+  /**
+   * Share of CAS attempts that had to be repeated because of a concurrent update.
+   */
+  public double getRetryRate() {
+    final long attemptCount = this.attempts.sum();
+    return attemptCount == 0 ? 0d : (double) this.retries.sum() / attemptCount;
+  }
+
+  /**
+   * Debits ({@code debit == true}) or credits the amount with a CAS loop.
+   *
+   * @return false if a debit would make the balance negative, credits always return true
+   * @throws InvalidAmountException if the amount doesn't fit into a fixed-point balance
+   */
+  private boolean tryAdd(final Account account, final BigDecimal amount, final boolean debit) {
+    final FixedPointBalance fixedPointBalance = account.getFixedPointBalance();
+    if (fixedPointBalance != null) {
+      final long units = FixedPoint.toUnits(amount, fixedPointBalance.getScale());
+      return tryAdd(fixedPointBalance, debit ? -units : units, debit);
+    }
+
+    final BigDecimal delta = debit ? amount.negate() : amount;
+    while (true) {
+      this.attempts.increment();
+      final BigDecimal current = account.getBalance();
+      final BigDecimal updated = current.add(delta);
+      if (debit && updated.signum() < 0) {
+        return false;
+      }
+      if (account.compareAndSetBalance(current, updated)) {
+        return true;
+      }
+      this.retries.increment();
+    }
+  }
+
+  private boolean tryAdd(final FixedPointBalance balance, final long units, final boolean debit) {
+    while (true) {
+      this.attempts.increment();
+      final long current = balance.get();
+      final long updated = FixedPoint.add(current, units);
+      if (debit && updated < 0) {
+        return false;
+      }
+      if (balance.compareAndSet(current, updated)) {
+        return true;
+      }
+      this.retries.increment();
+    }
+  }
+
+  private static int firstDebitOf(final List<MoneyTransfer> moneyTransfers, final String accountId) {
+    for (int i = 0; i < moneyTransfers.size(); i++) {
+      if (moneyTransfers.get(i).getFromAccountId().equals(accountId)) {
+        return i;
+      }
+    }
+    return 0;
+  }
+}
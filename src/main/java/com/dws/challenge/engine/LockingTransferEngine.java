@@ -0,0 +1,280 @@
+package com.dws.challenge.engine;
+
+import com.dws.challenge.config.BalanceProperties;
+import com.dws.challenge.domain.Account;
+import com.dws.challenge.domain.FixedPoint;
+import com.dws.challenge.domain.FixedPointBalance;
+import com.dws.challenge.domain.Hold;
+import com.dws.challenge.domain.MoneyTransfer;
+import com.dws.challenge.domain.StripedBalance;
+import com.dws.challenge.exception.InsufficientFundsException;
+import com.dws.challenge.exception.InvalidAmountException;
+import com.dws.challenge.exception.TransferBatchAbortedException;
+import com.dws.challenge.lock.AccountLockManager;
+import com.dws.challenge.lock.HotAccountDetector;
+import com.dws.challenge.repository.AccountsRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+import static com.dws.challenge.lock.LockedOperation.AUTHORIZE_HOLD;
+import static com.dws.challenge.lock.LockedOperation.BATCH;
+import static com.dws.challenge.lock.LockedOperation.CAPTURE_HOLD;
+import static com.dws.challenge.lock.LockedOperation.RELEASE_HOLDS;
+import static com.dws.challenge.lock.LockedOperation.STRIPE_BALANCE;
+import static com.dws.challenge.lock.LockedOperation.TRANSFER;
+
+/**
+ * Locks both accounts through the {@link AccountLockManager} and updates them in one critical section.
+ *
+ * Fixed-point accounts the {@link HotAccountDetector} finds to receive many credits are switched to a
+ * {@link StripedBalance}. Transfers to such an account only lock the source account, so credits to
+ * it no longer wait for each other; debits from it still take its lock. Balances the repository
+ * records are never switched, their records must follow the order of the changes. With decimal
+ * balances, the default, or such a repository, hot accounts aren't looked for.
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(name = "challenge.transfer.engine", havingValue = "locking", matchIfMissing = true)
+public class LockingTransferEngine implements TransferEngine {
+
+  private final AccountLockManager accountLockManager;
+  private final AccountsRepository accountsRepository;
+  private final HotAccountDetector hotAccountDetector;
+  private final LongAdder stripedAccounts = new LongAdder();
+
+  public LockingTransferEngine(AccountLockManager accountLockManager, AccountsRepository accountsRepository) {
+    this(accountLockManager, accountsRepository, HotAccountDetector.disabled());
+  }
+
+  public LockingTransferEngine(AccountLockManager accountLockManager, AccountsRepository accountsRepository,
+                               HotAccountDetector hotAccountDetector) {
+    this.accountLockManager = accountLockManager;
+    this.accountsRepository = accountsRepository;
+    this.hotAccountDetector = accountsRepository.recordsBalances() ? HotAccountDetector.disabled() : hotAccountDetector;
+  }
+
+  /**
+   * Only fixed-point balances can be striped, with decimal ones or a repository recording the
+   * balances the detector isn't used at all.
+   */
+  @Autowired
+  public LockingTransferEngine(AccountLockManager accountLockManager, AccountsRepository accountsRepository,
+                               HotAccountDetector hotAccountDetector, BalanceProperties balanceProperties) {
+    this(accountLockManager, accountsRepository,
+      balanceProperties.isFixedPoint() ? hotAccountDetector : HotAccountDetector.disabled());
+    if (hotAccountDetector.isEnabled() && !isHotAccountHandlingActive()) {
+      log.info("Hot account handling is inactive, it needs {}", balanceProperties.isFixedPoint()
+        ? "a repository that doesn't record balances" : "challenge.balance.representation=FIXED_POINT");
+    }
+  }
+
+  /**
+   * @return whether accounts receiving many credits are switched to striped balances
+   */
+  public boolean isHotAccountHandlingActive() {
+    return this.hotAccountDetector.isEnabled();
+  }
+
+  @Override
+  public void transfer(final Account fromAccount, final Account toAccount, final BigDecimal amount,
+                       final BigDecimal creditedAmount) {
+    /*
+    Locking should be done on both accounts to perform safe transfer.
+    The lock manager acquires the account stripes in a fixed order, so opposite
+    transfers between the same pair of accounts can't deadlock.
+    */
+    final FixedPointBalance fromBalance = fromAccount.getFixedPointBalance();
+    final FixedPointBalance toBalance = toAccount.getFixedPointBalance();
+    if (fromBalance != null && toBalance != null) {
+      final long units = FixedPoint.toUnits(amount, fromBalance.getScale());
+      final long creditedUnits = FixedPoint.toUnits(creditedAmount, toBalance.getScale());
+      if (toBalance instanceof StripedBalance) {
+        this.accountLockManager.executeLocked(TRANSFER, fromAccount.getAccountId(), () -> {
+          debitAndCredit(fromAccount, toAccount, units, creditedUnits);
+          this.accountsRepository.recordBalances(fromAccount, toAccount);
+        });
+      } else {
+        this.accountLockManager.executeLocked(TRANSFER, fromAccount.getAccountId(), toAccount.getAccountId(), () -> {
+          debitAndCredit(fromAccount, toAccount, units, creditedUnits);
+          this.accountsRepository.recordBalances(fromAccount, toAccount);
+        });
+        if (this.hotAccountDetector.recordCredit(toAccount.getAccountId())) {
+          switchToStripedBalance(toAccount);
+        }
+      }
+    } else {
+      this.accountLockManager.executeLocked(TRANSFER, fromAccount.getAccountId(), toAccount.getAccountId(), () -> {
+        debitAndCredit(fromAccount, toAccount, amount, creditedAmount);
+        this.accountsRepository.recordBalances(fromAccount, toAccount);
+      });
+    }
+    this.accountsRepository.awaitDurable();
+  }
+
+  @Override
+  public void authorize(final Account account, final Hold hold) {
+    this.accountLockManager.executeLocked(AUTHORIZE_HOLD, account.getAccountId(), () -> account.authorize(hold));
+  }
+
+  /**
+   * Always locks both accounts, a capture isn't frequent enough to count towards hot accounts.
+   */
+  @Override
+  public boolean capture(final Account fromAccount, final Account toAccount, final String holdId,
+                         final BigDecimal amount, final BigDecimal creditedAmount) {
+    final boolean[] captured = new boolean[1];
+    this.accountLockManager.executeLocked(CAPTURE_HOLD, fromAccount.getAccountId(), toAccount.getAccountId(), () -> {
+      final Hold hold = fromAccount.capture(holdId, amount, Instant.now());
+      if (hold == null) {
+        return;
+      }
+      try {
+        final FixedPointBalance fromBalance = fromAccount.getFixedPointBalance();
+        final FixedPointBalance toBalance = toAccount.getFixedPointBalance();
+        if (fromBalance != null && toBalance != null) {
+          debitAndCredit(fromAccount, toAccount, FixedPoint.toUnits(amount, fromBalance.getScale()),
+            FixedPoint.toUnits(creditedAmount, toBalance.getScale()));
+        } else {
+          debitAndCredit(fromAccount, toAccount, amount, creditedAmount);
+        }
+      } catch (RuntimeException ex) {
+        fromAccount.restoreHold(hold);
+        throw ex;
+      }
+      this.accountsRepository.recordBalances(fromAccount, toAccount);
+      captured[0] = true;
+    });
+    this.accountsRepository.awaitDurable();
+    return captured[0];
+  }
+
+  @Override
+  public int releaseHolds(final Account account, final Collection<String> holdIds) {
+    final int[] released = new int[1];
+    this.accountLockManager.executeLocked(RELEASE_HOLDS, account.getAccountId(), () -> {
+      for (String holdId : holdIds) {
+        if (account.voidHold(holdId) != null) {
+          released[0]++;
+        }
+      }
+    });
+    return released[0];
+  }
+
+  /**
+   * @return the number of accounts switched to a striped balance
+   */
+  public long getStripedAccounts() {
+    return this.stripedAccounts.sum();
+  }
+
+  /**
+   * Every account touched by the batch is locked for the whole batch, the resulting balances are
+   * computed in request order and only written back once all transfers have passed the funds check.
+   */
+  @Override
+  public void transferAtomically(final List<MoneyTransfer> moneyTransfers, final List<BigDecimal> creditedAmounts,
+                                 final Map<String, Account> accounts) {
+    this.accountLockManager.executeLocked(BATCH, accounts.keySet(), () -> {
+      final Map<String, BigDecimal> originalBalances = new HashMap<>();
+      accounts.forEach((accountId, account) -> originalBalances.put(accountId, account.getBalance()));
+      final Map<String, BigDecimal> newBalances = new HashMap<>();
+      for (int i = 0; i < moneyTransfers.size(); i++) {
+        final MoneyTransfer moneyTransfer = moneyTransfers.get(i);
+        final String fromAccountId = moneyTransfer.getFromAccountId();
+        final String toAccountId = moneyTransfer.getToAccountId();
+
+        final BigDecimal fromAccountNewBalance = newBalances
+          .getOrDefault(fromAccountId, originalBalances.get(fromAccountId))
+          .subtract(moneyTransfer.getAmount());
+        if (fromAccountNewBalance.compareTo(accounts.get(fromAccountId).getHeldAmount()) < 0) {
+          throw new TransferBatchAbortedException(i, new InsufficientFundsException(fromAccountId));
+        }
+        final BigDecimal toAccountNewBalance = newBalances
+          .getOrDefault(toAccountId, originalBalances.get(toAccountId))
+          .add(creditedAmounts.get(i));
+        try {
+          accounts.get(fromAccountId).requireRepresentable(fromAccountNewBalance);
+          accounts.get(toAccountId).requireRepresentable(toAccountNewBalance);
+        } catch (InvalidAmountException ex) {
+          throw new TransferBatchAbortedException(i, ex);
+        }
+        newBalances.put(fromAccountId, fromAccountNewBalance);
+        newBalances.put(toAccountId, toAccountNewBalance);
+      }
+      newBalances.forEach((accountId, balance) ->
+        applyBalance(accounts.get(accountId), originalBalances.get(accountId), balance));
+      this.accountsRepository.recordBalances(accounts.values());
+    });
+    this.accountsRepository.awaitDurable();
+  }
+
+  private static void debitAndCredit(final Account fromAccount, final Account toAccount, final BigDecimal amount,
+                                     final BigDecimal creditedAmount) {
+    final BigDecimal fromAccountNewBalance = fromAccount.getBalance().subtract(amount);
+    if (fromAccountNewBalance.compareTo(fromAccount.getHeldAmount()) < 0) {
+      throw new InsufficientFundsException(fromAccount.getAccountId());
+    }
+    final BigDecimal toAccountNewBalance = toAccount.getBalance().add(creditedAmount);
+    fromAccount.requireRepresentable(fromAccountNewBalance);
+    toAccount.requireRepresentable(toAccountNewBalance);
+
+    fromAccount.setBalance(fromAccountNewBalance);
+    toAccount.setBalance(toAccountNewBalance);
+  }
+
+  /**
+   * Same as {@link #debitAndCredit(Account, Account, BigDecimal, BigDecimal)} on minor units, without allocating.
+   * The balances are changed by the amount rather than set, so a striped balance keeps the credits
+   * it takes without the lock.
+   */
+  private static void debitAndCredit(final Account fromAccount, final Account toAccount, final long amount,
+                                     final long creditedAmount) {
+    // Read under the lock, as the balances may have been switched to striped ones
+    final FixedPointBalance fromBalance = fromAccount.getFixedPointBalance();
+    final FixedPointBalance toBalance = toAccount.getFixedPointBalance();
+    if (fromBalance.get() - amount < fromAccount.getHeldUnits()) {
+      throw new InsufficientFundsException(fromAccount.getAccountId());
+    }
+    FixedPoint.add(toBalance.get(), creditedAmount);
+
+    fromBalance.add(-amount);
+    toBalance.add(creditedAmount);
+  }
+
+  /**
+   * Fixed-point balances are changed by the difference to the original balance, like in
+   * {@link #debitAndCredit(Account, Account, long, long)}.
+   */
+  private static void applyBalance(final Account account, final BigDecimal originalBalance, final BigDecimal balance) {
+    final FixedPointBalance fixedPointBalance = account.getFixedPointBalance();
+    if (fixedPointBalance != null) {
+      fixedPointBalance.add(FixedPoint.toUnits(balance.subtract(originalBalance), fixedPointBalance.getScale()));
+    } else {
+      account.setBalance(balance);
+    }
+  }
+
+  private void switchToStripedBalance(final Account account) {
+    if (this.accountsRepository.recordsBalances()) {
+      return;
+    }
+    this.accountLockManager.executeLocked(STRIPE_BALANCE, account.getAccountId(), () -> {
+      if (account.switchToStripedBalance()) {
+        this.stripedAccounts.increment();
+        log.info("Switched account {} to a striped balance, credits to it no longer lock it",
+          account.getAccountId());
+      }
+    });
+  }
+}
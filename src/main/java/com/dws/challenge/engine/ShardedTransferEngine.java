@@ -0,0 +1,441 @@
+package com.dws.challenge.engine;
+
+import com.dws.challenge.domain.Account;
+import com.dws.challenge.domain.FixedPoint;
+import com.dws.challenge.domain.FixedPointBalance;
+import com.dws.challenge.domain.Hold;
+import com.dws.challenge.domain.MoneyTransfer;
+import com.dws.challenge.exception.InsufficientFundsException;
+import com.dws.challenge.exception.InvalidAmountException;
+import com.dws.challenge.exception.TransferBatchAbortedException;
+import com.dws.challenge.repository.AccountsRepository;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Single-writer engine: accounts are partitioned by id over single-threaded shards, and the
+ * balance of an account is only ever changed by the thread of its shard. No locks are taken.
+ *
+ * When both accounts live on the same shard the transfer runs as one task. Otherwise the amount
+ * is first reserved on the source shard, which fails on insufficient funds, and then credited on
+ * the destination shard; if the credit fails the reservation is released again. Between the two
+ * steps the amount is in flight, like with the {@link CasTransferEngine}.
+ *
+ * Shard tasks never wait for each other, the coordination happens on the calling thread. The
+ * journaled repository can't be used: the debit and the credit of a cross-shard transfer commit
+ * separately, so a crash in between would replay the debit without the credit. Writing both in
+ * one record after the credit wouldn't help either, other transfers of the source may have
+ * recorded a newer balance by then.
+ */
+@Component
+@ConditionalOnProperty(name = "challenge.transfer.engine", havingValue = "sharded")
+public class ShardedTransferEngine implements TransferEngine, DisposableBean {
+
+  private final ExecutorService[] shards;
+  /**
+   * Per shard, the units of headroom reserved by atomic batches on its fixed-point accounts, by
+   * account id. Only read and changed by the thread of the shard.
+   */
+  private final List<Map<String, Long>> reservedHeadroom;
+
+  @Autowired
+  public ShardedTransferEngine(AccountsRepository accountsRepository,
+                               @Value("${challenge.transfer.shards:0}") int shardCount) {
+    if (shardCount < 0) {
+      throw new IllegalArgumentException("Shard count must not be negative: " + shardCount);
+    }
+    if (accountsRepository.recordsBalances()) {
+      throw new IllegalStateException("The sharded transfer engine can't be combined with the journal repository");
+    }
+    this.shards = new ExecutorService[shardCount > 0 ? shardCount : Runtime.getRuntime().availableProcessors()];
+    this.reservedHeadroom = new ArrayList<>(this.shards.length);
+    for (int i = 0; i < this.shards.length; i++) {
+      this.reservedHeadroom.add(new HashMap<>());
+      final String threadName = "transfer-shard-" + (i + 1);
+      this.shards[i] = Executors.newSingleThreadExecutor(runnable -> {
+        final Thread thread = new Thread(runnable, threadName);
+        thread.setDaemon(true);
+        return thread;
+      });
+    }
+  }
+
+  public int getShardCount() {
+    return this.shards.length;
+  }
+
+  @Override
+  public void transfer(final Account fromAccount, final Account toAccount, final BigDecimal amount,
+                       final BigDecimal creditedAmount) {
+    // Fails fast on scale violations before anything is reserved
+    toAccount.requireRepresentable(creditedAmount);
+
+    final int fromShard = shardOf(fromAccount.getAccountId());
+    final int toShard = shardOf(toAccount.getAccountId());
+    if (fromShard == toShard) {
+      run(fromShard, () -> {
+        debit(fromAccount, amount);
+        try {
+          credit(fromShard, toAccount, creditedAmount);
+        } catch (RuntimeException ex) {
+          credit(fromShard, fromAccount, amount);
+          throw ex;
+        }
+      });
+    } else {
+      run(fromShard, () -> debit(fromAccount, amount));
+      try {
+        run(toShard, () -> credit(toShard, toAccount, creditedAmount));
+      } catch (RuntimeException ex) {
+        run(fromShard, () -> credit(fromShard, fromAccount, amount));
+        throw ex;
+      }
+    }
+  }
+
+  @Override
+  public void authorize(final Account account, final Hold hold) {
+    run(shardOf(account.getAccountId()), () -> account.authorize(hold));
+  }
+
+  /**
+   * Like {@link #transfer(Account, Account, BigDecimal, BigDecimal)}, the hold is released in the
+   * task debiting the source and put back if the credit fails.
+   */
+  @Override
+  public boolean capture(final Account fromAccount, final Account toAccount, final String holdId,
+                         final BigDecimal amount, final BigDecimal creditedAmount) {
+    toAccount.requireRepresentable(creditedAmount);
+
+    final int fromShard = shardOf(fromAccount.getAccountId());
+    final int toShard = shardOf(toAccount.getAccountId());
+    final Hold hold;
+    if (fromShard == toShard) {
+      hold = await(submit(fromShard, () -> {
+        final Hold captured = captureAndDebit(fromAccount, holdId, amount);
+        if (captured != null) {
+          try {
+            credit(fromShard, toAccount, creditedAmount);
+          } catch (RuntimeException ex) {
+            credit(fromShard, fromAccount, amount);
+            fromAccount.restoreHold(captured);
+            throw ex;
+          }
+        }
+        return captured;
+      }));
+    } else {
+      hold = await(submit(fromShard, () -> captureAndDebit(fromAccount, holdId, amount)));
+      if (hold != null) {
+        try {
+          run(toShard, () -> credit(toShard, toAccount, creditedAmount));
+        } catch (RuntimeException ex) {
+          run(fromShard, () -> {
+            credit(fromShard, fromAccount, amount);
+            fromAccount.restoreHold(hold);
+          });
+          throw ex;
+        }
+      }
+    }
+    return hold != null;
+  }
+
+  @Override
+  public int releaseHolds(final Account account, final Collection<String> holdIds) {
+    return await(submit(shardOf(account.getAccountId()), () -> {
+      int released = 0;
+      for (String holdId : holdIds) {
+        if (account.voidHold(holdId) != null) {
+          released++;
+        }
+      }
+      return released;
+    }));
+  }
+
+  /**
+   * The batch is reduced to a net amount per account, like in the {@link CasTransferEngine}. Every
+   * shard reserves the net amounts of its accounts in one task, all or none of them: it checks that
+   * the debits are covered and that the credits fit into fixed-point balances, then applies the
+   * debits and reserves headroom for both, which other credits leave alone. If a shard can't, the
+   * other shards refund their debits and release their reservations. Once every shard reserved, the
+   * shards apply their credits, which are then sure to fit, and release the headroom.
+   */
+  @Override
+  public void transferAtomically(final List<MoneyTransfer> moneyTransfers, final List<BigDecimal> creditedAmounts,
+                                 final Map<String, Account> accounts) {
+    final Map<String, BigDecimal> netAmounts = new LinkedHashMap<>();
+    for (int i = 0; i < moneyTransfers.size(); i++) {
+      final MoneyTransfer moneyTransfer = moneyTransfers.get(i);
+      netAmounts.merge(moneyTransfer.getFromAccountId(), moneyTransfer.getAmount().negate(), BigDecimal::add);
+      netAmounts.merge(moneyTransfer.getToAccountId(), creditedAmounts.get(i), BigDecimal::add);
+    }
+    final List<Map<String, BigDecimal>> debitsByShard = new ArrayList<>(this.shards.length);
+    final List<Map<String, BigDecimal>> creditsByShard = new ArrayList<>(this.shards.length);
+    for (int i = 0; i < this.shards.length; i++) {
+      debitsByShard.add(new LinkedHashMap<>());
+      creditsByShard.add(new LinkedHashMap<>());
+    }
+    for (Map.Entry<String, BigDecimal> netAmount : netAmounts.entrySet()) {
+      accounts.get(netAmount.getKey()).requireRepresentable(netAmount.getValue());
+      final int shard = shardOf(netAmount.getKey());
+      if (netAmount.getValue().signum() < 0) {
+        debitsByShard.get(shard).put(netAmount.getKey(), netAmount.getValue().negate());
+      } else if (netAmount.getValue().signum() > 0) {
+        creditsByShard.get(shard).put(netAmount.getKey(), netAmount.getValue());
+      }
+    }
+
+    final List<CompletableFuture<String>> reservations = new ArrayList<>(this.shards.length);
+    for (int i = 0; i < this.shards.length; i++) {
+      final int shard = i;
+      final Map<String, BigDecimal> debits = debitsByShard.get(i);
+      final Map<String, BigDecimal> credits = creditsByShard.get(i);
+      reservations.add(debits.isEmpty() && credits.isEmpty()
+        ? CompletableFuture.completedFuture(null)
+        : submit(i, () -> reserve(shard, debits, credits, accounts, moneyTransfers)));
+    }
+    final boolean[] reserved = new boolean[this.shards.length];
+    String failedAccountId = null;
+    RuntimeException failure = null;
+    for (int i = 0; i < this.shards.length; i++) {
+      try {
+        final String accountId = await(reservations.get(i));
+        if (accountId == null) {
+          reserved[i] = !debitsByShard.get(i).isEmpty() || !creditsByShard.get(i).isEmpty();
+        } else if (failedAccountId == null) {
+          failedAccountId = accountId;
+        }
+      } catch (RuntimeException ex) {
+        failure = failure != null ? failure : ex;
+      }
+    }
+
+    final boolean aborted = failedAccountId != null || failure != null;
+    final List<CompletableFuture<?>> settlements = new ArrayList<>();
+    for (int i = 0; i < this.shards.length; i++) {
+      if (reserved[i]) {
+        final int shard = i;
+        final Map<String, BigDecimal> debits = debitsByShard.get(i);
+        final Map<String, BigDecimal> credits = creditsByShard.get(i);
+        settlements.add(CompletableFuture.runAsync(aborted
+          ? () -> cancel(shard, debits, credits, accounts)
+          : () -> settle(shard, debits, credits, accounts), this.shards[i]));
+      }
+    }
+    settlements.forEach(ShardedTransferEngine::await);
+    if (failure != null) {
+      throw failure;
+    }
+    if (failedAccountId != null) {
+      throw new TransferBatchAbortedException(firstDebitOf(moneyTransfers, failedAccountId),
+        new InsufficientFundsException(failedAccountId));
+    }
+  }
+
+  @Override
+  public void destroy() throws InterruptedException {
+    for (ExecutorService shard : this.shards) {
+      shard.shutdown();
+    }
+    for (ExecutorService shard : this.shards) {
+      shard.awaitTermination(10, TimeUnit.SECONDS);
+    }
+  }
+
+  int shardOf(final String accountId) {
+    final int hash = accountId.hashCode();
+    return ((hash ^ (hash >>> 16)) & Integer.MAX_VALUE) % this.shards.length;
+  }
+
+  /**
+   * Debits all amounts if every balance covers its amount and every credit fits, and reserves the
+   * headroom of both. Runs on the shard owning the accounts.
+   *
+   * @return the id of an account with insufficient funds, or null if the debits were applied
+   * @throws TransferBatchAbortedException if a credit would overflow a fixed-point balance
+   */
+  private String reserve(final int shard, final Map<String, BigDecimal> debits, final Map<String, BigDecimal> credits,
+                         final Map<String, Account> accounts, final List<MoneyTransfer> moneyTransfers) {
+    for (Map.Entry<String, BigDecimal> debit : debits.entrySet()) {
+      final Account account = accounts.get(debit.getKey());
+      if (account.getBalance().subtract(account.getHeldAmount()).compareTo(debit.getValue()) < 0) {
+        return debit.getKey();
+      }
+    }
+    for (Map.Entry<String, BigDecimal> credit : credits.entrySet()) {
+      try {
+        checkHeadroom(shard, accounts.get(credit.getKey()), credit.getValue());
+      } catch (InvalidAmountException ex) {
+        throw new TransferBatchAbortedException(firstCreditOf(moneyTransfers, credit.getKey()), ex);
+      }
+    }
+    debits.forEach((accountId, amount) -> {
+      debit(accounts.get(accountId), amount);
+      reserveHeadroom(shard, accounts.get(accountId), amount);
+    });
+    credits.forEach((accountId, amount) -> reserveHeadroom(shard, accounts.get(accountId), amount));
+    return null;
+  }
+
+  /**
+   * Applies the reserved credits and releases the headroom of the shard's part of a batch.
+   */
+  private void settle(final int shard, final Map<String, BigDecimal> debits, final Map<String, BigDecimal> credits,
+                      final Map<String, Account> accounts) {
+    debits.forEach((accountId, amount) -> releaseHeadroom(shard, accounts.get(accountId), amount));
+    credits.forEach((accountId, amount) -> {
+      releaseHeadroom(shard, accounts.get(accountId), amount);
+      credit(shard, accounts.get(accountId), amount);
+    });
+  }
+
+  /**
+   * Refunds the reserved debits and releases the headroom of the shard's part of an aborted batch.
+   */
+  private void cancel(final int shard, final Map<String, BigDecimal> debits, final Map<String, BigDecimal> credits,
+                      final Map<String, Account> accounts) {
+    debits.forEach((accountId, amount) -> {
+      releaseHeadroom(shard, accounts.get(accountId), amount);
+      credit(shard, accounts.get(accountId), amount);
+    });
+    credits.forEach((accountId, amount) -> releaseHeadroom(shard, accounts.get(accountId), amount));
+  }
+
+  private void run(final int shard, final Runnable task) {
+    await(CompletableFuture.runAsync(task, this.shards[shard]));
+  }
+
+  private <T> CompletableFuture<T> submit(final int shard, final Supplier<T> task) {
+    return CompletableFuture.supplyAsync(task, this.shards[shard]);
+  }
+
+  private static <T> T await(final CompletableFuture<T> future) {
+    try {
+      return future.join();
+    } catch (CompletionException ex) {
+      if (ex.getCause() instanceof RuntimeException) {
+        throw (RuntimeException) ex.getCause();
+      }
+      throw ex;
+    }
+  }
+
+  /**
+   * Releases the hold and debits the amount, runs on the shard owning the account.
+   *
+   * @return the released hold, null if it was no longer active
+   */
+  private static Hold captureAndDebit(final Account account, final String holdId, final BigDecimal amount) {
+    final Hold hold = account.capture(holdId, amount, Instant.now());
+    if (hold != null) {
+      try {
+        debit(account, amount);
+      } catch (RuntimeException ex) {
+        account.restoreHold(hold);
+        throw ex;
+      }
+    }
+    return hold;
+  }
+
+  private static void debit(final Account account, final BigDecimal amount) {
+    final FixedPointBalance fixedPointBalance = account.getFixedPointBalance();
+    if (fixedPointBalance != null) {
+      final long balance = fixedPointBalance.get() - FixedPoint.toUnits(amount, fixedPointBalance.getScale());
+      if (balance < account.getHeldUnits()) {
+        throw new InsufficientFundsException(account.getAccountId());
+      }
+      fixedPointBalance.set(balance);
+      return;
+    }
+    final BigDecimal balance = account.getBalance().subtract(amount);
+    if (balance.compareTo(account.getHeldAmount()) < 0) {
+      throw new InsufficientFundsException(account.getAccountId());
+    }
+    account.setBalance(balance);
+  }
+
+  /**
+   * Credits the amount, leaving the headroom reserved on the account alone. Runs on the shard
+   * owning the account.
+   *
+   * @throws InvalidAmountException if the amount doesn't fit into a fixed-point balance
+   */
+  private void credit(final int shard, final Account account, final BigDecimal amount) {
+    final FixedPointBalance fixedPointBalance = account.getFixedPointBalance();
+    if (fixedPointBalance != null) {
+      checkHeadroom(shard, account, amount);
+      fixedPointBalance.set(fixedPointBalance.get() + FixedPoint.toUnits(amount, fixedPointBalance.getScale()));
+      return;
+    }
+    account.setBalance(account.getBalance().add(amount));
+  }
+
+  /**
+   * @throws InvalidAmountException if crediting the amount would overflow the balance or use headroom
+   *                                reserved by a batch
+   */
+  private void checkHeadroom(final int shard, final Account account, final BigDecimal amount) {
+    final FixedPointBalance fixedPointBalance = account.getFixedPointBalance();
+    if (fixedPointBalance != null) {
+      final long reserved = this.reservedHeadroom.get(shard).getOrDefault(account.getAccountId(), 0L);
+      FixedPoint.add(FixedPoint.add(fixedPointBalance.get(), reserved),
+        FixedPoint.toUnits(amount, fixedPointBalance.getScale()));
+    }
+  }
+
+  private void reserveHeadroom(final int shard, final Account account, final BigDecimal amount) {
+    final FixedPointBalance fixedPointBalance = account.getFixedPointBalance();
+    if (fixedPointBalance != null) {
+      this.reservedHeadroom.get(shard).merge(account.getAccountId(),
+        FixedPoint.toUnits(amount, fixedPointBalance.getScale()), Long::sum);
+    }
+  }
+
+  private void releaseHeadroom(final int shard, final Account account, final BigDecimal amount) {
+    final FixedPointBalance fixedPointBalance = account.getFixedPointBalance();
+    if (fixedPointBalance != null) {
+      this.reservedHeadroom.get(shard).merge(account.getAccountId(),
+        -FixedPoint.toUnits(amount, fixedPointBalance.getScale()),
+        (reserved, released) -> reserved + released == 0 ? null : reserved + released);
+    }
+  }
+
+  private static int firstCreditOf(final List<MoneyTransfer> moneyTransfers, final String accountId) {
+    for (int i = 0; i < moneyTransfers.size(); i++) {
+      if (moneyTransfers.get(i).getToAccountId().equals(accountId)) {
+        return i;
+      }
+    }
+    return 0;
+  }
+
+  private static int firstDebitOf(final List<MoneyTransfer> moneyTransfers, final String accountId) {
+    for (int i = 0; i < moneyTransfers.size(); i++) {
+      if (moneyTransfers.get(i).getFromAccountId().equals(accountId)) {
+        return i;
+      }
+    }
+    return 0;
+  }
+}
@@ -0,0 +1,89 @@
+package com.dws.challenge.engine;
+
+import com.dws.challenge.domain.Account;
+import com.dws.challenge.domain.Hold;
+import com.dws.challenge.domain.MoneyTransfer;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Applies transfers to account balances. Validation, account lookup and notifications stay in
+ * {@link com.dws.challenge.service.MoneyTransferService}; an engine only decides how the two
+ * balances are updated safely under concurrency.
+ *
+ * Holds reserve part of a balance, debits may only take what exceeds their total. They change in
+ * the same critical section as the balance of their account, so a hold and a debit can't both
+ * pass the funds check on the same money.
+ *
+ * The engine is chosen at startup with {@code challenge.transfer.engine}.
+ */
+public interface TransferEngine {
+
+  /**
+   * Transfers between accounts of the same currency.
+   */
+  default void transfer(Account fromAccount, Account toAccount, BigDecimal amount) {
+    transfer(fromAccount, toAccount, amount, amount);
+  }
+
+  /**
+   * Debits {@code amount} from the source and credits {@code creditedAmount}, which differs from it
+   * when the accounts are in different currencies.
+   *
+   * @throws com.dws.challenge.exception.InsufficientFundsException if the source balance would go negative
+   * @throws com.dws.challenge.exception.InvalidAmountException     if a balance can't represent the result
+   */
+  void transfer(Account fromAccount, Account toAccount, BigDecimal amount, BigDecimal creditedAmount);
+
+  /**
+   * Applies all transfers between accounts of the same currency or none of them.
+   */
+  default void transferAtomically(List<MoneyTransfer> moneyTransfers, Map<String, Account> accounts) {
+    final List<BigDecimal> creditedAmounts = new ArrayList<>(moneyTransfers.size());
+    for (MoneyTransfer moneyTransfer : moneyTransfers) {
+      creditedAmounts.add(moneyTransfer.getAmount());
+    }
+    transferAtomically(moneyTransfers, creditedAmounts, accounts);
+  }
+
+  /**
+   * Applies all transfers or none of them.
+   *
+   * @param creditedAmounts for each transfer, the amount credited in the destination's currency
+   * @param accounts        every account referenced by the transfers, by id
+   * @throws com.dws.challenge.exception.TransferBatchAbortedException if any transfer can't be applied
+   * @throws UnsupportedOperationException                              if the engine can't apply a batch of
+   *                                                                    these accounts atomically
+   */
+  void transferAtomically(List<MoneyTransfer> moneyTransfers, List<BigDecimal> creditedAmounts,
+                          Map<String, Account> accounts);
+
+  /**
+   * Places the hold on the account.
+   *
+   * @throws com.dws.challenge.exception.InsufficientFundsException if the available balance doesn't cover it
+   * @throws UnsupportedOperationException                         if the engine can't check holds
+   */
+  void authorize(Account account, Hold hold);
+
+  /**
+   * Releases the hold and transfers {@code amount} of it, {@code creditedAmount} in the destination's
+   * currency, in one step. The hold stays in place if the transfer fails.
+   *
+   * @return false if the hold is no longer active or expired, checked in the same step
+   * @throws com.dws.challenge.exception.InvalidAmountException if the amount exceeds the hold
+   */
+  boolean capture(Account fromAccount, Account toAccount, String holdId, BigDecimal amount,
+                  BigDecimal creditedAmount);
+
+  /**
+   * Releases the holds of one account that are still active, in one step.
+   *
+   * @return the number of holds released
+   */
+  int releaseHolds(Account account, Collection<String> holdIds);
+}
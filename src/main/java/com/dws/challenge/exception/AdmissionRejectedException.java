@@ -0,0 +1,17 @@
+package com.dws.challenge.exception;
+
+import lombok.Getter;
+
+/**
+ * A request turned away by admission control before doing any work, to be retried later.
+ */
+@Getter
+public class AdmissionRejectedException extends RuntimeException {
+
+  private final long retryAfterSeconds;
+
+  public AdmissionRejectedException(final String message, final long retryAfterSeconds) {
+    super(message);
+    this.retryAfterSeconds = retryAfterSeconds;
+  }
+}
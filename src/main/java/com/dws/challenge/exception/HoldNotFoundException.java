@@ -0,0 +1,8 @@
+package com.dws.challenge.exception;
+
+public class HoldNotFoundException extends RuntimeException {
+
+  public HoldNotFoundException(final String holdId) {
+    super("No active hold " + holdId);
+  }
+}
@@ -0,0 +1,8 @@
+package com.dws.challenge.exception;
+
+public class IdempotencyKeyReusedException extends RuntimeException {
+
+  public IdempotencyKeyReusedException(final String idempotencyKey) {
+    super("Idempotency key " + idempotencyKey + " was already used for a different transfer");
+  }
+}
@@ -0,0 +1,8 @@
+package com.dws.challenge.exception;
+
+public class InvalidHoldException extends RuntimeException {
+
+  public InvalidHoldException(String message) {
+    super(message);
+  }
+}
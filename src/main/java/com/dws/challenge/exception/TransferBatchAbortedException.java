@@ -0,0 +1,19 @@
+package com.dws.challenge.exception;
+
+import lombok.Getter;
+
+@Getter
+public class TransferBatchAbortedException extends RuntimeException {
+
+  private final int failedIndex;
+
+  public TransferBatchAbortedException(final int failedIndex, final RuntimeException cause) {
+    super("Transfer " + failedIndex + " failed: " + cause.getMessage(), cause);
+    this.failedIndex = failedIndex;
+  }
+
+  @Override
+  public synchronized RuntimeException getCause() {
+    return (RuntimeException) super.getCause();
+  }
+}
@@ -0,0 +1,12 @@
+package com.dws.challenge.exception;
+
+/**
+ * A currency that isn't an ISO 4217 code, has no exchange rate or isn't supported by the repository.
+ * Reported like any other invalid amount.
+ */
+public class UnsupportedCurrencyException extends InvalidAmountException {
+
+  public UnsupportedCurrencyException(String message) {
+    super(message);
+  }
+}
@@ -0,0 +1,169 @@
+package com.dws.challenge.fx;
+
+import com.dws.challenge.config.BalanceProperties;
+import com.dws.challenge.exception.InvalidAmountException;
+import com.dws.challenge.exception.UnsupportedCurrencyException;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Currency;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Exchange rates for cross-currency transfers, each rate being the amount of the currency worth
+ * one unit of a common base currency. Conversions only use the ratio of two rates, so the base
+ * currency itself doesn't need to be known.
+ *
+ * The rates are an immutable map behind a volatile reference. A refresh builds a complete new map
+ * and swaps it in, so transfers read rates without locking and never see a partly loaded table.
+ *
+ * Rates are read from {@code challenge.fx.rates-file}, a properties file of {@code CODE=rate}
+ * lines, and reloaded every {@code challenge.fx.refresh-seconds}. Without a file the bundled
+ * {@code fx-rates.properties} stands in for a rate feed. A reload that fails keeps the previous rates.
+ */
+@Slf4j
+@Component
+public class FxRateTable implements DisposableBean {
+
+  private static final String BUNDLED_RATES = "fx-rates.properties";
+
+  private final BalanceProperties balanceProperties;
+  private final Path ratesFile;
+  private final ScheduledExecutorService refresher;
+  private volatile Map<String, BigDecimal> rates;
+
+  /**
+   * Creates a table with fixed rates, for tests and benchmarks.
+   */
+  public FxRateTable(BalanceProperties balanceProperties, Map<String, BigDecimal> rates) {
+    this.balanceProperties = balanceProperties;
+    this.ratesFile = null;
+    this.refresher = null;
+    update(rates);
+  }
+
+  @Autowired
+  public FxRateTable(BalanceProperties balanceProperties,
+                     @Value("${challenge.fx.rates-file:}") String ratesFile,
+                     @Value("${challenge.fx.refresh-seconds:60}") long refreshSeconds) {
+    this.balanceProperties = balanceProperties;
+    this.ratesFile = ratesFile.isEmpty() ? null : Path.of(ratesFile);
+    refresh();
+    if (this.ratesFile != null && refreshSeconds > 0) {
+      this.refresher = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        final Thread thread = new Thread(runnable, "fx-rate-refresher");
+        thread.setDaemon(true);
+        return thread;
+      });
+      this.refresher.scheduleWithFixedDelay(this::refreshQuietly, refreshSeconds, refreshSeconds, TimeUnit.SECONDS);
+    } else {
+      this.refresher = null;
+    }
+  }
+
+  /**
+   * Converts the amount and rounds it half-even to the minor unit scale of {@code toCurrency}.
+   *
+   * @throws UnsupportedCurrencyException if there is no rate for one of the currencies
+   * @throws InvalidAmountException       if the amount rounds to zero in {@code toCurrency}
+   */
+  public BigDecimal convert(final BigDecimal amount, final String fromCurrency, final String toCurrency) {
+    if (fromCurrency.equals(toCurrency)) {
+      return amount;
+    }
+    // One read of the reference, so both rates come from the same table
+    final Map<String, BigDecimal> current = this.rates;
+    final BigDecimal converted = amount.multiply(rateOf(current, toCurrency))
+      .divide(rateOf(current, fromCurrency), this.balanceProperties.scaleOf(toCurrency), RoundingMode.HALF_EVEN);
+    if (converted.signum() <= 0) {
+      throw new InvalidAmountException("Amount " + amount + " " + fromCurrency + " is too small to convert to "
+        + toCurrency);
+    }
+    return converted;
+  }
+
+  /**
+   * @return the current rates, which are never modified
+   */
+  public Map<String, BigDecimal> getRates() {
+    return this.rates;
+  }
+
+  /**
+   * Replaces all rates at once.
+   *
+   * @throws IllegalArgumentException if a code isn't an ISO 4217 currency or a rate isn't positive
+   */
+  public void update(final Map<String, BigDecimal> rates) {
+    final Map<String, BigDecimal> validated = new HashMap<>(rates.size());
+    rates.forEach((currency, rate) -> {
+      Currency.getInstance(currency);
+      if (rate.signum() <= 0) {
+        throw new IllegalArgumentException("Exchange rate of " + currency + " must be positive: " + rate);
+      }
+      validated.put(currency, rate);
+    });
+    this.rates = Map.copyOf(validated);
+  }
+
+  /**
+   * Reloads the rates from the rates file, or the bundled rates without one.
+   */
+  public void refresh() {
+    final Properties properties = new Properties();
+    try (InputStream input = this.ratesFile != null
+      ? Files.newInputStream(this.ratesFile)
+      : FxRateTable.class.getClassLoader().getResourceAsStream(BUNDLED_RATES)) {
+      if (input == null) {
+        throw new IllegalStateException("Missing bundled exchange rates " + BUNDLED_RATES);
+      }
+      properties.load(input);
+    } catch (IOException e) {
+      throw new UncheckedIOException("Failed to read exchange rates from " + this.ratesFile, e);
+    }
+    final Map<String, BigDecimal> loaded = new HashMap<>();
+    properties.forEach((currency, rate) ->
+      loaded.put(currency.toString().trim(), new BigDecimal(rate.toString().trim())));
+    update(loaded);
+    log.info("Loaded {} exchange rates from {}", loaded.size(),
+      this.ratesFile != null ? this.ratesFile : BUNDLED_RATES);
+  }
+
+  @Override
+  public void destroy() {
+    if (this.refresher != null) {
+      this.refresher.shutdownNow();
+    }
+  }
+
+  private void refreshQuietly() {
+    try {
+      refresh();
+    } catch (RuntimeException e) {
+      log.error("Failed to reload exchange rates, keeping the previous ones", e);
+    }
+  }
+
+  private static BigDecimal rateOf(final Map<String, BigDecimal> rates, final String currency) {
+    final BigDecimal rate = rates.get(currency);
+    if (rate == null) {
+      throw new UnsupportedCurrencyException("No exchange rate for " + currency);
+    }
+    return rate;
+  }
+}
@@ -0,0 +1,271 @@
+package com.dws.challenge.hold;
+
+import com.dws.challenge.cache.AccountViewCache;
+import com.dws.challenge.domain.Account;
+import com.dws.challenge.domain.Hold;
+import com.dws.challenge.domain.MoneyTransfer;
+import com.dws.challenge.engine.TransferEngine;
+import com.dws.challenge.exception.AccountNotFoundException;
+import com.dws.challenge.exception.HoldNotFoundException;
+import com.dws.challenge.exception.InvalidHoldException;
+import com.dws.challenge.scheduling.TimingWheel;
+import com.dws.challenge.service.AccountsService;
+import com.dws.challenge.service.MoneyTransferService;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import static java.util.Optional.ofNullable;
+
+/**
+ * Two-phase debits: a hold reserves part of an account's balance, and is later captured into a
+ * transfer, voided, or expires after its time to live. The hold itself is kept by the account and
+ * checked by the {@link TransferEngine} together with the balance; this service only tracks the
+ * expiry of the active holds.
+ *
+ * Expiries wait in a {@link TimingWheel} with a resolution of {@code challenge.holds.sweep-interval-millis}.
+ * A single thread advances it every interval and releases the expired holds in bulk, all holds of
+ * an account in one step, so a hold is released at most one interval after it expires; it can't
+ * be captured once expired. Holds are kept in memory only, a restart releases them.
+ */
+@Slf4j
+@Service
+public class HoldService implements DisposableBean {
+
+  private final AccountsService accountsService;
+  private final MoneyTransferService moneyTransferService;
+  private final TransferEngine transferEngine;
+  private final AccountViewCache accountViewCache;
+  private final Duration defaultTtl;
+  private final Duration maxTtl;
+  private final long sweepIntervalMillis;
+  private final long originMillis = System.currentTimeMillis();
+  private final TimingWheel<Hold> wheel = new TimingWheel<>(0);
+  private final Map<String, TimingWheel.Timer<Hold>> active = new ConcurrentHashMap<>();
+  private final LongAdder authorized = new LongAdder();
+  private final LongAdder captured = new LongAdder();
+  private final LongAdder voided = new LongAdder();
+  private final LongAdder expired = new LongAdder();
+  private final ScheduledExecutorService sweeper;
+
+  @Autowired
+  public HoldService(AccountsService accountsService, MoneyTransferService moneyTransferService,
+                     TransferEngine transferEngine, AccountViewCache accountViewCache,
+                     @Value("${challenge.holds.default-ttl-seconds:900}") long defaultTtlSeconds,
+                     @Value("${challenge.holds.max-ttl-seconds:604800}") long maxTtlSeconds,
+                     @Value("${challenge.holds.sweep-interval-millis:1000}") long sweepIntervalMillis) {
+    this(accountsService, moneyTransferService, transferEngine, accountViewCache, defaultTtlSeconds, maxTtlSeconds,
+      sweepIntervalMillis, true);
+  }
+
+  private HoldService(AccountsService accountsService, MoneyTransferService moneyTransferService,
+                      TransferEngine transferEngine, AccountViewCache accountViewCache, long defaultTtlSeconds,
+                      long maxTtlSeconds, long sweepIntervalMillis, boolean sweeping) {
+    if (defaultTtlSeconds <= 0 || maxTtlSeconds < defaultTtlSeconds || sweepIntervalMillis <= 0
+      || maxTtlSeconds * 1000 / sweepIntervalMillis >= TimingWheel.MAX_DELAY_TICKS) {
+      throw new IllegalArgumentException("Invalid hold settings: defaultTtlSeconds=" + defaultTtlSeconds
+        + ", maxTtlSeconds=" + maxTtlSeconds + ", sweepIntervalMillis=" + sweepIntervalMillis);
+    }
+    this.accountsService = accountsService;
+    this.moneyTransferService = moneyTransferService;
+    this.transferEngine = transferEngine;
+    this.accountViewCache = accountViewCache;
+    this.defaultTtl = Duration.ofSeconds(defaultTtlSeconds);
+    this.maxTtl = Duration.ofSeconds(maxTtlSeconds);
+    this.sweepIntervalMillis = sweepIntervalMillis;
+    if (sweeping) {
+      this.sweeper = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        final Thread thread = new Thread(runnable, "hold-sweeper");
+        thread.setDaemon(true);
+        return thread;
+      });
+      this.sweeper.scheduleWithFixedDelay(this::expireDueQuietly, sweepIntervalMillis, sweepIntervalMillis,
+        TimeUnit.MILLISECONDS);
+    } else {
+      this.sweeper = null;
+    }
+  }
+
+  /**
+   * Creates a service without the background thread, holds only expire on
+   * {@link #expireDue(Instant)}. For tests.
+   */
+  public static HoldService manual(AccountsService accountsService, MoneyTransferService moneyTransferService,
+                                   TransferEngine transferEngine, long defaultTtlSeconds, long maxTtlSeconds,
+                                   long sweepIntervalMillis) {
+    return new HoldService(accountsService, moneyTransferService, transferEngine, AccountViewCache.disabled(),
+      defaultTtlSeconds, maxTtlSeconds, sweepIntervalMillis, false);
+  }
+
+  /**
+   * Reserves the amount on the account.
+   *
+   * @param ttl how long the hold lasts, the default when null
+   * @throws com.dws.challenge.exception.InsufficientFundsException if the available balance doesn't cover the amount
+   * @throws InvalidHoldException                                  if the time to live exceeds the maximum
+   */
+  public Hold authorize(final String accountId, final BigDecimal amount, final Duration ttl) {
+    final Duration holdTtl = ttl != null ? ttl : this.defaultTtl;
+    if (holdTtl.compareTo(this.maxTtl) > 0) {
+      throw new InvalidHoldException("Holds can last at most " + this.maxTtl.getSeconds() + " seconds");
+    }
+    final Account account = findAccount(accountId);
+    final Hold hold = new Hold(UUID.randomUUID().toString(), accountId, amount, Instant.now().plus(holdTtl));
+    this.transferEngine.authorize(account, hold);
+    this.accountViewCache.invalidate(accountId);
+
+    // Rounded up, a hold never expires early
+    final long deadlineTick = Math.floorDiv(hold.getExpiresAt().toEpochMilli() - this.originMillis
+      + this.sweepIntervalMillis - 1, this.sweepIntervalMillis);
+    synchronized (this.wheel) {
+      this.active.put(hold.getId(), this.wheel.schedule(hold, deadlineTick));
+    }
+    this.authorized.increment();
+    return hold;
+  }
+
+  /**
+   * Transfers the amount, or the whole hold when null, to another account and releases the hold.
+   *
+   * @throws HoldNotFoundException if the account has no active hold with the id
+   */
+  public MoneyTransfer capture(final String accountId, final String holdId, final String toAccountId,
+                               final BigDecimal amount) {
+    final Hold hold = activeHold(accountId, holdId);
+    final MoneyTransfer moneyTransfer = new MoneyTransfer(accountId, toAccountId,
+      amount != null ? amount : hold.getAmount());
+    if (!this.moneyTransferService.captureHold(moneyTransfer, holdId)) {
+      throw new HoldNotFoundException(holdId);
+    }
+    forget(holdId);
+    this.captured.increment();
+    return moneyTransfer;
+  }
+
+  /**
+   * Releases the hold without transferring anything.
+   *
+   * @throws HoldNotFoundException if the account has no active hold with the id
+   */
+  public Hold voidHold(final String accountId, final String holdId) {
+    final Hold hold = activeHold(accountId, holdId);
+    if (this.transferEngine.releaseHolds(findAccount(accountId), List.of(holdId)) == 0) {
+      throw new HoldNotFoundException(holdId);
+    }
+    this.accountViewCache.invalidate(accountId);
+    forget(holdId);
+    this.voided.increment();
+    return hold;
+  }
+
+  /**
+   * @return the active holds of the account in the order they were placed
+   */
+  public List<Hold> getHolds(final String accountId) {
+    return findAccount(accountId).getHolds();
+  }
+
+  /**
+   * Advances the wheel to {@code now} and releases the holds that expired.
+   *
+   * @return the number of holds released
+   */
+  public int expireDue(final Instant now) {
+    final Map<String, List<String>> holdIdsByAccount = new HashMap<>();
+    synchronized (this.wheel) {
+      this.wheel.advance(Math.floorDiv(now.toEpochMilli() - this.originMillis, this.sweepIntervalMillis), timer -> {
+        this.active.remove(timer.getValue().getId());
+        holdIdsByAccount.computeIfAbsent(timer.getValue().getAccountId(), accountId -> new ArrayList<>())
+          .add(timer.getValue().getId());
+      });
+    }
+
+    int released = 0;
+    for (Map.Entry<String, List<String>> holdIds : holdIdsByAccount.entrySet()) {
+      final Account account = this.accountsService.getAccount(holdIds.getKey());
+      if (account != null) {
+        released += this.transferEngine.releaseHolds(account, holdIds.getValue());
+        this.accountViewCache.invalidate(holdIds.getKey());
+      }
+    }
+    this.expired.add(released);
+    return released;
+  }
+
+  public int getActiveCount() {
+    return this.active.size();
+  }
+
+  public long getAuthorized() {
+    return this.authorized.sum();
+  }
+
+  public long getCaptured() {
+    return this.captured.sum();
+  }
+
+  public long getVoided() {
+    return this.voided.sum();
+  }
+
+  public long getExpired() {
+    return this.expired.sum();
+  }
+
+  @Override
+  public void destroy() {
+    if (this.sweeper != null) {
+      this.sweeper.shutdownNow();
+    }
+  }
+
+  private void expireDueQuietly() {
+    try {
+      expireDue(Instant.now());
+    } catch (RuntimeException e) {
+      log.error("Failed to release expired holds", e);
+    }
+  }
+
+  /**
+   * @throws HoldNotFoundException unless the hold is active, on this account and not yet expired
+   */
+  private Hold activeHold(final String accountId, final String holdId) {
+    final TimingWheel.Timer<Hold> timer = this.active.get(holdId);
+    if (timer == null || !timer.getValue().getAccountId().equals(accountId)
+      || !timer.getValue().getExpiresAt().isAfter(Instant.now())) {
+      throw new HoldNotFoundException(holdId);
+    }
+    return timer.getValue();
+  }
+
+  private void forget(final String holdId) {
+    synchronized (this.wheel) {
+      final TimingWheel.Timer<Hold> timer = this.active.remove(holdId);
+      if (timer != null) {
+        this.wheel.cancel(timer);
+      }
+    }
+  }
+
+  private Account findAccount(final String accountId) {
+    return ofNullable(this.accountsService.getAccount(accountId))
+      .orElseThrow(() -> new AccountNotFoundException(accountId));
+  }
+}
@@ -0,0 +1,238 @@
+package com.dws.challenge.idempotency;
+
+import com.dws.challenge.domain.MoneyTransfer;
+import com.dws.challenge.domain.TransferResult;
+import com.dws.challenge.exception.IdempotencyKeyReusedException;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * Remembers the outcome of recent transfers by client id and idempotency key.
+ *
+ * Entries are kept in insertion order in segments, each with its share of the memory budget, and
+ * are dropped once they expire or, oldest first, when the segment runs over its budget. Keys are
+ * stored as fixed-size fingerprints and an entry is charged for its estimated heap size, so the
+ * budget holds regardless of how long the keys and failure messages are.
+ *
+ * A request arriving while the first one with the same key is still running waits for its outcome
+ * instead of transferring again. Unexpected failures are not remembered, so the client can retry.
+ */
+@Component
+public class IdempotencyCache {
+
+  /** Map node, key and request fingerprints, entry, future and result objects of one entry. */
+  private static final int ENTRY_BYTES = 232;
+
+  private final Segment[] segments;
+  private final long ttlNanos;
+  private final LongAdder replays = new LongAdder();
+
+  @Autowired
+  public IdempotencyCache(@Value("${challenge.idempotency.max-size-mb:64}") long maxSizeMb,
+                          @Value("${challenge.idempotency.ttl-seconds:86400}") long ttlSeconds,
+                          @Value("${challenge.idempotency.segments:64}") int segmentCount) {
+    if (maxSizeMb <= 0 || ttlSeconds <= 0 || segmentCount <= 0) {
+      throw new IllegalArgumentException("Invalid idempotency cache settings: maxSizeMb=" + maxSizeMb
+        + ", ttlSeconds=" + ttlSeconds + ", segments=" + segmentCount);
+    }
+    this.ttlNanos = TimeUnit.SECONDS.toNanos(ttlSeconds);
+    this.segments = new Segment[segmentCount];
+    for (int i = 0; i < segmentCount; i++) {
+      this.segments[i] = new Segment(maxSizeMb * 1024 * 1024 / segmentCount);
+    }
+  }
+
+  /**
+   * Runs the transfer unless the key was seen before, in which case the stored outcome is returned.
+   *
+   * @throws IdempotencyKeyReusedException if the key was used for a different transfer
+   */
+  public TransferResult execute(final String clientId, final String idempotencyKey, final MoneyTransfer moneyTransfer,
+                                final Supplier<TransferResult> transfer) {
+    final KeyFingerprint fingerprint = KeyFingerprint.of(clientId, idempotencyKey);
+    final KeyFingerprint request = KeyFingerprint.of(moneyTransfer);
+    final Segment segment = segmentFor(fingerprint);
+
+    final Entry entry = new Entry(request, System.nanoTime() + this.ttlNanos);
+    final Entry existing = segment.putIfAbsent(fingerprint, entry);
+    if (existing != null) {
+      if (!existing.request.equals(request)) {
+        throw new IdempotencyKeyReusedException(idempotencyKey);
+      }
+      this.replays.increment();
+      return await(existing.result);
+    }
+
+    final TransferResult result;
+    try {
+      result = transfer.get();
+    } catch (RuntimeException ex) {
+      segment.remove(fingerprint, entry);
+      entry.result.completeExceptionally(ex);
+      throw ex;
+    }
+    entry.result.complete(result);
+    segment.charge(fingerprint, entry, weightOf(result));
+    return result;
+  }
+
+  /**
+   * Returns the stored outcome of the key without running anything, so replays can be answered
+   * before the request is admitted. A transfer still running under the key isn't waited for.
+   *
+   * @return the outcome of the transfer made under the key, or null if there is none yet
+   * @throws IdempotencyKeyReusedException if the key was used for a different transfer
+   */
+  public TransferResult replay(final String clientId, final String idempotencyKey, final MoneyTransfer moneyTransfer) {
+    final KeyFingerprint fingerprint = KeyFingerprint.of(clientId, idempotencyKey);
+    final Entry existing = segmentFor(fingerprint).get(fingerprint);
+    if (existing == null) {
+      return null;
+    }
+    if (!existing.request.equals(KeyFingerprint.of(moneyTransfer))) {
+      throw new IdempotencyKeyReusedException(idempotencyKey);
+    }
+    if (!existing.result.isDone() || existing.result.isCompletedExceptionally()) {
+      return null;
+    }
+    this.replays.increment();
+    return existing.result.join();
+  }
+
+  public long getEntries() {
+    long entries = 0;
+    for (Segment segment : this.segments) {
+      entries += segment.size();
+    }
+    return entries;
+  }
+
+  public long getSizeBytes() {
+    long bytes = 0;
+    for (Segment segment : this.segments) {
+      bytes += segment.bytes();
+    }
+    return bytes;
+  }
+
+  public long getReplays() {
+    return this.replays.sum();
+  }
+
+  private Segment segmentFor(final KeyFingerprint fingerprint) {
+    return this.segments[(int) ((fingerprint.getLow() & Long.MAX_VALUE) % this.segments.length)];
+  }
+
+  private static long weightOf(final TransferResult result) {
+    // Compact strings take a byte per Latin-1 character plus the String and array headers
+    return result.getMessage() == null ? 0 : 40 + result.getMessage().length();
+  }
+
+  private static TransferResult await(final CompletableFuture<TransferResult> result) {
+    try {
+      return result.join();
+    } catch (CompletionException ex) {
+      if (ex.getCause() instanceof RuntimeException) {
+        throw (RuntimeException) ex.getCause();
+      }
+      throw ex;
+    }
+  }
+
+  private static final class Entry {
+
+    final KeyFingerprint request;
+    final long expiresAtNanos;
+    final CompletableFuture<TransferResult> result = new CompletableFuture<>();
+
+    /** Charged on top of {@link IdempotencyCache#ENTRY_BYTES} once the result is stored, guarded by the segment. */
+    long resultBytes;
+
+    Entry(final KeyFingerprint request, final long expiresAtNanos) {
+      this.request = request;
+      this.expiresAtNanos = expiresAtNanos;
+    }
+  }
+
+  private static final class Segment {
+
+    private final long maxBytes;
+    private final LinkedHashMap<KeyFingerprint, Entry> entries = new LinkedHashMap<>();
+    private long bytes;
+
+    Segment(final long maxBytes) {
+      this.maxBytes = maxBytes;
+    }
+
+    /**
+     * @return the live entry stored under the fingerprint, or null if the given entry was added
+     */
+    synchronized Entry putIfAbsent(final KeyFingerprint fingerprint, final Entry entry) {
+      final long now = System.nanoTime();
+      final Entry existing = this.entries.get(fingerprint);
+      if (existing != null && existing.expiresAtNanos - now > 0) {
+        return existing;
+      }
+      if (existing != null) {
+        // Re-added at the tail, so the map stays ordered by expiry
+        this.entries.remove(fingerprint);
+        this.bytes -= ENTRY_BYTES + existing.resultBytes;
+      }
+      this.entries.put(fingerprint, entry);
+      this.bytes += ENTRY_BYTES;
+      evict(now);
+      return null;
+    }
+
+    /**
+     * @return the live entry stored under the fingerprint, or null if there is none
+     */
+    synchronized Entry get(final KeyFingerprint fingerprint) {
+      final Entry existing = this.entries.get(fingerprint);
+      return existing != null && existing.expiresAtNanos - System.nanoTime() > 0 ? existing : null;
+    }
+
+    synchronized void remove(final KeyFingerprint fingerprint, final Entry entry) {
+      if (this.entries.remove(fingerprint, entry)) {
+        this.bytes -= ENTRY_BYTES;
+      }
+    }
+
+    synchronized void charge(final KeyFingerprint fingerprint, final Entry entry, final long resultBytes) {
+      if (this.entries.get(fingerprint) == entry) {
+        entry.resultBytes = resultBytes;
+        this.bytes += resultBytes;
+        evict(System.nanoTime());
+      }
+    }
+
+    synchronized int size() {
+      return this.entries.size();
+    }
+
+    synchronized long bytes() {
+      return this.bytes;
+    }
+
+    private void evict(final long now) {
+      final Iterator<Entry> iterator = this.entries.values().iterator();
+      while (iterator.hasNext()) {
+        final Entry eldest = iterator.next();
+        if (this.bytes <= this.maxBytes && eldest.expiresAtNanos - now > 0) {
+          return;
+        }
+        iterator.remove();
+        this.bytes -= ENTRY_BYTES + eldest.resultBytes;
+      }
+    }
+  }
+}
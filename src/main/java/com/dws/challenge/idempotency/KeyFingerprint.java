@@ -0,0 +1,46 @@
+package com.dws.challenge.idempotency;
+
+import com.dws.challenge.domain.MoneyTransfer;
+import lombok.Value;
+
+import java.nio.ByteBuffer;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+/**
+ * 128 bits of the SHA-256 of a client id and idempotency key, or of a transfer. Keys of any length
+ * take the same 32 bytes, and a collision is far less likely than a client reusing a key by mistake.
+ */
+@Value
+class KeyFingerprint {
+
+  long high;
+  long low;
+
+  static KeyFingerprint of(final String clientId, final String idempotencyKey) {
+    return of(clientId, idempotencyKey.getBytes(UTF_8));
+  }
+
+  /**
+   * Fingerprint of what a transfer does, amounts differing only in trailing zeros are the same.
+   */
+  static KeyFingerprint of(final MoneyTransfer moneyTransfer) {
+    return of(moneyTransfer.getFromAccountId() + '\0' + moneyTransfer.getToAccountId(),
+      moneyTransfer.getAmount().stripTrailingZeros().toPlainString().getBytes(UTF_8));
+  }
+
+  private static KeyFingerprint of(final String prefix, final byte[] value) {
+    final MessageDigest digest;
+    try {
+      digest = MessageDigest.getInstance("SHA-256");
+    } catch (NoSuchAlgorithmException e) {
+      throw new IllegalStateException("SHA-256 is not available", e);
+    }
+    digest.update(prefix.getBytes(UTF_8));
+    digest.update((byte) 0);
+    final ByteBuffer hash = ByteBuffer.wrap(digest.digest(value));
+    return new KeyFingerprint(hash.getLong(), hash.getLong());
+  }
+}
@@ -0,0 +1,390 @@
+package com.dws.challenge.index;
+
+import com.dws.challenge.domain.Account;
+import com.dws.challenge.domain.AccountPage;
+import com.dws.challenge.domain.AccountView;
+import com.dws.challenge.exception.InvalidQueryException;
+import com.dws.challenge.repository.AccountsRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+import java.util.function.Predicate;
+
+/**
+ * Secondary indexes over the accounts of the repository, answering range queries by balance and
+ * by creation time one page at a time.
+ *
+ * The balance index is a skip list ordered by currency, balance, then account id: balances in
+ * different currencies don't compare, so a balance query names its currency and walks that
+ * currency's part of the index only. A committed change only
+ * adds the account id to a set of changed accounts, one hash set insert whatever the number of
+ * accounts, and a single thread moves the changed accounts to their current position every
+ * {@code challenge.index.refresh-millis}. Queries check each account against its current balance,
+ * so a page never holds an account outside the requested range, but an account that just entered
+ * it may be missing until the next refresh. Pages aren't a snapshot either: an account whose
+ * balance changes between two pages may show up on both or on neither.
+ *
+ * The creation index is updated when an account is created. Creation times are kept in memory
+ * only, accounts already in the repository at startup, like those recovered from the journal or
+ * the off-heap file, are indexed as created at startup.
+ */
+@Slf4j
+@Component
+public class AccountIndex implements DisposableBean {
+
+  private static final Comparator<BalanceKey> BALANCE_ORDER =
+    Comparator.comparing((BalanceKey key) -> key.currency)
+      .thenComparing(key -> key.balance, Comparator.nullsFirst(Comparator.naturalOrder()))
+      .thenComparing(key -> key.accountId);
+  private static final Comparator<CreationKey> CREATION_ORDER =
+    Comparator.comparingLong((CreationKey key) -> key.createdAtMillis).thenComparing(key -> key.accountId);
+
+  private final AccountsRepository accountsRepository;
+  private final boolean enabled;
+  private final Set<String> changed = ConcurrentHashMap.newKeySet();
+  private final NavigableSet<BalanceKey> byBalance = new ConcurrentSkipListSet<>(BALANCE_ORDER);
+  /** Position of each account in {@link #byBalance}, only used by refreshes. */
+  private final Map<String, BalanceKey> balanceKeys = new HashMap<>();
+  private final NavigableSet<CreationKey> byCreation = new ConcurrentSkipListSet<>(CREATION_ORDER);
+  private final Map<String, Long> createdAt = new ConcurrentHashMap<>();
+  private final Object refreshLock = new Object();
+  private final LongAdder refreshed = new LongAdder();
+  private volatile int indexedAccounts;
+  private final ScheduledExecutorService refresher;
+
+  @Autowired
+  public AccountIndex(AccountsRepository accountsRepository,
+                      @Value("${challenge.index.refresh-millis:100}") long refreshMillis) {
+    this(accountsRepository, refreshMillis, true, true);
+  }
+
+  private AccountIndex(AccountsRepository accountsRepository, long refreshMillis, boolean enabled,
+                       boolean refreshing) {
+    if (refreshMillis <= 0) {
+      throw new IllegalArgumentException("Index refresh interval must be positive: " + refreshMillis);
+    }
+    this.accountsRepository = accountsRepository;
+    this.enabled = enabled;
+    if (enabled) {
+      final long startedAt = System.currentTimeMillis();
+      accountsRepository.forEachAccount(account -> indexCreation(account.getAccountId(), startedAt));
+      refresh();
+    }
+    if (refreshing) {
+      this.refresher = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        final Thread thread = new Thread(runnable, "account-indexer");
+        thread.setDaemon(true);
+        return thread;
+      });
+      this.refresher.scheduleWithFixedDelay(this::refreshQuietly, refreshMillis, refreshMillis, TimeUnit.MILLISECONDS);
+    } else {
+      this.refresher = null;
+    }
+  }
+
+  /**
+   * Creates an index without the background thread, changed accounts only move on
+   * {@link #refresh()}. For tests.
+   */
+  public static AccountIndex manual(AccountsRepository accountsRepository) {
+    return new AccountIndex(accountsRepository, 1, true, false);
+  }
+
+  /**
+   * Creates an index that ignores every change and finds nothing, for callers that never query it.
+   */
+  public static AccountIndex disabled() {
+    return new AccountIndex(null, 1, false, false);
+  }
+
+  /**
+   * Records that the balance of the account changed, called once the change is committed.
+   */
+  public void markChanged(final String accountId) {
+    if (this.enabled) {
+      this.changed.add(accountId);
+    }
+  }
+
+  /**
+   * Indexes a new account, called once it is in the repository.
+   */
+  public void accountCreated(final String accountId) {
+    if (this.enabled) {
+      indexCreation(accountId, System.currentTimeMillis());
+    }
+  }
+
+  /**
+   * Accounts in {@code currency} with a balance from {@code min}, inclusive, up to {@code max},
+   * exclusive, ordered by balance then account id.
+   *
+   * @param min      null for no lower bound
+   * @param max      null for no upper bound
+   * @param currency the currency of the accounts and the bounds
+   * @param cursor   the {@code nextCursor} of the previous page, null for the first page
+   * @throws InvalidQueryException if the currency is missing, the range empty or the cursor malformed
+   */
+  public AccountPage findByBalance(final BigDecimal min, final BigDecimal max, final String currency,
+                                   final String cursor, final int limit) {
+    if (currency == null || currency.isEmpty()) {
+      throw new InvalidQueryException("A currency is required, balances in different currencies don't compare");
+    }
+    if (min != null && max != null && min.compareTo(max) >= 0) {
+      throw new InvalidQueryException("The minimum balance " + min + " must be below the maximum " + max);
+    }
+    final NavigableSet<BalanceKey> candidates;
+    if (cursor != null) {
+      candidates = this.byBalance.tailSet(parseBalanceCursor(currency, cursor), false);
+    } else {
+      // Without a minimum, from the first key of the currency, which a null balance sorts before
+      candidates = this.byBalance.tailSet(new BalanceKey(currency, min, ""), true);
+    }
+
+    final Predicate<BalanceKey> pastEnd =
+      key -> !key.currency.equals(currency) || max != null && key.balance.compareTo(max) >= 0;
+    return page(candidates, pastEnd, key -> {
+      final Account account = currentAccount(key.accountId);
+      if (account == null || !currency.equals(account.getCurrency())) {
+        return null;
+      }
+      final BigDecimal balance = account.getBalance();
+      return (min == null || balance.compareTo(min) >= 0) && (max == null || balance.compareTo(max) < 0)
+        ? account : null;
+    }, key -> key.balance.toPlainString() + ':' + key.accountId, limit);
+  }
+
+  /**
+   * Accounts created from {@code from}, inclusive, up to {@code to}, exclusive, oldest first.
+   *
+   * @param from   null for no lower bound
+   * @param to     null for no upper bound
+   * @param cursor the {@code nextCursor} of the previous page, null for the first page
+   * @throws InvalidQueryException if the range is empty or the cursor malformed
+   */
+  public AccountPage findByCreation(final Instant from, final Instant to, final String cursor, final int limit) {
+    if (from != null && to != null && !from.isBefore(to)) {
+      throw new InvalidQueryException("The start " + from + " must be before the end " + to);
+    }
+    final NavigableSet<CreationKey> candidates;
+    if (cursor != null) {
+      candidates = this.byCreation.tailSet(parseCreationCursor(cursor), false);
+    } else if (from != null) {
+      candidates = this.byCreation.tailSet(new CreationKey(from.toEpochMilli(), ""), true);
+    } else {
+      candidates = this.byCreation;
+    }
+
+    return page(candidates, key -> to != null && key.createdAtMillis >= to.toEpochMilli(), key -> {
+      final Account account = currentAccount(key.accountId);
+      // A key left behind by an account cleared and created again
+      return account != null && Objects.equals(this.createdAt.get(key.accountId), key.createdAtMillis)
+        ? account : null;
+    }, key -> key.createdAtMillis + ":" + key.accountId, limit);
+  }
+
+  /**
+   * Moves the accounts changed since the last refresh to their current position in the balance
+   * index and drops those no longer in the repository.
+   *
+   * @return the number of accounts refreshed
+   */
+  public int refresh() {
+    if (!this.enabled) {
+      return 0;
+    }
+    synchronized (this.refreshLock) {
+      int count = 0;
+      final Iterator<String> iterator = this.changed.iterator();
+      while (iterator.hasNext()) {
+        final String accountId = iterator.next();
+        // Removed before the balance is read, a change committed meanwhile marks the account again
+        iterator.remove();
+        reindex(accountId);
+        count++;
+      }
+      this.indexedAccounts = this.balanceKeys.size();
+      this.refreshed.add(count);
+      return count;
+    }
+  }
+
+  public int getIndexedAccounts() {
+    return this.indexedAccounts;
+  }
+
+  public int getPendingChanges() {
+    return this.changed.size();
+  }
+
+  public long getRefreshed() {
+    return this.refreshed.sum();
+  }
+
+  @Override
+  public void destroy() {
+    if (this.refresher != null) {
+      this.refresher.shutdownNow();
+    }
+  }
+
+  private void refreshQuietly() {
+    try {
+      refresh();
+    } catch (RuntimeException e) {
+      log.error("Failed to refresh the account index", e);
+    }
+  }
+
+  private void indexCreation(final String accountId, final long createdAtMillis) {
+    // Under the lock of the account's map entry, so the key of an account created again replaces its own
+    this.createdAt.compute(accountId, (id, previous) -> {
+      if (previous != null) {
+        this.byCreation.remove(new CreationKey(previous, id));
+      }
+      this.byCreation.add(new CreationKey(createdAtMillis, id));
+      return createdAtMillis;
+    });
+    this.changed.add(accountId);
+  }
+
+  private void reindex(final String accountId) {
+    final Account account = this.accountsRepository.getAccount(accountId);
+    final BalanceKey previous = this.balanceKeys.get(accountId);
+    if (account == null) {
+      if (previous != null) {
+        this.byBalance.remove(previous);
+        this.balanceKeys.remove(accountId);
+      }
+      // Checked again under the entry lock, the account may be created again meanwhile
+      this.createdAt.computeIfPresent(accountId, (id, createdAtMillis) -> {
+        if (this.accountsRepository.getAccount(id) != null) {
+          return createdAtMillis;
+        }
+        this.byCreation.remove(new CreationKey(createdAtMillis, id));
+        return null;
+      });
+      return;
+    }
+
+    final BalanceKey current = new BalanceKey(Objects.toString(account.getCurrency(), ""), account.getBalance(),
+      accountId);
+    if (previous != null) {
+      if (BALANCE_ORDER.compare(previous, current) == 0) {
+        return;
+      }
+      this.byBalance.remove(previous);
+    }
+    this.byBalance.add(current);
+    this.balanceKeys.put(accountId, current);
+  }
+
+  /**
+   * @return the account, null if it is no longer in the repository, which drops it from the index
+   *         on the next refresh
+   */
+  private Account currentAccount(final String accountId) {
+    final Account account = this.accountsRepository.getAccount(accountId);
+    if (account == null) {
+      markChanged(accountId);
+    }
+    return account;
+  }
+
+  /**
+   * Collects the first {@code limit} accounts returned by {@code matching} for the candidates
+   * before the first one {@code pastEnd}.
+   */
+  private static <K> AccountPage page(final Iterable<K> candidates, final Predicate<K> pastEnd,
+                                      final Function<K, Account> matching, final Function<K, String> cursorOf,
+                                      final int limit) {
+    final List<AccountView> accounts = new ArrayList<>(Math.min(limit, 128));
+    K last = null;
+    for (K key : candidates) {
+      if (pastEnd.test(key)) {
+        break;
+      }
+      if (accounts.size() == limit) {
+        return new AccountPage(accounts, cursorOf.apply(last));
+      }
+      final Account account = matching.apply(key);
+      if (account != null) {
+        accounts.add(AccountView.of(account, 0));
+        last = key;
+      }
+    }
+    return new AccountPage(accounts, null);
+  }
+
+  private static BalanceKey parseBalanceCursor(final String currency, final String cursor) {
+    final int separator = cursor.indexOf(':');
+    try {
+      if (separator > 0) {
+        return new BalanceKey(currency, new BigDecimal(cursor.substring(0, separator)),
+          cursor.substring(separator + 1));
+      }
+    } catch (NumberFormatException ex) {
+      // Reported below
+    }
+    throw new InvalidQueryException("Malformed cursor " + cursor);
+  }
+
+  private static CreationKey parseCreationCursor(final String cursor) {
+    final int separator = cursor.indexOf(':');
+    try {
+      if (separator > 0) {
+        return new CreationKey(Long.parseLong(cursor.substring(0, separator)), cursor.substring(separator + 1));
+      }
+    } catch (NumberFormatException ex) {
+      // Reported below
+    }
+    throw new InvalidQueryException("Malformed cursor " + cursor);
+  }
+
+  private static final class BalanceKey {
+
+    /** Empty for an account without a currency, which no query finds. */
+    final String currency;
+    /** Null only in a key marking the start of a currency. */
+    final BigDecimal balance;
+    final String accountId;
+
+    BalanceKey(final String currency, final BigDecimal balance, final String accountId) {
+      this.currency = currency;
+      this.balance = balance;
+      this.accountId = accountId;
+    }
+  }
+
+  private static final class CreationKey {
+
+    final long createdAtMillis;
+    final String accountId;
+
+    CreationKey(final long createdAtMillis, final String accountId) {
+      this.createdAtMillis = createdAtMillis;
+      this.accountId = accountId;
+    }
+  }
+}
@@ -0,0 +1,34 @@
+package com.dws.challenge.ledger;
+
+import lombok.Value;
+
+import java.math.BigDecimal;
+
+@Value
+public class LedgerEntry {
+
+  /**
+   * Position in the ledger, increasing in the order the transfers were recorded, which is only
+   * approximately the order in which they were applied.
+   */
+  long sequence;
+
+  String fromAccountId;
+
+  String toAccountId;
+
+  /** Debited from the source account. */
+  BigDecimal amount;
+
+  /** Currency of {@link #amount}, the source account's. */
+  String currency;
+
+  /** Credited to the destination account, equal to {@link #amount} unless the currencies differ. */
+  BigDecimal creditedAmount;
+
+  /** Currency of {@link #creditedAmount}, the destination account's. */
+  String creditedCurrency;
+
+  /** Epoch milliseconds when the transfer was recorded. */
+  long timestamp;
+}
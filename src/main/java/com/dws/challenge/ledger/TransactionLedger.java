@@ -0,0 +1,278 @@
+package com.dws.challenge.ledger;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+
+/**
+ * Append-only history of the transfers applied to account balances.
+ *
+ * Entries are stored column by column in fixed-size chunks of primitive arrays: account ids and
+ * currencies are replaced by an ordinal into a dictionary, amounts by their unscaled value and
+ * scale. Each entry keeps both the debited amount in the source currency and the credited amount
+ * in the destination currency. Amounts that don't fit into a {@code long} go to a side table.
+ * Every account keeps the sequence numbers of its entries, which is what a page of its history is
+ * read from.
+ *
+ * Appends take no global lock: a transfer claims its sequence number while holding the monitors
+ * of its two accounts, in ordinal order, so appends for unrelated accounts run in parallel while
+ * each account's history stays in sequence order. Only creating a chunk or adding an account or
+ * currency to a dictionary is serialized, which happens once per {@value #CHUNK_SIZE} entries or
+ * per new account. Reads take no lock: an entry is only visible once its account's published
+ * count covers it, and a grown array is published before the count that refers to its new elements.
+ *
+ * Transfers are recorded once the transfer engine has applied them and released the accounts, not
+ * in its critical section, so the order of an account's history is only approximately that in
+ * which its balance changed: two transfers of the account completing at the same time may be
+ * recorded the other way round. Replaying a history gives the final balance, but not necessarily
+ * every balance the account went through, which may even appear to go below zero in between.
+ */
+@Component
+public class TransactionLedger {
+
+  private static final int CHUNK_BITS = 16;
+  private static final int CHUNK_SIZE = 1 << CHUNK_BITS;
+  private static final int CHUNK_MASK = CHUNK_SIZE - 1;
+  private static final byte OVERFLOW_SCALE = Byte.MIN_VALUE;
+  private static final short NO_CURRENCY = -1;
+
+  private final boolean enabled;
+  private final Map<String, AccountIndex> accountIndexes = new ConcurrentHashMap<>();
+  private final Map<String, Short> currencyOrdinals = new ConcurrentHashMap<>();
+  private final Map<Long, BigDecimal> overflowAmounts = new ConcurrentHashMap<>();
+  private final Map<Long, BigDecimal> overflowCreditedAmounts = new ConcurrentHashMap<>();
+  private final AtomicLong nextSequence = new AtomicLong();
+  private final LongAdder size = new LongAdder();
+  private final Object chunkLock = new Object();
+  private final Object dictionaryLock = new Object();
+  private volatile Chunk[] chunks = new Chunk[0];
+  private volatile String[] accountIds = new String[64];
+  private int accountCount;
+  private volatile String[] currencies = new String[8];
+  private int currencyCount;
+
+  @Autowired
+  public TransactionLedger(@Value("${challenge.ledger.enabled:true}") boolean enabled) {
+    this.enabled = enabled;
+  }
+
+  public static TransactionLedger disabled() {
+    return new TransactionLedger(false);
+  }
+
+  public boolean isEnabled() {
+    return this.enabled;
+  }
+
+  /**
+   * Appends a transfer that has been applied to both balances.
+   *
+   * @param amount         debited from the source account, in {@code fromCurrency}
+   * @param creditedAmount credited to the destination account, in {@code toCurrency}
+   */
+  public void record(final String fromAccountId, final String toAccountId, final BigDecimal amount,
+                     final String fromCurrency, final BigDecimal creditedAmount, final String toCurrency) {
+    if (!this.enabled) {
+      return;
+    }
+    final AccountIndex fromIndex = indexOf(fromAccountId);
+    final AccountIndex toIndex = indexOf(toAccountId);
+    final short fromCurrencyOrdinal = currencyOrdinalOf(fromCurrency);
+    final short toCurrencyOrdinal = currencyOrdinalOf(toCurrency);
+    final AccountIndex first = fromIndex.ordinal <= toIndex.ordinal ? fromIndex : toIndex;
+    final AccountIndex second = first == fromIndex ? toIndex : fromIndex;
+
+    synchronized (first) {
+      synchronized (second) {
+        final long sequence = this.nextSequence.getAndIncrement();
+        final Chunk chunk = chunkOf(sequence);
+        final int offset = (int) (sequence & CHUNK_MASK);
+        chunk.timestamps[offset] = System.currentTimeMillis();
+        chunk.fromAccounts[offset] = fromIndex.ordinal;
+        chunk.toAccounts[offset] = toIndex.ordinal;
+        chunk.fromCurrencies[offset] = fromCurrencyOrdinal;
+        chunk.toCurrencies[offset] = toCurrencyOrdinal;
+        store(amount, chunk.units, chunk.scales, offset, this.overflowAmounts, sequence);
+        store(creditedAmount, chunk.creditedUnits, chunk.creditedScales, offset, this.overflowCreditedAmounts,
+          sequence);
+
+        fromIndex.add(sequence);
+        toIndex.add(sequence);
+      }
+    }
+    this.size.increment();
+  }
+
+  /**
+   * @return the number of entries recorded
+   */
+  public long size() {
+    return this.size.sum();
+  }
+
+  /**
+   * @return the number of entries involving the account
+   */
+  public int countEntries(final String accountId) {
+    final AccountIndex index = this.accountIndexes.get(accountId);
+    return index == null ? 0 : index.count;
+  }
+
+  /**
+   * Passes up to {@code limit} entries of the account, oldest first, to the consumer.
+   *
+   * @param position index of the first entry within the account's history
+   * @return the position following the last entry passed, or -1 if the history was exhausted
+   */
+  public int forEachEntry(final String accountId, final int position, final int limit,
+                          final Consumer<LedgerEntry> consumer) {
+    final AccountIndex index = this.accountIndexes.get(accountId);
+    if (index == null) {
+      return -1;
+    }
+    final int count = index.count;
+    final long[] sequences = index.sequences;
+    final int end = (int) Math.min(count, (long) position + limit);
+    for (int i = Math.max(position, 0); i < end; i++) {
+      consumer.accept(entryAt(sequences[i]));
+    }
+    return end < count ? end : -1;
+  }
+
+  private LedgerEntry entryAt(final long sequence) {
+    final Chunk chunk = this.chunks[(int) (sequence >>> CHUNK_BITS)];
+    final int offset = (int) (sequence & CHUNK_MASK);
+    final String[] ids = this.accountIds;
+    return new LedgerEntry(sequence, ids[chunk.fromAccounts[offset]], ids[chunk.toAccounts[offset]],
+      load(chunk.units, chunk.scales, offset, this.overflowAmounts, sequence),
+      currencyAt(chunk.fromCurrencies[offset]),
+      load(chunk.creditedUnits, chunk.creditedScales, offset, this.overflowCreditedAmounts, sequence),
+      currencyAt(chunk.toCurrencies[offset]),
+      chunk.timestamps[offset]);
+  }
+
+  private static void store(final BigDecimal amount, final long[] units, final byte[] scales, final int offset,
+                            final Map<Long, BigDecimal> overflow, final long sequence) {
+    final BigInteger unscaled = amount.unscaledValue();
+    if (unscaled.bitLength() < Long.SIZE && amount.scale() > OVERFLOW_SCALE && amount.scale() <= Byte.MAX_VALUE) {
+      units[offset] = unscaled.longValue();
+      scales[offset] = (byte) amount.scale();
+    } else {
+      scales[offset] = OVERFLOW_SCALE;
+      overflow.put(sequence, amount);
+    }
+  }
+
+  private static BigDecimal load(final long[] units, final byte[] scales, final int offset,
+                                 final Map<Long, BigDecimal> overflow, final long sequence) {
+    return scales[offset] == OVERFLOW_SCALE
+      ? overflow.get(sequence)
+      : BigDecimal.valueOf(units[offset], scales[offset]);
+  }
+
+  private String currencyAt(final short ordinal) {
+    return ordinal == NO_CURRENCY ? null : this.currencies[ordinal];
+  }
+
+  /**
+   * Sequences are claimed concurrently, so the chunk of a sequence may be needed before those of
+   * lower ones have been created: every missing chunk up to it is created at once.
+   */
+  private Chunk chunkOf(final long sequence) {
+    final int chunkIndex = (int) (sequence >>> CHUNK_BITS);
+    Chunk[] current = this.chunks;
+    if (chunkIndex >= current.length) {
+      synchronized (this.chunkLock) {
+        current = this.chunks;
+        if (chunkIndex >= current.length) {
+          final Chunk[] grown = Arrays.copyOf(current, chunkIndex + 1);
+          for (int i = current.length; i < grown.length; i++) {
+            grown[i] = new Chunk();
+          }
+          this.chunks = grown;
+          current = grown;
+        }
+      }
+    }
+    return current[chunkIndex];
+  }
+
+  private AccountIndex indexOf(final String accountId) {
+    final AccountIndex index = this.accountIndexes.get(accountId);
+    return index != null ? index : this.accountIndexes.computeIfAbsent(accountId, this::newAccountIndex);
+  }
+
+  private AccountIndex newAccountIndex(final String accountId) {
+    synchronized (this.dictionaryLock) {
+      if (this.accountCount == this.accountIds.length) {
+        this.accountIds = Arrays.copyOf(this.accountIds, this.accountCount * 2);
+      }
+      this.accountIds[this.accountCount] = accountId;
+      return new AccountIndex(this.accountCount++);
+    }
+  }
+
+  private short currencyOrdinalOf(final String currency) {
+    if (currency == null) {
+      return NO_CURRENCY;
+    }
+    final Short ordinal = this.currencyOrdinals.get(currency);
+    return ordinal != null ? ordinal : this.currencyOrdinals.computeIfAbsent(currency, this::newCurrencyOrdinal);
+  }
+
+  private Short newCurrencyOrdinal(final String currency) {
+    synchronized (this.dictionaryLock) {
+      if (this.currencyCount == Short.MAX_VALUE) {
+        throw new IllegalStateException("Too many currencies in the ledger");
+      }
+      if (this.currencyCount == this.currencies.length) {
+        this.currencies = Arrays.copyOf(this.currencies, this.currencyCount * 2);
+      }
+      this.currencies[this.currencyCount] = currency;
+      return (short) this.currencyCount++;
+    }
+  }
+
+  private static final class Chunk {
+
+    final long[] timestamps = new long[CHUNK_SIZE];
+    final int[] fromAccounts = new int[CHUNK_SIZE];
+    final int[] toAccounts = new int[CHUNK_SIZE];
+    final long[] units = new long[CHUNK_SIZE];
+    final byte[] scales = new byte[CHUNK_SIZE];
+    final short[] fromCurrencies = new short[CHUNK_SIZE];
+    final long[] creditedUnits = new long[CHUNK_SIZE];
+    final byte[] creditedScales = new byte[CHUNK_SIZE];
+    final short[] toCurrencies = new short[CHUNK_SIZE];
+  }
+
+  private static final class AccountIndex {
+
+    final int ordinal;
+    volatile long[] sequences = new long[4];
+    volatile int count;
+
+    AccountIndex(final int ordinal) {
+      this.ordinal = ordinal;
+    }
+
+    /** Called while holding this index's monitor. */
+    void add(final long sequence) {
+      final int position = this.count;
+      if (position == this.sequences.length) {
+        this.sequences = Arrays.copyOf(this.sequences, position * 2);
+      }
+      this.sequences[position] = sequence;
+      this.count = position + 1;
+    }
+  }
+}
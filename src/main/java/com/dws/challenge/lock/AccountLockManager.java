@@ -0,0 +1,171 @@
+package com.dws.challenge.lock;
+
+import com.dws.challenge.metrics.TransferMetrics;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.Collection;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Striped locks keyed by account id hash.
+ *
+ * Replaces synchronization on interned account ids: the monitors are private to this class,
+ * so no unrelated code can share them, and the number of stripes bounds the memory used
+ * regardless of how many accounts exist. Two accounts may share a stripe; that only costs
+ * some extra serialization, never correctness.
+ */
+@Component
+public class AccountLockManager {
+
+  /** More stripes only take memory, contention is already rare with far fewer. */
+  public static final int MAX_STRIPES = 1 << 20;
+
+  private final ReentrantLock[] stripes;
+  private final LongAdder[] contendedAcquisitions;
+  private final LongAdder acquisitions = new LongAdder();
+  private final int mask;
+  private final TransferMetrics transferMetrics;
+
+  public AccountLockManager(int stripeCount) {
+    this(stripeCount, TransferMetrics.disabled());
+  }
+
+  @Autowired
+  public AccountLockManager(@Value("${challenge.lock.stripes:1024}") int stripeCount, TransferMetrics transferMetrics) {
+    if (stripeCount <= 0 || stripeCount > MAX_STRIPES) {
+      throw new IllegalArgumentException("Lock stripe count must be between 1 and " + MAX_STRIPES + ": "
+        + stripeCount);
+    }
+    // Rounded up to a power of two, which can't overflow below the maximum
+    final int size = stripeCount == 1 ? 1 : Integer.highestOneBit(stripeCount - 1) << 1;
+    this.stripes = new ReentrantLock[size];
+    this.contendedAcquisitions = new LongAdder[size];
+    for (int i = 0; i < size; i++) {
+      this.stripes[i] = new ReentrantLock();
+      this.contendedAcquisitions[i] = new LongAdder();
+    }
+    this.mask = size - 1;
+    this.transferMetrics = transferMetrics;
+  }
+
+  /**
+   * Runs the action while holding the stripes of both accounts.
+   *
+   * Stripes are always acquired in ascending index order, so two transfers going in opposite
+   * directions between the same accounts can't deadlock. If both accounts hash to the same stripe
+   * it is acquired once.
+   *
+   * @param operation what the locks are taken for, the lock wait and critical section are timed by it
+   */
+  public void executeLocked(final LockedOperation operation, final String firstAccountId,
+                            final String secondAccountId, final Runnable action) {
+    final int first = stripeIndex(firstAccountId);
+    final int second = stripeIndex(secondAccountId);
+    final long waitStart = this.transferMetrics.start();
+
+    if (first == second) {
+      lock(first);
+      final long criticalSectionStart = this.transferMetrics.recordLockWait(operation, waitStart);
+      try {
+        action.run();
+      } finally {
+        this.transferMetrics.recordCriticalSection(operation, criticalSectionStart);
+        this.stripes[first].unlock();
+      }
+      return;
+    }
+
+    final int lower = Math.min(first, second);
+    final int higher = Math.max(first, second);
+    lock(lower);
+    try {
+      lock(higher);
+      final long criticalSectionStart = this.transferMetrics.recordLockWait(operation, waitStart);
+      try {
+        action.run();
+      } finally {
+        this.transferMetrics.recordCriticalSection(operation, criticalSectionStart);
+        this.stripes[higher].unlock();
+      }
+    } finally {
+      this.stripes[lower].unlock();
+    }
+  }
+
+  /**
+   * Runs the action while holding the stripe of the account.
+   */
+  public void executeLocked(final LockedOperation operation, final String accountId, final Runnable action) {
+    executeLocked(operation, accountId, accountId, action);
+  }
+
+  /**
+   * Runs the action while holding the stripes of all given accounts, acquired in the same
+   * ascending order as {@link #executeLocked(LockedOperation, String, String, Runnable)}.
+   */
+  public void executeLocked(final LockedOperation operation, final Collection<String> accountIds,
+                            final Runnable action) {
+    final int[] indexes = accountIds.stream()
+      .mapToInt(this::stripeIndex)
+      .distinct()
+      .sorted()
+      .toArray();
+
+    final long waitStart = this.transferMetrics.start();
+    long criticalSectionStart = 0;
+    int locked = 0;
+    try {
+      for (int index : indexes) {
+        lock(index);
+        locked++;
+      }
+      criticalSectionStart = this.transferMetrics.recordLockWait(operation, waitStart);
+      action.run();
+    } finally {
+      if (locked == indexes.length) {
+        this.transferMetrics.recordCriticalSection(operation, criticalSectionStart);
+      }
+      for (int i = locked - 1; i >= 0; i--) {
+        this.stripes[indexes[i]].unlock();
+      }
+    }
+  }
+
+  public int getStripeCount() {
+    return this.stripes.length;
+  }
+
+  public LockContentionStats getContentionStats() {
+    final long[] perStripe = new long[this.stripes.length];
+    long contended = 0;
+    for (int i = 0; i < perStripe.length; i++) {
+      perStripe[i] = this.contendedAcquisitions[i].sum();
+      contended += perStripe[i];
+    }
+    return new LockContentionStats(this.stripes.length, this.acquisitions.sum(), contended, perStripe);
+  }
+
+  public void resetContentionStats() {
+    this.acquisitions.reset();
+    for (LongAdder counter : this.contendedAcquisitions) {
+      counter.reset();
+    }
+  }
+
+  int stripeIndex(final String accountId) {
+    final int hash = accountId.hashCode();
+    return (hash ^ (hash >>> 16)) & this.mask;
+  }
+
+  private void lock(final int index) {
+    final ReentrantLock lock = this.stripes[index];
+    this.acquisitions.increment();
+    if (!lock.tryLock()) {
+      this.contendedAcquisitions[index].increment();
+      lock.lock();
+    }
+  }
+}
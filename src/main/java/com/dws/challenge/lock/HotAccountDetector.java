@@ -0,0 +1,137 @@
+package com.dws.challenge.lock;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Finds accounts receiving a large share of all credits, using a count-min sketch over account ids.
+ *
+ * Only one in {@code sample-rate} credits is counted, which keeps the sketch counters of a hot
+ * account from becoming a contention point of their own. The counters are halved at the end of
+ * every window, so the estimate follows the recent credit rate. An account whose estimated rate
+ * reaches {@code credits-per-second} is reported once. It is forgotten once a window ends with its
+ * estimate below the threshold, so only accounts that are still hot take memory, and reported
+ * again if it becomes hot again. The sketch may overestimate the sampled count but never
+ * underestimates it, so hash collisions can only make an account hot early.
+ */
+@Slf4j
+@Component
+public class HotAccountDetector {
+
+  private static final int DEPTH = 4;
+  private static final int[] ROW_SEEDS = {0x9E37_79B9, 0x85EB_CA6B, 0xC2B2_AE35, 0x27D4_EB2F};
+
+  private final boolean enabled;
+  private final int sampleRate;
+  private final long threshold;
+  private final long windowNanos;
+  private final int widthBits;
+  private final AtomicLongArray counters;
+  private final AtomicLong windowStart = new AtomicLong(System.nanoTime());
+  private final Set<String> hotAccounts = ConcurrentHashMap.newKeySet();
+
+  @Autowired
+  public HotAccountDetector(@Value("${challenge.hot-accounts.enabled:true}") boolean enabled,
+                            @Value("${challenge.hot-accounts.sample-rate:16}") int sampleRate,
+                            @Value("${challenge.hot-accounts.credits-per-second:2000}") long creditsPerSecond,
+                            @Value("${challenge.hot-accounts.window-millis:1000}") long windowMillis,
+                            @Value("${challenge.hot-accounts.sketch-width:4096}") int sketchWidth) {
+    if (sampleRate <= 0 || creditsPerSecond <= 0 || windowMillis <= 0 || sketchWidth <= 0) {
+      throw new IllegalArgumentException("Invalid hot account settings: sampleRate=" + sampleRate
+        + ", creditsPerSecond=" + creditsPerSecond + ", windowMillis=" + windowMillis
+        + ", sketchWidth=" + sketchWidth);
+    }
+    this.enabled = enabled;
+    this.sampleRate = sampleRate;
+    this.threshold = Math.max(1, creditsPerSecond * windowMillis / 1000 / sampleRate);
+    this.windowNanos = TimeUnit.MILLISECONDS.toNanos(windowMillis);
+    int width = 16;
+    while (width < sketchWidth) {
+      width <<= 1;
+    }
+    this.widthBits = Integer.numberOfTrailingZeros(width);
+    this.counters = new AtomicLongArray(DEPTH * width);
+  }
+
+  public static HotAccountDetector disabled() {
+    return new HotAccountDetector(false, 1, 1, 1, 1);
+  }
+
+  public boolean isEnabled() {
+    return this.enabled;
+  }
+
+  /**
+   * Counts a credit to the account.
+   *
+   * @return true the first time the account is found to be hot
+   */
+  public boolean recordCredit(final String accountId) {
+    if (!this.enabled || (this.sampleRate > 1 && ThreadLocalRandom.current().nextInt(this.sampleRate) != 0)) {
+      return false;
+    }
+    decayIfWindowEnded();
+
+    final int hash = accountId.hashCode();
+    long estimate = Long.MAX_VALUE;
+    for (int row = 0; row < DEPTH; row++) {
+      estimate = Math.min(estimate, this.counters.incrementAndGet(counterIndex(row, hash)));
+    }
+    if (estimate >= this.threshold && this.hotAccounts.add(accountId)) {
+      log.info("Account {} receives more than {} credits per second", accountId,
+        this.threshold * this.sampleRate * TimeUnit.SECONDS.toNanos(1) / this.windowNanos);
+      return true;
+    }
+    return false;
+  }
+
+  /**
+   * @return the accounts reported as hot and not forgotten since
+   */
+  public Set<String> getHotAccounts() {
+    return Collections.unmodifiableSet(this.hotAccounts);
+  }
+
+  private void decayIfWindowEnded() {
+    final long start = this.windowStart.get();
+    final long now = System.nanoTime();
+    if (now - start < this.windowNanos || !this.windowStart.compareAndSet(start, now)) {
+      return;
+    }
+    decay();
+  }
+
+  /**
+   * Forgets the accounts no longer hot and halves the counters. Called by one thread at a time.
+   */
+  void decay() {
+    this.hotAccounts.removeIf(accountId -> estimate(accountId) < this.threshold);
+    // Concurrent increments may be halved or not, the estimate only needs to be approximate
+    for (int i = 0; i < this.counters.length(); i++) {
+      this.counters.set(i, this.counters.get(i) >>> 1);
+    }
+  }
+
+  private long estimate(final String accountId) {
+    final int hash = accountId.hashCode();
+    long estimate = Long.MAX_VALUE;
+    for (int row = 0; row < DEPTH; row++) {
+      estimate = Math.min(estimate, this.counters.get(counterIndex(row, hash)));
+    }
+    return estimate;
+  }
+
+  private int counterIndex(final int row, final int hash) {
+    return (row << this.widthBits) + ((hash * ROW_SEEDS[row]) >>> (Integer.SIZE - this.widthBits));
+  }
+}
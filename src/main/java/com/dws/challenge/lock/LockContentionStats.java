@@ -0,0 +1,21 @@
+package com.dws.challenge.lock;
+
+import lombok.Value;
+
+/**
+ * Point-in-time view of the {@link AccountLockManager} counters.
+ * A high contended ratio concentrated on a few stripes points to hot accounts,
+ * a high ratio spread evenly suggests the stripe count is too low.
+ */
+@Value
+public class LockContentionStats {
+
+  int stripeCount;
+  long acquisitions;
+  long contendedAcquisitions;
+  long[] contendedAcquisitionsPerStripe;
+
+  public double getContendedRatio() {
+    return acquisitions == 0 ? 0d : (double) contendedAcquisitions / acquisitions;
+  }
+}
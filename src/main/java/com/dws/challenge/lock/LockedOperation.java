@@ -0,0 +1,19 @@
+package com.dws.challenge.lock;
+
+/**
+ * What account locks are taken for, the {@code operation} tag of the lock wait and critical section timers.
+ */
+public enum LockedOperation {
+
+  TRANSFER,
+
+  /** All accounts of an all-or-nothing batch. */
+  BATCH,
+
+  AUTHORIZE_HOLD,
+  CAPTURE_HOLD,
+  RELEASE_HOLDS,
+
+  /** Switching a hot account to a striped balance. */
+  STRIPE_BALANCE
+}
@@ -0,0 +1,107 @@
+package com.dws.challenge.logging;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.core.env.Environment;
+import org.springframework.stereotype.Component;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+/**
+ * Decides which requests are logged, one in {@code sample-rate} per endpoint: 1 logs every request
+ * and 0 none. The rates start from {@code challenge.request-log.sample-rate.<endpoint>}, falling
+ * back to {@code challenge.request-log.default-sample-rate}, and can be changed at runtime through
+ * {@link RequestLoggingEndpoint}. Requests that aren't sampled cost one array read and at most one
+ * random number, nothing is allocated for them.
+ */
+@Component
+public class RequestLogSampler {
+
+  public enum Endpoint {
+    AUTHORIZE_HOLD("authorize-hold"),
+    CANCEL_SCHEDULED_TRANSFER("cancel-scheduled-transfer"),
+    CAPTURE_HOLD("capture-hold"),
+    CREATE_ACCOUNT("create-account"),
+    CREATE_ACCOUNTS("create-accounts"),
+    EXPORT_ACCOUNTS("export-accounts"),
+    GET_ACCOUNT("get-account"),
+    GET_TRANSACTIONS("get-transactions"),
+    LIST_HOLDS("list-holds"),
+    LIST_SCHEDULED_TRANSFERS("list-scheduled-transfers"),
+    SCHEDULE_TRANSFER("schedule-transfer"),
+    SEARCH_BY_BALANCE("search-by-balance"),
+    SEARCH_BY_CREATION("search-by-creation"),
+    TRANSFER("transfer"),
+    TRANSFER_BATCH("transfer-batch"),
+    VOID_HOLD("void-hold");
+
+    private final String name;
+
+    Endpoint(String name) {
+      this.name = name;
+    }
+
+    public String getName() {
+      return this.name;
+    }
+
+    public static Endpoint of(String name) {
+      for (Endpoint endpoint : values()) {
+        if (endpoint.name.equals(name)) {
+          return endpoint;
+        }
+      }
+      throw new IllegalArgumentException("Unknown endpoint " + name);
+    }
+  }
+
+  private final AtomicIntegerArray sampleRates = new AtomicIntegerArray(Endpoint.values().length);
+
+  public RequestLogSampler(int sampleRate) {
+    for (Endpoint endpoint : Endpoint.values()) {
+      setSampleRate(endpoint, sampleRate);
+    }
+  }
+
+  @Autowired
+  public RequestLogSampler(Environment environment) {
+    final int defaultSampleRate = environment.getProperty("challenge.request-log.default-sample-rate", Integer.class, 1);
+    for (Endpoint endpoint : Endpoint.values()) {
+      setSampleRate(endpoint, environment.getProperty("challenge.request-log.sample-rate." + endpoint.getName(),
+        Integer.class, defaultSampleRate));
+    }
+  }
+
+  public static RequestLogSampler disabled() {
+    return new RequestLogSampler(0);
+  }
+
+  public boolean shouldLog(final Endpoint endpoint) {
+    final int sampleRate = this.sampleRates.get(endpoint.ordinal());
+    return sampleRate == 1 || (sampleRate > 1 && ThreadLocalRandom.current().nextInt(sampleRate) == 0);
+  }
+
+  public int getSampleRate(final Endpoint endpoint) {
+    return this.sampleRates.get(endpoint.ordinal());
+  }
+
+  public void setSampleRate(final Endpoint endpoint, final int sampleRate) {
+    if (sampleRate < 0) {
+      throw new IllegalArgumentException("Invalid sample rate " + sampleRate + " for " + endpoint.getName());
+    }
+    this.sampleRates.set(endpoint.ordinal(), sampleRate);
+  }
+
+  /**
+   * @return the sample rate per endpoint name
+   */
+  public Map<String, Integer> getSampleRates() {
+    final Map<String, Integer> sampleRates = new LinkedHashMap<>();
+    for (Endpoint endpoint : Endpoint.values()) {
+      sampleRates.put(endpoint.getName(), getSampleRate(endpoint));
+    }
+    return sampleRates;
+  }
+}
@@ -0,0 +1,38 @@
+package com.dws.challenge.logging;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.boot.actuate.endpoint.InvalidEndpointRequestException;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.boot.actuate.endpoint.annotation.Selector;
+import org.springframework.boot.actuate.endpoint.annotation.WriteOperation;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+
+/**
+ * Actuator endpoint for the request log sampling: {@code GET /actuator/requestlogging} lists the
+ * sample rates and {@code POST /actuator/requestlogging/{endpoint}} with {@code {"sampleRate": n}}
+ * changes one of them.
+ */
+@Component
+@Endpoint(id = "requestlogging")
+@RequiredArgsConstructor
+public class RequestLoggingEndpoint {
+
+  private final RequestLogSampler requestLogSampler;
+
+  @ReadOperation
+  public Map<String, Integer> sampleRates() {
+    return this.requestLogSampler.getSampleRates();
+  }
+
+  @WriteOperation
+  public void sampleRate(@Selector String endpoint, int sampleRate) {
+    try {
+      this.requestLogSampler.setSampleRate(RequestLogSampler.Endpoint.of(endpoint), sampleRate);
+    } catch (IllegalArgumentException ex) {
+      throw new InvalidEndpointRequestException(ex.getMessage(), ex.getMessage());
+    }
+  }
+}
@@ -0,0 +1,196 @@
+package com.dws.challenge.metrics;
+
+import com.dws.challenge.admission.AdmissionControl;
+import com.dws.challenge.binary.BinaryTransportServer;
+import com.dws.challenge.cache.AccountViewCache;
+import com.dws.challenge.engine.CasTransferEngine;
+import com.dws.challenge.engine.LockingTransferEngine;
+import com.dws.challenge.hold.HoldService;
+import com.dws.challenge.idempotency.IdempotencyCache;
+import com.dws.challenge.index.AccountIndex;
+import com.dws.challenge.lock.AccountLockManager;
+import com.dws.challenge.lock.HotAccountDetector;
+import com.dws.challenge.notification.AsyncNotificationService;
+import com.dws.challenge.repository.AccountsRepository;
+import com.dws.challenge.scheduling.ScheduledTransferService;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Meters read from existing counters. They are only evaluated when the registry is scraped.
+ */
+@Configuration
+@ConditionalOnProperty(name = "challenge.metrics.enabled", havingValue = "true", matchIfMissing = true)
+public class MetricsConfiguration {
+
+  @Bean
+  public MeterBinder accountsMetrics(AccountsRepository accountsRepository) {
+    return registry -> Gauge.builder("challenge.accounts", accountsRepository, AccountsRepository::countAccounts)
+      .description("Number of accounts in the repository")
+      .register(registry);
+  }
+
+  @Bean
+  public MeterBinder lockMetrics(AccountLockManager accountLockManager) {
+    return registry -> {
+      FunctionCounter.builder("challenge.lock.acquisitions", accountLockManager,
+          lockManager -> lockManager.getContentionStats().getAcquisitions())
+        .register(registry);
+      FunctionCounter.builder("challenge.lock.contended", accountLockManager,
+          lockManager -> lockManager.getContentionStats().getContendedAcquisitions())
+        .description("Lock acquisitions that had to wait for another transfer")
+        .register(registry);
+    };
+  }
+
+  @Bean
+  public MeterBinder casEngineMetrics(ObjectProvider<CasTransferEngine> casTransferEngine) {
+    return registry -> casTransferEngine.ifAvailable(engine -> {
+      FunctionCounter.builder("challenge.cas.attempts", engine, CasTransferEngine::getAttempts).register(registry);
+      FunctionCounter.builder("challenge.cas.retries", engine, CasTransferEngine::getRetries).register(registry);
+    });
+  }
+
+  @Bean
+  public MeterBinder hotAccountMetrics(HotAccountDetector hotAccountDetector,
+                                       ObjectProvider<LockingTransferEngine> lockingTransferEngine) {
+    // Not registered when hot accounts aren't looked for, rather than staying at zero
+    return registry -> lockingTransferEngine.ifAvailable(engine -> {
+      if (!engine.isHotAccountHandlingActive()) {
+        return;
+      }
+      Gauge.builder("challenge.hot-accounts", hotAccountDetector, detector -> detector.getHotAccounts().size())
+        .description("Accounts receiving more credits than the hot account threshold in the last window")
+        .register(registry);
+      Gauge.builder("challenge.hot-accounts.striped", engine, LockingTransferEngine::getStripedAccounts)
+        .description("Accounts whose credits no longer take the account lock")
+        .register(registry);
+    });
+  }
+
+  @Bean
+  public MeterBinder notificationMetrics(ObjectProvider<AsyncNotificationService> asyncNotificationService) {
+    return registry -> asyncNotificationService.ifAvailable(service -> {
+      Gauge.builder("challenge.notification.queued", service, AsyncNotificationService::getQueuedNotifications)
+        .register(registry);
+      FunctionCounter.builder("challenge.notification.dropped", service,
+        AsyncNotificationService::getDroppedNotifications).register(registry);
+      FunctionCounter.builder("challenge.notification.spilled", service,
+        AsyncNotificationService::getSpilledNotifications).register(registry);
+    });
+  }
+
+  @Bean
+  public MeterBinder admissionMetrics(AdmissionControl admissionControl) {
+    return registry -> {
+      Gauge.builder("challenge.admission.limit", admissionControl, AdmissionControl::getConcurrencyLimit)
+        .description("Transfers allowed in flight, adapted to their latency")
+        .register(registry);
+      Gauge.builder("challenge.admission.in-flight", admissionControl, AdmissionControl::getInFlight)
+        .register(registry);
+      FunctionCounter.builder("challenge.admission.rejected", admissionControl,
+          AdmissionControl::getClientRejections)
+        .tag("reason", "client-rate")
+        .register(registry);
+      FunctionCounter.builder("challenge.admission.rejected", admissionControl,
+          AdmissionControl::getAccountRejections)
+        .tag("reason", "account-rate")
+        .register(registry);
+      FunctionCounter.builder("challenge.admission.rejected", admissionControl,
+          AdmissionControl::getConcurrencyRejections)
+        .tag("reason", "concurrency")
+        .register(registry);
+    };
+  }
+
+  @Bean
+  public MeterBinder binaryTransportMetrics(ObjectProvider<BinaryTransportServer> binaryTransportServer) {
+    return registry -> binaryTransportServer.ifAvailable(server -> {
+      Gauge.builder("challenge.binary.connections", server, BinaryTransportServer::getConnectionCount)
+        .register(registry);
+      FunctionCounter.builder("challenge.binary.requests", server, BinaryTransportServer::getRequests)
+        .description("Requests received over the binary transport")
+        .register(registry);
+    });
+  }
+
+  @Bean
+  public MeterBinder idempotencyMetrics(IdempotencyCache idempotencyCache) {
+    return registry -> {
+      Gauge.builder("challenge.idempotency.entries", idempotencyCache, IdempotencyCache::getEntries)
+        .register(registry);
+      Gauge.builder("challenge.idempotency.size", idempotencyCache, IdempotencyCache::getSizeBytes)
+        .baseUnit("bytes")
+        .register(registry);
+      FunctionCounter.builder("challenge.idempotency.replays", idempotencyCache, IdempotencyCache::getReplays)
+        .description("Transfers answered from the idempotency cache")
+        .register(registry);
+    };
+  }
+
+  @Bean
+  public MeterBinder accountCacheMetrics(AccountViewCache accountViewCache) {
+    return registry -> {
+      Gauge.builder("challenge.account-cache.entries", accountViewCache, AccountViewCache::getEntries)
+        .register(registry);
+      FunctionCounter.builder("challenge.account-cache.hits", accountViewCache, AccountViewCache::getHits)
+        .description("Account reads answered without serializing the account")
+        .register(registry);
+      FunctionCounter.builder("challenge.account-cache.misses", accountViewCache, AccountViewCache::getMisses)
+        .register(registry);
+    };
+  }
+
+  @Bean
+  public MeterBinder accountIndexMetrics(AccountIndex accountIndex) {
+    return registry -> {
+      Gauge.builder("challenge.account-index.accounts", accountIndex, AccountIndex::getIndexedAccounts)
+        .register(registry);
+      Gauge.builder("challenge.account-index.pending", accountIndex, AccountIndex::getPendingChanges)
+        .description("Accounts changed since the last refresh of the balance index")
+        .register(registry);
+      FunctionCounter.builder("challenge.account-index.refreshed", accountIndex, AccountIndex::getRefreshed)
+        .register(registry);
+    };
+  }
+
+  @Bean
+  public MeterBinder scheduledTransferMetrics(ScheduledTransferService scheduledTransferService) {
+    return registry -> {
+      Gauge.builder("challenge.scheduled-transfers.pending", scheduledTransferService,
+          ScheduledTransferService::getPendingCount)
+        .description("Transfers waiting for their execution time")
+        .register(registry);
+      FunctionCounter.builder("challenge.scheduled-transfers.completed", scheduledTransferService,
+          ScheduledTransferService::getCompleted)
+        .register(registry);
+      FunctionCounter.builder("challenge.scheduled-transfers.failed", scheduledTransferService,
+          ScheduledTransferService::getFailed)
+        .description("Scheduled transfers rejected when executed, e.g. for insufficient funds")
+        .register(registry);
+    };
+  }
+
+  @Bean
+  public MeterBinder holdMetrics(HoldService holdService) {
+    return registry -> {
+      Gauge.builder("challenge.holds.active", holdService, HoldService::getActiveCount)
+        .description("Holds neither captured, voided nor expired")
+        .register(registry);
+      FunctionCounter.builder("challenge.holds.authorized", holdService, HoldService::getAuthorized)
+        .register(registry);
+      FunctionCounter.builder("challenge.holds.captured", holdService, HoldService::getCaptured)
+        .register(registry);
+      FunctionCounter.builder("challenge.holds.voided", holdService, HoldService::getVoided)
+        .register(registry);
+      FunctionCounter.builder("challenge.holds.expired", holdService, HoldService::getExpired)
+        .description("Holds released by the sweeper after their time to live")
+        .register(registry);
+    };
+  }
+}
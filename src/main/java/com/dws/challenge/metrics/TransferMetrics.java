@@ -0,0 +1,134 @@
+package com.dws.challenge.metrics;
+
+import com.dws.challenge.domain.TransferStatus;
+import com.dws.challenge.lock.LockedOperation;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Timers of the transfer path. Account lock wait and critical section timers are tagged by the
+ * {@link LockedOperation} they are taken for, holds and batches lock accounts too.
+ *
+ * Callers take a start timestamp with {@link #start()} and hand it back to a {@code record} method.
+ * With {@code challenge.metrics.enabled=false} no meter is registered and neither call reads the
+ * clock, so the instrumentation costs a field read and a branch.
+ */
+@Component
+public class TransferMetrics {
+
+  private final boolean enabled;
+  private final Map<TransferStatus, Timer> transferTimers = new EnumMap<>(TransferStatus.class);
+  private final Timer transferErrorTimer;
+  private final Map<LockedOperation, Timer> lockWaitTimers = new EnumMap<>(LockedOperation.class);
+  private final Map<LockedOperation, Timer> criticalSectionTimers = new EnumMap<>(LockedOperation.class);
+  private final Timer accountCreationTimer;
+  private final Timer accountLookupTimer;
+  private final Timer notificationQueueTimer;
+  private final Timer notificationDispatchTimer;
+
+  @Autowired
+  public TransferMetrics(MeterRegistry meterRegistry, @Value("${challenge.metrics.enabled:true}") boolean enabled) {
+    this.enabled = enabled;
+    if (!enabled) {
+      this.transferErrorTimer = null;
+      this.accountCreationTimer = null;
+      this.accountLookupTimer = null;
+      this.notificationQueueTimer = null;
+      this.notificationDispatchTimer = null;
+      return;
+    }
+    for (TransferStatus outcome : TransferStatus.values()) {
+      this.transferTimers.put(outcome, histogram(meterRegistry, "challenge.transfer", "outcome",
+        outcome.name().toLowerCase()));
+    }
+    this.transferErrorTimer = histogram(meterRegistry, "challenge.transfer", "outcome", "error");
+    for (LockedOperation operation : LockedOperation.values()) {
+      final String tag = operation.name().toLowerCase();
+      this.lockWaitTimers.put(operation, histogram(meterRegistry, "challenge.transfer.lock.wait", "operation", tag));
+      this.criticalSectionTimers.put(operation, histogram(meterRegistry, "challenge.transfer.critical.section",
+        "operation", tag));
+    }
+    this.accountCreationTimer = histogram(meterRegistry, "challenge.repository.operation", "operation", "create");
+    this.accountLookupTimer = histogram(meterRegistry, "challenge.repository.operation", "operation", "get");
+    this.notificationQueueTimer = histogram(meterRegistry, "challenge.notification.queue.wait");
+    this.notificationDispatchTimer = histogram(meterRegistry, "challenge.notification.dispatch");
+  }
+
+  public static TransferMetrics disabled() {
+    return new TransferMetrics(null, false);
+  }
+
+  public boolean isEnabled() {
+    return this.enabled;
+  }
+
+  public long start() {
+    return this.enabled ? System.nanoTime() : 0L;
+  }
+
+  /**
+   * @param outcome the transfer result, {@code null} for unexpected failures
+   */
+  public void recordTransfer(final long startNanos, final TransferStatus outcome) {
+    if (this.enabled) {
+      (outcome != null ? this.transferTimers.get(outcome) : this.transferErrorTimer)
+        .record(System.nanoTime() - startNanos, TimeUnit.NANOSECONDS);
+    }
+  }
+
+  /**
+   * Records the time spent acquiring account locks for the operation.
+   *
+   * @return the start timestamp of the critical section
+   */
+  public long recordLockWait(final LockedOperation operation, final long startNanos) {
+    if (!this.enabled) {
+      return 0L;
+    }
+    final long acquiredNanos = System.nanoTime();
+    this.lockWaitTimers.get(operation).record(acquiredNanos - startNanos, TimeUnit.NANOSECONDS);
+    return acquiredNanos;
+  }
+
+  public void recordCriticalSection(final LockedOperation operation, final long startNanos) {
+    if (this.enabled) {
+      record(this.criticalSectionTimers.get(operation), startNanos);
+    }
+  }
+
+  public void recordAccountCreation(final long startNanos) {
+    record(this.accountCreationTimer, startNanos);
+  }
+
+  public void recordAccountLookup(final long startNanos) {
+    record(this.accountLookupTimer, startNanos);
+  }
+
+  public void recordNotificationQueueWait(final long enqueuedNanos) {
+    record(this.notificationQueueTimer, enqueuedNanos);
+  }
+
+  public void recordNotificationDispatch(final long startNanos) {
+    record(this.notificationDispatchTimer, startNanos);
+  }
+
+  private void record(final Timer timer, final long startNanos) {
+    if (this.enabled) {
+      timer.record(System.nanoTime() - startNanos, TimeUnit.NANOSECONDS);
+    }
+  }
+
+  private static Timer histogram(final MeterRegistry meterRegistry, final String name, final String... tags) {
+    return Timer.builder(name)
+      .tags(tags)
+      .publishPercentileHistogram()
+      .register(meterRegistry);
+  }
+}
@@ -0,0 +1,271 @@
+package com.dws.challenge.notification;
+
+import com.dws.challenge.domain.Account;
+import com.dws.challenge.metrics.TransferMetrics;
+import com.dws.challenge.repository.AccountsRepository;
+import com.dws.challenge.service.NotificationService;
+import com.dws.challenge.service.TransferDescription;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Primary;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Takes transfer notifications off the transfer path.
+ *
+ * Notifications are partitioned by account id over bounded queues, one per worker, so the
+ * notifications of an account are delivered in the order they were enqueued. Each worker drains
+ * up to {@code batchSize} notifications at a time and hands them to the sink grouped by account.
+ *
+ * With {@link BackpressurePolicy#SPILL_TO_DISK} every worker has its own spill file, the first one
+ * at {@code challenge.notification.spill-file} and the others suffixed with {@code -<worker>}.
+ * Once a notification is spilled, the later ones of the same worker follow it to the file until
+ * the worker has read the file back, so spilling keeps the order of the notifications.
+ */
+@Slf4j
+@Primary
+@Service
+@ConditionalOnProperty(name = "challenge.notification.async.enabled", havingValue = "true", matchIfMissing = true)
+public class AsyncNotificationService implements NotificationService, DisposableBean {
+
+  private static final long POLL_TIMEOUT_MILLIS = 100;
+
+  private final NotificationService sink;
+  private final AccountsRepository accountsRepository;
+  private final TransferMetrics transferMetrics;
+  private final BackpressurePolicy backpressurePolicy;
+  private final int batchSize;
+  private final List<BlockingQueue<TransferNotification>> queues;
+  private final List<NotificationSpillFile> spillFiles;
+  private final ExecutorService workers;
+  private final LongAdder droppedNotifications = new LongAdder();
+  private final LongAdder spilledNotifications = new LongAdder();
+  private volatile boolean running = true;
+
+  @Autowired
+  public AsyncNotificationService(@Qualifier("emailNotificationService") NotificationService sink,
+                                  AccountsRepository accountsRepository,
+                                  TransferMetrics transferMetrics,
+                                  @Value("${challenge.notification.workers:2}") int workerCount,
+                                  @Value("${challenge.notification.queue-capacity:10000}") int queueCapacity,
+                                  @Value("${challenge.notification.batch-size:100}") int batchSize,
+                                  @Value("${challenge.notification.backpressure:BLOCK}") BackpressurePolicy backpressurePolicy,
+                                  @Value("${challenge.notification.spill-file:${java.io.tmpdir}/challenge-notifications.spill}")
+                                    Path spillFilePath) throws IOException {
+    if (workerCount <= 0 || queueCapacity < workerCount || batchSize <= 0) {
+      throw new IllegalArgumentException("Invalid notification pipeline settings: workers=" + workerCount
+        + ", queueCapacity=" + queueCapacity + ", batchSize=" + batchSize);
+    }
+    this.sink = sink;
+    this.accountsRepository = accountsRepository;
+    this.transferMetrics = transferMetrics;
+    this.backpressurePolicy = backpressurePolicy;
+    this.batchSize = batchSize;
+
+    this.queues = new ArrayList<>(workerCount);
+    for (int i = 0; i < workerCount; i++) {
+      this.queues.add(new ArrayBlockingQueue<>(queueCapacity / workerCount));
+    }
+    if (backpressurePolicy == BackpressurePolicy.SPILL_TO_DISK) {
+      this.spillFiles = new ArrayList<>(workerCount);
+      for (int i = 0; i < workerCount; i++) {
+        this.spillFiles.add(new NotificationSpillFile(
+          i == 0 ? spillFilePath : spillFilePath.resolveSibling(spillFilePath.getFileName() + "-" + i)));
+      }
+    } else {
+      this.spillFiles = null;
+    }
+
+    final AtomicInteger threadNumber = new AtomicInteger();
+    this.workers = Executors.newFixedThreadPool(workerCount, runnable -> {
+      final Thread thread = new Thread(runnable, "notification-worker-" + threadNumber.incrementAndGet());
+      thread.setDaemon(true);
+      return thread;
+    });
+    for (int i = 0; i < workerCount; i++) {
+      final BlockingQueue<TransferNotification> queue = this.queues.get(i);
+      final NotificationSpillFile spillFile = this.spillFiles == null ? null : this.spillFiles.get(i);
+      this.workers.execute(() -> drain(queue, spillFile));
+    }
+  }
+
+  @Override
+  public void notifyAboutTransfer(Account account, String transferDescription) {
+    enqueue(account, transferDescription);
+  }
+
+  @Override
+  public void notifyAboutTransfer(Account account, TransferDescription transferDescription) {
+    enqueue(account, transferDescription);
+  }
+
+  public long getDroppedNotifications() {
+    return this.droppedNotifications.sum();
+  }
+
+  public long getSpilledNotifications() {
+    return this.spilledNotifications.sum();
+  }
+
+  public int getQueuedNotifications() {
+    return this.queues.stream().mapToInt(BlockingQueue::size).sum();
+  }
+
+  private void enqueue(Account account, CharSequence transferDescription) {
+    final TransferNotification notification =
+      new TransferNotification(account.getAccountId(), account, transferDescription, this.transferMetrics.start());
+    final int partition = partitionOf(account.getAccountId());
+    final BlockingQueue<TransferNotification> queue = this.queues.get(partition);
+
+    switch (this.backpressurePolicy) {
+      case BLOCK:
+        try {
+          queue.put(notification);
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+          this.droppedNotifications.increment();
+          log.warn("Interrupted while enqueueing notification for {}", account.getAccountId());
+        }
+        break;
+      case DROP_OLDEST:
+        while (!queue.offer(notification)) {
+          if (queue.poll() != null) {
+            this.droppedNotifications.increment();
+          }
+        }
+        break;
+      case SPILL_TO_DISK:
+        offerOrSpill(queue, this.spillFiles.get(partition), notification);
+        break;
+      default:
+        throw new IllegalStateException("Unsupported backpressure policy " + this.backpressurePolicy);
+    }
+  }
+
+  @Override
+  public void destroy() throws Exception {
+    this.running = false;
+    this.workers.shutdown();
+    if (!this.workers.awaitTermination(10, TimeUnit.SECONDS)) {
+      log.warn("Notification workers did not finish, {} notifications left undelivered", getQueuedNotifications());
+      this.workers.shutdownNow();
+    }
+    if (this.spillFiles != null) {
+      for (NotificationSpillFile spillFile : this.spillFiles) {
+        spillFile.close();
+      }
+    }
+  }
+
+  /**
+   * @param spillFile the worker's spill file, null unless spilling
+   */
+  private void drain(BlockingQueue<TransferNotification> queue, NotificationSpillFile spillFile) {
+    final List<TransferNotification> batch = new ArrayList<>(this.batchSize);
+    while (this.running || !queue.isEmpty()) {
+      try {
+        if (spillFile != null && !spillFile.isEmpty()) {
+          // Queued notifications are older than the spilled ones, new ones are spilled until the file is read
+          if (queue.drainTo(batch, this.batchSize) == 0) {
+            batch.addAll(spillFile.poll(this.batchSize));
+          }
+        } else {
+          final TransferNotification first = queue.poll(POLL_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS);
+          if (first != null) {
+            batch.add(first);
+            queue.drainTo(batch, this.batchSize - 1);
+          }
+        }
+        dispatch(batch);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        return;
+      } catch (IOException e) {
+        log.error("Failed to read notification spill file", e);
+      } finally {
+        batch.clear();
+      }
+    }
+  }
+
+  private void dispatch(List<TransferNotification> batch) {
+    if (batch.isEmpty()) {
+      return;
+    }
+    final Map<String, List<String>> descriptionsByAccount = new LinkedHashMap<>();
+    final Map<String, Account> accounts = new LinkedHashMap<>();
+    for (TransferNotification notification : batch) {
+      if (notification.getEnqueuedNanos() != 0L) {
+        this.transferMetrics.recordNotificationQueueWait(notification.getEnqueuedNanos());
+      }
+      descriptionsByAccount.computeIfAbsent(notification.getAccountId(), id -> new ArrayList<>())
+        .add(notification.getTransferDescription().toString());
+      if (notification.getAccount() != null) {
+        accounts.putIfAbsent(notification.getAccountId(), notification.getAccount());
+      }
+    }
+
+    descriptionsByAccount.forEach((accountId, descriptions) -> {
+      final long start = this.transferMetrics.start();
+      try {
+        this.sink.notifyAboutTransfers(resolveAccount(accounts.get(accountId), accountId), descriptions);
+      } catch (RuntimeException e) {
+        log.error("Failed to deliver {} notifications for account {}", descriptions.size(), accountId, e);
+      } finally {
+        this.transferMetrics.recordNotificationDispatch(start);
+      }
+    });
+  }
+
+  private Account resolveAccount(Account account, String accountId) {
+    if (account != null) {
+      return account;
+    }
+    final Account storedAccount = this.accountsRepository.getAccount(accountId);
+    return storedAccount != null ? storedAccount : new Account(accountId);
+  }
+
+  private void offerOrSpill(BlockingQueue<TransferNotification> queue, NotificationSpillFile spillFile,
+                            TransferNotification notification) {
+    // Decided under the file's lock, so the worker can't finish reading the file in between
+    synchronized (spillFile) {
+      if (!spillFile.isEmpty() || !queue.offer(notification)) {
+        spill(spillFile, notification);
+      }
+    }
+  }
+
+  private void spill(NotificationSpillFile spillFile, TransferNotification notification) {
+    try {
+      spillFile.append(notification.getAccountId(), notification.getTransferDescription().toString());
+      this.spilledNotifications.increment();
+    } catch (IOException e) {
+      // The transfer is already committed at this point, so losing the notification is the lesser evil
+      this.droppedNotifications.increment();
+      log.error("Failed to spill notification for {}", notification.getAccountId(), e);
+    }
+  }
+
+  private int partitionOf(String accountId) {
+    final int hash = accountId.hashCode();
+    return ((hash ^ (hash >>> 16)) & Integer.MAX_VALUE) % this.queues.size();
+  }
+}
@@ -0,0 +1,16 @@
+package com.dws.challenge.notification;
+
+/**
+ * What {@link AsyncNotificationService} does when a notification queue is full.
+ */
+public enum BackpressurePolicy {
+
+  /** The transferring thread waits for room in the queue. */
+  BLOCK,
+
+  /** The oldest queued notification is discarded to make room. */
+  DROP_OLDEST,
+
+  /** The notification is appended to a spill file and delivered once the queue is idle. */
+  SPILL_TO_DISK
+}
@@ -0,0 +1,103 @@
+package com.dws.challenge.notification;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.nio.file.StandardOpenOption.CREATE;
+import static java.nio.file.StandardOpenOption.READ;
+import static java.nio.file.StandardOpenOption.WRITE;
+
+/**
+ * Append-only overflow file for notifications that didn't fit into the queue.
+ * Each record is a length-prefixed account id followed by a length-prefixed description.
+ * The file is truncated once everything in it has been read, and whatever is left over
+ * on shutdown is delivered after the next start.
+ */
+@Slf4j
+class NotificationSpillFile implements Closeable {
+
+  private final Path path;
+  private final FileChannel channel;
+  private long readPosition;
+  private long size;
+
+  NotificationSpillFile(Path path) throws IOException {
+    final Path parent = path.toAbsolutePath().getParent();
+    if (parent != null) {
+      Files.createDirectories(parent);
+    }
+    this.path = path;
+    this.channel = FileChannel.open(path, CREATE, READ, WRITE);
+    this.size = this.channel.size();
+  }
+
+  synchronized void append(String accountId, String transferDescription) throws IOException {
+    final byte[] id = accountId.getBytes(UTF_8);
+    final byte[] description = transferDescription.getBytes(UTF_8);
+    final ByteBuffer record = ByteBuffer.allocate(2 * Integer.BYTES + id.length + description.length);
+    record.putInt(id.length).put(id).putInt(description.length).put(description).flip();
+
+    while (record.hasRemaining()) {
+      this.size += this.channel.write(record, this.size);
+    }
+  }
+
+  synchronized List<TransferNotification> poll(int maxNotifications) throws IOException {
+    final List<TransferNotification> notifications = new ArrayList<>();
+    try {
+      while (notifications.size() < maxNotifications && this.readPosition < this.size) {
+        final String accountId = readString();
+        final String transferDescription = readString();
+        notifications.add(new TransferNotification(accountId, null, transferDescription, 0L));
+      }
+    } catch (EOFException e) {
+      log.warn("Discarding truncated record at the end of notification spill file {}", this.path);
+      this.readPosition = this.size;
+    }
+
+    if (this.readPosition >= this.size && this.size > 0) {
+      this.channel.truncate(0);
+      this.readPosition = 0;
+      this.size = 0;
+    }
+    return notifications;
+  }
+
+  synchronized boolean isEmpty() {
+    return this.readPosition >= this.size;
+  }
+
+  @Override
+  public synchronized void close() throws IOException {
+    this.channel.force(false);
+    this.channel.close();
+  }
+
+  private String readString() throws IOException {
+    final ByteBuffer length = ByteBuffer.allocate(Integer.BYTES);
+    readFully(length);
+    final ByteBuffer bytes = ByteBuffer.allocate(length.getInt(0));
+    readFully(bytes);
+    return new String(bytes.array(), UTF_8);
+  }
+
+  private void readFully(ByteBuffer buffer) throws IOException {
+    while (buffer.hasRemaining()) {
+      final int read = this.channel.read(buffer, this.readPosition);
+      if (read < 0) {
+        throw new EOFException();
+      }
+      this.readPosition += read;
+    }
+  }
+}
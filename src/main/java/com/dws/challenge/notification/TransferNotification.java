@@ -0,0 +1,19 @@
+package com.dws.challenge.notification;
+
+import com.dws.challenge.domain.Account;
+import lombok.Value;
+
+@Value
+class TransferNotification {
+
+  String accountId;
+
+  /** Absent for notifications read back from the spill file. */
+  Account account;
+
+  /** Formatted by the worker, see {@link com.dws.challenge.service.TransferDescription}. */
+  CharSequence transferDescription;
+
+  /** {@link System#nanoTime()} when queued, 0 when metrics are disabled or read back from the spill file. */
+  long enqueuedNanos;
+}
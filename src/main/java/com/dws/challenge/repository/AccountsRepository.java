@@ -3,11 +3,66 @@ package com.dws.challenge.repository;
 import com.dws.challenge.domain.Account;
 import com.dws.challenge.exception.DuplicateAccountIdException;
 
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.function.Consumer;
+
 public interface AccountsRepository {
 
   void createAccount(Account account) throws DuplicateAccountIdException;
 
+  /**
+   * Creates every account whose id isn't taken yet.
+   *
+   * @return for each account, in order, the {@link DuplicateAccountIdException} it failed with or null
+   */
+  default List<DuplicateAccountIdException> createAccounts(List<Account> accounts) {
+    final List<DuplicateAccountIdException> failures = new ArrayList<>(accounts.size());
+    for (Account account : accounts) {
+      try {
+        createAccount(account);
+        failures.add(null);
+      } catch (DuplicateAccountIdException ex) {
+        failures.add(ex);
+      }
+    }
+    return failures;
+  }
+
   Account getAccount(String accountId);
 
+  long countAccounts();
+
+  /**
+   * Passes every account to the action without copying the accounts first. Accounts created or
+   * removed concurrently may or may not be seen.
+   */
+  void forEachAccount(Consumer<Account> action);
+
   void clearAccounts();
+
+  /**
+   * Records the current balances of accounts changed by a transfer. Called while the caller still
+   * holds the locks of both accounts, so the records of an account follow its commit order.
+   */
+  default void recordBalances(Account first, Account second) {
+  }
+
+  default void recordBalances(Collection<Account> accounts) {
+  }
+
+  /**
+   * Whether {@link #recordBalances} keeps the balances. Their records follow the commit order only
+   * if every change of a balance holds the account lock.
+   */
+  default boolean recordsBalances() {
+    return false;
+  }
+
+  /**
+   * Blocks until everything recorded so far survives a restart.
+   */
+  default void awaitDurable() {
+  }
 }
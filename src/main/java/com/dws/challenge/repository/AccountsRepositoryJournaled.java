@@ -0,0 +1,217 @@
+package com.dws.challenge.repository;
+
+import com.dws.challenge.config.BalanceProperties;
+import com.dws.challenge.domain.Account;
+import com.dws.challenge.exception.DuplicateAccountIdException;
+import com.dws.challenge.repository.journal.JournalHandler;
+import com.dws.challenge.repository.journal.TransferJournal;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Repository;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.math.BigDecimal;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Lock;
+import java.util.function.Consumer;
+
+/**
+ * In-memory accounts backed by a {@link TransferJournal}, so they survive restarts.
+ *
+ * Creations are journaled before the account becomes visible, and transfers journal the resulting
+ * balances of both accounts. A snapshot is taken on startup and then periodically, which bounds
+ * the amount of journal replayed on the next start.
+ */
+@Slf4j
+@Repository
+@ConditionalOnProperty(name = "challenge.repository.type", havingValue = "journal")
+public class AccountsRepositoryJournaled implements AccountsRepository, DisposableBean {
+
+    private final Map<String, Account> accounts = new ConcurrentHashMap<>();
+    private final BalanceProperties balanceProperties;
+    private final TransferJournal journal;
+    private final ScheduledExecutorService snapshotScheduler;
+
+    @Autowired
+    public AccountsRepositoryJournaled(BalanceProperties balanceProperties,
+                                       @Value("${challenge.repository.journal.directory:data/journal}") Path directory,
+                                       @Value("${challenge.repository.journal.window-size-mb:64}") int windowSizeMb,
+                                       @Value("${challenge.repository.journal.snapshot-interval-seconds:300}")
+                                         long snapshotIntervalSeconds) throws IOException {
+        this.balanceProperties = balanceProperties;
+        this.journal = new TransferJournal(directory, windowSizeMb * 1024 * 1024);
+        this.journal.recover(new Recovery());
+        log.info("Recovered {} accounts from {}", this.accounts.size(), directory);
+        snapshot();
+
+        this.snapshotScheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            final Thread thread = new Thread(runnable, "journal-snapshot");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.snapshotScheduler.scheduleWithFixedDelay(this::snapshotQuietly,
+                snapshotIntervalSeconds, snapshotIntervalSeconds, TimeUnit.SECONDS);
+    }
+
+    @Override
+    public void createAccount(Account account) throws DuplicateAccountIdException {
+        final DuplicateAccountIdException duplicate = append(account);
+        if (duplicate != null) {
+            throw duplicate;
+        }
+        this.journal.awaitDurable();
+    }
+
+    /**
+     * Appends all creations before waiting for the journal once, so they share a flush.
+     */
+    @Override
+    public List<DuplicateAccountIdException> createAccounts(List<Account> accounts) {
+        final List<DuplicateAccountIdException> failures = new ArrayList<>(accounts.size());
+        for (Account account : accounts) {
+            failures.add(append(account));
+        }
+        this.journal.awaitDurable();
+        return failures;
+    }
+
+    @Override
+    public Account getAccount(String accountId) {
+        return this.accounts.get(accountId);
+    }
+
+    @Override
+    public long countAccounts() {
+        return this.accounts.size();
+    }
+
+    @Override
+    public void forEachAccount(Consumer<Account> action) {
+        this.accounts.values().forEach(action);
+    }
+
+    @Override
+    public void clearAccounts() {
+        final Lock publicationLock = this.journal.publicationLock();
+        publicationLock.lock();
+        try {
+            this.journal.appendClear();
+            this.accounts.clear();
+        } finally {
+            publicationLock.unlock();
+        }
+        this.journal.awaitDurable();
+    }
+
+    @Override
+    public void recordBalances(Account first, Account second) {
+        this.journal.appendBalances(first, second);
+    }
+
+    @Override
+    public void recordBalances(Collection<Account> changedAccounts) {
+        this.journal.appendBalances(changedAccounts);
+    }
+
+    @Override
+    public boolean recordsBalances() {
+        return true;
+    }
+
+    @Override
+    public void awaitDurable() {
+        this.journal.awaitDurable();
+    }
+
+    private DuplicateAccountIdException append(Account account) {
+        final boolean[] created = {false};
+        // The record is appended inside compute, before any other thread can see the account, and
+        // no snapshot can list the accounts until compute published it
+        final Lock publicationLock = this.journal.publicationLock();
+        publicationLock.lock();
+        try {
+            this.accounts.compute(account.getAccountId(), (accountId, existing) -> {
+                if (existing != null) {
+                    return existing;
+                }
+                this.journal.appendCreate(account);
+                created[0] = true;
+                return account;
+            });
+        } finally {
+            publicationLock.unlock();
+        }
+        return created[0] ? null : new DuplicateAccountIdException(
+                "Account id " + account.getAccountId() + " already exists!");
+    }
+
+    public void snapshot() {
+        try {
+            this.journal.snapshot(this.accounts.values());
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to write accounts snapshot", e);
+        }
+    }
+
+    @Override
+    public void destroy() throws IOException {
+        this.snapshotScheduler.shutdownNow();
+        this.journal.close();
+    }
+
+    private void snapshotQuietly() {
+        try {
+            snapshot();
+        } catch (RuntimeException e) {
+            log.error("Periodic snapshot failed, the journal keeps growing until the next one", e);
+        }
+    }
+
+    private Account restore(String accountId, BigDecimal balance, String currency) {
+        final Account account = new Account(accountId, balance,
+                currency != null ? currency : this.balanceProperties.getCurrency());
+        if (this.balanceProperties.isFixedPoint()) {
+            account.switchToFixedPoint(this.balanceProperties.scaleOf(account.getCurrency()));
+        }
+        return account;
+    }
+
+    private class Recovery implements JournalHandler {
+
+        @Override
+        public void onCreate(String accountId, BigDecimal balance, String currency) {
+            accounts.put(accountId, restore(accountId, balance, currency));
+        }
+
+        /**
+         * Every account with a balance record was created before it, in the snapshot or the replayed
+         * journals, so an unknown one means the files are damaged.
+         */
+        @Override
+        public void onBalance(String accountId, BigDecimal balance) {
+            final Account account = accounts.get(accountId);
+            if (account != null) {
+                account.setBalance(balance);
+            } else {
+                log.warn("Skipping the balance of account {}, which the journal never created", accountId);
+            }
+        }
+
+        @Override
+        public void onClear() {
+            accounts.clear();
+        }
+    }
+}
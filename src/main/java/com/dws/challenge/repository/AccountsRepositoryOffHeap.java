@@ -0,0 +1,95 @@
+package com.dws.challenge.repository;
+
+import com.dws.challenge.config.BalanceProperties;
+import com.dws.challenge.domain.Account;
+import com.dws.challenge.domain.FixedPoint;
+import com.dws.challenge.exception.DuplicateAccountIdException;
+import com.dws.challenge.exception.UnsupportedCurrencyException;
+import com.dws.challenge.repository.offheap.AccountTable;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Repository;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.function.Consumer;
+
+/**
+ * Accounts kept off-heap in an {@link AccountTable}, a hash table in a memory-mapped file.
+ *
+ * Balances are always stored in fixed-point minor units of the configured currency, whatever the
+ * balance representation, so accounts with more fractional digits are rejected. The accounts
+ * returned are views that read and write the table, the account passed to {@link #createAccount}
+ * is only copied. Balances are written in place: they survive a restart of the process as soon as
+ * they are written and are forced to disk when the repository is closed.
+ *
+ * The table has a single scale, so all accounts are in the configured currency and accounts in
+ * other currencies are rejected.
+ */
+@Slf4j
+@Repository
+@ConditionalOnProperty(name = "challenge.repository.type", havingValue = "off-heap")
+public class AccountsRepositoryOffHeap implements AccountsRepository, DisposableBean {
+
+    private final AccountTable table;
+    private final String currency;
+
+    @Autowired
+    public AccountsRepositoryOffHeap(BalanceProperties balanceProperties,
+                                     @Value("${challenge.repository.off-heap.file:data/accounts.table}") Path file,
+                                     @Value("${challenge.repository.off-heap.max-accounts:1000000}") long maxAccounts,
+                                     @Value("${challenge.repository.off-heap.id-heap-mb:64}") long idHeapMb)
+            throws IOException {
+        this.currency = balanceProperties.getCurrency();
+        this.table = AccountTable.open(file, maxAccounts, idHeapMb * 1024 * 1024,
+                balanceProperties.scaleOf(balanceProperties.getCurrency()));
+        log.info("Mapped {} accounts from {}", this.table.size(), file);
+    }
+
+    @Override
+    public void createAccount(Account account) throws DuplicateAccountIdException {
+        if (account.getCurrency() != null && !account.getCurrency().equals(this.currency)) {
+            throw new UnsupportedCurrencyException("The off-heap repository only keeps accounts in " + this.currency);
+        }
+        final long units = FixedPoint.toUnits(account.getBalance(), this.table.getScale());
+        if (!this.table.insert(account.getAccountId(), units, account.getCreatedEpoch())) {
+            throw new DuplicateAccountIdException(
+                    "Account id " + account.getAccountId() + " already exists!");
+        }
+    }
+
+    @Override
+    public Account getAccount(String accountId) {
+        final Account account = this.table.find(accountId);
+        if (account != null) {
+            account.setCurrency(this.currency);
+        }
+        return account;
+    }
+
+    @Override
+    public long countAccounts() {
+        return this.table.size();
+    }
+
+    @Override
+    public void forEachAccount(Consumer<Account> action) {
+        this.table.forEach(account -> {
+            account.setCurrency(this.currency);
+            action.accept(account);
+        });
+    }
+
+    @Override
+    public void clearAccounts() {
+        this.table.clear();
+    }
+
+    @Override
+    public void destroy() throws IOException {
+        this.table.close();
+    }
+}
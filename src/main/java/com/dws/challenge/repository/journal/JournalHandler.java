@@ -0,0 +1,18 @@
+package com.dws.challenge.repository.journal;
+
+import java.math.BigDecimal;
+
+/**
+ * Receives the records of snapshots and journal segments during recovery, in the order they were written.
+ */
+public interface JournalHandler {
+
+  /**
+   * @param currency null for accounts recorded before accounts had a currency
+   */
+  void onCreate(String accountId, BigDecimal balance, String currency);
+
+  void onBalance(String accountId, BigDecimal balance);
+
+  void onClear();
+}
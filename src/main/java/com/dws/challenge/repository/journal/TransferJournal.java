@@ -0,0 +1,515 @@
+package com.dws.challenge.repository.journal;
+
+import com.dws.challenge.domain.Account;
+import com.dws.challenge.domain.FixedPointBalance;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.OptionalLong;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.LockSupport;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.nio.file.StandardOpenOption.CREATE_NEW;
+import static java.nio.file.StandardOpenOption.READ;
+import static java.nio.file.StandardOpenOption.WRITE;
+
+/**
+ * Append-only, memory-mapped journal of account states with group commit.
+ *
+ * Records carry absolute balances rather than deltas, so replaying them in order restores the last
+ * recorded state of every account. Writers append while they still hold the account locks, which
+ * keeps the records of an account in commit order, and wait for durability once the locks are
+ * released. A single flusher thread forces the mapped pages: everything appended while a force is
+ * in progress shares the next one, so a burst of transfers costs one fsync instead of one each.
+ *
+ * The journal is split into generations. A snapshot of generation N holds the state of all accounts
+ * taken after journal N was opened; recovery loads the latest complete snapshot and replays the
+ * journals from its generation onwards. Older files are deleted once a snapshot is complete.
+ * Creations and clears are appended and published while holding {@link #publicationLock()}, and
+ * the snapshot switches generations and lists the accounts under the exclusive side of that lock:
+ * a creation recorded in the old journal is always in the snapshot that makes it obsolete.
+ *
+ * Record layout: {@code int length, int crc32, byte type, payload}. Recovery stops at the first
+ * zero length (the unused tail of a mapped window) or the first record with a bad checksum.
+ */
+@Slf4j
+public class TransferJournal implements Closeable {
+
+  static final byte CREATE = 1;
+  static final byte BALANCES = 2;
+  static final byte CLEAR = 3;
+  static final byte CREATE_IN_CURRENCY = 4;
+
+  private static final int HEADER_SIZE = 2 * Integer.BYTES;
+  private static final int MAX_RECORD_SIZE = 64 * 1024 * 1024;
+  private static final byte UNSCALED_LONG = 0;
+  private static final byte UNSCALED_BYTES = 1;
+  private static final byte SNAPSHOT_END = 0;
+  private static final byte SNAPSHOT_ACCOUNT = 1;
+  private static final byte SNAPSHOT_ACCOUNT_IN_CURRENCY = 2;
+  private static final long FLUSHER_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(1);
+
+  private static final ThreadLocal<ByteBuffer> RECORD_BUFFER =
+    ThreadLocal.withInitial(() -> ByteBuffer.allocate(4096));
+  private static final ThreadLocal<CRC32> CHECKSUM = ThreadLocal.withInitial(CRC32::new);
+
+  private final Path directory;
+  private final int windowSize;
+
+  private final Object appendLock = new Object();
+  private final Object durabilityMonitor = new Object();
+  private final Object snapshotLock = new Object();
+  private final ReadWriteLock publication = new ReentrantReadWriteLock();
+
+  // Guarded by appendLock
+  private FileChannel channel;
+  private MappedByteBuffer window;
+  private long windowStart;
+  private long generation;
+
+  private volatile long appendedBytes;
+  private volatile long durableBytes;
+  private volatile boolean running = true;
+  private final Thread flusher;
+
+  public TransferJournal(final Path directory, final int windowSize) throws IOException {
+    Files.createDirectories(directory);
+    this.directory = directory;
+    this.windowSize = windowSize;
+    this.flusher = new Thread(this::flushLoop, "journal-flusher");
+    this.flusher.setDaemon(true);
+  }
+
+  /**
+   * Replays the latest snapshot and the journals written after it. Must be called once, before
+   * the first {@link #snapshot(Collection)}.
+   */
+  public void recover(final JournalHandler handler) throws IOException {
+    final OptionalLong snapshotGeneration = latestGeneration("snapshot-", ".bin");
+    if (snapshotGeneration.isPresent()) {
+      readSnapshot(snapshotFile(snapshotGeneration.getAsLong()), handler);
+    }
+    final long firstJournal = snapshotGeneration.orElse(0);
+    for (long journalGeneration : generations("journal-", ".log")) {
+      if (journalGeneration >= firstJournal) {
+        replay(journalFile(journalGeneration), handler);
+      }
+      this.generation = Math.max(this.generation, journalGeneration);
+    }
+    this.generation = Math.max(this.generation, firstJournal);
+  }
+
+  /**
+   * Held while appending a creation or a clear and publishing it to the accounts passed to
+   * {@link #snapshot(Collection)}, so no snapshot switches generations in between.
+   */
+  public Lock publicationLock() {
+    return this.publication.readLock();
+  }
+
+  /**
+   * Switches appends to a new journal generation, writes the given accounts as its snapshot and
+   * deletes the files the snapshot makes obsolete. Appends continue while the snapshot is written,
+   * creations and clears only wait while the accounts are listed.
+   */
+  public void snapshot(final Collection<Account> accounts) throws IOException {
+    synchronized (this.snapshotLock) {
+      final long snapshotGeneration;
+      final List<Account> snapshotAccounts;
+      this.publication.writeLock().lock();
+      try {
+        snapshotGeneration = rotate();
+        snapshotAccounts = new ArrayList<>(accounts);
+      } finally {
+        this.publication.writeLock().unlock();
+      }
+      final Path temporary = this.directory.resolve(String.format("snapshot-%020d.tmp", snapshotGeneration));
+      try (FileOutputStream file = new FileOutputStream(temporary.toFile());
+           DataOutputStream output = new DataOutputStream(new BufferedOutputStream(file))) {
+        for (Account account : snapshotAccounts) {
+          if (account.getCurrency() != null) {
+            output.writeByte(SNAPSHOT_ACCOUNT_IN_CURRENCY);
+            output.writeUTF(account.getAccountId());
+            output.writeUTF(account.getCurrency());
+          } else {
+            output.writeByte(SNAPSHOT_ACCOUNT);
+            output.writeUTF(account.getAccountId());
+          }
+          writeDecimal(output, account.getBalance());
+        }
+        output.writeByte(SNAPSHOT_END);
+        output.flush();
+        file.getFD().sync();
+      }
+      Files.move(temporary, snapshotFile(snapshotGeneration), StandardCopyOption.ATOMIC_MOVE);
+      deleteOlderThan(snapshotGeneration);
+    }
+    if (this.flusher.getState() == Thread.State.NEW) {
+      this.flusher.start();
+    }
+  }
+
+  public void appendCreate(final Account account) {
+    final byte type = account.getCurrency() != null ? CREATE_IN_CURRENCY : CREATE;
+    ByteBuffer record = startRecord(type);
+    while (true) {
+      try {
+        if (type == CREATE_IN_CURRENCY) {
+          putString(record, account.getCurrency());
+        }
+        putAccount(record, account);
+        break;
+      } catch (BufferOverflowException e) {
+        record = startLargerRecord(type);
+      }
+    }
+    append(record);
+  }
+
+  public void appendBalances(final Account first, final Account second) {
+    ByteBuffer record = startRecord(BALANCES);
+    while (true) {
+      try {
+        record.putShort((short) 2);
+        putAccount(record, first);
+        putAccount(record, second);
+        break;
+      } catch (BufferOverflowException e) {
+        record = startLargerRecord(BALANCES);
+      }
+    }
+    append(record);
+  }
+
+  public void appendBalances(final Collection<Account> accounts) {
+    ByteBuffer record = startRecord(BALANCES);
+    while (true) {
+      try {
+        record.putShort((short) accounts.size());
+        for (Account account : accounts) {
+          putAccount(record, account);
+        }
+        break;
+      } catch (BufferOverflowException e) {
+        record = startLargerRecord(BALANCES);
+      }
+    }
+    append(record);
+  }
+
+  public void appendClear() {
+    append(startRecord(CLEAR));
+  }
+
+  /**
+   * Blocks until everything appended before this call is on disk.
+   */
+  public void awaitDurable() {
+    final long target = this.appendedBytes;
+    if (this.durableBytes >= target) {
+      return;
+    }
+    LockSupport.unpark(this.flusher);
+    synchronized (this.durabilityMonitor) {
+      while (this.durableBytes < target && this.running) {
+        try {
+          this.durabilityMonitor.wait();
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+          throw new IllegalStateException("Interrupted while waiting for the journal", e);
+        }
+      }
+    }
+  }
+
+  @Override
+  public void close() throws IOException {
+    this.running = false;
+    LockSupport.unpark(this.flusher);
+    synchronized (this.appendLock) {
+      if (this.window != null) {
+        this.window.force();
+        this.channel.close();
+        markDurable(this.appendedBytes);
+        this.window = null;
+      }
+    }
+  }
+
+  private void append(final ByteBuffer record) {
+    record.flip();
+    final int length = record.limit() - HEADER_SIZE;
+    final CRC32 checksum = CHECKSUM.get();
+    checksum.reset();
+    checksum.update(record.array(), HEADER_SIZE, length);
+    record.putInt(0, length);
+    record.putInt(Integer.BYTES, (int) checksum.getValue());
+
+    synchronized (this.appendLock) {
+      if (this.window == null) {
+        throw new IllegalStateException("Journal is not open");
+      }
+      try {
+        if (this.window.remaining() < record.remaining() + Integer.BYTES) {
+          nextWindow(record.remaining() + Integer.BYTES);
+        }
+      } catch (IOException e) {
+        throw new IllegalStateException("Failed to extend journal " + journalFile(this.generation), e);
+      }
+      this.window.put(record);
+      this.appendedBytes += record.limit();
+    }
+  }
+
+  private ByteBuffer startRecord(final byte type) {
+    final ByteBuffer record = RECORD_BUFFER.get();
+    record.clear();
+    record.position(HEADER_SIZE);
+    record.put(type);
+    return record;
+  }
+
+  private ByteBuffer startLargerRecord(final byte type) {
+    RECORD_BUFFER.set(ByteBuffer.allocate(RECORD_BUFFER.get().capacity() * 2));
+    return startRecord(type);
+  }
+
+  private static void putString(final ByteBuffer record, final String value) {
+    final byte[] bytes = value.getBytes(UTF_8);
+    record.putShort((short) bytes.length).put(bytes);
+  }
+
+  private static void putAccount(final ByteBuffer record, final Account account) {
+    putString(record, account.getAccountId());
+
+    final FixedPointBalance fixedPointBalance = account.getFixedPointBalance();
+    if (fixedPointBalance != null) {
+      record.putInt(fixedPointBalance.getScale()).put(UNSCALED_LONG).putLong(fixedPointBalance.get());
+      return;
+    }
+    final BigDecimal balance = account.getBalance();
+    final BigInteger unscaled = balance.unscaledValue();
+    record.putInt(balance.scale());
+    if (unscaled.bitLength() < Long.SIZE) {
+      record.put(UNSCALED_LONG).putLong(unscaled.longValue());
+    } else {
+      final byte[] bytes = unscaled.toByteArray();
+      record.put(UNSCALED_BYTES).putShort((short) bytes.length).put(bytes);
+    }
+  }
+
+  private long rotate() throws IOException {
+    synchronized (this.appendLock) {
+      if (this.window != null) {
+        this.window.force();
+        this.channel.close();
+        markDurable(this.appendedBytes);
+      }
+      this.generation++;
+      this.channel = FileChannel.open(journalFile(this.generation), CREATE_NEW, READ, WRITE);
+      this.windowStart = 0;
+      this.window = this.channel.map(FileChannel.MapMode.READ_WRITE, 0, this.windowSize);
+      return this.generation;
+    }
+  }
+
+  private void nextWindow(final int minimumSize) throws IOException {
+    // Records of the old window must be durable before the flusher reports anything of the new one
+    this.window.force();
+    this.windowStart += this.window.position();
+    this.window = this.channel.map(FileChannel.MapMode.READ_WRITE, this.windowStart,
+      Math.max(this.windowSize, minimumSize));
+  }
+
+  private void flushLoop() {
+    while (this.running) {
+      if (this.durableBytes >= this.appendedBytes) {
+        LockSupport.parkNanos(FLUSHER_PARK_NANOS);
+        continue;
+      }
+      final long target;
+      final MappedByteBuffer toForce;
+      synchronized (this.appendLock) {
+        target = this.appendedBytes;
+        toForce = this.window;
+      }
+      if (toForce != null) {
+        toForce.force();
+      }
+      markDurable(target);
+    }
+  }
+
+  private void markDurable(final long bytes) {
+    synchronized (this.durabilityMonitor) {
+      if (bytes > this.durableBytes) {
+        this.durableBytes = bytes;
+      }
+      this.durabilityMonitor.notifyAll();
+    }
+  }
+
+  private static void replay(final Path journal, final JournalHandler handler) throws IOException {
+    long records = 0;
+    try (DataInputStream input = new DataInputStream(new BufferedInputStream(Files.newInputStream(journal)))) {
+      final CRC32 checksum = new CRC32();
+      while (true) {
+        final int length = input.readInt();
+        if (length <= 0) {
+          break;
+        }
+        if (length > MAX_RECORD_SIZE) {
+          log.warn("Stopping replay of {} at a record with an invalid length", journal);
+          break;
+        }
+        final int expectedChecksum = input.readInt();
+        final byte[] payload = new byte[length];
+        input.readFully(payload);
+        checksum.reset();
+        checksum.update(payload);
+        if ((int) checksum.getValue() != expectedChecksum) {
+          log.warn("Stopping replay of {} at a record with a bad checksum", journal);
+          break;
+        }
+        apply(ByteBuffer.wrap(payload), handler);
+        records++;
+      }
+    } catch (EOFException e) {
+      log.warn("Stopping replay of {} at a truncated record", journal);
+    }
+    log.info("Replayed {} records from {}", records, journal);
+  }
+
+  private static void apply(final ByteBuffer record, final JournalHandler handler) {
+    final byte type = record.get();
+    switch (type) {
+      case CREATE:
+        handler.onCreate(getString(record), getDecimal(record), null);
+        break;
+      case CREATE_IN_CURRENCY:
+        final String currency = getString(record);
+        handler.onCreate(getString(record), getDecimal(record), currency);
+        break;
+      case BALANCES:
+        final int count = record.getShort();
+        for (int i = 0; i < count; i++) {
+          handler.onBalance(getString(record), getDecimal(record));
+        }
+        break;
+      case CLEAR:
+        handler.onClear();
+        break;
+      default:
+        throw new IllegalStateException("Unknown journal record type " + type);
+    }
+  }
+
+  private static String getString(final ByteBuffer record) {
+    final byte[] bytes = new byte[record.getShort()];
+    record.get(bytes);
+    return new String(bytes, UTF_8);
+  }
+
+  private static BigDecimal getDecimal(final ByteBuffer record) {
+    final int scale = record.getInt();
+    if (record.get() == UNSCALED_LONG) {
+      return BigDecimal.valueOf(record.getLong(), scale);
+    }
+    final byte[] bytes = new byte[record.getShort()];
+    record.get(bytes);
+    return new BigDecimal(new BigInteger(bytes), scale);
+  }
+
+  private static void readSnapshot(final Path snapshot, final JournalHandler handler) throws IOException {
+    long accounts = 0;
+    try (InputStream file = Files.newInputStream(snapshot);
+         DataInputStream input = new DataInputStream(new BufferedInputStream(file))) {
+      byte entry;
+      while ((entry = input.readByte()) != SNAPSHOT_END) {
+        final String accountId = input.readUTF();
+        final String currency = entry == SNAPSHOT_ACCOUNT_IN_CURRENCY ? input.readUTF() : null;
+        final int scale = input.readInt();
+        final byte[] unscaled = new byte[input.readShort()];
+        input.readFully(unscaled);
+        handler.onCreate(accountId, new BigDecimal(new BigInteger(unscaled), scale), currency);
+        accounts++;
+      }
+    }
+    log.info("Loaded {} accounts from {}", accounts, snapshot);
+  }
+
+  private static void writeDecimal(final DataOutputStream output, final BigDecimal value) throws IOException {
+    final byte[] unscaled = value.unscaledValue().toByteArray();
+    output.writeInt(value.scale());
+    output.writeShort(unscaled.length);
+    output.write(unscaled);
+  }
+
+  private void deleteOlderThan(final long snapshotGeneration) throws IOException {
+    for (long old : generations("journal-", ".log")) {
+      if (old < snapshotGeneration) {
+        Files.deleteIfExists(journalFile(old));
+      }
+    }
+    for (long old : generations("snapshot-", ".bin")) {
+      if (old < snapshotGeneration) {
+        Files.deleteIfExists(snapshotFile(old));
+      }
+    }
+    for (long old : generations("snapshot-", ".tmp")) {
+      if (old < snapshotGeneration) {
+        Files.deleteIfExists(this.directory.resolve(String.format("snapshot-%020d.tmp", old)));
+      }
+    }
+  }
+
+  private OptionalLong latestGeneration(final String prefix, final String suffix) throws IOException {
+    return generations(prefix, suffix).stream().mapToLong(Long::longValue).max();
+  }
+
+  private List<Long> generations(final String prefix, final String suffix) throws IOException {
+    try (Stream<Path> files = Files.list(this.directory)) {
+      return files
+        .map(file -> file.getFileName().toString())
+        .filter(name -> name.startsWith(prefix) && name.endsWith(suffix))
+        .map(name -> Long.parseLong(name.substring(prefix.length(), name.length() - suffix.length())))
+        .sorted()
+        .collect(Collectors.toList());
+    }
+  }
+
+  private Path journalFile(final long journalGeneration) {
+    return this.directory.resolve(String.format("journal-%020d.log", journalGeneration));
+  }
+
+  private Path snapshotFile(final long snapshotGeneration) {
+    return this.directory.resolve(String.format("snapshot-%020d.bin", snapshotGeneration));
+  }
+}
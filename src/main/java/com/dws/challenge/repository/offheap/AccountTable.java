@@ -0,0 +1,484 @@
+package com.dws.challenge.repository.offheap;
+
+import com.dws.challenge.domain.Account;
+import com.dws.challenge.domain.AccountHolds;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.nio.file.StandardOpenOption.CREATE_NEW;
+import static java.nio.file.StandardOpenOption.READ;
+import static java.nio.file.StandardOpenOption.WRITE;
+
+/**
+ * Open-addressing hash table of account ids and fixed-point balances in a memory-mapped file, so
+ * neither the accounts nor their balances take any heap while they aren't used.
+ *
+ * The file holds a header, the slots and an append-only heap of UTF-8 encoded ids. A slot takes 64
+ * bytes: {@code long idAddress, int idLength, int idHash, long units, long createdEpoch,
+ * long preservedEpoch, long preservedUnits}, and is found by linear probing from the id hash. The
+ * file is mapped in regions of 1 GiB; slots are aligned to their size and ids are never split, so
+ * every value lies within a single region.
+ *
+ * A slot is claimed by swapping its id address from 0 to {@link #CLAIMED}, filled, and published by
+ * writing the id address. Readers probing a claimed slot wait until it is published. Accounts are
+ * only ever removed all at once, by {@link #clear()}.
+ *
+ * Reopening the file remaps it without reading it. Snapshot epochs restart with every process, so
+ * the stored ones are tagged with a run number that is incremented on open, and epochs of earlier
+ * runs read as 0. Only if the file wasn't closed cleanly are the slots scanned, to release the ones
+ * claimed but never published and to count the accounts again.
+ *
+ * Balance holds aren't stored in the file, they are kept on the heap by slot for as long as the
+ * table is open, as the on-heap accounts keep them for as long as the process runs.
+ */
+@Slf4j
+public final class AccountTable implements Closeable {
+
+  private static final long MAGIC = 0x4143_4354_4142_4C45L;
+  private static final int VERSION = 1;
+
+  private static final int REGION_BITS = 30;
+  private static final long REGION_SIZE = 1L << REGION_BITS;
+  private static final long REGION_MASK = REGION_SIZE - 1;
+  private static final int HEADER_SIZE = 64;
+  private static final int SLOT_SIZE = 64;
+
+  private static final long HEADER_MAGIC = 0;
+  private static final long HEADER_VERSION = 8;
+  private static final long HEADER_SCALE = 12;
+  private static final long HEADER_SLOT_COUNT = 16;
+  private static final long HEADER_HEAP_SIZE = 24;
+  private static final long HEADER_HEAP_USED = 32;
+  private static final long HEADER_SIZE_COUNT = 40;
+  private static final long HEADER_CLEAN = 48;
+  private static final long HEADER_RUN = 56;
+
+  private static final long SLOT_ID_ADDRESS = 0;
+  private static final long SLOT_ID_LENGTH = 8;
+  private static final long SLOT_ID_HASH = 12;
+  private static final long SLOT_UNITS = 16;
+  private static final long SLOT_CREATED_EPOCH = 24;
+  private static final long SLOT_PRESERVED_EPOCH = 32;
+  private static final long SLOT_PRESERVED_UNITS = 40;
+
+  private static final long CLAIMED = -1;
+  private static final int EPOCH_BITS = 40;
+  private static final long EPOCH_MASK = (1L << EPOCH_BITS) - 1;
+
+  private static final VarHandle LONGS = MethodHandles.byteBufferViewVarHandle(long[].class, ByteOrder.nativeOrder());
+  private static final VarHandle INTS = MethodHandles.byteBufferViewVarHandle(int[].class, ByteOrder.nativeOrder());
+
+  private final FileChannel channel;
+  private final MappedByteBuffer[] regions;
+  private final int scale;
+  private final long slotCount;
+  private final long slotMask;
+  private final long maxSize;
+  private final long heapStart;
+  private final long heapSize;
+  private final long runTag;
+  private final Map<Long, AccountHolds> holds = new ConcurrentHashMap<>();
+
+  private AccountTable(final FileChannel channel, final MappedByteBuffer[] regions, final int scale,
+                       final long slotCount, final long heapSize, final long run) {
+    this.channel = channel;
+    this.regions = regions;
+    this.scale = scale;
+    this.slotCount = slotCount;
+    this.slotMask = slotCount - 1;
+    this.maxSize = slotCount / 2;
+    this.heapStart = HEADER_SIZE + slotCount * SLOT_SIZE;
+    this.heapSize = heapSize;
+    this.runTag = run << EPOCH_BITS;
+  }
+
+  /**
+   * Maps an existing table, or creates one with an id heap of {@code idHeapBytes} and room for at
+   * least {@code maxAccounts} accounts, rounded up to half of the next power of two of slots. The
+   * dimensions of an existing table are kept, its scale must match.
+   */
+  public static AccountTable open(final Path file, final long maxAccounts, final long idHeapBytes, final int scale)
+    throws IOException {
+    if (maxAccounts <= 0 || idHeapBytes <= 0) {
+      throw new IllegalArgumentException("Invalid account table dimensions: maxAccounts=" + maxAccounts
+        + ", idHeapBytes=" + idHeapBytes);
+    }
+    final boolean exists = Files.exists(file);
+    final FileChannel channel;
+    long slotCount;
+    long heapSize;
+    if (exists) {
+      channel = FileChannel.open(file, READ, WRITE);
+      final MappedByteBuffer header = channel.map(FileChannel.MapMode.READ_ONLY, 0, HEADER_SIZE);
+      if ((long) LONGS.get(header, (int) HEADER_MAGIC) != MAGIC
+        || (int) INTS.get(header, (int) HEADER_VERSION) != VERSION) {
+        channel.close();
+        throw new IllegalStateException(file + " is not an account table of version " + VERSION);
+      }
+      final int storedScale = (int) INTS.get(header, (int) HEADER_SCALE);
+      if (storedScale != scale) {
+        channel.close();
+        throw new IllegalStateException(file + " holds balances of scale " + storedScale + ", not " + scale);
+      }
+      slotCount = (long) LONGS.get(header, (int) HEADER_SLOT_COUNT);
+      heapSize = (long) LONGS.get(header, (int) HEADER_HEAP_SIZE);
+    } else {
+      Files.createDirectories(file.toAbsolutePath().getParent());
+      channel = FileChannel.open(file, CREATE_NEW, READ, WRITE);
+      slotCount = Long.highestOneBit(Math.max(maxAccounts * 2 - 1, 1)) << 1;
+      heapSize = idHeapBytes;
+      // Extends the file sparsely, the unwritten slots read as zeros
+      channel.write(ByteBuffer.allocate(1), HEADER_SIZE + slotCount * SLOT_SIZE + heapSize - 1);
+    }
+
+    final long fileSize = HEADER_SIZE + slotCount * SLOT_SIZE + heapSize;
+    final MappedByteBuffer[] regions = new MappedByteBuffer[(int) ((fileSize + REGION_MASK) >>> REGION_BITS)];
+    for (int i = 0; i < regions.length; i++) {
+      final long start = (long) i << REGION_BITS;
+      regions[i] = channel.map(FileChannel.MapMode.READ_WRITE, start, Math.min(REGION_SIZE, fileSize - start));
+    }
+    final ByteBuffer header = regions[0];
+    if (!exists) {
+      LONGS.set(header, (int) HEADER_MAGIC, MAGIC);
+      INTS.set(header, (int) HEADER_VERSION, VERSION);
+      INTS.set(header, (int) HEADER_SCALE, scale);
+      LONGS.set(header, (int) HEADER_SLOT_COUNT, slotCount);
+      LONGS.set(header, (int) HEADER_HEAP_SIZE, heapSize);
+      LONGS.set(header, (int) HEADER_CLEAN, 1L);
+    }
+    final long run = (long) LONGS.get(header, (int) HEADER_RUN) + 1;
+    LONGS.set(header, (int) HEADER_RUN, run);
+
+    final AccountTable table = new AccountTable(channel, regions, scale, slotCount, heapSize, run);
+    if ((long) LONGS.get(header, (int) HEADER_CLEAN) == 0) {
+      log.warn("{} was not closed cleanly, scanning its slots", file);
+      table.recover();
+    }
+    LONGS.setVolatile(header, (int) HEADER_CLEAN, 0L);
+    return table;
+  }
+
+  public int getScale() {
+    return this.scale;
+  }
+
+  public long size() {
+    return getLongVolatile(HEADER_SIZE_COUNT);
+  }
+
+  /**
+   * @return the account stored under the id, or null if there is none
+   */
+  public Account find(final String accountId) {
+    final byte[] id = accountId.getBytes(UTF_8);
+    final int hash = hash(accountId);
+    long index = hash & this.slotMask;
+    for (long probes = 0; probes < this.slotCount; probes++, index = (index + 1) & this.slotMask) {
+      final long slot = slotAddress(index);
+      final long idAddress = awaitPublished(slot);
+      if (idAddress == 0) {
+        return null;
+      }
+      if (matches(slot, idAddress, id, hash)) {
+        return new OffHeapAccount(accountId, this, slot);
+      }
+    }
+    return null;
+  }
+
+  /**
+   * Adds an account with the given balance in minor units.
+   *
+   * @return false if there already is an account with the id
+   * @throws IllegalStateException if the table or its id heap is full
+   */
+  public boolean insert(final String accountId, final long units, final long createdEpoch) {
+    if (getAndAddLong(HEADER_SIZE_COUNT, 1) >= this.maxSize) {
+      getAndAddLong(HEADER_SIZE_COUNT, -1);
+      throw new IllegalStateException("Account table is full at " + this.maxSize + " accounts");
+    }
+    final byte[] id = accountId.getBytes(UTF_8);
+    final int hash = hash(accountId);
+    long index = hash & this.slotMask;
+    while (true) {
+      final long slot = slotAddress(index);
+      final long idAddress = awaitPublished(slot);
+      if (idAddress == 0) {
+        if (compareAndSetLong(slot + SLOT_ID_ADDRESS, 0, CLAIMED)) {
+          fill(slot, id, hash, units, createdEpoch);
+          return true;
+        }
+        // Lost the slot to another insert, which may be of the same id
+        continue;
+      }
+      if (matches(slot, idAddress, id, hash)) {
+        getAndAddLong(HEADER_SIZE_COUNT, -1);
+        return false;
+      }
+      index = (index + 1) & this.slotMask;
+    }
+  }
+
+  /**
+   * Passes every published account to the action, in slot order.
+   */
+  public void forEach(final Consumer<Account> action) {
+    for (long index = 0; index < this.slotCount; index++) {
+      final long slot = slotAddress(index);
+      final long idAddress = getLongVolatile(slot + SLOT_ID_ADDRESS);
+      if (idAddress > 0) {
+        action.accept(new OffHeapAccount(readId(idAddress, getInt(slot + SLOT_ID_LENGTH)), this, slot));
+      }
+    }
+  }
+
+  /**
+   * Removes all accounts, must not run concurrently with other operations.
+   */
+  public void clear() {
+    for (long index = 0; index < this.slotCount; index++) {
+      final long slot = slotAddress(index);
+      for (long offset = 0; offset < SLOT_SIZE; offset += Long.BYTES) {
+        putLong(slot + offset, 0);
+      }
+    }
+    putLongVolatile(HEADER_HEAP_USED, 0);
+    putLongVolatile(HEADER_SIZE_COUNT, 0);
+    this.holds.clear();
+  }
+
+  /**
+   * Writes the mapped pages back to the file.
+   */
+  public void force() {
+    for (MappedByteBuffer region : this.regions) {
+      region.force();
+    }
+  }
+
+  @Override
+  public void close() throws IOException {
+    force();
+    putLongVolatile(HEADER_CLEAN, 1);
+    this.regions[0].force();
+    this.channel.close();
+  }
+
+  long getUnits(final long slot) {
+    return getLongVolatile(slot + SLOT_UNITS);
+  }
+
+  void setUnits(final long slot, final long units) {
+    putLongVolatile(slot + SLOT_UNITS, units);
+  }
+
+  void addUnits(final long slot, final long units) {
+    getAndAddLong(slot + SLOT_UNITS, units);
+  }
+
+  boolean compareAndSetUnits(final long slot, final long expectedUnits, final long units) {
+    return compareAndSetLong(slot + SLOT_UNITS, expectedUnits, units);
+  }
+
+  long getCreatedEpoch(final long slot) {
+    return ofThisRun(getLongVolatile(slot + SLOT_CREATED_EPOCH));
+  }
+
+  void setCreatedEpoch(final long slot, final long epoch) {
+    putLongVolatile(slot + SLOT_CREATED_EPOCH, this.runTag | epoch);
+  }
+
+  AccountHolds getHolds(final long slot, final boolean create) {
+    return create ? this.holds.computeIfAbsent(slot, key -> new AccountHolds()) : this.holds.get(slot);
+  }
+
+  /**
+   * Keeps the current balance as the balance of the snapshot {@code epoch}, the off-heap counterpart
+   * of {@link Account#preserveBalance(long)}. The epoch is claimed by storing it negated while the
+   * units are written; as the units are read before the claim, the first claim keeps the balance
+   * from before any change of the epoch.
+   */
+  void preserveUnits(final long slot, final long epoch) {
+    final long preserved = getLongVolatile(slot + SLOT_PRESERVED_EPOCH);
+    if (ofThisRun(Math.abs(preserved)) < epoch) {
+      final long units = getUnits(slot);
+      if (compareAndSetLong(slot + SLOT_PRESERVED_EPOCH, preserved, -(this.runTag | epoch))) {
+        putLong(slot + SLOT_PRESERVED_UNITS, units);
+        putLongVolatile(slot + SLOT_PRESERVED_EPOCH, this.runTag | epoch);
+      }
+    }
+  }
+
+  /**
+   * @return the balance in minor units at the start of the snapshot {@code epoch}
+   */
+  long getUnitsAt(final long slot, final long epoch) {
+    final long tagged = this.runTag | epoch;
+    long preserved;
+    while ((preserved = getLongVolatile(slot + SLOT_PRESERVED_EPOCH)) == -tagged) {
+      Thread.onSpinWait();
+    }
+    return preserved == tagged ? getLong(slot + SLOT_PRESERVED_UNITS) : getUnits(slot);
+  }
+
+  private void fill(final long slot, final byte[] id, final int hash, final long units, final long createdEpoch) {
+    final long idAddress;
+    try {
+      idAddress = allocateId(id.length);
+    } catch (RuntimeException ex) {
+      getAndAddLong(HEADER_SIZE_COUNT, -1);
+      putLongVolatile(slot + SLOT_ID_ADDRESS, 0);
+      throw ex;
+    }
+    final ByteBuffer region = region(idAddress);
+    final int offset = offset(idAddress);
+    for (int i = 0; i < id.length; i++) {
+      region.put(offset + i, id[i]);
+    }
+    putInt(slot + SLOT_ID_LENGTH, id.length);
+    putInt(slot + SLOT_ID_HASH, hash);
+    putLong(slot + SLOT_UNITS, units);
+    putLong(slot + SLOT_CREATED_EPOCH, this.runTag | createdEpoch);
+    putLong(slot + SLOT_PRESERVED_EPOCH, 0);
+    putLong(slot + SLOT_PRESERVED_UNITS, 0);
+    putLongVolatile(slot + SLOT_ID_ADDRESS, idAddress);
+  }
+
+  /**
+   * Reserves room for an id in the heap, starting a new region if it would cross the current one.
+   */
+  private long allocateId(final int length) {
+    if (length >= REGION_SIZE) {
+      throw new IllegalArgumentException("Account id of " + length + " bytes is too long");
+    }
+    while (true) {
+      final long used = getLongVolatile(HEADER_HEAP_USED);
+      long address = this.heapStart + used;
+      if (length > 0 && (address >>> REGION_BITS) != ((address + length - 1) >>> REGION_BITS)) {
+        address = ((address >>> REGION_BITS) + 1) << REGION_BITS;
+      }
+      final long end = address + length - this.heapStart;
+      if (end > this.heapSize) {
+        throw new IllegalStateException("Account id heap is full at " + this.heapSize + " bytes");
+      }
+      if (compareAndSetLong(HEADER_HEAP_USED, used, end)) {
+        return address;
+      }
+    }
+  }
+
+  private boolean matches(final long slot, final long idAddress, final byte[] id, final int hash) {
+    if (getInt(slot + SLOT_ID_HASH) != hash || getInt(slot + SLOT_ID_LENGTH) != id.length) {
+      return false;
+    }
+    final ByteBuffer region = region(idAddress);
+    final int offset = offset(idAddress);
+    for (int i = 0; i < id.length; i++) {
+      if (region.get(offset + i) != id[i]) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private String readId(final long idAddress, final int length) {
+    final byte[] id = new byte[length];
+    final ByteBuffer region = region(idAddress);
+    final int offset = offset(idAddress);
+    for (int i = 0; i < length; i++) {
+      id[i] = region.get(offset + i);
+    }
+    return new String(id, UTF_8);
+  }
+
+  private long awaitPublished(final long slot) {
+    long idAddress;
+    while ((idAddress = getLongVolatile(slot + SLOT_ID_ADDRESS)) == CLAIMED) {
+      Thread.onSpinWait();
+    }
+    return idAddress;
+  }
+
+  private void recover() {
+    long size = 0;
+    for (long index = 0; index < this.slotCount; index++) {
+      final long slot = slotAddress(index);
+      final long idAddress = getLong(slot + SLOT_ID_ADDRESS);
+      if (idAddress == CLAIMED) {
+        putLong(slot + SLOT_ID_ADDRESS, 0);
+      } else if (idAddress > 0) {
+        size++;
+      }
+    }
+    putLongVolatile(HEADER_SIZE_COUNT, size);
+  }
+
+  private long ofThisRun(final long tagged) {
+    return (tagged & ~EPOCH_MASK) == this.runTag ? tagged & EPOCH_MASK : 0;
+  }
+
+  private static int hash(final String accountId) {
+    int hash = accountId.hashCode();
+    hash ^= hash >>> 16;
+    hash *= 0x85EB_CA6B;
+    return hash ^ (hash >>> 13);
+  }
+
+  private static long slotAddress(final long index) {
+    return HEADER_SIZE + index * SLOT_SIZE;
+  }
+
+  private ByteBuffer region(final long address) {
+    return this.regions[(int) (address >>> REGION_BITS)];
+  }
+
+  private static int offset(final long address) {
+    return (int) (address & REGION_MASK);
+  }
+
+  private long getLong(final long address) {
+    return (long) LONGS.get(region(address), offset(address));
+  }
+
+  private long getLongVolatile(final long address) {
+    return (long) LONGS.getVolatile(region(address), offset(address));
+  }
+
+  private void putLong(final long address, final long value) {
+    LONGS.set(region(address), offset(address), value);
+  }
+
+  private void putLongVolatile(final long address, final long value) {
+    LONGS.setVolatile(region(address), offset(address), value);
+  }
+
+  private boolean compareAndSetLong(final long address, final long expected, final long value) {
+    return LONGS.compareAndSet(region(address), offset(address), expected, value);
+  }
+
+  private long getAndAddLong(final long address, final long delta) {
+    return (long) LONGS.getAndAdd(region(address), offset(address), delta);
+  }
+
+  private int getInt(final long address) {
+    return (int) INTS.get(region(address), offset(address));
+  }
+
+  private void putInt(final long address, final int value) {
+    INTS.set(region(address), offset(address), value);
+  }
+}
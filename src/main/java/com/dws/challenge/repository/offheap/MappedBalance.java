@@ -0,0 +1,38 @@
+package com.dws.challenge.repository.offheap;
+
+import com.dws.challenge.domain.FixedPointBalance;
+
+/**
+ * Fixed-point balance read and written in place in the slot of an {@link AccountTable}.
+ */
+final class MappedBalance extends FixedPointBalance {
+
+  private final AccountTable table;
+  private final long slot;
+
+  MappedBalance(final AccountTable table, final long slot) {
+    super(0, table.getScale());
+    this.table = table;
+    this.slot = slot;
+  }
+
+  @Override
+  public long get() {
+    return this.table.getUnits(this.slot);
+  }
+
+  @Override
+  public void set(final long units) {
+    this.table.setUnits(this.slot, units);
+  }
+
+  @Override
+  public void add(final long units) {
+    this.table.addUnits(this.slot, units);
+  }
+
+  @Override
+  public boolean compareAndSet(final long expectedUnits, final long units) {
+    return this.table.compareAndSetUnits(this.slot, expectedUnits, units);
+  }
+}
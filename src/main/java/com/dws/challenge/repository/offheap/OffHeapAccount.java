@@ -0,0 +1,49 @@
+package com.dws.challenge.repository.offheap;
+
+import com.dws.challenge.domain.Account;
+import com.dws.challenge.domain.AccountHolds;
+import com.dws.challenge.domain.FixedPoint;
+
+import java.math.BigDecimal;
+
+/**
+ * Short-lived view of an account in an {@link AccountTable}. Every lookup creates a new one, all
+ * state including the snapshot bookkeeping lives in the table, so views of the same account are
+ * interchangeable.
+ */
+final class OffHeapAccount extends Account {
+
+  private final AccountTable table;
+  private final long slot;
+
+  OffHeapAccount(final String accountId, final AccountTable table, final long slot) {
+    super(accountId, new MappedBalance(table, slot));
+    this.table = table;
+    this.slot = slot;
+  }
+
+  @Override
+  public void preserveBalance(final long epoch) {
+    this.table.preserveUnits(this.slot, epoch);
+  }
+
+  @Override
+  public BigDecimal getBalanceAt(final long epoch) {
+    return FixedPoint.toDecimal(this.table.getUnitsAt(this.slot, epoch), this.table.getScale());
+  }
+
+  @Override
+  public long getCreatedEpoch() {
+    return this.table.getCreatedEpoch(this.slot);
+  }
+
+  @Override
+  public void setCreatedEpoch(final long createdEpoch) {
+    this.table.setCreatedEpoch(this.slot, createdEpoch);
+  }
+
+  @Override
+  protected AccountHolds holds(final boolean create) {
+    return this.table.getHolds(this.slot, create);
+  }
+}
@@ -0,0 +1,242 @@
+package com.dws.challenge.scheduling;
+
+import com.dws.challenge.domain.BatchMode;
+import com.dws.challenge.domain.MoneyTransfer;
+import com.dws.challenge.domain.ScheduledTransfer;
+import com.dws.challenge.domain.TransferResult;
+import com.dws.challenge.exception.AccountNotFoundException;
+import com.dws.challenge.exception.DuplicateAccountIdException;
+import com.dws.challenge.exception.InvalidScheduleException;
+import com.dws.challenge.service.AccountsService;
+import com.dws.challenge.service.BatchMoneyTransferService;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.PriorityQueue;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Collectors;
+
+/**
+ * Holds transfers until their execution time in a {@link TimingWheel} with a resolution of
+ * {@code challenge.scheduling.tick-millis}, so scheduling and cancelling cost the same with millions
+ * of pending transfers.
+ *
+ * A single thread advances the wheel every tick and executes the due transfers, in execution
+ * order, as best-effort batches of {@code challenge.scheduling.batch-size} through
+ * {@link BatchMoneyTransferService}. Each transfer succeeds or fails on its own, as if it had been
+ * requested at that time, and failures are logged. A batch failing unexpectedly counts all its
+ * transfers as failed without affecting the following batches. Pending transfers are kept in
+ * memory only and are lost on restart.
+ */
+@Slf4j
+@Service
+public class ScheduledTransferService implements DisposableBean {
+
+  private final BatchMoneyTransferService batchMoneyTransferService;
+  private final AccountsService accountsService;
+  private final long tickMillis;
+  private final int batchSize;
+  private final long originMillis = System.currentTimeMillis();
+  private final TimingWheel<ScheduledTransfer> wheel = new TimingWheel<>(0);
+  private final Map<String, TimingWheel.Timer<ScheduledTransfer>> pending = new ConcurrentHashMap<>();
+  private final Object executionLock = new Object();
+  private final LongAdder completed = new LongAdder();
+  private final LongAdder failed = new LongAdder();
+  private final ScheduledExecutorService ticker;
+
+  @Autowired
+  public ScheduledTransferService(BatchMoneyTransferService batchMoneyTransferService,
+                                  AccountsService accountsService,
+                                  @Value("${challenge.scheduling.tick-millis:100}") long tickMillis,
+                                  @Value("${challenge.scheduling.batch-size:1000}") int batchSize) {
+    this(batchMoneyTransferService, accountsService, tickMillis, batchSize, true);
+  }
+
+  private ScheduledTransferService(BatchMoneyTransferService batchMoneyTransferService,
+                                   AccountsService accountsService, long tickMillis, int batchSize,
+                                   boolean ticking) {
+    if (tickMillis <= 0 || batchSize <= 0) {
+      throw new IllegalArgumentException("Invalid scheduling settings: tickMillis=" + tickMillis
+        + ", batchSize=" + batchSize);
+    }
+    this.batchMoneyTransferService = batchMoneyTransferService;
+    this.accountsService = accountsService;
+    this.tickMillis = tickMillis;
+    this.batchSize = batchSize;
+    if (ticking) {
+      this.ticker = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        final Thread thread = new Thread(runnable, "transfer-scheduler");
+        thread.setDaemon(true);
+        return thread;
+      });
+      this.ticker.scheduleWithFixedDelay(this::executeDueQuietly, tickMillis, tickMillis, TimeUnit.MILLISECONDS);
+    } else {
+      this.ticker = null;
+    }
+  }
+
+  /**
+   * Creates a service without the background thread, due transfers only run on
+   * {@link #executeDue(Instant)}. For tests.
+   */
+  public static ScheduledTransferService manual(BatchMoneyTransferService batchMoneyTransferService,
+                                                AccountsService accountsService, long tickMillis, int batchSize) {
+    return new ScheduledTransferService(batchMoneyTransferService, accountsService, tickMillis, batchSize, false);
+  }
+
+  /**
+   * Schedules the transfer, an execution time in the past makes it run on the next tick. The
+   * accounts have to exist now, the transfer is checked again when it runs.
+   *
+   * @throws InvalidScheduleException if the execution time is beyond the scheduling horizon
+   */
+  public ScheduledTransfer schedule(final MoneyTransfer moneyTransfer, final Instant executeAt) {
+    if (moneyTransfer.getFromAccountId().equals(moneyTransfer.getToAccountId())) {
+      throw new DuplicateAccountIdException("Cannot transfer money to the same account: "
+        + moneyTransfer.getFromAccountId());
+    }
+    checkExists(moneyTransfer.getFromAccountId());
+    checkExists(moneyTransfer.getToAccountId());
+
+    final ScheduledTransfer scheduledTransfer = new ScheduledTransfer(UUID.randomUUID().toString(), moneyTransfer,
+      executeAt);
+    // Rounded up, a transfer never runs before its time
+    final long deadlineTick = Math.floorDiv(executeAt.toEpochMilli() - this.originMillis + this.tickMillis - 1,
+      this.tickMillis);
+    synchronized (this.wheel) {
+      if (deadlineTick - this.wheel.getCurrentTick() > TimingWheel.MAX_DELAY_TICKS) {
+        throw new InvalidScheduleException("Transfers can be scheduled at most "
+          + Duration.ofMillis(TimingWheel.MAX_DELAY_TICKS * this.tickMillis).toDays() + " days ahead");
+      }
+      this.pending.put(scheduledTransfer.getId(), this.wheel.schedule(scheduledTransfer, deadlineTick));
+    }
+    return scheduledTransfer;
+  }
+
+  /**
+   * @return the cancelled transfer, empty if there is no pending transfer with the id because it
+   * never existed, was cancelled or has started executing
+   */
+  public Optional<ScheduledTransfer> cancel(final String id) {
+    synchronized (this.wheel) {
+      final TimingWheel.Timer<ScheduledTransfer> timer = this.pending.remove(id);
+      if (timer == null) {
+        return Optional.empty();
+      }
+      this.wheel.cancel(timer);
+      return Optional.of(timer.getValue());
+    }
+  }
+
+  /**
+   * @param accountId only lists transfers from or to this account, all when null
+   * @return the first {@code limit} pending transfers in execution order
+   */
+  public List<ScheduledTransfer> getPending(final String accountId, final int limit) {
+    // Keeps the first transfers found so far, the last one on top to be replaced by an earlier one
+    final PriorityQueue<ScheduledTransfer> first = new PriorityQueue<>(
+      ScheduledTransfer.EXECUTION_ORDER.reversed());
+    for (TimingWheel.Timer<ScheduledTransfer> timer : this.pending.values()) {
+      final ScheduledTransfer scheduledTransfer = timer.getValue();
+      if (accountId == null || scheduledTransfer.involves(accountId)) {
+        first.add(scheduledTransfer);
+        if (first.size() > limit) {
+          first.poll();
+        }
+      }
+    }
+    final List<ScheduledTransfer> ordered = new ArrayList<>(first);
+    ordered.sort(ScheduledTransfer.EXECUTION_ORDER);
+    return ordered;
+  }
+
+  /**
+   * Advances the wheel to {@code now} and executes the transfers that became due.
+   *
+   * @return the number of transfers executed, successfully or not
+   */
+  public int executeDue(final Instant now) {
+    // One execution at a time, so calls outside the ticker thread still see earlier transfers applied
+    synchronized (this.executionLock) {
+      final List<ScheduledTransfer> due = new ArrayList<>();
+      synchronized (this.wheel) {
+        this.wheel.advance(Math.floorDiv(now.toEpochMilli() - this.originMillis, this.tickMillis), timer -> {
+          this.pending.remove(timer.getValue().getId());
+          due.add(timer.getValue());
+        });
+      }
+      due.sort(ScheduledTransfer.EXECUTION_ORDER);
+
+      for (int start = 0; start < due.size(); start += this.batchSize) {
+        final List<ScheduledTransfer> batch = due.subList(start, Math.min(start + this.batchSize, due.size()));
+        final List<TransferResult> results;
+        try {
+          results = this.batchMoneyTransferService.transferMoney(
+            batch.stream().map(ScheduledTransfer::getTransfer).collect(Collectors.toList()), BatchMode.BEST_EFFORT);
+        } catch (RuntimeException ex) {
+          // Some of the batch may have been applied, so it isn't retried, and the following batches still run
+          this.failed.add(batch.size());
+          log.error("Failed to execute scheduled transfers {}, they are not retried",
+            batch.stream().map(ScheduledTransfer::getId).collect(Collectors.joining(", ")), ex);
+          continue;
+        }
+        for (TransferResult result : results) {
+          if (result.isCompleted()) {
+            this.completed.increment();
+          } else {
+            this.failed.increment();
+            log.warn("Scheduled transfer {} failed: {}", batch.get(result.getIndex()).getId(), result.getMessage());
+          }
+        }
+      }
+      return due.size();
+    }
+  }
+
+  public int getPendingCount() {
+    return this.pending.size();
+  }
+
+  public long getCompleted() {
+    return this.completed.sum();
+  }
+
+  public long getFailed() {
+    return this.failed.sum();
+  }
+
+  @Override
+  public void destroy() {
+    if (this.ticker != null) {
+      this.ticker.shutdownNow();
+    }
+  }
+
+  private void executeDueQuietly() {
+    try {
+      executeDue(Instant.now());
+    } catch (RuntimeException e) {
+      log.error("Failed to execute due scheduled transfers", e);
+    }
+  }
+
+  private void checkExists(final String accountId) {
+    if (this.accountsService.getAccount(accountId) == null) {
+      throw new AccountNotFoundException(accountId);
+    }
+  }
+}
@@ -0,0 +1,200 @@
+package com.dws.challenge.scheduling;
+
+import java.util.function.Consumer;
+
+/**
+ * Hierarchical timing wheel holding values until a deadline, measured in ticks.
+ *
+ * There are {@value #LEVELS} wheels of 256 slots, a slot of level {@code n} covering {@code 256^n}
+ * ticks. A timer goes to the lowest level whose span covers its delay, so scheduling is a list
+ * insert and cancelling a list unlink, both O(1) whatever the number of timers. When the clock
+ * crosses the boundary of a higher level slot, that slot is cascaded: its timers move down to the
+ * level matching their remaining delay, until they expire from level 0 on their exact tick. Each
+ * timer is moved at most {@code LEVELS - 1} times.
+ *
+ * Not thread safe, callers guard all methods with one lock.
+ */
+public class TimingWheel<T> {
+
+  private static final int SLOT_BITS = 8;
+  private static final int SLOTS = 1 << SLOT_BITS;
+  private static final int SLOT_MASK = SLOTS - 1;
+  static final int LEVELS = 4;
+
+  /** The longest delay a timer can be scheduled with. */
+  public static final long MAX_DELAY_TICKS = (1L << (SLOT_BITS * LEVELS)) - 1;
+
+  public static final class Timer<T> {
+
+    private final T value;
+    private final long deadlineTick;
+    private Timer<T> previous;
+    private Timer<T> next;
+
+    private Timer(final T value, final long deadlineTick) {
+      this.value = value;
+      this.deadlineTick = deadlineTick;
+    }
+
+    public T getValue() {
+      return this.value;
+    }
+
+    public long getDeadlineTick() {
+      return this.deadlineTick;
+    }
+
+    private boolean isScheduled() {
+      return this.next != null;
+    }
+  }
+
+  private final Timer<T>[] slots;
+  private long currentTick;
+  private int size;
+
+  @SuppressWarnings("unchecked")
+  public TimingWheel(final long startTick) {
+    this.currentTick = startTick;
+    this.slots = new Timer[LEVELS * SLOTS];
+    for (int i = 0; i < this.slots.length; i++) {
+      final Timer<T> sentinel = new Timer<>(null, -1);
+      sentinel.previous = sentinel;
+      sentinel.next = sentinel;
+      this.slots[i] = sentinel;
+    }
+  }
+
+  /**
+   * Schedules the value, a deadline that already passed expires on the next tick.
+   *
+   * @throws IllegalArgumentException if the deadline is more than {@link #MAX_DELAY_TICKS} ahead
+   */
+  public Timer<T> schedule(final T value, final long deadlineTick) {
+    if (deadlineTick - this.currentTick > MAX_DELAY_TICKS) {
+      throw new IllegalArgumentException("Deadline " + deadlineTick + " is more than " + MAX_DELAY_TICKS
+        + " ticks after " + this.currentTick);
+    }
+    final Timer<T> timer = new Timer<>(value, deadlineTick);
+    place(timer, Math.max(deadlineTick, this.currentTick + 1));
+    this.size++;
+    return timer;
+  }
+
+  /**
+   * @return false if the timer already expired or was cancelled
+   */
+  public boolean cancel(final Timer<T> timer) {
+    if (!timer.isScheduled()) {
+      return false;
+    }
+    unlink(timer);
+    this.size--;
+    return true;
+  }
+
+  /**
+   * Moves the clock forward to {@code tick}, passing every timer whose deadline is reached to
+   * {@code expired}, in deadline order across ticks.
+   */
+  public void advance(final long tick, final Consumer<? super Timer<T>> expired) {
+    if (this.size == 0) {
+      this.currentTick = Math.max(this.currentTick, tick);
+      return;
+    }
+    while (this.currentTick < tick && this.size > 0) {
+      this.currentTick++;
+      // Higher levels first, their timers may move into the level 0 slot expiring now
+      for (int level = LEVELS - 1; level > 0; level--) {
+        if ((this.currentTick & ((1L << (SLOT_BITS * level)) - 1)) == 0) {
+          cascade(level, expired);
+        }
+      }
+      drain(slotOf(0, this.currentTick), expired);
+    }
+    this.currentTick = Math.max(this.currentTick, tick);
+  }
+
+  public long getCurrentTick() {
+    return this.currentTick;
+  }
+
+  public int size() {
+    return this.size;
+  }
+
+  private void cascade(final int level, final Consumer<? super Timer<T>> expired) {
+    Timer<T> timer = detach(slotOf(level, this.currentTick));
+    while (timer != null) {
+      final Timer<T> next = timer.next;
+      if (timer.deadlineTick <= this.currentTick) {
+        expire(timer);
+        expired.accept(timer);
+      } else {
+        place(timer, timer.deadlineTick);
+      }
+      timer = next;
+    }
+  }
+
+  private void drain(final int slot, final Consumer<? super Timer<T>> expired) {
+    Timer<T> timer = detach(slot);
+    while (timer != null) {
+      final Timer<T> next = timer.next;
+      expire(timer);
+      expired.accept(timer);
+      timer = next;
+    }
+  }
+
+  private void expire(final Timer<T> timer) {
+    timer.previous = null;
+    timer.next = null;
+    this.size--;
+  }
+
+  /**
+   * Empties the slot.
+   *
+   * @return its timers as a chain linked by {@code next} and ending with null
+   */
+  private Timer<T> detach(final int slot) {
+    final Timer<T> sentinel = this.slots[slot];
+    if (sentinel.next == sentinel) {
+      return null;
+    }
+    final Timer<T> first = sentinel.next;
+    sentinel.previous.next = null;
+    sentinel.previous = sentinel;
+    sentinel.next = sentinel;
+    return first;
+  }
+
+  /**
+   * Links the timer into the lowest level whose slots span its delay. The delay is at least one
+   * tick, so a timer never lands in the level 0 slot of the current tick.
+   */
+  private void place(final Timer<T> timer, final long deadlineTick) {
+    final long delay = deadlineTick - this.currentTick;
+    int level = 0;
+    while (level < LEVELS - 1 && delay >= 1L << (SLOT_BITS * (level + 1))) {
+      level++;
+    }
+    final Timer<T> sentinel = this.slots[slotOf(level, deadlineTick)];
+    timer.previous = sentinel.previous;
+    timer.next = sentinel;
+    sentinel.previous.next = timer;
+    sentinel.previous = timer;
+  }
+
+  private static void unlink(final Timer<?> timer) {
+    timer.previous.next = timer.next;
+    timer.next.previous = timer.previous;
+    timer.previous = null;
+    timer.next = null;
+  }
+
+  private static int slotOf(final int level, final long tick) {
+    return level * SLOTS + (int) ((tick >>> (SLOT_BITS * level)) & SLOT_MASK);
+  }
+}
@@ -1,27 +1,153 @@
 package com.dws.challenge.service;
 
+import com.dws.challenge.cache.AccountViewCache;
+import com.dws.challenge.config.BalanceProperties;
 import com.dws.challenge.domain.Account;
+import com.dws.challenge.exception.DuplicateAccountIdException;
+import com.dws.challenge.exception.InvalidAmountException;
+import com.dws.challenge.exception.UnsupportedCurrencyException;
+import com.dws.challenge.index.AccountIndex;
+import com.dws.challenge.metrics.TransferMetrics;
 import com.dws.challenge.repository.AccountsRepository;
+import com.dws.challenge.snapshot.SnapshotCoordinator;
 import lombok.Getter;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Currency;
+import java.util.List;
+
 @Service
 public class AccountsService {
 
   @Getter
   private final AccountsRepository accountsRepository;
 
+  private final BalanceProperties balanceProperties;
+
+  private final TransferMetrics transferMetrics;
+
+  private final SnapshotCoordinator snapshotCoordinator;
+
+  private final AccountViewCache accountViewCache;
+
+  private final AccountIndex accountIndex;
+
   @Autowired
-  public AccountsService(AccountsRepository accountsRepository) {
+  public AccountsService(AccountsRepository accountsRepository, BalanceProperties balanceProperties,
+                         TransferMetrics transferMetrics, SnapshotCoordinator snapshotCoordinator,
+                         AccountViewCache accountViewCache, AccountIndex accountIndex) {
     this.accountsRepository = accountsRepository;
+    this.balanceProperties = balanceProperties;
+    this.transferMetrics = transferMetrics;
+    this.snapshotCoordinator = snapshotCoordinator;
+    this.accountViewCache = accountViewCache;
+    this.accountIndex = accountIndex;
   }
 
   public void createAccount(Account account) {
-    this.accountsRepository.createAccount(account);
+    prepare(account);
+    final long start = this.transferMetrics.start();
+    try {
+      this.snapshotCoordinator.create(account, () -> this.accountsRepository.createAccount(account));
+      // A cleared repository may have had an account with the same id
+      this.accountViewCache.invalidate(account.getAccountId());
+      this.accountIndex.accountCreated(account.getAccountId());
+    } finally {
+      this.transferMetrics.recordAccountCreation(start);
+    }
+  }
+
+  /**
+   * Creates the accounts whose ids aren't taken yet.
+   *
+   * @return for each account, in order, the exception it failed with or null if it was created
+   */
+  public List<RuntimeException> createAccounts(List<Account> accounts) {
+    final List<RuntimeException> failures = new ArrayList<>(Collections.nCopies(accounts.size(), null));
+    final List<Account> creatable = new ArrayList<>(accounts.size());
+    final List<Integer> creatableIndexes = new ArrayList<>(accounts.size());
+    for (int i = 0; i < accounts.size(); i++) {
+      final Account account = accounts.get(i);
+      try {
+        prepare(account);
+        creatable.add(account);
+        creatableIndexes.add(i);
+      } catch (InvalidAmountException ex) {
+        failures.set(i, ex);
+      }
+    }
+
+    final long start = this.transferMetrics.start();
+    try {
+      this.snapshotCoordinator.create(creatable, () -> {
+        final List<DuplicateAccountIdException> duplicates = this.accountsRepository.createAccounts(creatable);
+        for (int i = 0; i < duplicates.size(); i++) {
+          failures.set(creatableIndexes.get(i), duplicates.get(i));
+        }
+      });
+      for (int i = 0; i < creatable.size(); i++) {
+        final String accountId = creatable.get(i).getAccountId();
+        this.accountViewCache.invalidate(accountId);
+        if (failures.get(creatableIndexes.get(i)) == null) {
+          this.accountIndex.accountCreated(accountId);
+        }
+      }
+    } finally {
+      this.transferMetrics.recordAccountCreation(start);
+    }
+    return failures;
+  }
+
+  /**
+   * Assigns the default currency to an account without one and switches its balance to the
+   * representation in use.
+   *
+   * @throws UnsupportedCurrencyException if the currency isn't an ISO 4217 code
+   */
+  private void prepare(Account account) {
+    if (account.getCurrency() == null) {
+      account.setCurrency(this.balanceProperties.getCurrency());
+    }
+    try {
+      Currency.getInstance(account.getCurrency());
+    } catch (IllegalArgumentException ex) {
+      throw new UnsupportedCurrencyException("Unknown currency " + account.getCurrency());
+    }
+    if (this.balanceProperties.isFixedPoint() && account.getFixedPointBalance() == null) {
+      account.switchToFixedPoint(this.balanceProperties.scaleOf(account.getCurrency()));
+    }
+  }
+
+  /**
+   * Opens a consistent snapshot of all balances, which must be closed once read.
+   */
+  public SnapshotCoordinator.Snapshot openSnapshot() throws InterruptedException {
+    return this.snapshotCoordinator.open(this.accountsRepository);
   }
 
   public Account getAccount(String accountId) {
-    return this.accountsRepository.getAccount(accountId);
+    final long start = this.transferMetrics.start();
+    try {
+      return this.accountsRepository.getAccount(accountId);
+    } finally {
+      this.transferMetrics.recordAccountLookup(start);
+    }
+  }
+
+  /**
+   * @return the account as JSON, serialized again only if it changed since the last call, or null
+   *         if there is no such account
+   */
+  public byte[] getAccountJson(String accountId) {
+    final long start = this.transferMetrics.start();
+    try {
+      final Account account = this.accountsRepository.getAccount(accountId);
+      return account == null ? null : this.accountViewCache.getJson(account);
+    } finally {
+      this.transferMetrics.recordAccountLookup(start);
+    }
   }
 }
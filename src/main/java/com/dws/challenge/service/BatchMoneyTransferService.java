@@ -0,0 +1,155 @@
+package com.dws.challenge.service;
+
+import com.dws.challenge.domain.BatchMode;
+import com.dws.challenge.domain.MoneyTransfer;
+import com.dws.challenge.domain.TransferResult;
+import com.dws.challenge.exception.AccountNotFoundException;
+import com.dws.challenge.exception.DuplicateAccountIdException;
+import com.dws.challenge.exception.InsufficientFundsException;
+import com.dws.challenge.exception.InvalidAmountException;
+import com.dws.challenge.exception.TransferBatchAbortedException;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+/**
+ * Executes batches of transfers through {@link MoneyTransferService}.
+ *
+ * Best-effort batches are split into groups of transfers connected by a shared account. Groups are
+ * independent of each other and run in parallel, while the transfers inside a group keep the
+ * request order.
+ */
+@Service
+public class BatchMoneyTransferService implements DisposableBean {
+
+  private final MoneyTransferService moneyTransferService;
+  private final ExecutorService executor;
+
+  @Autowired
+  public BatchMoneyTransferService(MoneyTransferService moneyTransferService,
+                                   @Value("${challenge.transfer.batch.parallelism:0}") int parallelism) {
+    this.moneyTransferService = moneyTransferService;
+    final AtomicInteger threadNumber = new AtomicInteger();
+    this.executor = Executors.newFixedThreadPool(
+      parallelism > 0 ? parallelism : Runtime.getRuntime().availableProcessors(),
+      runnable -> {
+        final Thread thread = new Thread(runnable, "batch-transfer-" + threadNumber.incrementAndGet());
+        thread.setDaemon(true);
+        return thread;
+      });
+  }
+
+  public List<TransferResult> transferMoney(final List<MoneyTransfer> moneyTransfers, final BatchMode mode) {
+    return mode == BatchMode.ALL_OR_NOTHING
+      ? transferAllOrNothing(moneyTransfers)
+      : transferBestEffort(moneyTransfers);
+  }
+
+  @Override
+  public void destroy() {
+    this.executor.shutdownNow();
+  }
+
+  private List<TransferResult> transferAllOrNothing(final List<MoneyTransfer> moneyTransfers) {
+    try {
+      this.moneyTransferService.transferMoneyAtomically(moneyTransfers);
+      return IntStream.range(0, moneyTransfers.size())
+        .mapToObj(TransferResult::completed)
+        .collect(Collectors.toList());
+    } catch (TransferBatchAbortedException ex) {
+      return IntStream.range(0, moneyTransfers.size())
+        .mapToObj(i -> i == ex.getFailedIndex() ? TransferResult.failed(i, ex.getCause()) : TransferResult.aborted(i))
+        .collect(Collectors.toList());
+    }
+  }
+
+  private List<TransferResult> transferBestEffort(final List<MoneyTransfer> moneyTransfers) {
+    final TransferResult[] results = new TransferResult[moneyTransfers.size()];
+    final List<List<Integer>> groups = groupByConnectedAccounts(moneyTransfers);
+
+    if (groups.size() == 1) {
+      transferEach(moneyTransfers, groups.get(0), results);
+      return Arrays.asList(results);
+    }
+
+    final List<Future<?>> futures = new ArrayList<>(groups.size());
+    for (List<Integer> group : groups) {
+      futures.add(this.executor.submit(() -> transferEach(moneyTransfers, group, results)));
+    }
+    for (Future<?> future : futures) {
+      try {
+        future.get();
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw new IllegalStateException("Interrupted while waiting for batch transfers", e);
+      } catch (ExecutionException e) {
+        if (e.getCause() instanceof RuntimeException) {
+          throw (RuntimeException) e.getCause();
+        }
+        throw new IllegalStateException(e.getCause());
+      }
+    }
+    return Arrays.asList(results);
+  }
+
+  private void transferEach(final List<MoneyTransfer> moneyTransfers, final List<Integer> indexes,
+                            final TransferResult[] results) {
+    for (int index : indexes) {
+      try {
+        this.moneyTransferService.transferMoney(moneyTransfers.get(index));
+        results[index] = TransferResult.completed(index);
+      } catch (AccountNotFoundException | InsufficientFundsException | DuplicateAccountIdException
+               | InvalidAmountException ex) {
+        results[index] = TransferResult.failed(index, ex);
+      }
+    }
+  }
+
+  /**
+   * Union-find over account ids: transfers end up in the same group when they are linked,
+   * directly or through other transfers, by a common account.
+   */
+  static List<List<Integer>> groupByConnectedAccounts(final List<MoneyTransfer> moneyTransfers) {
+    final Map<String, Integer> accountIndexes = new HashMap<>();
+    final int[] parents = new int[2 * moneyTransfers.size()];
+    for (int i = 0; i < parents.length; i++) {
+      parents[i] = i;
+    }
+
+    for (MoneyTransfer moneyTransfer : moneyTransfers) {
+      final int from = accountIndexes.computeIfAbsent(moneyTransfer.getFromAccountId(), id -> accountIndexes.size());
+      final int to = accountIndexes.computeIfAbsent(moneyTransfer.getToAccountId(), id -> accountIndexes.size());
+      parents[find(parents, from)] = find(parents, to);
+    }
+
+    final Map<Integer, List<Integer>> groups = new LinkedHashMap<>();
+    for (int i = 0; i < moneyTransfers.size(); i++) {
+      final int root = find(parents, accountIndexes.get(moneyTransfers.get(i).getFromAccountId()));
+      groups.computeIfAbsent(root, r -> new ArrayList<>()).add(i);
+    }
+    return new ArrayList<>(groups.values());
+  }
+
+  private static int find(final int[] parents, int node) {
+    while (parents[node] != node) {
+      parents[node] = parents[parents[node]];
+      node = parents[node];
+    }
+    return node;
+  }
+}
@@ -0,0 +1,80 @@
+package com.dws.challenge.service;
+
+import com.dws.challenge.domain.Account;
+import com.dws.challenge.domain.AccountCreationResult;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import javax.validation.ConstraintViolation;
+import javax.validation.Validator;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+/**
+ * Creates accounts in chunks through {@link AccountsService#createAccounts}.
+ *
+ * Bean validation of a chunk runs in parallel on the common pool, the valid accounts are then
+ * inserted together, so a journaled repository waits for one flush per chunk. Failing accounts
+ * are reported and skipped, the rest of the chunk is created.
+ */
+@Service
+public class BulkAccountsService {
+
+  private final AccountsService accountsService;
+  private final Validator validator;
+
+  @Autowired
+  public BulkAccountsService(AccountsService accountsService, Validator validator) {
+    this.accountsService = accountsService;
+    this.validator = validator;
+  }
+
+  /**
+   * @return the accounts that were not created, by their index in the list and in order
+   */
+  public List<AccountCreationResult> createAccounts(final List<Account> accounts) {
+    final String[] violations = new String[accounts.size()];
+    IntStream.range(0, accounts.size()).parallel()
+      .forEach(i -> violations[i] = validate(accounts.get(i)));
+
+    final List<AccountCreationResult> failures = new ArrayList<>();
+    final List<Account> validAccounts = new ArrayList<>(accounts.size());
+    final List<Integer> validIndexes = new ArrayList<>(accounts.size());
+    for (int i = 0; i < accounts.size(); i++) {
+      if (violations[i] == null) {
+        validAccounts.add(accounts.get(i));
+        validIndexes.add(i);
+      } else {
+        failures.add(AccountCreationResult.invalid(i, violations[i]));
+      }
+    }
+    if (validAccounts.isEmpty()) {
+      return failures;
+    }
+
+    final List<RuntimeException> creationFailures = this.accountsService.createAccounts(validAccounts);
+    for (int i = 0; i < creationFailures.size(); i++) {
+      if (creationFailures.get(i) != null) {
+        failures.add(AccountCreationResult.failed(validIndexes.get(i), creationFailures.get(i)));
+      }
+    }
+    failures.sort((first, second) -> Integer.compare(first.getIndex(), second.getIndex()));
+    return failures;
+  }
+
+  /**
+   * @return the violations joined into one message, or null if the account is valid
+   */
+  private String validate(final Account account) {
+    final Set<ConstraintViolation<Account>> violations = this.validator.validate(account);
+    if (violations.isEmpty()) {
+      return null;
+    }
+    return violations.stream()
+      .map(violation -> violation.getPropertyPath() + " " + violation.getMessage())
+      .collect(Collectors.joining(", "));
+  }
+}
@@ -1,16 +1,30 @@
 package com.dws.challenge.service;
 
+import com.dws.challenge.cache.AccountViewCache;
 import com.dws.challenge.domain.Account;
 import com.dws.challenge.domain.MoneyTransfer;
+import com.dws.challenge.domain.TransferStatus;
+import com.dws.challenge.engine.TransferEngine;
 import com.dws.challenge.exception.AccountNotFoundException;
 import com.dws.challenge.exception.DuplicateAccountIdException;
-import com.dws.challenge.exception.InsufficientFundsException;
+import com.dws.challenge.exception.InvalidAmountException;
+import com.dws.challenge.exception.TransferBatchAbortedException;
+import com.dws.challenge.fx.FxRateTable;
+import com.dws.challenge.index.AccountIndex;
+import com.dws.challenge.ledger.TransactionLedger;
+import com.dws.challenge.metrics.TransferMetrics;
+import com.dws.challenge.snapshot.SnapshotCoordinator;
 import lombok.AccessLevel;
 import lombok.RequiredArgsConstructor;
 import lombok.experimental.FieldDefaults;
 import org.springframework.stereotype.Service;
 
 import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
 
 import static java.util.Optional.ofNullable;
 
@@ -21,54 +35,168 @@ public class MoneyTransferService {
 
   AccountsService accountsService;
   NotificationService notificationService;
+  TransferEngine transferEngine;
+  TransferMetrics transferMetrics;
+  TransactionLedger transactionLedger;
+  SnapshotCoordinator snapshotCoordinator;
+  AccountViewCache accountViewCache;
+  FxRateTable fxRateTable;
+  AccountIndex accountIndex;
 
   public void transferMoney(final MoneyTransfer moneyTransfer) {
+    transfer(moneyTransfer, null);
+  }
+
+  /**
+   * Transfers part or all of the amount reserved by a hold on the source account, releasing the
+   * hold in the same step. Whatever the capture leaves of the hold is released too.
+   *
+   * @return false if the hold is no longer active, nothing is transferred then
+   */
+  public boolean captureHold(final MoneyTransfer moneyTransfer, final String holdId) {
+    return transfer(moneyTransfer, holdId);
+  }
+
+  /**
+   * @param holdId the hold the amount is captured from, null to take it from the available balance
+   * @return false if the hold is no longer active
+   */
+  private boolean transfer(final MoneyTransfer moneyTransfer, final String holdId) {
+    final long start = this.transferMetrics.start();
+    TransferStatus outcome = null;
+    final boolean[] applied = {true};
+    final Account fromAccount;
+    final Account toAccount;
+    final BigDecimal creditedAmount;
+    try {
+      checkDistinctAccounts(moneyTransfer);
+
+      fromAccount = findAccount(moneyTransfer.getFromAccountId());
+      toAccount = findAccount(moneyTransfer.getToAccountId());
+      creditedAmount = creditedAmount(fromAccount, toAccount, moneyTransfer.getAmount());
+
+      try {
+        this.snapshotCoordinator.execute(fromAccount, toAccount, () -> {
+          if (holdId == null) {
+            this.transferEngine.transfer(fromAccount, toAccount, moneyTransfer.getAmount(), creditedAmount);
+          } else {
+            applied[0] = this.transferEngine.capture(fromAccount, toAccount, holdId, moneyTransfer.getAmount(),
+              creditedAmount);
+          }
+        });
+      } finally {
+        // Also after failures, some engines briefly change a balance before reverting it
+        this.accountViewCache.invalidate(fromAccount.getAccountId());
+        this.accountViewCache.invalidate(toAccount.getAccountId());
+        this.accountIndex.markChanged(fromAccount.getAccountId());
+        this.accountIndex.markChanged(toAccount.getAccountId());
+      }
+      if (applied[0]) {
+        // Recorded outside the engine's critical section, the history order is only approximate
+        recordInLedger(fromAccount, toAccount, moneyTransfer.getAmount(), creditedAmount);
+        outcome = TransferStatus.COMPLETED;
+      }
+    } catch (RuntimeException ex) {
+      outcome = outcomeOf(ex);
+      throw ex;
+    } finally {
+      // A hold that is gone was captured, voided or expired before, that is not a failed transfer
+      if (applied[0]) {
+        this.transferMetrics.recordTransfer(start, outcome);
+      }
+    }
+    if (!applied[0]) {
+      return false;
+    }
+
+    // Notifications are sent once the balances are committed, so a slow backend doesn't hold the locks
+    notifyAboutTransfer(fromAccount, toAccount, moneyTransfer.getAmount(), creditedAmount);
+    return true;
+  }
+
+  /**
+   * Applies either all transfers or none of them.
+   *
+   * @throws TransferBatchAbortedException carrying the index and cause of the first failed transfer
+   */
+  public void transferMoneyAtomically(final List<MoneyTransfer> moneyTransfers) {
+    final Map<String, Account> accounts = new HashMap<>();
+    final List<BigDecimal> creditedAmounts = new ArrayList<>(moneyTransfers.size());
+    for (int i = 0; i < moneyTransfers.size(); i++) {
+      final MoneyTransfer moneyTransfer = moneyTransfers.get(i);
+      try {
+        checkDistinctAccounts(moneyTransfer);
+        final Account fromAccount = accounts.computeIfAbsent(moneyTransfer.getFromAccountId(), this::findAccount);
+        final Account toAccount = accounts.computeIfAbsent(moneyTransfer.getToAccountId(), this::findAccount);
+        creditedAmounts.add(creditedAmount(fromAccount, toAccount, moneyTransfer.getAmount()));
+      } catch (AccountNotFoundException | DuplicateAccountIdException | InvalidAmountException ex) {
+        throw new TransferBatchAbortedException(i, ex);
+      }
+    }
+
+    try {
+      this.snapshotCoordinator.execute(accounts.values(),
+        () -> this.transferEngine.transferAtomically(moneyTransfers, creditedAmounts, accounts));
+    } finally {
+      for (String accountId : accounts.keySet()) {
+        this.accountViewCache.invalidate(accountId);
+        this.accountIndex.markChanged(accountId);
+      }
+    }
+    for (int i = 0; i < moneyTransfers.size(); i++) {
+      final MoneyTransfer moneyTransfer = moneyTransfers.get(i);
+      recordInLedger(accounts.get(moneyTransfer.getFromAccountId()), accounts.get(moneyTransfer.getToAccountId()),
+        moneyTransfer.getAmount(), creditedAmounts.get(i));
+    }
+    for (int i = 0; i < moneyTransfers.size(); i++) {
+      final MoneyTransfer moneyTransfer = moneyTransfers.get(i);
+      notifyAboutTransfer(accounts.get(moneyTransfer.getFromAccountId()),
+        accounts.get(moneyTransfer.getToAccountId()), moneyTransfer.getAmount(), creditedAmounts.get(i));
+    }
+  }
+
+  private static TransferStatus outcomeOf(final RuntimeException ex) {
+    try {
+      return TransferStatus.of(ex);
+    } catch (RuntimeException unexpected) {
+      return null;
+    }
+  }
+
+  private void checkDistinctAccounts(final MoneyTransfer moneyTransfer) {
     if (moneyTransfer.getFromAccountId().equals(moneyTransfer.getToAccountId())) {
       throw new DuplicateAccountIdException("Cannot transfer money to the same account: "
         + moneyTransfer.getFromAccountId());
     }
+  }
 
-    final Account fromAccount = ofNullable(this.accountsService.getAccount(moneyTransfer.getFromAccountId()))
-      .orElseThrow(() -> new AccountNotFoundException(moneyTransfer.getFromAccountId()));
-
-    final Account toAccount = ofNullable(this.accountsService.getAccount(moneyTransfer.getToAccountId()))
-      .orElseThrow(() -> new AccountNotFoundException(moneyTransfer.getToAccountId()));
-
-    final Object firstLock;
-    final Object secondLock;
-
-    /*
-    Locking should be done on both accounts to perform safe transfer.
-    More over the order of locking is important to avoid deadlock.
-
-    If the condition below is commended out and locks aren't ordered:
-      firstLock = fromAccount.getAccountId().intern();
-      secondLock = toAccount.getAccountId().intern();
-    Then the code is deadlock-prone.
-    */
-    if (fromAccount.getAccountId().compareTo(toAccount.getAccountId()) > 0) {
-      firstLock = fromAccount.getAccountId().intern();
-      secondLock = toAccount.getAccountId().intern();
-    } else {
-      firstLock = toAccount.getAccountId().intern();
-      secondLock = fromAccount.getAccountId().intern();
-    }
+  private Account findAccount(final String accountId) {
+    return ofNullable(this.accountsService.getAccount(accountId))
+      .orElseThrow(() -> new AccountNotFoundException(accountId));
+  }
 
-    synchronized (firstLock) {
-      synchronized (secondLock) {
-        final BigDecimal fromAccountNewBalance = fromAccount.getBalance().subtract(moneyTransfer.getAmount());
-        if (fromAccountNewBalance.compareTo(BigDecimal.ZERO) < 0) {
-          throw new InsufficientFundsException(fromAccount.getAccountId());
-        }
-        fromAccount.setBalance(fromAccountNewBalance);
-        this.notificationService.notifyAboutTransfer(fromAccount,
-                "sent " + moneyTransfer.getAmount() + " to " + toAccount.getAccountId());
-
-        final BigDecimal toAccountNewBalance = toAccount.getBalance().add(moneyTransfer.getAmount());
-        toAccount.setBalance(toAccountNewBalance);
-        this.notificationService.notifyAboutTransfer(toAccount,
-                "received " + moneyTransfer.getAmount() + " from " + fromAccount.getAccountId());
-      }
+  private void recordInLedger(final Account fromAccount, final Account toAccount, final BigDecimal amount,
+                              final BigDecimal creditedAmount) {
+    this.transactionLedger.record(fromAccount.getAccountId(), toAccount.getAccountId(), amount,
+      fromAccount.getCurrency(), creditedAmount, toAccount.getCurrency());
+  }
+
+  /**
+   * The amount is in the source account's currency, the destination is credited its value in its
+   * own currency at the current exchange rate.
+   */
+  private BigDecimal creditedAmount(final Account fromAccount, final Account toAccount, final BigDecimal amount) {
+    if (Objects.equals(fromAccount.getCurrency(), toAccount.getCurrency())) {
+      return amount;
     }
+    return this.fxRateTable.convert(amount, fromAccount.getCurrency(), toAccount.getCurrency());
+  }
+
+  private void notifyAboutTransfer(final Account fromAccount, final Account toAccount, final BigDecimal amount,
+                                   final BigDecimal creditedAmount) {
+    this.notificationService.notifyAboutTransfer(fromAccount,
+            TransferDescription.sent(amount, toAccount.getAccountId()));
+    this.notificationService.notifyAboutTransfer(toAccount,
+            TransferDescription.received(creditedAmount, fromAccount.getAccountId()));
   }
 }
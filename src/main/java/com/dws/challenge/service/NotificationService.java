@@ -2,7 +2,23 @@ package com.dws.challenge.service;
 
 import com.dws.challenge.domain.Account;
 
+import java.util.List;
+
 public interface NotificationService {
 
   void notifyAboutTransfer(Account account, String transferDescription);
+
+  /**
+   * Same as {@link #notifyAboutTransfer(Account, String)}, implementations that deliver later can
+   * keep the description and format it when delivering.
+   */
+  default void notifyAboutTransfer(Account account, TransferDescription transferDescription) {
+    notifyAboutTransfer(account, transferDescription.toString());
+  }
+
+  default void notifyAboutTransfers(Account account, List<String> transferDescriptions) {
+    for (String transferDescription : transferDescriptions) {
+      notifyAboutTransfer(account, transferDescription);
+    }
+  }
 }
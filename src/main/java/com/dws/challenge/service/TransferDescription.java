@@ -0,0 +1,55 @@
+package com.dws.challenge.service;
+
+import lombok.AccessLevel;
+import lombok.AllArgsConstructor;
+import lombok.Value;
+
+import java.math.BigDecimal;
+
+/**
+ * Description of a transfer for one of its accounts, such as {@code sent 100 to Id-2}.
+ *
+ * The text is only built when it is read, so notifications queued for a worker are formatted on
+ * the worker and not on the transfer path.
+ */
+@Value
+@AllArgsConstructor(access = AccessLevel.PRIVATE)
+public class TransferDescription implements CharSequence {
+
+  boolean sent;
+  BigDecimal amount;
+  String counterpartyAccountId;
+
+  public static TransferDescription sent(BigDecimal amount, String toAccountId) {
+    return new TransferDescription(true, amount, toAccountId);
+  }
+
+  public static TransferDescription received(BigDecimal amount, String fromAccountId) {
+    return new TransferDescription(false, amount, fromAccountId);
+  }
+
+  @Override
+  public int length() {
+    return toString().length();
+  }
+
+  @Override
+  public char charAt(int index) {
+    return toString().charAt(index);
+  }
+
+  @Override
+  public CharSequence subSequence(int start, int end) {
+    return toString().subSequence(start, end);
+  }
+
+  @Override
+  public String toString() {
+    return new StringBuilder(48)
+      .append(this.sent ? "sent " : "received ")
+      .append(this.amount)
+      .append(this.sent ? " to " : " from ")
+      .append(this.counterpartyAccountId)
+      .toString();
+  }
+}
@@ -0,0 +1,201 @@
+package com.dws.challenge.snapshot;
+
+import com.dws.challenge.domain.Account;
+import com.dws.challenge.repository.AccountsRepository;
+import org.springframework.stereotype.Component;
+
+import java.math.BigDecimal;
+import java.util.Collection;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Provides balances of all accounts as of one point in time while transfers keep running.
+ *
+ * Every change of balances runs inside {@link #execute}, which tags it with the current epoch.
+ * Opening a snapshot starts a new epoch and waits for the changes of the previous one to finish;
+ * changes entering the new epoch wait for that too, which takes as long as the transfers already
+ * running. From then on every change first preserves the balances of its accounts as of the cut,
+ * so the snapshot reads preserved balances where there are any and current balances elsewhere.
+ * Accounts created after the cut are left out.
+ *
+ * One snapshot is open at a time, a second one waits until the first is closed.
+ */
+@Component
+public class SnapshotCoordinator {
+
+  private final LongAdder[] running = {new LongAdder(), new LongAdder()};
+  private final Semaphore snapshotPermit = new Semaphore(1);
+  private volatile long epoch;
+  private volatile boolean snapshotOpen;
+  private volatile CountDownLatch cutInProgress;
+
+  /**
+   * Runs a change of the two accounts' balances.
+   */
+  public void execute(final Account first, final Account second, final Runnable change) {
+    final long changeEpoch = enter();
+    try {
+      if (this.snapshotOpen) {
+        first.preserveBalance(changeEpoch);
+        second.preserveBalance(changeEpoch);
+      }
+      change.run();
+    } finally {
+      exit(changeEpoch);
+    }
+  }
+
+  /**
+   * Runs a change of the given accounts' balances.
+   */
+  public void execute(final Collection<Account> accounts, final Runnable change) {
+    final long changeEpoch = enter();
+    try {
+      if (this.snapshotOpen) {
+        accounts.forEach(account -> account.preserveBalance(changeEpoch));
+      }
+      change.run();
+    } finally {
+      exit(changeEpoch);
+    }
+  }
+
+  /**
+   * Runs the creation of an account, which is part of the snapshots opened after it.
+   */
+  public void create(final Account account, final Runnable creation) {
+    final long creationEpoch = enter();
+    try {
+      account.setCreatedEpoch(creationEpoch);
+      creation.run();
+    } finally {
+      exit(creationEpoch);
+    }
+  }
+
+  /**
+   * Runs the creation of several accounts, which are part of the snapshots opened after it.
+   */
+  public void create(final Collection<Account> accounts, final Runnable creation) {
+    final long creationEpoch = enter();
+    try {
+      accounts.forEach(account -> account.setCreatedEpoch(creationEpoch));
+      creation.run();
+    } finally {
+      exit(creationEpoch);
+    }
+  }
+
+  /**
+   * Cuts a new epoch. The snapshot must be closed, otherwise later snapshots wait forever.
+   */
+  public Snapshot open(final AccountsRepository accountsRepository) throws InterruptedException {
+    this.snapshotPermit.acquire();
+    final CountDownLatch cut = new CountDownLatch(1);
+    this.cutInProgress = cut;
+    final long snapshotEpoch = this.epoch + 1;
+    this.snapshotOpen = true;
+    this.epoch = snapshotEpoch;
+    try {
+      final LongAdder previous = this.running[(int) ((snapshotEpoch - 1) & 1)];
+      while (previous.sum() > 0) {
+        Thread.onSpinWait();
+      }
+    } finally {
+      this.cutInProgress = null;
+      cut.countDown();
+    }
+    return new Snapshot(accountsRepository, snapshotEpoch);
+  }
+
+  public long getEpoch() {
+    return this.epoch;
+  }
+
+  private long enter() {
+    while (true) {
+      final long current = this.epoch;
+      final LongAdder counter = this.running[(int) (current & 1)];
+      counter.increment();
+      if (this.epoch == current) {
+        final CountDownLatch cut = this.cutInProgress;
+        if (cut == null) {
+          return current;
+        }
+        counter.decrement();
+        awaitCut(cut);
+      } else {
+        counter.decrement();
+      }
+    }
+  }
+
+  private void exit(final long changeEpoch) {
+    this.running[(int) (changeEpoch & 1)].decrement();
+  }
+
+  private static void awaitCut(final CountDownLatch cut) {
+    boolean interrupted = false;
+    while (true) {
+      try {
+        cut.await();
+        break;
+      } catch (InterruptedException e) {
+        interrupted = true;
+      }
+    }
+    if (interrupted) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  /**
+   * Receives an account of a {@link Snapshot}.
+   */
+  @FunctionalInterface
+  public interface BalanceConsumer {
+
+    void accept(String accountId, String currency, BigDecimal balance);
+  }
+
+  /**
+   * Balances of all accounts as of the moment the snapshot was opened.
+   */
+  public final class Snapshot implements AutoCloseable {
+
+    private final AccountsRepository accountsRepository;
+    private final long snapshotEpoch;
+    private boolean closed;
+
+    private Snapshot(final AccountsRepository accountsRepository, final long snapshotEpoch) {
+      this.accountsRepository = accountsRepository;
+      this.snapshotEpoch = snapshotEpoch;
+    }
+
+    public long getEpoch() {
+      return this.snapshotEpoch;
+    }
+
+    /**
+     * Passes the id, currency and balance of every account in the snapshot, in no particular order.
+     */
+    public void forEach(final BalanceConsumer consumer) {
+      this.accountsRepository.forEachAccount(account -> {
+        if (account.getCreatedEpoch() < this.snapshotEpoch) {
+          consumer.accept(account.getAccountId(), account.getCurrency(), account.getBalanceAt(this.snapshotEpoch));
+        }
+      });
+    }
+
+    @Override
+    public void close() {
+      if (!this.closed) {
+        this.closed = true;
+        SnapshotCoordinator.this.snapshotOpen = false;
+        SnapshotCoordinator.this.snapshotPermit.release();
+      }
+    }
+  }
+}
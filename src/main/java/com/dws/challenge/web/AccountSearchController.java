@@ -0,0 +1,82 @@
+package com.dws.challenge.web;
+
+import com.dws.challenge.exception.InvalidQueryException;
+import com.dws.challenge.index.AccountIndex;
+import com.dws.challenge.logging.RequestLogSampler;
+import com.dws.challenge.logging.RequestLogSampler.Endpoint;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+
+/**
+ * Range queries over the accounts, see {@link AccountIndex}. Ranges include their lower bound and
+ * exclude their upper bound, and pages carry a {@code nextCursor} to pass as {@code cursor} with
+ * the same query for the following page.
+ */
+@RestController
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.SERVLET)
+@RequestMapping("/v1/accounts/search")
+@Slf4j
+@RequiredArgsConstructor
+public class AccountSearchController {
+
+  public static final int MAX_SEARCH_PAGE_SIZE = 10_000;
+
+  private final AccountIndex accountIndex;
+  private final RequestLogSampler requestLogSampler;
+
+  /**
+   * Accounts in one currency by ascending balance, e.g. {@code ?currency=EUR&max=100} for all
+   * euro accounts below 100. The currency is required.
+   */
+  @GetMapping(path = "/balance", produces = MediaType.APPLICATION_JSON_VALUE)
+  public ResponseEntity<Object> searchByBalance(@RequestParam(required = false) BigDecimal min,
+                                                @RequestParam(required = false) BigDecimal max,
+                                                @RequestParam(required = false) String currency,
+                                                @RequestParam(required = false) String cursor,
+                                                @RequestParam(defaultValue = "100") int limit) {
+    if (this.requestLogSampler.shouldLog(Endpoint.SEARCH_BY_BALANCE)) {
+      log.info("Searching accounts with a balance from {} to {}", min, max);
+    }
+
+    try {
+      return new ResponseEntity<>(this.accountIndex.findByBalance(min, max, currency, cursor, pageSize(limit)),
+        HttpStatus.OK);
+    } catch (InvalidQueryException ex) {
+      return new ResponseEntity<>(ex.getMessage(), HttpStatus.BAD_REQUEST);
+    }
+  }
+
+  /**
+   * Accounts oldest first, e.g. {@code ?from=2024-05-01T10:00:00Z} for those created since then.
+   */
+  @GetMapping(path = "/created", produces = MediaType.APPLICATION_JSON_VALUE)
+  public ResponseEntity<Object> searchByCreation(@RequestParam(required = false) Instant from,
+                                                 @RequestParam(required = false) Instant to,
+                                                 @RequestParam(required = false) String cursor,
+                                                 @RequestParam(defaultValue = "100") int limit) {
+    if (this.requestLogSampler.shouldLog(Endpoint.SEARCH_BY_CREATION)) {
+      log.info("Searching accounts created from {} to {}", from, to);
+    }
+
+    try {
+      return new ResponseEntity<>(this.accountIndex.findByCreation(from, to, cursor, pageSize(limit)), HttpStatus.OK);
+    } catch (InvalidQueryException ex) {
+      return new ResponseEntity<>(ex.getMessage(), HttpStatus.BAD_REQUEST);
+    }
+  }
+
+  private static int pageSize(final int limit) {
+    return Math.max(1, Math.min(limit, MAX_SEARCH_PAGE_SIZE));
+  }
+}
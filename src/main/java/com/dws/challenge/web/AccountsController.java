@@ -1,14 +1,38 @@
 package com.dws.challenge.web;
 
+import com.dws.challenge.admission.AdmissionControl;
 import com.dws.challenge.domain.Account;
+import com.dws.challenge.domain.AccountCreationResult;
+import com.dws.challenge.domain.BatchMode;
+import com.dws.challenge.domain.BatchTransferRequest;
+import com.dws.challenge.domain.BulkAccountCreationResult;
 import com.dws.challenge.domain.MoneyTransfer;
+import com.dws.challenge.domain.TransferResult;
 import com.dws.challenge.exception.AccountNotFoundException;
+import com.dws.challenge.exception.AdmissionRejectedException;
 import com.dws.challenge.exception.DuplicateAccountIdException;
+import com.dws.challenge.exception.IdempotencyKeyReusedException;
 import com.dws.challenge.exception.InsufficientFundsException;
+import com.dws.challenge.exception.InvalidAmountException;
+import com.dws.challenge.idempotency.IdempotencyCache;
+import com.dws.challenge.ledger.TransactionLedger;
+import com.dws.challenge.logging.RequestLogSampler;
+import com.dws.challenge.logging.RequestLogSampler.Endpoint;
 import com.dws.challenge.service.AccountsService;
+import com.dws.challenge.service.BatchMoneyTransferService;
+import com.dws.challenge.service.BulkAccountsService;
 import com.dws.challenge.service.MoneyTransferService;
+import com.dws.challenge.snapshot.SnapshotCoordinator;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
@@ -16,52 +40,360 @@ import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import javax.servlet.http.HttpServletRequest;
 import javax.validation.Valid;
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Collectors;
 
 @RestController
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.SERVLET)
 @RequestMapping("/v1/accounts")
 @Slf4j
 @RequiredArgsConstructor
 public class AccountsController {
 
+  public static final String IDEMPOTENCY_KEY_HEADER = "Idempotency-Key";
+  public static final String CLIENT_ID_HEADER = "X-Client-Id";
+  static final String MISSING_CLIENT_ID_MESSAGE = IDEMPOTENCY_KEY_HEADER + " requires an " + CLIENT_ID_HEADER
+    + " header";
+  public static final int MAX_TRANSACTIONS_PAGE_SIZE = 10_000;
+  public static final int BULK_CREATION_CHUNK_SIZE = 1_000;
+
   private final AccountsService accountsService;
   private final MoneyTransferService moneyTransferService;
+  private final BatchMoneyTransferService batchMoneyTransferService;
+  private final BulkAccountsService bulkAccountsService;
+  private final IdempotencyCache idempotencyCache;
+  private final TransactionLedger transactionLedger;
+  private final ObjectMapper objectMapper;
+  private final RequestLogSampler requestLogSampler;
+  private final AdmissionControl admissionControl;
 
   @PostMapping(consumes = MediaType.APPLICATION_JSON_VALUE)
   public ResponseEntity<Object> createAccount(@RequestBody @Valid Account account) {
-    log.info("Creating account {}", account);
+    if (this.requestLogSampler.shouldLog(Endpoint.CREATE_ACCOUNT)) {
+      log.info("Creating account {}", account.getAccountId());
+    }
 
     try {
       this.accountsService.createAccount(account);
-    } catch (DuplicateAccountIdException daie) {
-      return new ResponseEntity<>(daie.getMessage(), HttpStatus.BAD_REQUEST);
+    } catch (DuplicateAccountIdException | InvalidAmountException ex) {
+      return new ResponseEntity<>(ex.getMessage(), HttpStatus.BAD_REQUEST);
     }
 
     return new ResponseEntity<>(HttpStatus.CREATED);
   }
 
+  /**
+   * Creates the accounts of a JSON array, which is read as a stream and created in chunks of
+   * {@link #BULK_CREATION_CHUNK_SIZE}. Items that can't be created are reported by their index and
+   * don't stop the others. A malformed array is rejected with the accounts of the chunks before it
+   * already created.
+   */
+  @PostMapping(path = "/batch", consumes = MediaType.APPLICATION_JSON_VALUE)
+  public ResponseEntity<Object> createAccounts(InputStream body) throws IOException {
+    final List<AccountCreationResult> failures = new ArrayList<>();
+    final List<Account> chunk = new ArrayList<>(BULK_CREATION_CHUNK_SIZE);
+    final List<Integer> chunkIndexes = new ArrayList<>(BULK_CREATION_CHUNK_SIZE);
+    int index = 0;
+    int created = 0;
+    try (JsonParser parser = this.objectMapper.getFactory().createParser(body)) {
+      if (parser.nextToken() != JsonToken.START_ARRAY) {
+        return new ResponseEntity<>("Request body must be a JSON array of accounts", HttpStatus.BAD_REQUEST);
+      }
+      while (parser.nextToken() != JsonToken.END_ARRAY) {
+        if (parser.currentToken() == null) {
+          return new ResponseEntity<>("Unexpected end of the accounts array", HttpStatus.BAD_REQUEST);
+        }
+        final JsonNode item = parser.readValueAsTree();
+        try {
+          final Account account = this.objectMapper.treeToValue(item, Account.class);
+          if (account == null) {
+            failures.add(AccountCreationResult.invalid(index, "Account must not be null"));
+          } else {
+            chunk.add(account);
+            chunkIndexes.add(index);
+          }
+        } catch (JsonProcessingException ex) {
+          failures.add(AccountCreationResult.invalid(index, ex.getOriginalMessage()));
+        }
+        index++;
+        if (chunk.size() == BULK_CREATION_CHUNK_SIZE) {
+          created += createChunk(chunk, chunkIndexes, failures);
+        }
+      }
+      created += createChunk(chunk, chunkIndexes, failures);
+    } catch (JsonProcessingException ex) {
+      log.info("Rejected bulk account creation after {} accounts: {}", created, ex.getOriginalMessage());
+      return new ResponseEntity<>(ex.getOriginalMessage(), HttpStatus.BAD_REQUEST);
+    }
+    if (this.requestLogSampler.shouldLog(Endpoint.CREATE_ACCOUNTS)) {
+      log.info("Created {} of {} accounts in bulk", created, index);
+    }
+
+    failures.sort(Comparator.comparingInt(AccountCreationResult::getIndex));
+    return new ResponseEntity<>(new BulkAccountCreationResult(created, failures), HttpStatus.OK);
+  }
+
+  /**
+   * Streams the balances of all accounts as of one point in time, as NDJSON (one object per line
+   * with {@code accountId}, {@code currency} and {@code balance}) or, for
+   * {@code Accept: application/octet-stream}, in a compact binary format: the snapshot epoch as a
+   * long, then per account its id and its currency as written by {@link DataOutputStream#writeUTF},
+   * the latter empty for an account without one, the balance scale as an int and the two's-complement
+   * unscaled balance prefixed by its length as a short.
+   */
+  @GetMapping(produces = {MediaType.APPLICATION_NDJSON_VALUE, MediaType.APPLICATION_OCTET_STREAM_VALUE})
+  public ResponseEntity<StreamingResponseBody> exportAccounts(
+    @RequestHeader(name = HttpHeaders.ACCEPT, defaultValue = MediaType.APPLICATION_NDJSON_VALUE) String accept) {
+    final List<MediaType> acceptedTypes = MediaType.parseMediaTypes(accept);
+    MediaType.sortBySpecificityAndQuality(acceptedTypes);
+    final boolean binary = acceptedTypes.stream()
+      .filter(type -> type.includes(MediaType.APPLICATION_NDJSON) || type.includes(MediaType.APPLICATION_OCTET_STREAM))
+      .findFirst()
+      .map(MediaType.APPLICATION_OCTET_STREAM::equalsTypeAndSubtype)
+      .orElse(false);
+    if (this.requestLogSampler.shouldLog(Endpoint.EXPORT_ACCOUNTS)) {
+      log.info("Exporting accounts as {}", binary ? "binary" : "NDJSON");
+    }
+
+    final StreamingResponseBody body = binary ? this::writeBinaryExport : this::writeNdjsonExport;
+    return ResponseEntity.ok()
+      .contentType(binary ? MediaType.APPLICATION_OCTET_STREAM : MediaType.APPLICATION_NDJSON)
+      .body(body);
+  }
+
+  /**
+   * Answers with the JSON of the account, which is only serialized again once the account changed.
+   */
   @GetMapping(path = "/{accountId}")
-  public Account getAccount(@PathVariable String accountId) {
-    log.info("Retrieving account for id {}", accountId);
-    return this.accountsService.getAccount(accountId);
+  public ResponseEntity<byte[]> getAccount(@PathVariable String accountId) {
+    if (this.requestLogSampler.shouldLog(Endpoint.GET_ACCOUNT)) {
+      log.info("Retrieving account for id {}", accountId);
+    }
+    final byte[] json = this.accountsService.getAccountJson(accountId);
+    if (json == null) {
+      return ResponseEntity.ok().build();
+    }
+    return ResponseEntity.ok().contentType(MediaType.APPLICATION_JSON).body(json);
+  }
+
+  /**
+   * Streams a page of the account's transfers, oldest first. The response carries a
+   * {@code nextCursor} to pass as {@code cursor} for the following page until the history is exhausted.
+   * Transfers completing at the same time may be listed in the opposite order to the one they were applied in,
+   * see {@link TransactionLedger}.
+   */
+  @GetMapping(path = "/{accountId}/transactions", produces = MediaType.APPLICATION_JSON_VALUE)
+  public ResponseEntity<StreamingResponseBody> getTransactions(@PathVariable String accountId,
+                                                               @RequestParam(defaultValue = "0") int cursor,
+                                                               @RequestParam(defaultValue = "100") int limit) {
+    if (this.requestLogSampler.shouldLog(Endpoint.GET_TRANSACTIONS)) {
+      log.info("Retrieving transactions for id {} from {}", accountId, cursor);
+    }
+    if (this.accountsService.getAccount(accountId) == null) {
+      return new ResponseEntity<>(HttpStatus.NOT_FOUND);
+    }
+    final int pageSize = Math.max(1, Math.min(limit, MAX_TRANSACTIONS_PAGE_SIZE));
+
+    final StreamingResponseBody body = outputStream -> {
+      try (JsonGenerator generator = this.objectMapper.getFactory().createGenerator(outputStream)) {
+        generator.writeStartObject();
+        generator.writeArrayFieldStart("transactions");
+        final int nextCursor = this.transactionLedger.forEachEntry(accountId, cursor, pageSize, entry -> {
+          try {
+            generator.writeObject(entry);
+          } catch (IOException e) {
+            throw new UncheckedIOException(e);
+          }
+        });
+        generator.writeEndArray();
+        if (nextCursor >= 0) {
+          generator.writeNumberField("nextCursor", nextCursor);
+        }
+        generator.writeEndObject();
+      }
+    };
+    return new ResponseEntity<>(body, HttpStatus.OK);
   }
 
   @PostMapping(path = "/transferMoney", consumes = MediaType.APPLICATION_JSON_VALUE)
-  public ResponseEntity<Object> transferMoney(@RequestBody @Valid MoneyTransfer moneyTransfer) {
-    log.info("Transferring {} from account {} to account {}", moneyTransfer.getAmount(),
-            moneyTransfer.getFromAccountId(), moneyTransfer.getToAccountId());
+  public ResponseEntity<Object> transferMoney(@RequestBody @Valid MoneyTransfer moneyTransfer,
+                                              @RequestHeader(name = IDEMPOTENCY_KEY_HEADER, required = false)
+                                                String idempotencyKey,
+                                              @RequestHeader(name = CLIENT_ID_HEADER, defaultValue = "")
+                                                String clientId,
+                                              HttpServletRequest request) {
+    if (this.requestLogSampler.shouldLog(Endpoint.TRANSFER)) {
+      log.info("Transferring {} from account {} to account {}", moneyTransfer.getAmount(),
+              moneyTransfer.getFromAccountId(), moneyTransfer.getToAccountId());
+    }
 
+    if (idempotencyKey != null && clientId.isEmpty()) {
+      // Keys are scoped by client, anonymous callers would replay each other's outcomes
+      return new ResponseEntity<>(MISSING_CLIENT_ID_MESSAGE, HttpStatus.BAD_REQUEST);
+    }
+
+    TransferResult result;
     try {
-      this.moneyTransferService.transferMoney(moneyTransfer);
-    } catch (AccountNotFoundException nfe) {
-      return new ResponseEntity<>(nfe.getMessage(), HttpStatus.NOT_FOUND);
-    } catch (DuplicateAccountIdException | InsufficientFundsException ex) {
-      return new ResponseEntity<>(ex.getMessage(), HttpStatus.BAD_REQUEST);
+      // Replays are answered before admission, retrying a completed transfer takes no tokens
+      result = idempotencyKey == null ? null : this.idempotencyCache.replay(clientId, idempotencyKey, moneyTransfer);
+      if (result == null) {
+        try (AdmissionControl.Permit permit = this.admissionControl.admit(clientOf(clientId, request),
+          moneyTransfer.getFromAccountId())) {
+          result = idempotencyKey == null
+            ? transfer(moneyTransfer)
+            : this.idempotencyCache.execute(clientId, idempotencyKey, moneyTransfer, () -> transfer(moneyTransfer));
+        }
+      }
+    } catch (AdmissionRejectedException ex) {
+      return tooManyRequests(ex);
+    } catch (IdempotencyKeyReusedException ex) {
+      return new ResponseEntity<>(ex.getMessage(), HttpStatus.UNPROCESSABLE_ENTITY);
+    }
+
+    switch (result.getStatus()) {
+      case COMPLETED:
+        return new ResponseEntity<>(HttpStatus.OK);
+      case ACCOUNT_NOT_FOUND:
+        return new ResponseEntity<>(result.getMessage(), HttpStatus.NOT_FOUND);
+      default:
+        return new ResponseEntity<>(result.getMessage(), HttpStatus.BAD_REQUEST);
+    }
+  }
+
+  @PostMapping(path = "/transferMoney/batch", consumes = MediaType.APPLICATION_JSON_VALUE)
+  public ResponseEntity<Object> transferMoneyBatch(@RequestBody @Valid BatchTransferRequest batchTransferRequest,
+                                                   @RequestHeader(name = CLIENT_ID_HEADER, defaultValue = "")
+                                                     String clientId,
+                                                   HttpServletRequest request) {
+    if (this.requestLogSampler.shouldLog(Endpoint.TRANSFER_BATCH)) {
+      log.info("Transferring batch of {} transfers in {} mode", batchTransferRequest.getTransfers().size(),
+              batchTransferRequest.getMode());
+    }
+
+    // A batch takes a token per transfer from its client and from each debited account, but one slot
+    final List<String> debitedAccountIds = batchTransferRequest.getTransfers().stream()
+      .map(MoneyTransfer::getFromAccountId)
+      .collect(Collectors.toList());
+    final List<TransferResult> results;
+    try (AdmissionControl.Permit permit = this.admissionControl.admitBatch(clientOf(clientId, request),
+      debitedAccountIds)) {
+      results = this.batchMoneyTransferService
+        .transferMoney(batchTransferRequest.getTransfers(), batchTransferRequest.getMode());
+    } catch (AdmissionRejectedException ex) {
+      return tooManyRequests(ex);
+    } catch (UnsupportedOperationException ex) {
+      return new ResponseEntity<>(ex.getMessage(), HttpStatus.NOT_IMPLEMENTED);
+    }
+
+    final boolean rejected = batchTransferRequest.getMode() == BatchMode.ALL_OR_NOTHING
+      && results.stream().anyMatch(result -> !result.isCompleted());
+    return new ResponseEntity<>(results, rejected ? HttpStatus.BAD_REQUEST : HttpStatus.OK);
+  }
+
+  /**
+   * Requests without a client id are limited by their remote address.
+   */
+  private static String clientOf(String clientId, HttpServletRequest request) {
+    return clientId.isEmpty() ? request.getRemoteAddr() : clientId;
+  }
+
+  private static ResponseEntity<Object> tooManyRequests(AdmissionRejectedException ex) {
+    return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS)
+      .header(HttpHeaders.RETRY_AFTER, Long.toString(ex.getRetryAfterSeconds()))
+      .body(ex.getMessage());
+  }
+
+  /**
+   * Creates and clears the chunk, failures are added with the accounts' indexes in the request.
+   *
+   * @return the number of accounts created
+   */
+  private int createChunk(List<Account> chunk, List<Integer> chunkIndexes, List<AccountCreationResult> failures) {
+    if (chunk.isEmpty()) {
+      return 0;
+    }
+    final List<AccountCreationResult> chunkFailures = this.bulkAccountsService.createAccounts(chunk);
+    for (AccountCreationResult failure : chunkFailures) {
+      failures.add(new AccountCreationResult(chunkIndexes.get(failure.getIndex()), failure.getStatus(),
+        failure.getMessage()));
     }
+    final int created = chunk.size() - chunkFailures.size();
+    chunk.clear();
+    chunkIndexes.clear();
+    return created;
+  }
 
-    return new ResponseEntity<>(HttpStatus.OK);
+  private void writeNdjsonExport(OutputStream outputStream) throws IOException {
+    try (SnapshotCoordinator.Snapshot snapshot = openSnapshot();
+         JsonGenerator generator = this.objectMapper.getFactory().createGenerator(outputStream)) {
+      snapshot.forEach((accountId, currency, balance) -> {
+        try {
+          generator.writeStartObject();
+          generator.writeStringField("accountId", accountId);
+          generator.writeStringField("currency", currency);
+          generator.writeNumberField("balance", balance);
+          generator.writeEndObject();
+          generator.writeRaw('\n');
+        } catch (IOException e) {
+          throw new UncheckedIOException(e);
+        }
+      });
+    }
+  }
+
+  private void writeBinaryExport(OutputStream outputStream) throws IOException {
+    try (SnapshotCoordinator.Snapshot snapshot = openSnapshot()) {
+      final DataOutputStream output = new DataOutputStream(new BufferedOutputStream(outputStream, 64 * 1024));
+      output.writeLong(snapshot.getEpoch());
+      snapshot.forEach((accountId, currency, balance) -> {
+        try {
+          final byte[] unscaled = balance.unscaledValue().toByteArray();
+          output.writeUTF(accountId);
+          output.writeUTF(currency != null ? currency : "");
+          output.writeInt(balance.scale());
+          output.writeShort(unscaled.length);
+          output.write(unscaled);
+        } catch (IOException e) {
+          throw new UncheckedIOException(e);
+        }
+      });
+      output.flush();
+    }
+  }
+
+  private SnapshotCoordinator.Snapshot openSnapshot() throws InterruptedIOException {
+    try {
+      return this.accountsService.openSnapshot();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new InterruptedIOException("Interrupted while waiting for the accounts snapshot");
+    }
+  }
+
+  private TransferResult transfer(MoneyTransfer moneyTransfer) {
+    try {
+      this.moneyTransferService.transferMoney(moneyTransfer);
+      return TransferResult.completed(0);
+    } catch (AccountNotFoundException | DuplicateAccountIdException | InsufficientFundsException
+             | InvalidAmountException ex) {
+      return TransferResult.failed(0, ex);
+    }
   }
 }
@@ -0,0 +1,105 @@
+package com.dws.challenge.web;
+
+import com.dws.challenge.domain.HoldCaptureRequest;
+import com.dws.challenge.domain.HoldRequest;
+import com.dws.challenge.exception.AccountNotFoundException;
+import com.dws.challenge.exception.DuplicateAccountIdException;
+import com.dws.challenge.exception.HoldNotFoundException;
+import com.dws.challenge.exception.InsufficientFundsException;
+import com.dws.challenge.exception.InvalidAmountException;
+import com.dws.challenge.exception.InvalidHoldException;
+import com.dws.challenge.hold.HoldService;
+import com.dws.challenge.logging.RequestLogSampler;
+import com.dws.challenge.logging.RequestLogSampler.Endpoint;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.DeleteMapping;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import javax.validation.Valid;
+import java.time.Duration;
+
+/**
+ * Balance holds captured or voided later, see {@link HoldService}.
+ */
+@RestController
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.SERVLET)
+@RequestMapping("/v1/accounts/{accountId}/holds")
+@Slf4j
+@RequiredArgsConstructor
+public class HoldsController {
+
+  private final HoldService holdService;
+  private final RequestLogSampler requestLogSampler;
+
+  @PostMapping(consumes = MediaType.APPLICATION_JSON_VALUE)
+  public ResponseEntity<Object> authorizeHold(@PathVariable String accountId, @RequestBody @Valid HoldRequest request) {
+    if (this.requestLogSampler.shouldLog(Endpoint.AUTHORIZE_HOLD)) {
+      log.info("Placing a hold of {} on account {}", request.getAmount(), accountId);
+    }
+
+    try {
+      return new ResponseEntity<>(this.holdService.authorize(accountId, request.getAmount(),
+        request.getTtlSeconds() == null ? null : Duration.ofSeconds(request.getTtlSeconds())), HttpStatus.CREATED);
+    } catch (AccountNotFoundException ex) {
+      return new ResponseEntity<>(ex.getMessage(), HttpStatus.NOT_FOUND);
+    } catch (InsufficientFundsException | InvalidAmountException | InvalidHoldException ex) {
+      return new ResponseEntity<>(ex.getMessage(), HttpStatus.BAD_REQUEST);
+    } catch (UnsupportedOperationException ex) {
+      return new ResponseEntity<>(ex.getMessage(), HttpStatus.NOT_IMPLEMENTED);
+    }
+  }
+
+  @GetMapping(produces = MediaType.APPLICATION_JSON_VALUE)
+  public ResponseEntity<Object> getHolds(@PathVariable String accountId) {
+    if (this.requestLogSampler.shouldLog(Endpoint.LIST_HOLDS)) {
+      log.info("Listing holds of account {}", accountId);
+    }
+
+    try {
+      return new ResponseEntity<>(this.holdService.getHolds(accountId), HttpStatus.OK);
+    } catch (AccountNotFoundException ex) {
+      return new ResponseEntity<>(ex.getMessage(), HttpStatus.NOT_FOUND);
+    }
+  }
+
+  @PostMapping(path = "/{holdId}/capture", consumes = MediaType.APPLICATION_JSON_VALUE)
+  public ResponseEntity<Object> captureHold(@PathVariable String accountId, @PathVariable String holdId,
+                                            @RequestBody @Valid HoldCaptureRequest request) {
+    if (this.requestLogSampler.shouldLog(Endpoint.CAPTURE_HOLD)) {
+      log.info("Capturing {} of hold {} on account {} to account {}",
+        request.getAmount() == null ? "all" : request.getAmount(), holdId, accountId, request.getToAccountId());
+    }
+
+    try {
+      return new ResponseEntity<>(
+        this.holdService.capture(accountId, holdId, request.getToAccountId(), request.getAmount()), HttpStatus.OK);
+    } catch (AccountNotFoundException | HoldNotFoundException ex) {
+      return new ResponseEntity<>(ex.getMessage(), HttpStatus.NOT_FOUND);
+    } catch (DuplicateAccountIdException | InsufficientFundsException | InvalidAmountException ex) {
+      return new ResponseEntity<>(ex.getMessage(), HttpStatus.BAD_REQUEST);
+    }
+  }
+
+  @DeleteMapping(path = "/{holdId}")
+  public ResponseEntity<Object> voidHold(@PathVariable String accountId, @PathVariable String holdId) {
+    if (this.requestLogSampler.shouldLog(Endpoint.VOID_HOLD)) {
+      log.info("Voiding hold {} on account {}", holdId, accountId);
+    }
+
+    try {
+      return new ResponseEntity<>(this.holdService.voidHold(accountId, holdId), HttpStatus.OK);
+    } catch (AccountNotFoundException | HoldNotFoundException ex) {
+      return new ResponseEntity<>(ex.getMessage(), HttpStatus.NOT_FOUND);
+    }
+  }
+}
@@ -0,0 +1,166 @@
+package com.dws.challenge.web;
+
+import com.dws.challenge.admission.AdmissionControl;
+import com.dws.challenge.domain.Account;
+import com.dws.challenge.domain.MoneyTransfer;
+import com.dws.challenge.domain.TransferResult;
+import com.dws.challenge.exception.AccountNotFoundException;
+import com.dws.challenge.exception.AdmissionRejectedException;
+import com.dws.challenge.exception.DuplicateAccountIdException;
+import com.dws.challenge.exception.IdempotencyKeyReusedException;
+import com.dws.challenge.exception.InsufficientFundsException;
+import com.dws.challenge.exception.InvalidAmountException;
+import com.dws.challenge.idempotency.IdempotencyCache;
+import com.dws.challenge.logging.RequestLogSampler;
+import com.dws.challenge.logging.RequestLogSampler.Endpoint;
+import com.dws.challenge.service.AccountsService;
+import com.dws.challenge.service.MoneyTransferService;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+import org.springframework.web.reactive.function.server.ServerRequest;
+import org.springframework.web.reactive.function.server.ServerResponse;
+import org.springframework.web.server.ServerWebInputException;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+import javax.validation.ConstraintViolation;
+import javax.validation.Validator;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.stream.Collectors;
+
+import static com.dws.challenge.web.AccountsController.CLIENT_ID_HEADER;
+import static com.dws.challenge.web.AccountsController.IDEMPOTENCY_KEY_HEADER;
+import static com.dws.challenge.web.AccountsController.MISSING_CLIENT_ID_MESSAGE;
+
+/**
+ * Reactive counterpart of {@link AccountsController} for {@code spring.main.web-application-type=reactive}.
+ *
+ * Request bodies are read and validated on the event loop. The services block on account locks and
+ * the journal, so they run on the bounded elastic scheduler and the event loop threads stay free
+ * for other requests. Status codes and messages are the same as on the servlet stack.
+ */
+@Slf4j
+@Component
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.REACTIVE)
+@RequiredArgsConstructor
+public class ReactiveAccountsHandler {
+
+  private final AccountsService accountsService;
+  private final MoneyTransferService moneyTransferService;
+  private final IdempotencyCache idempotencyCache;
+  private final Validator validator;
+  private final RequestLogSampler requestLogSampler;
+  private final AdmissionControl admissionControl;
+
+  public Mono<ServerResponse> createAccount(ServerRequest request) {
+    return body(request, Account.class)
+      .flatMap(account -> {
+        if (this.requestLogSampler.shouldLog(Endpoint.CREATE_ACCOUNT)) {
+          log.info("Creating account {}", account.getAccountId());
+        }
+        return blocking(() -> {
+          this.accountsService.createAccount(account);
+          return account;
+        });
+      })
+      .flatMap(account -> ServerResponse.status(HttpStatus.CREATED).build())
+      .onErrorResume(ex -> ex instanceof DuplicateAccountIdException || ex instanceof InvalidAmountException,
+        ex -> ServerResponse.badRequest().bodyValue(ex.getMessage()));
+  }
+
+  public Mono<ServerResponse> getAccount(ServerRequest request) {
+    final String accountId = request.pathVariable("accountId");
+    if (this.requestLogSampler.shouldLog(Endpoint.GET_ACCOUNT)) {
+      log.info("Retrieving account for id {}", accountId);
+    }
+    return blocking(() -> this.accountsService.getAccountJson(accountId))
+      .flatMap(json -> ServerResponse.ok().contentType(MediaType.APPLICATION_JSON).bodyValue(json))
+      .switchIfEmpty(ServerResponse.ok().build());
+  }
+
+  public Mono<ServerResponse> transferMoney(ServerRequest request) {
+    final String idempotencyKey = request.headers().firstHeader(IDEMPOTENCY_KEY_HEADER);
+    final String clientId = Objects.requireNonNullElse(request.headers().firstHeader(CLIENT_ID_HEADER), "");
+    if (idempotencyKey != null && clientId.isEmpty()) {
+      return ServerResponse.badRequest().bodyValue(MISSING_CLIENT_ID_MESSAGE);
+    }
+    // Requests without a client id are limited by their remote address, as on the servlet stack
+    final String admittedClientId = !clientId.isEmpty() ? clientId : request.remoteAddress()
+      .map(address -> address.getAddress() != null ? address.getAddress().getHostAddress() : address.getHostString())
+      .orElse("");
+    return body(request, MoneyTransfer.class)
+      .flatMap(moneyTransfer -> {
+        if (this.requestLogSampler.shouldLog(Endpoint.TRANSFER)) {
+          log.info("Transferring {} from account {} to account {}", moneyTransfer.getAmount(),
+            moneyTransfer.getFromAccountId(), moneyTransfer.getToAccountId());
+        }
+        // Replays are answered before admission, retrying a completed transfer takes no tokens
+        final TransferResult replayed = idempotencyKey == null
+          ? null
+          : this.idempotencyCache.replay(clientId, idempotencyKey, moneyTransfer);
+        if (replayed != null) {
+          return Mono.just(replayed);
+        }
+        // The permit is also closed if the request is cancelled
+        return Mono.using(() -> this.admissionControl.admit(admittedClientId, moneyTransfer.getFromAccountId()),
+          permit -> blocking(() -> idempotencyKey == null
+            ? transfer(moneyTransfer)
+            : this.idempotencyCache.execute(clientId, idempotencyKey, moneyTransfer, () -> transfer(moneyTransfer))),
+          AdmissionControl.Permit::close);
+      })
+      .flatMap(result -> {
+        switch (result.getStatus()) {
+          case COMPLETED:
+            return ServerResponse.ok().build();
+          case ACCOUNT_NOT_FOUND:
+            return ServerResponse.status(HttpStatus.NOT_FOUND).bodyValue(result.getMessage());
+          default:
+            return ServerResponse.badRequest().bodyValue(result.getMessage());
+        }
+      })
+      .onErrorResume(AdmissionRejectedException.class,
+        ex -> ServerResponse.status(HttpStatus.TOO_MANY_REQUESTS)
+          .header(HttpHeaders.RETRY_AFTER, Long.toString(ex.getRetryAfterSeconds()))
+          .bodyValue(ex.getMessage()))
+      .onErrorResume(IdempotencyKeyReusedException.class,
+        ex -> ServerResponse.status(HttpStatus.UNPROCESSABLE_ENTITY).bodyValue(ex.getMessage()));
+  }
+
+  private TransferResult transfer(MoneyTransfer moneyTransfer) {
+    try {
+      this.moneyTransferService.transferMoney(moneyTransfer);
+      return TransferResult.completed(0);
+    } catch (AccountNotFoundException | DuplicateAccountIdException | InsufficientFundsException
+             | InvalidAmountException ex) {
+      return TransferResult.failed(0, ex);
+    }
+  }
+
+  /**
+   * Reads and validates the request body, a missing or invalid body fails with a 400 response.
+   */
+  private <T> Mono<T> body(ServerRequest request, Class<T> type) {
+    return request.bodyToMono(type)
+      .switchIfEmpty(Mono.error(() -> new ServerWebInputException("Request body is missing")))
+      .flatMap(body -> {
+        final Set<ConstraintViolation<T>> violations = this.validator.validate(body);
+        if (violations.isEmpty()) {
+          return Mono.just(body);
+        }
+        return Mono.error(new ServerWebInputException(violations.stream()
+          .map(violation -> violation.getPropertyPath() + " " + violation.getMessage())
+          .collect(Collectors.joining(", "))));
+      });
+  }
+
+  private static <T> Mono<T> blocking(Callable<T> call) {
+    return Mono.fromCallable(call).subscribeOn(Schedulers.boundedElastic());
+  }
+}
@@ -0,0 +1,29 @@
+package com.dws.challenge.web;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.MediaType;
+import org.springframework.web.reactive.function.server.RouterFunction;
+import org.springframework.web.reactive.function.server.ServerResponse;
+
+import static org.springframework.web.reactive.function.server.RequestPredicates.GET;
+import static org.springframework.web.reactive.function.server.RequestPredicates.POST;
+import static org.springframework.web.reactive.function.server.RequestPredicates.contentType;
+import static org.springframework.web.reactive.function.server.RouterFunctions.route;
+
+/**
+ * Routes of the reactive serving stack, mirroring the account endpoints of {@link AccountsController}.
+ */
+@Configuration
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.REACTIVE)
+public class ReactiveAccountsRoutes {
+
+  @Bean
+  public RouterFunction<ServerResponse> accountsRoutes(ReactiveAccountsHandler handler) {
+    return route(POST("/v1/accounts/transferMoney").and(contentType(MediaType.APPLICATION_JSON)),
+        handler::transferMoney)
+      .andRoute(POST("/v1/accounts").and(contentType(MediaType.APPLICATION_JSON)), handler::createAccount)
+      .andRoute(GET("/v1/accounts/{accountId}"), handler::getAccount);
+  }
+}
@@ -0,0 +1,82 @@
+package com.dws.challenge.web;
+
+import com.dws.challenge.domain.ScheduledTransfer;
+import com.dws.challenge.domain.ScheduledTransferRequest;
+import com.dws.challenge.exception.AccountNotFoundException;
+import com.dws.challenge.exception.DuplicateAccountIdException;
+import com.dws.challenge.exception.InvalidScheduleException;
+import com.dws.challenge.logging.RequestLogSampler;
+import com.dws.challenge.logging.RequestLogSampler.Endpoint;
+import com.dws.challenge.scheduling.ScheduledTransferService;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.DeleteMapping;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+import javax.validation.Valid;
+import java.util.List;
+
+/**
+ * Transfers executed at a later time, see {@link ScheduledTransferService}.
+ */
+@RestController
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.SERVLET)
+@RequestMapping("/v1/accounts/transferMoney/scheduled")
+@Slf4j
+@RequiredArgsConstructor
+public class ScheduledTransfersController {
+
+  public static final int MAX_SCHEDULED_PAGE_SIZE = 10_000;
+
+  private final ScheduledTransferService scheduledTransferService;
+  private final RequestLogSampler requestLogSampler;
+
+  @PostMapping(consumes = MediaType.APPLICATION_JSON_VALUE)
+  public ResponseEntity<Object> scheduleTransfer(@RequestBody @Valid ScheduledTransferRequest request) {
+    if (this.requestLogSampler.shouldLog(Endpoint.SCHEDULE_TRANSFER)) {
+      log.info("Scheduling transfer of {} from account {} to account {} at {}", request.getTransfer().getAmount(),
+        request.getTransfer().getFromAccountId(), request.getTransfer().getToAccountId(), request.getExecuteAt());
+    }
+
+    try {
+      return new ResponseEntity<>(
+        this.scheduledTransferService.schedule(request.getTransfer(), request.getExecuteAt()), HttpStatus.CREATED);
+    } catch (AccountNotFoundException ex) {
+      return new ResponseEntity<>(ex.getMessage(), HttpStatus.NOT_FOUND);
+    } catch (DuplicateAccountIdException | InvalidScheduleException ex) {
+      return new ResponseEntity<>(ex.getMessage(), HttpStatus.BAD_REQUEST);
+    }
+  }
+
+  /**
+   * Lists pending transfers in execution order, optionally only those from or to one account.
+   */
+  @GetMapping(produces = MediaType.APPLICATION_JSON_VALUE)
+  public List<ScheduledTransfer> getScheduledTransfers(@RequestParam(required = false) String accountId,
+                                                       @RequestParam(defaultValue = "100") int limit) {
+    if (this.requestLogSampler.shouldLog(Endpoint.LIST_SCHEDULED_TRANSFERS)) {
+      log.info("Listing scheduled transfers for {}", accountId == null ? "all accounts" : accountId);
+    }
+    return this.scheduledTransferService.getPending(accountId, Math.max(1, Math.min(limit, MAX_SCHEDULED_PAGE_SIZE)));
+  }
+
+  @DeleteMapping(path = "/{id}")
+  public ResponseEntity<Object> cancelScheduledTransfer(@PathVariable String id) {
+    if (this.requestLogSampler.shouldLog(Endpoint.CANCEL_SCHEDULED_TRANSFER)) {
+      log.info("Cancelling scheduled transfer {}", id);
+    }
+    return this.scheduledTransferService.cancel(id)
+      .<ResponseEntity<Object>>map(cancelled -> new ResponseEntity<>(cancelled, HttpStatus.OK))
+      .orElseGet(() -> new ResponseEntity<>("No pending scheduled transfer " + id, HttpStatus.NOT_FOUND));
+  }
+}
@@ -0,0 +1,110 @@
+package com.dws.challenge;
+
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+import static org.springframework.test.web.servlet.setup.MockMvcBuilders.webAppContextSetup;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+
+import com.dws.challenge.domain.Account;
+import com.dws.challenge.index.AccountIndex;
+import com.dws.challenge.service.AccountsService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+import org.springframework.test.context.web.WebAppConfiguration;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.web.context.WebApplicationContext;
+
+@ExtendWith(SpringExtension.class)
+@SpringBootTest
+@WebAppConfiguration
+class AccountSearchControllerTest {
+
+  private MockMvc mockMvc;
+
+  @Autowired
+  private AccountsService accountsService;
+
+  @Autowired
+  private AccountIndex accountIndex;
+
+  @Autowired
+  private WebApplicationContext webApplicationContext;
+
+  @BeforeEach
+  void prepareMockMvc() {
+    this.mockMvc = webAppContextSetup(this.webApplicationContext).build();
+
+    accountsService.getAccountsRepository().clearAccounts();
+    accountsService.createAccount(new Account("Id-1", new BigDecimal("100")));
+    accountsService.createAccount(new Account("Id-2", new BigDecimal("100")));
+    accountsService.createAccount(new Account("Id-3", new BigDecimal("5")));
+  }
+
+  @Test
+  void searchesByBalanceAfterTransfer() throws Exception {
+    this.mockMvc.perform(post("/v1/accounts/transferMoney").contentType(MediaType.APPLICATION_JSON)
+        .content("{\"fromAccountId\":\"Id-1\",\"toAccountId\":\"Id-2\",\"amount\":90}"))
+      .andExpect(status().isOk());
+    this.accountIndex.refresh();
+
+    this.mockMvc.perform(get("/v1/accounts/search/balance").param("currency", "EUR").param("max", "50"))
+      .andExpect(status().isOk())
+      .andExpect(jsonPath("$.accounts.length()").value(2))
+      .andExpect(jsonPath("$.accounts[0].accountId").value("Id-3"))
+      .andExpect(jsonPath("$.accounts[1].accountId").value("Id-1"))
+      .andExpect(jsonPath("$.accounts[1].balance").value(10))
+      .andExpect(jsonPath("$.nextCursor").doesNotExist());
+  }
+
+  @Test
+  void pagesWithCursor() throws Exception {
+    this.accountIndex.refresh();
+
+    this.mockMvc.perform(get("/v1/accounts/search/balance").param("currency", "EUR").param("limit", "2"))
+      .andExpect(status().isOk())
+      .andExpect(jsonPath("$.accounts.length()").value(2))
+      .andExpect(jsonPath("$.nextCursor").value("100:Id-1"));
+    this.mockMvc.perform(get("/v1/accounts/search/balance").param("currency", "EUR").param("limit", "2")
+        .param("cursor", "100:Id-1"))
+      .andExpect(status().isOk())
+      .andExpect(jsonPath("$.accounts.length()").value(1))
+      .andExpect(jsonPath("$.accounts[0].accountId").value("Id-2"));
+  }
+
+  @Test
+  void searchesByCreationTime() throws Exception {
+    final Instant now = Instant.now();
+
+    this.mockMvc.perform(get("/v1/accounts/search/created")
+        .param("from", now.minus(1, ChronoUnit.HOURS).toString()))
+      .andExpect(status().isOk())
+      .andExpect(jsonPath("$.accounts.length()").value(3));
+    this.mockMvc.perform(get("/v1/accounts/search/created")
+        .param("from", now.plus(1, ChronoUnit.HOURS).toString()))
+      .andExpect(status().isOk())
+      .andExpect(jsonPath("$.accounts.length()").value(0));
+  }
+
+  @Test
+  void requiresCurrency() throws Exception {
+    this.mockMvc.perform(get("/v1/accounts/search/balance").param("max", "50"))
+      .andExpect(status().isBadRequest());
+  }
+
+  @Test
+  void rejectsEmptyRange() throws Exception {
+    this.mockMvc.perform(get("/v1/accounts/search/balance").param("currency", "EUR").param("min", "10")
+        .param("max", "5"))
+      .andExpect(status().isBadRequest());
+  }
+}
@@ -1,15 +1,18 @@
 package com.dws.challenge;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 import static org.springframework.test.web.servlet.setup.MockMvcBuilders.webAppContextSetup;
 
 import java.math.BigDecimal;
 
 import com.dws.challenge.domain.Account;
+import com.dws.challenge.fx.FxRateTable;
 import com.dws.challenge.service.AccountsService;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
@@ -20,6 +23,7 @@ import org.springframework.http.MediaType;
 import org.springframework.test.context.junit.jupiter.SpringExtension;
 import org.springframework.test.context.web.WebAppConfiguration;
 import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
 import org.springframework.web.context.WebApplicationContext;
 
 @ExtendWith(SpringExtension.class)
@@ -32,6 +36,9 @@ class AccountsControllerTest {
   @Autowired
   private AccountsService accountsService;
 
+  @Autowired
+  private FxRateTable fxRateTable;
+
   @Autowired
   private WebApplicationContext webApplicationContext;
 
@@ -100,7 +107,54 @@ class AccountsControllerTest {
     this.mockMvc.perform(get("/v1/accounts/" + uniqueAccountId))
       .andExpect(status().isOk())
       .andExpect(
-        content().string("{\"accountId\":\"" + uniqueAccountId + "\",\"balance\":123.45}"));
+        content().string("{\"accountId\":\"" + uniqueAccountId + "\",\"balance\":123.45,\"currency\":\"EUR\"}"));
+  }
+
+  @Test
+  void getAccountAfterChanges() throws Exception {
+    this.accountsService.createAccount(new Account("Id-123", new BigDecimal("500")));
+    this.accountsService.createAccount(new Account("Id-456", new BigDecimal("200")));
+    this.mockMvc.perform(get("/v1/accounts/Id-123"))
+      .andExpect(content().string("{\"accountId\":\"Id-123\",\"balance\":500,\"currency\":\"EUR\"}"));
+
+    this.mockMvc.perform(post("/v1/accounts/transferMoney").contentType(MediaType.APPLICATION_JSON)
+      .content("{\"fromAccountId\":\"Id-123\",\"toAccountId\":\"Id-456\",\"amount\":400}"))
+      .andExpect(status().isOk());
+    this.mockMvc.perform(get("/v1/accounts/Id-123"))
+      .andExpect(content().string("{\"accountId\":\"Id-123\",\"balance\":100,\"currency\":\"EUR\"}"));
+
+    this.accountsService.getAccountsRepository().clearAccounts();
+    this.mockMvc.perform(get("/v1/accounts/Id-123"))
+      .andExpect(status().isOk())
+      .andExpect(content().string(""));
+    this.accountsService.createAccount(new Account("Id-123", new BigDecimal("42")));
+    this.mockMvc.perform(get("/v1/accounts/Id-123"))
+      .andExpect(content().string("{\"accountId\":\"Id-123\",\"balance\":42,\"currency\":\"EUR\"}"));
+  }
+
+  @Test
+  void transferMoneyAcrossCurrencies() throws Exception {
+    this.mockMvc.perform(post("/v1/accounts").contentType(MediaType.APPLICATION_JSON)
+      .content("{\"accountId\":\"Id-123\",\"balance\":500}")).andExpect(status().isCreated());
+    this.mockMvc.perform(post("/v1/accounts").contentType(MediaType.APPLICATION_JSON)
+      .content("{\"accountId\":\"Id-456\",\"balance\":0,\"currency\":\"USD\"}")).andExpect(status().isCreated());
+
+    this.mockMvc.perform(post("/v1/accounts/transferMoney").contentType(MediaType.APPLICATION_JSON)
+      .content("{\"fromAccountId\":\"Id-123\",\"toAccountId\":\"Id-456\",\"amount\":100}"))
+      .andExpect(status().isOk());
+
+    assertThat(this.accountsService.getAccount("Id-123").getBalance()).isEqualByComparingTo("400");
+    assertThat(this.accountsService.getAccount("Id-456").getBalance())
+      .isEqualByComparingTo(this.fxRateTable.convert(new BigDecimal("100"), "EUR", "USD"))
+      .isPositive();
+  }
+
+  @Test
+  void createAccountInUnknownCurrency() throws Exception {
+    this.mockMvc.perform(post("/v1/accounts").contentType(MediaType.APPLICATION_JSON)
+      .content("{\"accountId\":\"Id-123\",\"balance\":500,\"currency\":\"XYZ\"}"))
+      .andExpect(status().isBadRequest())
+      .andExpect(content().string("Unknown currency XYZ"));
   }
 
   @Test
@@ -119,6 +173,90 @@ class AccountsControllerTest {
     assertThat(toAccount.getBalance()).isEqualByComparingTo("600");
   }
 
+  @Test
+  void transferMoneyReplayedWithIdempotencyKey() throws Exception {
+    this.accountsService.createAccount(new Account("Id-123", new BigDecimal("500")));
+    this.accountsService.createAccount(new Account("Id-456", new BigDecimal("200")));
+
+    for (int i = 0; i < 2; i++) {
+      this.mockMvc.perform(post("/v1/accounts/transferMoney").contentType(MediaType.APPLICATION_JSON)
+        .header("Idempotency-Key", "transfer-1").header("X-Client-Id", "client-1")
+        .content("{\"fromAccountId\":\"Id-123\",\"toAccountId\":\"Id-456\",\"amount\":400}"))
+        .andExpect(status().isOk());
+    }
+
+    assertThat(this.accountsService.getAccount("Id-123").getBalance()).isEqualByComparingTo("100");
+    assertThat(this.accountsService.getAccount("Id-456").getBalance()).isEqualByComparingTo("600");
+
+    this.mockMvc.perform(post("/v1/accounts/transferMoney").contentType(MediaType.APPLICATION_JSON)
+      .header("Idempotency-Key", "transfer-1").header("X-Client-Id", "client-1")
+      .content("{\"fromAccountId\":\"Id-123\",\"toAccountId\":\"Id-456\",\"amount\":50}"))
+      .andExpect(status().isUnprocessableEntity());
+  }
+
+  @Test
+  void transferMoneyWithIdempotencyKeyNeedsClientId() throws Exception {
+    this.accountsService.createAccount(new Account("Id-123", new BigDecimal("500")));
+    this.accountsService.createAccount(new Account("Id-456", new BigDecimal("200")));
+
+    this.mockMvc.perform(post("/v1/accounts/transferMoney").contentType(MediaType.APPLICATION_JSON)
+      .header("Idempotency-Key", "transfer-1")
+      .content("{\"fromAccountId\":\"Id-123\",\"toAccountId\":\"Id-456\",\"amount\":400}"))
+      .andExpect(status().isBadRequest());
+
+    assertThat(this.accountsService.getAccount("Id-123").getBalance()).isEqualByComparingTo("500");
+  }
+
+  @Test
+  void getTransactionsByCursor() throws Exception {
+    this.accountsService.createAccount(new Account("Id-tx-1", new BigDecimal("500")));
+    this.accountsService.createAccount(new Account("Id-tx-2", new BigDecimal("200")));
+    for (int amount = 1; amount <= 3; amount++) {
+      this.mockMvc.perform(post("/v1/accounts/transferMoney").contentType(MediaType.APPLICATION_JSON)
+        .content("{\"fromAccountId\":\"Id-tx-1\",\"toAccountId\":\"Id-tx-2\",\"amount\":" + amount + "}"))
+        .andExpect(status().isOk());
+    }
+
+    MvcResult result = this.mockMvc.perform(get("/v1/accounts/Id-tx-2/transactions?limit=2")).andReturn();
+    this.mockMvc.perform(asyncDispatch(result))
+      .andExpect(status().isOk())
+      .andExpect(jsonPath("$.transactions.length()").value(2))
+      .andExpect(jsonPath("$.transactions[0].fromAccountId").value("Id-tx-1"))
+      .andExpect(jsonPath("$.transactions[0].amount").value(1))
+      .andExpect(jsonPath("$.transactions[0].currency").value("EUR"))
+      .andExpect(jsonPath("$.transactions[0].creditedAmount").value(1))
+      .andExpect(jsonPath("$.transactions[0].creditedCurrency").value("EUR"))
+      .andExpect(jsonPath("$.nextCursor").value(2));
+
+    result = this.mockMvc.perform(get("/v1/accounts/Id-tx-2/transactions?cursor=2&limit=2")).andReturn();
+    this.mockMvc.perform(asyncDispatch(result))
+      .andExpect(status().isOk())
+      .andExpect(jsonPath("$.transactions.length()").value(1))
+      .andExpect(jsonPath("$.transactions[0].amount").value(3))
+      .andExpect(jsonPath("$.nextCursor").doesNotExist());
+  }
+
+  @Test
+  void getTransactionsOfUnknownAccount() throws Exception {
+    this.mockMvc.perform(get("/v1/accounts/Id-unknown/transactions")).andExpect(status().isNotFound());
+  }
+
+  @Test
+  void exportAccountsAsNdjson() throws Exception {
+    this.accountsService.createAccount(new Account("Id-123", new BigDecimal("500")));
+    this.accountsService.createAccount(new Account("Id-456", new BigDecimal("200.50")));
+
+    final MvcResult result = this.mockMvc.perform(get("/v1/accounts").accept(MediaType.APPLICATION_NDJSON))
+      .andReturn();
+    final String body = this.mockMvc.perform(asyncDispatch(result))
+      .andExpect(status().isOk())
+      .andReturn().getResponse().getContentAsString();
+
+    assertThat(body.split("\n")).containsExactlyInAnyOrder(
+      "{\"accountId\":\"Id-123\",\"currency\":\"EUR\",\"balance\":500}",
+      "{\"accountId\":\"Id-456\",\"currency\":\"EUR\",\"balance\":200.50}");
+  }
+
   @Test
   void transferMoneyToTheSameAccount() throws Exception {
     this.mockMvc.perform(post("/v1/accounts/transferMoney").contentType(MediaType.APPLICATION_JSON)
@@ -170,4 +308,120 @@ class AccountsControllerTest {
       .content("{\"fromAccountId\":\"Id-001\",\"toAccountId\":\"\",\"amount\":1000}"))
       .andExpect(status().isBadRequest());
   }
+
+  @Test
+  void createAccountsInBulk() throws Exception {
+    this.accountsService.createAccount(new Account("Id-123", new BigDecimal("500")));
+
+    this.mockMvc.perform(post("/v1/accounts/batch").contentType(MediaType.APPLICATION_JSON)
+      .content("[{\"accountId\":\"Id-456\",\"balance\":200},"
+        + "{\"accountId\":\"Id-123\",\"balance\":100},"
+        + "{\"accountId\":\"Id-789\",\"balance\":-1},"
+        + "{\"accountId\":\"Id-000\",\"balance\":\"lots\"},"
+        + "null,"
+        + "{\"accountId\":\"Id-789\",\"balance\":100}]"))
+      .andExpect(status().isOk())
+      .andExpect(jsonPath("$.created").value(2))
+      .andExpect(jsonPath("$.failures.length()").value(4))
+      .andExpect(jsonPath("$.failures[0].index").value(1))
+      .andExpect(jsonPath("$.failures[0].status").value("DUPLICATE_ACCOUNT_ID"))
+      .andExpect(jsonPath("$.failures[1].index").value(2))
+      .andExpect(jsonPath("$.failures[1].status").value("INVALID_ACCOUNT"))
+      .andExpect(jsonPath("$.failures[2].index").value(3))
+      .andExpect(jsonPath("$.failures[2].status").value("INVALID_ACCOUNT"))
+      .andExpect(jsonPath("$.failures[3].index").value(4))
+      .andExpect(jsonPath("$.failures[3].status").value("INVALID_ACCOUNT"));
+
+    assertThat(this.accountsService.getAccount("Id-123").getBalance()).isEqualByComparingTo("500");
+    assertThat(this.accountsService.getAccount("Id-456").getBalance()).isEqualByComparingTo("200");
+    assertThat(this.accountsService.getAccount("Id-789").getBalance()).isEqualByComparingTo("100");
+    assertThat(this.accountsService.getAccount("Id-000")).isNull();
+  }
+
+  @Test
+  void createAccountsInBulkAcrossChunks() throws Exception {
+    final StringBuilder content = new StringBuilder("[");
+    for (int i = 0; i < 2_500; i++) {
+      content.append(i == 0 ? "" : ",").append("{\"accountId\":\"Id-").append(i).append("\",\"balance\":1}");
+    }
+    content.append(']');
+
+    this.mockMvc.perform(post("/v1/accounts/batch").contentType(MediaType.APPLICATION_JSON)
+      .content(content.toString()))
+      .andExpect(status().isOk())
+      .andExpect(jsonPath("$.created").value(2_500))
+      .andExpect(jsonPath("$.failures").isEmpty());
+
+    assertThat(this.accountsService.getAccountsRepository().countAccounts()).isEqualTo(2_500);
+  }
+
+  @Test
+  void createAccountsInBulkMalformed() throws Exception {
+    this.mockMvc.perform(post("/v1/accounts/batch").contentType(MediaType.APPLICATION_JSON)
+      .content("{\"accountId\":\"Id-123\",\"balance\":1000}")).andExpect(status().isBadRequest());
+
+    this.mockMvc.perform(post("/v1/accounts/batch").contentType(MediaType.APPLICATION_JSON)
+      .content("[{\"accountId\":\"Id-123\",\"balance\":1000},{\"accountId\"")).andExpect(status().isBadRequest());
+  }
+
+  @Test
+  void transferMoneyBatchBestEffort() throws Exception {
+    this.accountsService.createAccount(new Account("Id-123", new BigDecimal("500")));
+    this.accountsService.createAccount(new Account("Id-456", new BigDecimal("200")));
+    this.accountsService.createAccount(new Account("Id-789", new BigDecimal("100")));
+
+    this.mockMvc.perform(post("/v1/accounts/transferMoney/batch").contentType(MediaType.APPLICATION_JSON)
+      .content("{\"mode\":\"BEST_EFFORT\",\"transfers\":["
+        + "{\"fromAccountId\":\"Id-123\",\"toAccountId\":\"Id-456\",\"amount\":400},"
+        + "{\"fromAccountId\":\"Id-789\",\"toAccountId\":\"Id-000\",\"amount\":50},"
+        + "{\"fromAccountId\":\"Id-123\",\"toAccountId\":\"Id-456\",\"amount\":400}]}"))
+      .andExpect(status().isOk())
+      .andExpect(jsonPath("$[0].status").value("COMPLETED"))
+      .andExpect(jsonPath("$[1].status").value("ACCOUNT_NOT_FOUND"))
+      .andExpect(jsonPath("$[2].status").value("INSUFFICIENT_FUNDS"));
+
+    assertThat(this.accountsService.getAccount("Id-123").getBalance()).isEqualByComparingTo("100");
+    assertThat(this.accountsService.getAccount("Id-456").getBalance()).isEqualByComparingTo("600");
+    assertThat(this.accountsService.getAccount("Id-789").getBalance()).isEqualByComparingTo("100");
+  }
+
+  @Test
+  void transferMoneyBatchAllOrNothing() throws Exception {
+    this.accountsService.createAccount(new Account("Id-123", new BigDecimal("500")));
+    this.accountsService.createAccount(new Account("Id-456", new BigDecimal("200")));
+
+    this.mockMvc.perform(post("/v1/accounts/transferMoney/batch").contentType(MediaType.APPLICATION_JSON)
+      .content("{\"mode\":\"ALL_OR_NOTHING\",\"transfers\":["
+        + "{\"fromAccountId\":\"Id-123\",\"toAccountId\":\"Id-456\",\"amount\":400},"
+        + "{\"fromAccountId\":\"Id-123\",\"toAccountId\":\"Id-456\",\"amount\":400}]}"))
+      .andExpect(status().isBadRequest())
+      .andExpect(jsonPath("$[0].status").value("ABORTED"))
+      .andExpect(jsonPath("$[1].status").value("INSUFFICIENT_FUNDS"));
+
+    assertThat(this.accountsService.getAccount("Id-123").getBalance()).isEqualByComparingTo("500");
+    assertThat(this.accountsService.getAccount("Id-456").getBalance()).isEqualByComparingTo("200");
+
+    this.mockMvc.perform(post("/v1/accounts/transferMoney/batch").contentType(MediaType.APPLICATION_JSON)
+      .content("{\"mode\":\"ALL_OR_NOTHING\",\"transfers\":["
+        + "{\"fromAccountId\":\"Id-123\",\"toAccountId\":\"Id-456\",\"amount\":400},"
+        + "{\"fromAccountId\":\"Id-456\",\"toAccountId\":\"Id-123\",\"amount\":600}]}"))
+      .andExpect(status().isOk());
+
+    assertThat(this.accountsService.getAccount("Id-123").getBalance()).isEqualByComparingTo("700");
+    assertThat(this.accountsService.getAccount("Id-456").getBalance()).isEqualByComparingTo("0");
+  }
+
+  @Test
+  void transferMoneyBatchNoMode() throws Exception {
+    this.mockMvc.perform(post("/v1/accounts/transferMoney/batch").contentType(MediaType.APPLICATION_JSON)
+      .content("{\"transfers\":[{\"fromAccountId\":\"Id-001\",\"toAccountId\":\"Id-002\",\"amount\":1}]}"))
+      .andExpect(status().isBadRequest());
+  }
+
+  @Test
+  void transferMoneyBatchInvalidTransfer() throws Exception {
+    this.mockMvc.perform(post("/v1/accounts/transferMoney/batch").contentType(MediaType.APPLICATION_JSON)
+      .content("{\"mode\":\"BEST_EFFORT\",\"transfers\":[{\"fromAccountId\":\"Id-001\",\"amount\":1}]}"))
+      .andExpect(status().isBadRequest());
+  }
 }
@@ -0,0 +1,113 @@
+package com.dws.challenge;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.delete;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+import static org.springframework.test.web.servlet.setup.MockMvcBuilders.webAppContextSetup;
+
+import java.math.BigDecimal;
+
+import com.dws.challenge.domain.Account;
+import com.dws.challenge.service.AccountsService;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+import org.springframework.test.context.web.WebAppConfiguration;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.web.context.WebApplicationContext;
+
+@ExtendWith(SpringExtension.class)
+@SpringBootTest
+@WebAppConfiguration
+class HoldsControllerTest {
+
+  private MockMvc mockMvc;
+
+  @Autowired
+  private AccountsService accountsService;
+
+  @Autowired
+  private ObjectMapper objectMapper;
+
+  @Autowired
+  private WebApplicationContext webApplicationContext;
+
+  @BeforeEach
+  void prepareMockMvc() {
+    this.mockMvc = webAppContextSetup(this.webApplicationContext).build();
+
+    accountsService.getAccountsRepository().clearAccounts();
+    accountsService.createAccount(new Account("Id-1", new BigDecimal("100")));
+    accountsService.createAccount(new Account("Id-2", new BigDecimal("100")));
+  }
+
+  @Test
+  void authorizeAndCaptureHold() throws Exception {
+    final String response = this.mockMvc.perform(post("/v1/accounts/Id-1/holds")
+        .contentType(MediaType.APPLICATION_JSON)
+        .content("{\"amount\":60}"))
+      .andExpect(status().isCreated())
+      .andExpect(jsonPath("$.accountId").value("Id-1"))
+      .andReturn().getResponse().getContentAsString();
+    final String holdId = this.objectMapper.readTree(response).get("id").asText();
+
+    this.mockMvc.perform(get("/v1/accounts/Id-1"))
+      .andExpect(status().isOk())
+      .andExpect(jsonPath("$.heldAmount").value(60));
+    this.mockMvc.perform(get("/v1/accounts/Id-1/holds"))
+      .andExpect(status().isOk())
+      .andExpect(jsonPath("$[0].id").value(holdId));
+    this.mockMvc.perform(post("/v1/accounts/transferMoney")
+        .contentType(MediaType.APPLICATION_JSON)
+        .content("{\"fromAccountId\":\"Id-1\",\"toAccountId\":\"Id-2\",\"amount\":50}"))
+      .andExpect(status().isBadRequest());
+
+    this.mockMvc.perform(post("/v1/accounts/Id-1/holds/" + holdId + "/capture")
+        .contentType(MediaType.APPLICATION_JSON)
+        .content("{\"toAccountId\":\"Id-2\",\"amount\":30}"))
+      .andExpect(status().isOk())
+      .andExpect(jsonPath("$.amount").value(30));
+    this.mockMvc.perform(delete("/v1/accounts/Id-1/holds/" + holdId))
+      .andExpect(status().isNotFound());
+
+    assertThat(accountsService.getAccount("Id-1").getBalance()).isEqualByComparingTo("70");
+    assertThat(accountsService.getAccount("Id-2").getBalance()).isEqualByComparingTo("130");
+    assertThat(accountsService.getAccount("Id-1").getHeldAmount()).isEqualByComparingTo("0");
+  }
+
+  @Test
+  void voidHoldAndRejectHoldBeyondAvailableBalance() throws Exception {
+    this.mockMvc.perform(post("/v1/accounts/Id-1/holds")
+        .contentType(MediaType.APPLICATION_JSON)
+        .content("{\"amount\":100.01}"))
+      .andExpect(status().isBadRequest());
+    this.mockMvc.perform(post("/v1/accounts/Id-3/holds")
+        .contentType(MediaType.APPLICATION_JSON)
+        .content("{\"amount\":1}"))
+      .andExpect(status().isNotFound());
+
+    final String response = this.mockMvc.perform(post("/v1/accounts/Id-1/holds")
+        .contentType(MediaType.APPLICATION_JSON)
+        .content("{\"amount\":100,\"ttlSeconds\":60}"))
+      .andExpect(status().isCreated())
+      .andReturn().getResponse().getContentAsString();
+    final String holdId = this.objectMapper.readTree(response).get("id").asText();
+
+    this.mockMvc.perform(delete("/v1/accounts/Id-2/holds/" + holdId))
+      .andExpect(status().isNotFound());
+    this.mockMvc.perform(delete("/v1/accounts/Id-1/holds/" + holdId))
+      .andExpect(status().isOk())
+      .andExpect(jsonPath("$.id").value(holdId));
+    this.mockMvc.perform(get("/v1/accounts/Id-1/holds"))
+      .andExpect(status().isOk())
+      .andExpect(jsonPath("$").isEmpty());
+  }
+}
@@ -0,0 +1,111 @@
+package com.dws.challenge;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.delete;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+import static org.springframework.test.web.servlet.setup.MockMvcBuilders.webAppContextSetup;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+
+import com.dws.challenge.domain.Account;
+import com.dws.challenge.scheduling.ScheduledTransferService;
+import com.dws.challenge.service.AccountsService;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+import org.springframework.test.context.web.WebAppConfiguration;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.web.context.WebApplicationContext;
+
+@ExtendWith(SpringExtension.class)
+@SpringBootTest
+@WebAppConfiguration
+class ScheduledTransfersControllerTest {
+
+  private MockMvc mockMvc;
+
+  @Autowired
+  private AccountsService accountsService;
+
+  @Autowired
+  private ScheduledTransferService scheduledTransferService;
+
+  @Autowired
+  private ObjectMapper objectMapper;
+
+  @Autowired
+  private WebApplicationContext webApplicationContext;
+
+  @BeforeEach
+  void prepareMockMvc() {
+    this.mockMvc = webAppContextSetup(this.webApplicationContext).build();
+
+    accountsService.getAccountsRepository().clearAccounts();
+    accountsService.createAccount(new Account("Id-1", new BigDecimal("100")));
+    accountsService.createAccount(new Account("Id-2", new BigDecimal("100")));
+  }
+
+  @Test
+  void scheduleListAndCancelTransfer() throws Exception {
+    final Instant executeAt = Instant.now().plus(1, ChronoUnit.DAYS);
+    final String response = this.mockMvc.perform(post("/v1/accounts/transferMoney/scheduled")
+        .contentType(MediaType.APPLICATION_JSON)
+        .content("{\"transfer\":{\"fromAccountId\":\"Id-1\",\"toAccountId\":\"Id-2\",\"amount\":25},"
+          + "\"executeAt\":\"" + executeAt + "\"}"))
+      .andExpect(status().isCreated())
+      .andExpect(jsonPath("$.transfer.amount").value(25))
+      .andExpect(jsonPath("$.executeAt").value(executeAt.toString()))
+      .andReturn().getResponse().getContentAsString();
+    final String id = this.objectMapper.readTree(response).get("id").asText();
+
+    this.mockMvc.perform(get("/v1/accounts/transferMoney/scheduled").param("accountId", "Id-2"))
+      .andExpect(status().isOk())
+      .andExpect(jsonPath("$[?(@.id == '" + id + "')]").exists());
+
+    this.mockMvc.perform(delete("/v1/accounts/transferMoney/scheduled/" + id))
+      .andExpect(status().isOk())
+      .andExpect(jsonPath("$.id").value(id));
+    this.mockMvc.perform(delete("/v1/accounts/transferMoney/scheduled/" + id))
+      .andExpect(status().isNotFound());
+  }
+
+  @Test
+  void executeDueTransfer() throws Exception {
+    this.mockMvc.perform(post("/v1/accounts/transferMoney/scheduled")
+        .contentType(MediaType.APPLICATION_JSON)
+        .content("{\"transfer\":{\"fromAccountId\":\"Id-1\",\"toAccountId\":\"Id-2\",\"amount\":25},"
+          + "\"executeAt\":\"" + Instant.now() + "\"}"))
+      .andExpect(status().isCreated());
+
+    this.scheduledTransferService.executeDue(Instant.now().plusSeconds(1));
+    assertThat(accountsService.getAccount("Id-1").getBalance()).isEqualByComparingTo("75");
+    assertThat(accountsService.getAccount("Id-2").getBalance()).isEqualByComparingTo("125");
+  }
+
+  @Test
+  void scheduleTransferFromUnknownAccount() throws Exception {
+    this.mockMvc.perform(post("/v1/accounts/transferMoney/scheduled")
+        .contentType(MediaType.APPLICATION_JSON)
+        .content("{\"transfer\":{\"fromAccountId\":\"Id-9\",\"toAccountId\":\"Id-2\",\"amount\":25},"
+          + "\"executeAt\":\"" + Instant.now() + "\"}"))
+      .andExpect(status().isNotFound());
+  }
+
+  @Test
+  void scheduleTransferWithoutTime() throws Exception {
+    this.mockMvc.perform(post("/v1/accounts/transferMoney/scheduled")
+        .contentType(MediaType.APPLICATION_JSON)
+        .content("{\"transfer\":{\"fromAccountId\":\"Id-1\",\"toAccountId\":\"Id-2\",\"amount\":25}}"))
+      .andExpect(status().isBadRequest());
+  }
+}
@@ -0,0 +1,66 @@
+package com.dws.challenge;
+
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+import static org.springframework.test.web.servlet.setup.MockMvcBuilders.webAppContextSetup;
+
+import java.math.BigDecimal;
+
+import com.dws.challenge.domain.Account;
+import com.dws.challenge.service.AccountsService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+import org.springframework.test.context.web.WebAppConfiguration;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.request.MockHttpServletRequestBuilder;
+import org.springframework.web.context.WebApplicationContext;
+
+@ExtendWith(SpringExtension.class)
+@SpringBootTest(properties = {
+  "challenge.admission.client.rate-per-second=0.01",
+  "challenge.admission.client.burst=2"
+})
+@WebAppConfiguration
+class TransferAdmissionTest {
+
+  private MockMvc mockMvc;
+
+  @Autowired
+  private AccountsService accountsService;
+
+  @Autowired
+  private WebApplicationContext webApplicationContext;
+
+  @BeforeEach
+  void prepareMockMvc() {
+    this.mockMvc = webAppContextSetup(this.webApplicationContext).build();
+
+    accountsService.getAccountsRepository().clearAccounts();
+    accountsService.createAccount(new Account("Id-1", new BigDecimal("100")));
+    accountsService.createAccount(new Account("Id-2", new BigDecimal("100")));
+  }
+
+  @Test
+  void rejectsClientBeyondItsRate() throws Exception {
+    this.mockMvc.perform(transfer("flooding-client")).andExpect(status().isOk());
+    this.mockMvc.perform(transfer("flooding-client")).andExpect(status().isOk());
+
+    this.mockMvc.perform(transfer("flooding-client"))
+      .andExpect(status().isTooManyRequests())
+      .andExpect(header().string("Retry-After", "100"));
+    this.mockMvc.perform(transfer("other-client")).andExpect(status().isOk());
+  }
+
+  private static MockHttpServletRequestBuilder transfer(String clientId) {
+    return post("/v1/accounts/transferMoney")
+      .header("X-Client-Id", clientId)
+      .contentType(MediaType.APPLICATION_JSON)
+      .content("{\"fromAccountId\":\"Id-1\",\"toAccountId\":\"Id-2\",\"amount\":1}");
+  }
+}
@@ -0,0 +1,145 @@
+package com.dws.challenge.admission;
+
+import com.dws.challenge.exception.AdmissionRejectedException;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class AdmissionControlTest {
+
+  private final AtomicLong clock = new AtomicLong();
+
+  @Test
+  void clientBucketAdmitsBurstThenRate() {
+    final AdmissionControl admissionControl = admissionControl(10, 3, 0, 1, 100);
+
+    for (int i = 0; i < 3; i++) {
+      admissionControl.admit("client", "Id-" + i).close();
+    }
+    assertThatThrownBy(() -> admissionControl.admit("client", "Id-3"))
+      .isInstanceOf(AdmissionRejectedException.class)
+      .extracting("retryAfterSeconds").isEqualTo(1L);
+    admissionControl.admit("other-client", "Id-3").close();
+
+    advance(100);
+    admissionControl.admit("client", "Id-3").close();
+    assertThat(admissionControl.getClientRejections()).isEqualTo(1);
+  }
+
+  @Test
+  void accountBucketLimitsDebitsOfOneAccount() {
+    final AdmissionControl admissionControl = admissionControl(0, 1, 1, 2, 100);
+
+    admissionControl.admit("first", "Id-1").close();
+    admissionControl.admit("second", "Id-1").close();
+    assertThatThrownBy(() -> admissionControl.admit("third", "Id-1"))
+      .isInstanceOf(AdmissionRejectedException.class)
+      .hasMessageContaining("Id-1");
+    admissionControl.admit("third", "Id-2").close();
+    admissionControl.admit("third", null).close();
+    assertThat(admissionControl.getAccountRejections()).isEqualTo(1);
+  }
+
+  @Test
+  void batchTakesATokenPerTransfer() {
+    final AdmissionControl admissionControl = admissionControl(10, 5, 10, 3, 100);
+
+    admissionControl.admitBatch("client", List.of("Id-1", "Id-2", "Id-2")).close();
+    assertThatThrownBy(() -> admissionControl.admitBatch("client", List.of("Id-3", "Id-3", "Id-3")))
+      .isInstanceOf(AdmissionRejectedException.class)
+      .hasMessageContaining("client");
+    assertThatThrownBy(() -> admissionControl.admitBatch("other-client", List.of("Id-2", "Id-2")))
+      .isInstanceOf(AdmissionRejectedException.class)
+      .hasMessageContaining("Id-2");
+    assertThat(admissionControl.getClientRejections()).isEqualTo(1);
+    assertThat(admissionControl.getAccountRejections()).isEqualTo(1);
+  }
+
+  @Test
+  void batchLargerThanTheBurstLeavesTheBucketInDebt() {
+    final TokenBucketLimiter limiter = new TokenBucketLimiter(10, 2);
+
+    assertThat(limiter.tryAcquire("Id-1", 0, 5)).isZero();
+    assertThat(limiter.tryAcquire("Id-1", TimeUnit.MILLISECONDS.toNanos(300), 1))
+      .isEqualTo(TimeUnit.MILLISECONDS.toNanos(100));
+    assertThat(limiter.tryAcquire("Id-1", TimeUnit.MILLISECONDS.toNanos(400), 1)).isZero();
+  }
+
+  @Test
+  void rejectedRequestGivesBackItsTokens() {
+    final AdmissionControl admissionControl = admissionControl(10, 2, 10, 1, 1);
+    final AdmissionControl.Permit permit = admissionControl.admit("client", "Id-1");
+
+    assertThatThrownBy(() -> admissionControl.admit("client", "Id-2"))
+      .isInstanceOf(AdmissionRejectedException.class)
+      .hasMessageContaining("in progress");
+    permit.close();
+    assertThatThrownBy(() -> admissionControl.admitBatch("other-client", List.of("Id-3", "Id-1")))
+      .isInstanceOf(AdmissionRejectedException.class)
+      .hasMessageContaining("Id-1");
+
+    admissionControl.admit("client", "Id-2").close();
+    admissionControl.admitBatch("other-client", List.of("Id-3", "Id-4")).close();
+    assertThat(admissionControl.getConcurrencyRejections()).isEqualTo(1);
+    assertThat(admissionControl.getAccountRejections()).isEqualTo(1);
+  }
+
+  @Test
+  void concurrencyLimitFollowsLatency() {
+    final AdmissionControl admissionControl = admissionControl(0, 1, 0, 1, 2);
+    final AdmissionControl.Permit first = admissionControl.admit("client", "Id-1");
+    final AdmissionControl.Permit second = admissionControl.admit("client", "Id-2");
+
+    assertThatThrownBy(() -> admissionControl.admit("client", "Id-3"))
+      .isInstanceOf(AdmissionRejectedException.class);
+    advance(1);
+    first.close();
+    second.close();
+    assertThat(admissionControl.getConcurrencyLimit()).isEqualTo(3);
+    assertThat(admissionControl.getInFlight()).isZero();
+
+    final AdmissionControl.Permit slow = admissionControl.admit("client", "Id-1");
+    advance(30);
+    slow.close();
+    assertThat(admissionControl.getConcurrencyLimit()).isEqualTo(2);
+    assertThat(admissionControl.getConcurrencyRejections()).isEqualTo(1);
+  }
+
+  @Test
+  void dropsFullBuckets() {
+    final TokenBucketLimiter limiter = new TokenBucketLimiter(10, 2);
+    assertThat(limiter.tryAcquire("Id-1", 0)).isZero();
+    assertThat(limiter.tryAcquire("Id-2", 0)).isZero();
+    assertThat(limiter.tryAcquire("Id-2", 0)).isZero();
+    assertThat(limiter.tryAcquire("Id-2", 0)).isEqualTo(TimeUnit.MILLISECONDS.toNanos(100));
+
+    limiter.evictFull(TimeUnit.MILLISECONDS.toNanos(100));
+
+    assertThat(limiter.size()).isEqualTo(1);
+    assertThat(limiter.tryAcquire("Id-2", TimeUnit.MILLISECONDS.toNanos(100))).isZero();
+  }
+
+  @Test
+  void disabledAdmitsEverything() {
+    final AdmissionControl admissionControl = AdmissionControl.disabled();
+    for (int i = 0; i < 1_000; i++) {
+      admissionControl.admit("client", "Id-1");
+    }
+    assertThat(admissionControl.getInFlight()).isZero();
+  }
+
+  private AdmissionControl admissionControl(double clientRate, int clientBurst, double accountRate, int accountBurst,
+                                            int initialLimit) {
+    return new AdmissionControl(true, clientRate, clientBurst, accountRate, accountBurst, initialLimit, 1,
+      Math.max(initialLimit, 4), TimeUnit.MILLISECONDS.toNanos(10), this.clock::get, false);
+  }
+
+  private void advance(long millis) {
+    this.clock.addAndGet(TimeUnit.MILLISECONDS.toNanos(millis));
+  }
+}
@@ -0,0 +1,135 @@
+package com.dws.challenge.binary;
+
+import com.dws.challenge.domain.Account;
+import com.dws.challenge.domain.MoneyTransfer;
+import com.dws.challenge.exception.InsufficientFundsException;
+import com.dws.challenge.logging.RequestLogSampler;
+import com.dws.challenge.service.AccountsService;
+import com.dws.challenge.service.MoneyTransferService;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+import java.util.function.Consumer;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class BinaryTransportServerTest {
+
+  @Mock
+  AccountsService accountsService;
+  @Mock
+  MoneyTransferService moneyTransferService;
+
+  BinaryTransportServer server;
+
+  @BeforeEach
+  void startServer() throws IOException {
+    this.server = new BinaryTransportServer(this.accountsService, this.moneyTransferService,
+      RequestLogSampler.disabled(), 0, 4);
+  }
+
+  @AfterEach
+  void stopServer() throws IOException {
+    this.server.destroy();
+  }
+
+  @Test
+  void answersPipelinedRequestsInOrder() throws IOException {
+    when(this.accountsService.getAccount("Id-1")).thenReturn(new Account("Id-1", new BigDecimal("12.50"), "EUR"));
+    doAnswer(invocation -> {
+      if (invocation.<MoneyTransfer>getArgument(0).getAmount().compareTo(BigDecimal.TEN) > 0) {
+        throw new InsufficientFundsException("Id-1");
+      }
+      return null;
+    }).when(this.moneyTransferService).transferMoney(any());
+
+    final ByteBuffer requests = ByteBuffer.allocate(1024);
+    frame(requests, BinaryProtocol.GET_ACCOUNT, 1, body -> BinaryProtocol.putString(body, "Id-1"));
+    frame(requests, BinaryProtocol.TRANSFER, 2, body -> transfer(body, new BigDecimal("100.00")));
+    frame(requests, BinaryProtocol.TRANSFER, 3, body -> transfer(body, new BigDecimal("1.00")));
+    frame(requests, BinaryProtocol.TRANSFER, 4, body -> transfer(body, new BigDecimal("-1.00")));
+    frame(requests, (byte) 42, 5, body -> { });
+
+    try (SocketChannel client = connect()) {
+      requests.flip();
+      while (requests.hasRemaining()) {
+        client.write(requests);
+      }
+
+      final ByteBuffer account = readFrame(client);
+      assertThat(account.getInt()).isEqualTo(1);
+      assertThat(account.get()).isEqualTo(BinaryProtocol.OK);
+      assertThat(BinaryProtocol.getAmount(account)).isEqualByComparingTo("12.50");
+      assertThat(BinaryProtocol.getOptionalString(account)).isEqualTo("EUR");
+      assertResponse(readFrame(client), 2, BinaryProtocol.INSUFFICIENT_FUNDS);
+      assertResponse(readFrame(client), 3, BinaryProtocol.OK);
+      assertResponse(readFrame(client), 4, BinaryProtocol.INVALID_AMOUNT);
+      assertResponse(readFrame(client), 5, BinaryProtocol.INVALID_REQUEST);
+    }
+    verify(this.moneyTransferService).transferMoney(new MoneyTransfer("Id-1", "Id-2", new BigDecimal("1.00")));
+    assertThat(this.server.getRequests()).isEqualTo(5);
+  }
+
+  @Test
+  void closesConnectionOnInvalidFrameLength() throws IOException {
+    try (SocketChannel client = connect()) {
+      client.write(ByteBuffer.allocate(4).putInt(0, BinaryProtocol.MAX_FRAME_LENGTH + 1));
+
+      assertThat(client.read(ByteBuffer.allocate(1))).isEqualTo(-1);
+    }
+  }
+
+  private SocketChannel connect() throws IOException {
+    return SocketChannel.open(new InetSocketAddress(InetAddress.getLoopbackAddress(), this.server.getPort()));
+  }
+
+  private static void transfer(final ByteBuffer body, final BigDecimal amount) {
+    BinaryProtocol.putString(body, "Id-1");
+    BinaryProtocol.putString(body, "Id-2");
+    BinaryProtocol.putAmount(body, amount);
+  }
+
+  private static void frame(final ByteBuffer buffer, final byte opcode, final int requestId,
+                            final Consumer<ByteBuffer> payload) {
+    final int start = buffer.position();
+    buffer.position(start + 4);
+    buffer.put(opcode);
+    buffer.putInt(requestId);
+    payload.accept(buffer);
+    buffer.putInt(start, buffer.position() - start - 4);
+  }
+
+  private static ByteBuffer readFrame(final SocketChannel channel) throws IOException {
+    final ByteBuffer length = readFully(channel, ByteBuffer.allocate(4));
+    return readFully(channel, ByteBuffer.allocate(length.getInt()));
+  }
+
+  private static ByteBuffer readFully(final SocketChannel channel, final ByteBuffer buffer) throws IOException {
+    while (buffer.hasRemaining()) {
+      if (channel.read(buffer) < 0) {
+        throw new IOException("Connection closed by the server");
+      }
+    }
+    return buffer.flip();
+  }
+
+  private static void assertResponse(final ByteBuffer response, final int requestId, final byte status) {
+    assertThat(response.getInt()).isEqualTo(requestId);
+    assertThat(response.get()).isEqualTo(status);
+  }
+}
@@ -0,0 +1,48 @@
+package com.dws.challenge.cache;
+
+import com.dws.challenge.domain.Account;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.assertj.core.api.Assertions.assertThat;
+
+class AccountViewCacheTest {
+
+  @Test
+  void servesSameBytesUntilInvalidated() {
+    final AccountViewCache cache = new AccountViewCache(new ObjectMapper(), 16);
+    final Account account = new Account("Id-1", new BigDecimal("100"));
+
+    final byte[] first = cache.getJson(account);
+    assertThat(new String(first, UTF_8)).isEqualTo("{\"accountId\":\"Id-1\",\"balance\":100}");
+    assertThat(cache.getJson(account)).isSameAs(first);
+
+    account.setBalance(new BigDecimal("70"));
+    cache.invalidate("Id-1");
+    assertThat(new String(cache.getJson(account), UTF_8)).isEqualTo("{\"accountId\":\"Id-1\",\"balance\":70}");
+    assertThat(cache.getHits()).isEqualTo(1);
+    assertThat(cache.getMisses()).isEqualTo(2);
+  }
+
+  @Test
+  void staysWithinMaxEntries() {
+    final AccountViewCache cache = new AccountViewCache(new ObjectMapper(), 16);
+    for (int i = 0; i < 100; i++) {
+      cache.getJson(new Account("Id-" + i, BigDecimal.ONE));
+    }
+
+    assertThat(cache.getEntries()).isLessThanOrEqualTo(16);
+  }
+
+  @Test
+  void serializesEveryReadWhenDisabled() {
+    final AccountViewCache cache = AccountViewCache.disabled();
+    final Account account = new Account("Id-1", BigDecimal.TEN);
+
+    assertThat(cache.getJson(account)).isNotSameAs(cache.getJson(account));
+    assertThat(cache.getEntries()).isZero();
+  }
+}
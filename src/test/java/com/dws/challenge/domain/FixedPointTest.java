@@ -0,0 +1,57 @@
+package com.dws.challenge.domain;
+
+import com.dws.challenge.exception.InvalidAmountException;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class FixedPointTest {
+
+  @Test
+  void convertsToMinorUnits() {
+    assertThat(FixedPoint.toUnits(new BigDecimal("123.45"), 2)).isEqualTo(12345);
+    assertThat(FixedPoint.toUnits(new BigDecimal("100"), 2)).isEqualTo(10000);
+    assertThat(FixedPoint.toUnits(new BigDecimal("1.5000"), 2)).isEqualTo(150);
+    assertThat(FixedPoint.toUnits(new BigDecimal("1E+2"), 0)).isEqualTo(100);
+  }
+
+  @Test
+  void convertsToDecimal() {
+    assertThat(FixedPoint.toDecimal(12345, 2)).isEqualTo(new BigDecimal("123.45"));
+    assertThat(FixedPoint.toDecimal(7, 0)).isEqualTo(new BigDecimal("7"));
+  }
+
+  @Test
+  void rejectsScaleViolation() {
+    assertThatThrownBy(() -> FixedPoint.toUnits(new BigDecimal("0.001"), 2))
+      .isInstanceOf(InvalidAmountException.class)
+      .hasMessage("Amount 0.001 has more than 2 fractional digits");
+  }
+
+  @Test
+  void rejectsOverflow() {
+    assertThatThrownBy(() -> FixedPoint.toUnits(new BigDecimal("92233720368547758.08"), 2))
+      .isInstanceOf(InvalidAmountException.class)
+      .hasMessage("Amount 92233720368547758.08 is out of the supported range");
+    assertThatThrownBy(() -> FixedPoint.add(Long.MAX_VALUE, 1))
+      .isInstanceOf(InvalidAmountException.class)
+      .hasMessage("Balance overflow");
+  }
+
+  @Test
+  void accountKeepsDecimalViewInFixedPoint() {
+    final Account account = new Account("Id-1", new BigDecimal("10.5"));
+    account.switchToFixedPoint(2);
+
+    assertThat(account.getBalance()).isEqualTo(new BigDecimal("10.50"));
+    assertThat(account.getFixedPointBalance().get()).isEqualTo(1050);
+
+    account.setBalance(new BigDecimal("3"));
+    assertThat(account.getFixedPointBalance().get()).isEqualTo(300);
+    assertThatThrownBy(() -> account.setBalance(new BigDecimal("0.125")))
+      .isInstanceOf(InvalidAmountException.class);
+  }
+}
@@ -0,0 +1,154 @@
+package com.dws.challenge.engine;
+
+import com.dws.challenge.domain.Account;
+import com.dws.challenge.domain.MoneyTransfer;
+import com.dws.challenge.exception.InsufficientFundsException;
+import com.dws.challenge.exception.InvalidAmountException;
+import com.dws.challenge.exception.TransferBatchAbortedException;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ThreadLocalRandom;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class CasTransferEngineTest {
+
+  private final CasTransferEngine engine = new CasTransferEngine("in-memory");
+
+  @Test
+  void transfersMoney() {
+    final Account from = new Account("Id-1", new BigDecimal("150"));
+    final Account to = new Account("Id-2", new BigDecimal("10"));
+
+    this.engine.transfer(from, to, new BigDecimal("100"));
+
+    assertThat(from.getBalance()).isEqualByComparingTo("50");
+    assertThat(to.getBalance()).isEqualByComparingTo("110");
+  }
+
+  @Test
+  void failsOnInsufficientFundsWithoutSideEffects() {
+    final Account from = new Account("Id-1", new BigDecimal("50"));
+    final Account to = new Account("Id-2", new BigDecimal("10"));
+
+    assertThatThrownBy(() -> this.engine.transfer(from, to, new BigDecimal("50.01")))
+      .isInstanceOf(InsufficientFundsException.class);
+    assertThat(from.getBalance()).isEqualByComparingTo("50");
+    assertThat(to.getBalance()).isEqualByComparingTo("10");
+  }
+
+  @Test
+  void concurrentTransfersKeepTotalAndNeverGoNegative() {
+    concurrentTransfersKeepTotal(false);
+  }
+
+  @Test
+  void concurrentFixedPointTransfersKeepTotalAndNeverGoNegative() {
+    concurrentTransfersKeepTotal(true);
+  }
+
+  @Test
+  void atomicBatchIsCheckedAgainstNetAmounts() {
+    final Account first = new Account("Id-1", new BigDecimal("100"));
+    final Account second = new Account("Id-2", new BigDecimal("0"));
+    final Account third = new Account("Id-3", new BigDecimal("0"));
+    final Map<String, Account> accounts = Map.of("Id-1", first, "Id-2", second, "Id-3", third);
+
+    this.engine.transferAtomically(List.of(
+      new MoneyTransfer("Id-1", "Id-2", new BigDecimal("100")),
+      new MoneyTransfer("Id-2", "Id-3", new BigDecimal("60"))), accounts);
+
+    assertThat(first.getBalance()).isEqualByComparingTo("0");
+    assertThat(second.getBalance()).isEqualByComparingTo("40");
+    assertThat(third.getBalance()).isEqualByComparingTo("60");
+  }
+
+  @Test
+  void failedAtomicBatchRefundsAppliedDebits() {
+    final Account first = new Account("Id-1", new BigDecimal("100"));
+    final Account second = new Account("Id-2", new BigDecimal("10"));
+    final Account third = new Account("Id-3", new BigDecimal("0"));
+    final Map<String, Account> accounts = Map.of("Id-1", first, "Id-2", second, "Id-3", third);
+
+    assertThatThrownBy(() -> this.engine.transferAtomically(List.of(
+      new MoneyTransfer("Id-1", "Id-3", new BigDecimal("50")),
+      new MoneyTransfer("Id-2", "Id-3", new BigDecimal("20"))), accounts))
+      .isInstanceOf(TransferBatchAbortedException.class)
+      .extracting("failedIndex").isEqualTo(1);
+
+    assertThat(first.getBalance()).isEqualByComparingTo("100");
+    assertThat(second.getBalance()).isEqualByComparingTo("10");
+    assertThat(third.getBalance()).isEqualByComparingTo("0");
+  }
+
+  @Test
+  void overflowingCreditRefundsTheDebit() {
+    final Account from = fixedPointAccount("Id-1", 10_000);
+    final Account to = fixedPointAccount("Id-2", Long.MAX_VALUE - 50);
+
+    assertThatThrownBy(() -> this.engine.transfer(from, to, new BigDecimal("1.00")))
+      .isInstanceOf(InvalidAmountException.class);
+    assertThat(from.getFixedPointBalance().get()).isEqualTo(10_000);
+    assertThat(to.getFixedPointBalance().get()).isEqualTo(Long.MAX_VALUE - 50);
+  }
+
+  @Test
+  void refusesAtomicBatchesOfFixedPointAccounts() {
+    final Account first = fixedPointAccount("Id-1", 10_000);
+    final Account second = fixedPointAccount("Id-2", 0);
+    final Map<String, Account> accounts = Map.of("Id-1", first, "Id-2", second);
+
+    assertThatThrownBy(() -> this.engine.transferAtomically(List.of(
+      new MoneyTransfer("Id-1", "Id-2", new BigDecimal("10.00"))), accounts))
+      .isInstanceOf(UnsupportedOperationException.class);
+
+    assertThat(first.getFixedPointBalance().get()).isEqualTo(10_000);
+    assertThat(second.getFixedPointBalance().get()).isZero();
+  }
+
+  private static Account fixedPointAccount(String accountId, long units) {
+    final Account account = new Account(accountId, BigDecimal.valueOf(units, 2));
+    account.switchToFixedPoint(2);
+    return account;
+  }
+
+  private void concurrentTransfersKeepTotal(boolean fixedPoint) {
+    final List<Account> accounts = new ArrayList<>();
+    for (int i = 0; i < 4; i++) {
+      final Account account = new Account("Id-" + i, new BigDecimal("100"));
+      if (fixedPoint) {
+        account.switchToFixedPoint(2);
+      }
+      accounts.add(account);
+    }
+
+    final List<CompletableFuture<Void>> workers = new ArrayList<>();
+    for (int worker = 0; worker < 8; worker++) {
+      workers.add(CompletableFuture.runAsync(() -> {
+        final ThreadLocalRandom random = ThreadLocalRandom.current();
+        for (int i = 0; i < 20_000; i++) {
+          final int from = random.nextInt(accounts.size());
+          final int to = (from + 1 + random.nextInt(accounts.size() - 1)) % accounts.size();
+          try {
+            this.engine.transfer(accounts.get(from), accounts.get(to), BigDecimal.valueOf(random.nextInt(1, 5000), 2));
+          } catch (InsufficientFundsException expected) {
+            // Part of the workload
+          }
+          assertThat(accounts.get(from).getBalance().signum()).isNotNegative();
+        }
+      }));
+    }
+    CompletableFuture.allOf(workers.toArray(new CompletableFuture[0])).join();
+
+    final BigDecimal total = accounts.stream().map(Account::getBalance).reduce(BigDecimal.ZERO, BigDecimal::add);
+    assertThat(total).isEqualByComparingTo("400");
+    assertThat(this.engine.getAttempts()).isPositive();
+    assertThat(this.engine.getRetryRate()).isBetween(0d, 1d);
+  }
+}
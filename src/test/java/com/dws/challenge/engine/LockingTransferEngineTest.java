@@ -0,0 +1,164 @@
+package com.dws.challenge.engine;
+
+import com.dws.challenge.domain.Account;
+import com.dws.challenge.domain.Hold;
+import com.dws.challenge.domain.MoneyTransfer;
+import com.dws.challenge.domain.StripedBalance;
+import com.dws.challenge.exception.InsufficientFundsException;
+import com.dws.challenge.lock.AccountLockManager;
+import com.dws.challenge.lock.HotAccountDetector;
+import com.dws.challenge.repository.AccountsRepositoryInMemory;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ThreadLocalRandom;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class LockingTransferEngineTest {
+
+  private final LockingTransferEngine engine = new LockingTransferEngine(new AccountLockManager(16),
+    new AccountsRepositoryInMemory(), new HotAccountDetector(true, 1, 100, 60_000, 1024));
+
+  @Test
+  void switchesHotAccountToStripedBalance() {
+    final Account from = fixedPointAccount("Id-1", "1000");
+    final Account hot = fixedPointAccount("Id-hot", "0");
+
+    for (int i = 0; i < 6_000; i++) {
+      this.engine.transfer(from, hot, new BigDecimal("0.01"));
+    }
+
+    assertThat(hot.getFixedPointBalance()).isInstanceOf(StripedBalance.class);
+    assertThat(from.getFixedPointBalance()).isNotInstanceOf(StripedBalance.class);
+    assertThat(this.engine.getStripedAccounts()).isEqualTo(1);
+    assertThat(hot.getBalance()).isEqualByComparingTo("60.00");
+    assertThat(from.getBalance()).isEqualByComparingTo("940.00");
+  }
+
+  @Test
+  void debitsFromStripedBalanceAreCheckedAgainstCredits() {
+    final Account hot = fixedPointAccount("Id-hot", "10");
+    final Account other = fixedPointAccount("Id-2", "100");
+    hot.switchToStripedBalance();
+
+    this.engine.transfer(other, hot, new BigDecimal("15"));
+    this.engine.transfer(hot, other, new BigDecimal("20"));
+
+    assertThatThrownBy(() -> this.engine.transfer(hot, other, new BigDecimal("5.01")))
+      .isInstanceOf(InsufficientFundsException.class);
+    assertThat(hot.getBalance()).isEqualByComparingTo("5");
+    assertThat(other.getBalance()).isEqualByComparingTo("105");
+  }
+
+  @Test
+  void atomicBatchKeepsCreditsOfStripedBalance() {
+    final Account hot = fixedPointAccount("Id-hot", "50");
+    final Account other = fixedPointAccount("Id-2", "0");
+    hot.switchToStripedBalance();
+    this.engine.transfer(fixedPointAccount("Id-3", "30"), hot, new BigDecimal("30"));
+
+    this.engine.transferAtomically(List.of(new MoneyTransfer("Id-hot", "Id-2", new BigDecimal("70"))),
+      Map.of("Id-hot", hot, "Id-2", other));
+
+    assertThat(hot.getBalance()).isEqualByComparingTo("10");
+    assertThat(other.getBalance()).isEqualByComparingTo("70");
+  }
+
+  @Test
+  void concurrentTransfersToHotAccountKeepTotal() {
+    final List<Account> accounts = new ArrayList<>();
+    for (int i = 0; i < 8; i++) {
+      accounts.add(fixedPointAccount("Id-" + i, "1000"));
+    }
+    final Account hot = fixedPointAccount("Id-hot", "0");
+
+    final List<CompletableFuture<Void>> workers = new ArrayList<>();
+    for (int worker = 0; worker < 8; worker++) {
+      workers.add(CompletableFuture.runAsync(() -> {
+        final ThreadLocalRandom random = ThreadLocalRandom.current();
+        for (int i = 0; i < 20_000; i++) {
+          final Account account = accounts.get(random.nextInt(accounts.size()));
+          final boolean credit = random.nextInt(4) != 0;
+          try {
+            if (credit) {
+              this.engine.transfer(account, hot, BigDecimal.valueOf(random.nextInt(1, 500), 2));
+            } else {
+              this.engine.transfer(hot, account, BigDecimal.valueOf(random.nextInt(1, 1500), 2));
+            }
+          } catch (InsufficientFundsException expected) {
+            // Part of the workload
+          }
+          assertThat(hot.getBalance().signum()).isNotNegative();
+        }
+      }));
+    }
+    CompletableFuture.allOf(workers.toArray(new CompletableFuture[0])).join();
+
+    final BigDecimal total = accounts.stream().map(Account::getBalance).reduce(hot.getBalance(), BigDecimal::add);
+    assertThat(total).isEqualByComparingTo("8000");
+    assertThat(hot.getFixedPointBalance()).isInstanceOf(StripedBalance.class);
+  }
+
+  @Test
+  void holdsAreExcludedFromDebitsUntilCaptured() {
+    final Account from = fixedPointAccount("Id-1", "100");
+    final Account to = new Account("Id-2", BigDecimal.ZERO);
+    this.engine.authorize(from, hold("H-1", "Id-1", "60"));
+
+    assertThatThrownBy(() -> this.engine.transfer(from, to, new BigDecimal("40.01")))
+      .isInstanceOf(InsufficientFundsException.class);
+    assertThatThrownBy(() -> this.engine.authorize(from, hold("H-2", "Id-1", "40.01")))
+      .isInstanceOf(InsufficientFundsException.class);
+    this.engine.transfer(from, to, new BigDecimal("40"));
+
+    // A partial capture releases the rest of the hold
+    assertThat(this.engine.capture(from, to, "H-1", new BigDecimal("25"), new BigDecimal("25"))).isTrue();
+    assertThat(this.engine.capture(from, to, "H-1", new BigDecimal("25"), new BigDecimal("25"))).isFalse();
+    assertThat(from.getHeldAmount()).isEqualByComparingTo("0");
+    assertThat(from.getBalance()).isEqualByComparingTo("35");
+    assertThat(to.getBalance()).isEqualByComparingTo("65");
+  }
+
+  @Test
+  void expiredHoldIsNotCaptured() {
+    final Account from = fixedPointAccount("Id-1", "100");
+    final Account to = new Account("Id-2", BigDecimal.ZERO);
+    this.engine.authorize(from, new Hold("H-1", "Id-1", new BigDecimal("60"), Instant.now().minusMillis(1)));
+
+    assertThat(this.engine.capture(from, to, "H-1", new BigDecimal("60"), new BigDecimal("60"))).isFalse();
+    assertThat(from.getBalance()).isEqualByComparingTo("100");
+    assertThat(to.getBalance()).isEqualByComparingTo("0");
+  }
+
+  @Test
+  void releasedHoldsFreeTheirFunds() {
+    final Account account = new Account("Id-1", new BigDecimal("100"));
+    this.engine.authorize(account, hold("H-1", "Id-1", "30"));
+    this.engine.authorize(account, hold("H-2", "Id-1", "70"));
+
+    assertThatThrownBy(() -> this.engine.transferAtomically(
+      List.of(new MoneyTransfer("Id-1", "Id-2", new BigDecimal("0.01"))),
+      Map.of("Id-1", account, "Id-2", new Account("Id-2", BigDecimal.ZERO))))
+      .hasCauseInstanceOf(InsufficientFundsException.class);
+    assertThat(this.engine.releaseHolds(account, List.of("H-1", "H-2", "H-3"))).isEqualTo(2);
+    assertThat(account.getHolds()).isEmpty();
+    assertThat(account.getBalance()).isEqualByComparingTo("100");
+  }
+
+  private static Hold hold(String holdId, String accountId, String amount) {
+    return new Hold(holdId, accountId, new BigDecimal(amount), Instant.now().plusSeconds(60));
+  }
+
+  private static Account fixedPointAccount(String accountId, String balance) {
+    final Account account = new Account(accountId, new BigDecimal(balance));
+    account.switchToFixedPoint(2);
+    return account;
+  }
+}
@@ -0,0 +1,175 @@
+package com.dws.challenge.engine;
+
+import com.dws.challenge.domain.Account;
+import com.dws.challenge.domain.Hold;
+import com.dws.challenge.domain.MoneyTransfer;
+import com.dws.challenge.exception.InsufficientFundsException;
+import com.dws.challenge.exception.TransferBatchAbortedException;
+import com.dws.challenge.repository.AccountsRepositoryInMemory;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ThreadLocalRandom;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class ShardedTransferEngineTest {
+
+  private final ShardedTransferEngine engine = new ShardedTransferEngine(new AccountsRepositoryInMemory(), 4);
+
+  @AfterEach
+  void tearDown() throws InterruptedException {
+    this.engine.destroy();
+  }
+
+  @Test
+  void refusesRepositoriesRecordingBalances() {
+    final AccountsRepositoryInMemory journaled = new AccountsRepositoryInMemory() {
+      @Override
+      public boolean recordsBalances() {
+        return true;
+      }
+    };
+
+    assertThatThrownBy(() -> new ShardedTransferEngine(journaled, 1))
+      .isInstanceOf(IllegalStateException.class);
+  }
+
+  @Test
+  void transfersMoneyWithinAndAcrossShards() {
+    final Account from = new Account("Id-1", new BigDecimal("150"));
+    final Account sameShard = accountOnShard(this.engine.shardOf("Id-1"), true);
+    final Account otherShard = accountOnShard(this.engine.shardOf("Id-1"), false);
+
+    this.engine.transfer(from, sameShard, new BigDecimal("100"));
+    this.engine.transfer(sameShard, otherShard, new BigDecimal("30"));
+
+    assertThat(from.getBalance()).isEqualByComparingTo("50");
+    assertThat(sameShard.getBalance()).isEqualByComparingTo("70");
+    assertThat(otherShard.getBalance()).isEqualByComparingTo("30");
+  }
+
+  @Test
+  void failsOnInsufficientFundsWithoutSideEffects() {
+    final Account from = new Account("Id-1", new BigDecimal("50"));
+    final Account to = accountOnShard(this.engine.shardOf("Id-1"), false);
+
+    assertThatThrownBy(() -> this.engine.transfer(from, to, new BigDecimal("50.01")))
+      .isInstanceOf(InsufficientFundsException.class);
+    assertThat(from.getBalance()).isEqualByComparingTo("50");
+    assertThat(to.getBalance()).isEqualByComparingTo("0");
+  }
+
+  @Test
+  void failedAtomicBatchReleasesReservations() {
+    final Account first = new Account("Id-1", new BigDecimal("100"));
+    final Account second = new Account("Id-2", new BigDecimal("10"));
+    final Account third = new Account("Id-3", new BigDecimal("0"));
+    final Map<String, Account> accounts = Map.of("Id-1", first, "Id-2", second, "Id-3", third);
+
+    assertThatThrownBy(() -> this.engine.transferAtomically(List.of(
+      new MoneyTransfer("Id-1", "Id-3", new BigDecimal("50")),
+      new MoneyTransfer("Id-2", "Id-3", new BigDecimal("20"))), accounts))
+      .isInstanceOf(TransferBatchAbortedException.class)
+      .extracting("failedIndex").isEqualTo(1);
+
+    assertThat(first.getBalance()).isEqualByComparingTo("100");
+    assertThat(second.getBalance()).isEqualByComparingTo("10");
+    assertThat(third.getBalance()).isEqualByComparingTo("0");
+  }
+
+  @Test
+  void overflowingCreditAbortsAtomicBatch() {
+    final Account first = fixedPointAccount("Id-1", 10_000);
+    final Account second = fixedPointAccount(accountOnShard(this.engine.shardOf("Id-1"), true).getAccountId(), 0);
+    final Account third = fixedPointAccount(accountOnShard(this.engine.shardOf("Id-1"), false).getAccountId(),
+      Long.MAX_VALUE - 50);
+    final Map<String, Account> accounts = Map.of(first.getAccountId(), first, second.getAccountId(), second,
+      third.getAccountId(), third);
+
+    assertThatThrownBy(() -> this.engine.transferAtomically(List.of(
+      new MoneyTransfer(first.getAccountId(), second.getAccountId(), new BigDecimal("10.00")),
+      new MoneyTransfer(first.getAccountId(), third.getAccountId(), new BigDecimal("1.00"))), accounts))
+      .isInstanceOf(TransferBatchAbortedException.class)
+      .extracting("failedIndex").isEqualTo(1);
+
+    assertThat(first.getFixedPointBalance().get()).isEqualTo(10_000);
+    assertThat(second.getFixedPointBalance().get()).isZero();
+    assertThat(third.getFixedPointBalance().get()).isEqualTo(Long.MAX_VALUE - 50);
+
+    // Nothing stays reserved, the full headroom is left for later credits
+    this.engine.transfer(first, third, new BigDecimal("0.50"));
+    assertThat(third.getFixedPointBalance().get()).isEqualTo(Long.MAX_VALUE);
+  }
+
+  @Test
+  void concurrentTransfersKeepTotal() {
+    final List<Account> accounts = new ArrayList<>();
+    for (int i = 0; i < 8; i++) {
+      accounts.add(new Account("Id-" + i, new BigDecimal("100")));
+    }
+
+    final List<CompletableFuture<Void>> workers = new ArrayList<>();
+    for (int worker = 0; worker < 8; worker++) {
+      workers.add(CompletableFuture.runAsync(() -> {
+        final ThreadLocalRandom random = ThreadLocalRandom.current();
+        for (int i = 0; i < 5_000; i++) {
+          final int from = random.nextInt(accounts.size());
+          final int to = (from + 1 + random.nextInt(accounts.size() - 1)) % accounts.size();
+          try {
+            this.engine.transfer(accounts.get(from), accounts.get(to), BigDecimal.valueOf(random.nextInt(1, 5000), 2));
+          } catch (InsufficientFundsException expected) {
+            // Part of the workload
+          }
+        }
+      }));
+    }
+    CompletableFuture.allOf(workers.toArray(new CompletableFuture[0])).join();
+
+    final BigDecimal total = accounts.stream().map(Account::getBalance).reduce(BigDecimal.ZERO, BigDecimal::add);
+    assertThat(total).isEqualByComparingTo("800");
+    assertThat(accounts).allSatisfy(account -> assertThat(account.getBalance().signum()).isNotNegative());
+  }
+
+  @Test
+  void capturesHoldsWithinAndAcrossShards() {
+    final Account from = new Account("Id-1", new BigDecimal("100"));
+    final Account sameShard = accountOnShard(this.engine.shardOf("Id-1"), true);
+    final Account otherShard = accountOnShard(this.engine.shardOf("Id-1"), false);
+    this.engine.authorize(from, new Hold("H-1", "Id-1", new BigDecimal("50"), Instant.now().plusSeconds(60)));
+    this.engine.authorize(from, new Hold("H-2", "Id-1", new BigDecimal("30"), Instant.now().plusSeconds(60)));
+
+    assertThatThrownBy(() -> this.engine.transfer(from, otherShard, new BigDecimal("20.01")))
+      .isInstanceOf(InsufficientFundsException.class);
+    assertThat(this.engine.capture(from, sameShard, "H-1", new BigDecimal("50"), new BigDecimal("50"))).isTrue();
+    assertThat(this.engine.capture(from, otherShard, "H-2", new BigDecimal("10"), new BigDecimal("10"))).isTrue();
+    assertThat(this.engine.capture(from, otherShard, "H-2", new BigDecimal("10"), new BigDecimal("10"))).isFalse();
+
+    assertThat(from.getHeldAmount()).isEqualByComparingTo("0");
+    assertThat(from.getBalance()).isEqualByComparingTo("40");
+    assertThat(sameShard.getBalance()).isEqualByComparingTo("50");
+    assertThat(otherShard.getBalance()).isEqualByComparingTo("10");
+  }
+
+  private static Account fixedPointAccount(String accountId, long units) {
+    final Account account = new Account(accountId, BigDecimal.valueOf(units, 2));
+    account.switchToFixedPoint(2);
+    return account;
+  }
+
+  private Account accountOnShard(int shard, boolean same) {
+    for (int i = 100; ; i++) {
+      final String accountId = "Id-" + i;
+      if ((this.engine.shardOf(accountId) == shard) == same) {
+        return new Account(accountId);
+      }
+    }
+  }
+}
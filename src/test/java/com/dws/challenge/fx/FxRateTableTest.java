@@ -0,0 +1,65 @@
+package com.dws.challenge.fx;
+
+import com.dws.challenge.config.BalanceProperties;
+import com.dws.challenge.exception.InvalidAmountException;
+import com.dws.challenge.exception.UnsupportedCurrencyException;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class FxRateTableTest {
+
+  @TempDir
+  Path directory;
+
+  private final FxRateTable table = new FxRateTable(new BalanceProperties(),
+    Map.of("EUR", BigDecimal.ONE, "USD", new BigDecimal("1.0850"), "JPY", new BigDecimal("162.50")));
+
+  @Test
+  void convertsToTheScaleOfTheTargetCurrency() {
+    assertThat(this.table.convert(new BigDecimal("100"), "EUR", "USD")).isEqualTo(new BigDecimal("108.50"));
+    assertThat(this.table.convert(new BigDecimal("10.85"), "USD", "EUR")).isEqualTo(new BigDecimal("10.00"));
+    assertThat(this.table.convert(new BigDecimal("1.00"), "USD", "JPY")).isEqualTo(new BigDecimal("150"));
+    assertThat(this.table.convert(new BigDecimal("7.77"), "USD", "USD")).isEqualTo(new BigDecimal("7.77"));
+  }
+
+  @Test
+  void rejectsUnknownCurrenciesAndAmountsRoundingToZero() {
+    assertThatThrownBy(() -> this.table.convert(BigDecimal.TEN, "EUR", "GBP"))
+      .isInstanceOf(UnsupportedCurrencyException.class)
+      .hasMessage("No exchange rate for GBP");
+    assertThatThrownBy(() -> this.table.convert(new BigDecimal("0.5"), "JPY", "EUR"))
+      .isInstanceOf(InvalidAmountException.class);
+  }
+
+  @Test
+  void reloadsRatesFromFileAndKeepsThemWhenReloadFails() throws Exception {
+    final Path ratesFile = this.directory.resolve("rates.properties");
+    Files.writeString(ratesFile, "EUR=1\nGBP=0.8\n");
+    final FxRateTable fileTable = new FxRateTable(new BalanceProperties(), ratesFile.toString(), 0);
+    assertThat(fileTable.convert(new BigDecimal("10"), "EUR", "GBP")).isEqualTo(new BigDecimal("8.00"));
+
+    Files.writeString(ratesFile, "EUR=1\nGBP=0.9\n");
+    fileTable.refresh();
+    final Map<String, BigDecimal> refreshed = fileTable.getRates();
+    assertThat(fileTable.convert(new BigDecimal("10"), "EUR", "GBP")).isEqualTo(new BigDecimal("9.00"));
+
+    Files.writeString(ratesFile, "EUR=1\nGBP=-1\n");
+    assertThatThrownBy(fileTable::refresh).isInstanceOf(IllegalArgumentException.class);
+    assertThat(fileTable.getRates()).isSameAs(refreshed);
+  }
+
+  @Test
+  void loadsBundledRatesWithoutFile() {
+    final FxRateTable bundled = new FxRateTable(new BalanceProperties(), "", 0);
+
+    assertThat(bundled.getRates()).containsKeys("EUR", "USD", "GBP");
+  }
+}
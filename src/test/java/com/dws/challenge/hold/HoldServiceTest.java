@@ -0,0 +1,114 @@
+package com.dws.challenge.hold;
+
+import com.dws.challenge.domain.Account;
+import com.dws.challenge.domain.Hold;
+import com.dws.challenge.domain.MoneyTransfer;
+import com.dws.challenge.engine.LockingTransferEngine;
+import com.dws.challenge.exception.HoldNotFoundException;
+import com.dws.challenge.exception.InsufficientFundsException;
+import com.dws.challenge.exception.InvalidHoldException;
+import com.dws.challenge.lock.AccountLockManager;
+import com.dws.challenge.repository.AccountsRepositoryInMemory;
+import com.dws.challenge.service.AccountsService;
+import com.dws.challenge.service.MoneyTransferService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.lenient;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class HoldServiceTest {
+
+  @Mock
+  AccountsService accountsService;
+  @Mock
+  MoneyTransferService moneyTransferService;
+
+  final Map<String, Account> accounts = Map.of(
+    "Id-1", new Account("Id-1", new BigDecimal("100")),
+    "Id-2", new Account("Id-2", new BigDecimal("100")));
+
+  HoldService holdService;
+
+  @BeforeEach
+  void createService() {
+    this.holdService = HoldService.manual(this.accountsService, this.moneyTransferService,
+      new LockingTransferEngine(new AccountLockManager(16), new AccountsRepositoryInMemory()), 60, 3600, 100);
+    lenient().when(this.accountsService.getAccount(anyString()))
+      .thenAnswer(invocation -> this.accounts.get(invocation.<String>getArgument(0)));
+  }
+
+  @Test
+  void expiresHoldsInBulk() {
+    for (int i = 0; i < 3; i++) {
+      this.holdService.authorize("Id-1", BigDecimal.TEN, Duration.ofSeconds(1));
+    }
+    this.holdService.authorize("Id-2", BigDecimal.TEN, Duration.ofSeconds(1));
+    final Hold remaining = this.holdService.authorize("Id-1", BigDecimal.TEN, null);
+
+    assertThat(this.holdService.expireDue(Instant.now())).isZero();
+    assertThat(this.holdService.expireDue(Instant.now().plusSeconds(2))).isEqualTo(4);
+
+    assertThat(this.holdService.getHolds("Id-1")).containsExactly(remaining);
+    assertThat(this.accounts.get("Id-1").getHeldAmount()).isEqualByComparingTo("10");
+    assertThat(this.accounts.get("Id-2").getHeldAmount()).isEqualByComparingTo("0");
+    assertThat(this.holdService.getActiveCount()).isEqualTo(1);
+    assertThat(this.holdService.getExpired()).isEqualTo(4);
+  }
+
+  @Test
+  void rejectsHoldsBeyondAvailableBalanceOrMaximumTtl() {
+    this.holdService.authorize("Id-1", new BigDecimal("70"), null);
+
+    assertThatThrownBy(() -> this.holdService.authorize("Id-1", new BigDecimal("30.01"), null))
+      .isInstanceOf(InsufficientFundsException.class);
+    assertThatThrownBy(() -> this.holdService.authorize("Id-1", BigDecimal.ONE, Duration.ofHours(2)))
+      .isInstanceOf(InvalidHoldException.class);
+    assertThat(this.holdService.getActiveCount()).isEqualTo(1);
+  }
+
+  @Test
+  void capturesWholeHoldByDefault() {
+    final Hold hold = this.holdService.authorize("Id-1", new BigDecimal("40"), null);
+    when(this.moneyTransferService.captureHold(any(), eq(hold.getId()))).thenReturn(true);
+
+    assertThatThrownBy(() -> this.holdService.capture("Id-2", hold.getId(), "Id-1", null))
+      .isInstanceOf(HoldNotFoundException.class);
+    final MoneyTransfer transfer = this.holdService.capture("Id-1", hold.getId(), "Id-2", null);
+
+    assertThat(transfer.getAmount()).isEqualByComparingTo("40");
+    verify(this.moneyTransferService).captureHold(transfer, hold.getId());
+    assertThat(this.holdService.getActiveCount()).isZero();
+    assertThat(this.holdService.getCaptured()).isEqualTo(1);
+    assertThat(this.holdService.expireDue(Instant.now().plusSeconds(120))).isZero();
+  }
+
+  @Test
+  void voidsHoldOnce() {
+    final Hold hold = this.holdService.authorize("Id-1", new BigDecimal("40"), null);
+
+    assertThat(this.holdService.voidHold("Id-1", hold.getId())).isEqualTo(hold);
+    assertThatThrownBy(() -> this.holdService.voidHold("Id-1", hold.getId()))
+      .isInstanceOf(HoldNotFoundException.class);
+    assertThatThrownBy(() -> this.holdService.capture("Id-1", hold.getId(), "Id-2", null))
+      .isInstanceOf(HoldNotFoundException.class);
+    verify(this.moneyTransferService, never()).captureHold(any(), anyString());
+    assertThat(this.accounts.get("Id-1").getHeldAmount()).isEqualByComparingTo("0");
+  }
+}
@@ -0,0 +1,113 @@
+package com.dws.challenge.idempotency;
+
+import com.dws.challenge.domain.MoneyTransfer;
+import com.dws.challenge.domain.TransferResult;
+import com.dws.challenge.exception.IdempotencyKeyReusedException;
+import com.dws.challenge.exception.InsufficientFundsException;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class IdempotencyCacheTest {
+
+  private final MoneyTransfer moneyTransfer = new MoneyTransfer("Id-1", "Id-2", new BigDecimal("10"));
+  private final AtomicInteger transfers = new AtomicInteger();
+
+  @Test
+  void replayReturnsStoredResult() {
+    final IdempotencyCache cache = new IdempotencyCache(1, 60, 4);
+
+    final TransferResult first = cache.execute("client", "key", this.moneyTransfer, this::transfer);
+    final TransferResult replayed = cache.execute("client", "key",
+      new MoneyTransfer("Id-1", "Id-2", new BigDecimal("10.00")), this::transfer);
+
+    assertThat(replayed).isEqualTo(first);
+    assertThat(this.transfers).hasValue(1);
+    assertThat(cache.getReplays()).isEqualTo(1);
+  }
+
+  @Test
+  void replayIsAnsweredWithoutRunningTheTransfer() {
+    final IdempotencyCache cache = new IdempotencyCache(1, 60, 4);
+
+    assertThat(cache.replay("client", "key", this.moneyTransfer)).isNull();
+    final TransferResult first = cache.execute("client", "key", this.moneyTransfer, this::transfer);
+
+    assertThat(cache.replay("client", "key", this.moneyTransfer)).isEqualTo(first);
+    assertThat(cache.replay("other-client", "key", this.moneyTransfer)).isNull();
+    assertThatThrownBy(() -> cache.replay("client", "key", new MoneyTransfer("Id-1", "Id-2", new BigDecimal("20"))))
+      .isInstanceOf(IdempotencyKeyReusedException.class);
+    assertThat(this.transfers).hasValue(1);
+    assertThat(cache.getReplays()).isEqualTo(1);
+  }
+
+  @Test
+  void keysArePerClient() {
+    final IdempotencyCache cache = new IdempotencyCache(1, 60, 4);
+
+    cache.execute("client-1", "key", this.moneyTransfer, this::transfer);
+    cache.execute("client-2", "key", this.moneyTransfer, this::transfer);
+
+    assertThat(this.transfers).hasValue(2);
+  }
+
+  @Test
+  void keyReusedForDifferentTransferIsRejected() {
+    final IdempotencyCache cache = new IdempotencyCache(1, 60, 4);
+    cache.execute("client", "key", this.moneyTransfer, this::transfer);
+
+    assertThatThrownBy(() -> cache.execute("client", "key",
+      new MoneyTransfer("Id-1", "Id-2", new BigDecimal("20")), this::transfer))
+      .isInstanceOf(IdempotencyKeyReusedException.class);
+    assertThat(this.transfers).hasValue(1);
+  }
+
+  @Test
+  void transfersWithEqualHashCodesAreToldApart() {
+    final IdempotencyCache cache = new IdempotencyCache(1, 60, 4);
+    // "Aa" and "BB" share a String hash code
+    cache.execute("client", "key", new MoneyTransfer("Id-1", "Aa", BigDecimal.TEN), this::transfer);
+
+    assertThatThrownBy(() -> cache.execute("client", "key",
+      new MoneyTransfer("Id-1", "BB", BigDecimal.TEN), this::transfer))
+      .isInstanceOf(IdempotencyKeyReusedException.class);
+  }
+
+  @Test
+  void unexpectedFailuresAreNotStored() {
+    final IdempotencyCache cache = new IdempotencyCache(1, 60, 4);
+
+    assertThatThrownBy(() -> cache.execute("client", "key", this.moneyTransfer, () -> {
+      throw new IllegalStateException("boom");
+    })).isInstanceOf(IllegalStateException.class);
+    cache.execute("client", "key", this.moneyTransfer, this::transfer);
+
+    assertThat(this.transfers).hasValue(1);
+    assertThat(cache.getEntries()).isEqualTo(1);
+  }
+
+  @Test
+  void oldestEntriesAreEvictedOverBudget() {
+    final IdempotencyCache cache = new IdempotencyCache(1, 60, 1);
+
+    for (int i = 0; i < 20_000; i++) {
+      cache.execute("client", "key-" + i, this.moneyTransfer,
+        () -> TransferResult.failed(0, new InsufficientFundsException("Id-1")));
+    }
+
+    assertThat(cache.getSizeBytes()).isLessThanOrEqualTo(1024 * 1024);
+    assertThat(cache.getEntries()).isBetween(1L, 19_999L);
+    cache.execute("client", "key-19999", this.moneyTransfer, this::transfer);
+    cache.execute("client", "key-0", this.moneyTransfer, this::transfer);
+    assertThat(this.transfers).hasValue(1);
+  }
+
+  private TransferResult transfer() {
+    this.transfers.incrementAndGet();
+    return TransferResult.completed(0);
+  }
+}
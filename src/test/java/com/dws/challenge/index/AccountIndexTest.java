@@ -0,0 +1,174 @@
+package com.dws.challenge.index;
+
+import com.dws.challenge.domain.Account;
+import com.dws.challenge.domain.AccountPage;
+import com.dws.challenge.domain.AccountView;
+import com.dws.challenge.exception.InvalidQueryException;
+import com.dws.challenge.repository.AccountsRepositoryInMemory;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class AccountIndexTest {
+
+  private final AccountsRepositoryInMemory accountsRepository = new AccountsRepositoryInMemory();
+  private AccountIndex accountIndex;
+
+  @BeforeEach
+  void createIndex() {
+    this.accountIndex = AccountIndex.manual(this.accountsRepository);
+  }
+
+  @Test
+  void findsBalanceRange() {
+    create("Id-1", "10");
+    create("Id-2", "50");
+    create("Id-3", "100");
+    create("Id-4", "200");
+    this.accountIndex.refresh();
+
+    final AccountPage page = this.accountIndex.findByBalance(new BigDecimal("50"), new BigDecimal("200"), "EUR",
+      null, 10);
+
+    assertThat(idsOf(page)).containsExactly("Id-2", "Id-3");
+    assertThat(page.getNextCursor()).isNull();
+    assertThat(this.accountIndex.getIndexedAccounts()).isEqualTo(4);
+  }
+
+  @Test
+  void movesChangedAccountsOnRefresh() {
+    create("Id-1", "10");
+    create("Id-2", "20");
+    this.accountIndex.refresh();
+
+    this.accountsRepository.getAccount("Id-1").setBalance(new BigDecimal("500"));
+    this.accountIndex.markChanged("Id-1");
+
+    // Checked against the current balance before the refresh, found in its new place after it
+    assertThat(idsOf(this.accountIndex.findByBalance(null, new BigDecimal("100"), "EUR", null, 10)))
+      .containsExactly("Id-2");
+    assertThat(idsOf(this.accountIndex.findByBalance(new BigDecimal("100"), null, "EUR", null, 10))).isEmpty();
+    assertThat(this.accountIndex.getPendingChanges()).isEqualTo(1);
+
+    assertThat(this.accountIndex.refresh()).isEqualTo(1);
+    assertThat(idsOf(this.accountIndex.findByBalance(new BigDecimal("100"), null, "EUR", null, 10)))
+      .containsExactly("Id-1");
+  }
+
+  @Test
+  void pagesThroughEqualBalances() {
+    for (int i = 1; i <= 5; i++) {
+      create("Id-" + i, "10");
+    }
+    this.accountIndex.refresh();
+
+    final AccountPage first = this.accountIndex.findByBalance(null, null, "EUR", null, 2);
+    final AccountPage second = this.accountIndex.findByBalance(null, null, "EUR", first.getNextCursor(), 2);
+    final AccountPage last = this.accountIndex.findByBalance(null, null, "EUR", second.getNextCursor(), 2);
+
+    assertThat(idsOf(first)).containsExactly("Id-1", "Id-2");
+    assertThat(idsOf(second)).containsExactly("Id-3", "Id-4");
+    assertThat(idsOf(last)).containsExactly("Id-5");
+    assertThat(last.getNextCursor()).isNull();
+  }
+
+  @Test
+  void ordersBalancesWithinTheirCurrency() {
+    create("Id-1", "10");
+    final Account dollars = new Account("Id-2", new BigDecimal("20"), "USD");
+    this.accountsRepository.createAccount(dollars);
+    this.accountIndex.accountCreated("Id-2");
+    create("Id-3", "30");
+    this.accountIndex.refresh();
+
+    assertThat(idsOf(this.accountIndex.findByBalance(null, null, "USD", null, 10))).containsExactly("Id-2");
+    assertThat(idsOf(this.accountIndex.findByBalance(new BigDecimal("15"), null, "EUR", null, 10)))
+      .containsExactly("Id-3");
+
+    final AccountPage first = this.accountIndex.findByBalance(null, null, "EUR", null, 1);
+    assertThat(idsOf(first)).containsExactly("Id-1");
+    assertThat(idsOf(this.accountIndex.findByBalance(null, null, "EUR", first.getNextCursor(), 10)))
+      .containsExactly("Id-3");
+  }
+
+  @Test
+  void findsAccountsByCreationTime() throws InterruptedException {
+    create("Id-2", "10");
+    Thread.sleep(5);
+    final Instant since = Instant.now();
+    create("Id-1", "10");
+
+    assertThat(idsOf(this.accountIndex.findByCreation(null, null, null, 10))).containsExactly("Id-2", "Id-1");
+    assertThat(idsOf(this.accountIndex.findByCreation(since, null, null, 10))).containsExactly("Id-1");
+    assertThat(idsOf(this.accountIndex.findByCreation(null, since, null, 10))).containsExactly("Id-2");
+  }
+
+  @Test
+  void dropsAccountsNoLongerInTheRepository() {
+    create("Id-1", "10");
+    this.accountIndex.refresh();
+
+    this.accountsRepository.clearAccounts();
+
+    assertThat(idsOf(this.accountIndex.findByBalance(null, null, "EUR", null, 10))).isEmpty();
+    this.accountIndex.refresh();
+    assertThat(this.accountIndex.getIndexedAccounts()).isZero();
+
+    create("Id-1", "30");
+    this.accountIndex.refresh();
+    assertThat(idsOf(this.accountIndex.findByCreation(null, null, null, 10))).containsExactly("Id-1");
+    assertThat(this.accountIndex.findByBalance(null, null, "EUR", null, 10).getAccounts())
+      .extracting(AccountView::getBalance)
+      .containsExactly(new BigDecimal("30"));
+  }
+
+  @Test
+  void indexesAccountsAlreadyInTheRepository() {
+    this.accountsRepository.createAccount(new Account("Id-1", new BigDecimal("10"), "EUR"));
+
+    final AccountIndex index = AccountIndex.manual(this.accountsRepository);
+
+    assertThat(idsOf(index.findByBalance(null, null, "EUR", null, 10))).containsExactly("Id-1");
+    assertThat(idsOf(index.findByCreation(null, null, null, 10))).containsExactly("Id-1");
+  }
+
+  @Test
+  void rejectsMissingCurrencyEmptyRangesAndMalformedCursors() {
+    assertThatThrownBy(() -> this.accountIndex.findByBalance(null, BigDecimal.TEN, null, null, 10))
+      .isInstanceOf(InvalidQueryException.class)
+      .hasMessageContaining("currency");
+    assertThatThrownBy(() -> this.accountIndex.findByBalance(BigDecimal.TEN, BigDecimal.ONE, "EUR", null, 10))
+      .isInstanceOf(InvalidQueryException.class);
+    assertThatThrownBy(() -> this.accountIndex.findByBalance(null, null, "EUR", "nonsense", 10))
+      .isInstanceOf(InvalidQueryException.class);
+    assertThatThrownBy(() -> this.accountIndex.findByCreation(null, null, "x:Id-1", 10))
+      .isInstanceOf(InvalidQueryException.class);
+  }
+
+  @Test
+  void disabledIndexIgnoresChanges() {
+    final AccountIndex disabled = AccountIndex.disabled();
+    disabled.accountCreated("Id-1");
+    disabled.markChanged("Id-1");
+
+    assertThat(disabled.getPendingChanges()).isZero();
+    assertThat(disabled.refresh()).isZero();
+    assertThat(disabled.findByBalance(null, null, "EUR", null, 10).getAccounts()).isEmpty();
+  }
+
+  private void create(final String accountId, final String balance) {
+    this.accountsRepository.createAccount(new Account(accountId, new BigDecimal(balance), "EUR"));
+    this.accountIndex.accountCreated(accountId);
+  }
+
+  private static List<String> idsOf(final AccountPage page) {
+    return page.getAccounts().stream().map(AccountView::getAccountId).collect(Collectors.toList());
+  }
+}
@@ -0,0 +1,93 @@
+package com.dws.challenge.ledger;
+
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class TransactionLedgerTest {
+
+  private final TransactionLedger ledger = new TransactionLedger(true);
+
+  @Test
+  void entriesAreIndexedPerAccount() {
+    this.ledger.record("Id-1", "Id-2", new BigDecimal("10.50"), "EUR", new BigDecimal("13.13"), "USD");
+    this.ledger.record("Id-2", "Id-3", new BigDecimal("3"), "USD", new BigDecimal("3"), "USD");
+    this.ledger.record("Id-3", "Id-1", new BigDecimal("1E+30"), "USD", new BigDecimal("8E+29"), "EUR");
+
+    final List<LedgerEntry> entries = new ArrayList<>();
+    assertThat(this.ledger.forEachEntry("Id-1", 0, 10, entries::add)).isEqualTo(-1);
+
+    assertThat(entries).extracting(LedgerEntry::getSequence).containsExactly(0L, 2L);
+    assertThat(entries.get(0).getFromAccountId()).isEqualTo("Id-1");
+    assertThat(entries.get(0).getToAccountId()).isEqualTo("Id-2");
+    assertThat(entries.get(0).getAmount()).isEqualTo(new BigDecimal("10.50"));
+    assertThat(entries.get(0).getCurrency()).isEqualTo("EUR");
+    assertThat(entries.get(0).getCreditedAmount()).isEqualTo(new BigDecimal("13.13"));
+    assertThat(entries.get(0).getCreditedCurrency()).isEqualTo("USD");
+    assertThat(entries.get(1).getAmount()).isEqualByComparingTo("1E+30");
+    assertThat(entries.get(1).getCreditedAmount()).isEqualByComparingTo("8E+29");
+    assertThat(entries.get(1).getCreditedCurrency()).isEqualTo("EUR");
+    assertThat(this.ledger.countEntries("Id-2")).isEqualTo(2);
+    assertThat(this.ledger.countEntries("Id-4")).isZero();
+  }
+
+  @Test
+  void historyIsPagedByCursor() {
+    for (int i = 1; i <= 250_000; i++) {
+      final BigDecimal amount = BigDecimal.valueOf(i, 2);
+      this.ledger.record("Id-1", "Id-" + (i % 7 + 2), amount, "EUR", amount, "EUR");
+    }
+
+    final List<LedgerEntry> entries = new ArrayList<>();
+    int cursor = 0;
+    do {
+      cursor = this.ledger.forEachEntry("Id-1", cursor, 1000, entries::add);
+    } while (cursor >= 0);
+
+    assertThat(entries).hasSize(250_000);
+    assertThat(entries.get(249_999).getAmount()).isEqualTo(BigDecimal.valueOf(250_000, 2));
+    assertThat(this.ledger.size()).isEqualTo(250_000);
+  }
+
+  @Test
+  void concurrentAppendsKeepEveryHistoryInOrder() throws InterruptedException {
+    final int threads = 4;
+    final int transfers = 20_000;
+    final ExecutorService executor = Executors.newFixedThreadPool(threads);
+    for (int t = 0; t < threads; t++) {
+      final String from = "Id-" + t;
+      executor.execute(() -> {
+        for (int i = 0; i < transfers; i++) {
+          this.ledger.record(from, "Id-shared", BigDecimal.ONE, "EUR", BigDecimal.ONE, "EUR");
+        }
+      });
+    }
+    executor.shutdown();
+    assertThat(executor.awaitTermination(30, TimeUnit.SECONDS)).isTrue();
+
+    final List<LedgerEntry> entries = new ArrayList<>();
+    this.ledger.forEachEntry("Id-shared", 0, threads * transfers, entries::add);
+
+    assertThat(this.ledger.size()).isEqualTo(threads * transfers);
+    assertThat(entries).extracting(LedgerEntry::getSequence).isSorted().doesNotHaveDuplicates()
+      .hasSize(threads * transfers);
+    assertThat(this.ledger.countEntries("Id-0")).isEqualTo(transfers);
+  }
+
+  @Test
+  void disabledLedgerRecordsNothing() {
+    final TransactionLedger disabled = TransactionLedger.disabled();
+
+    disabled.record("Id-1", "Id-2", BigDecimal.ONE, "EUR", BigDecimal.ONE, "EUR");
+
+    assertThat(disabled.size()).isZero();
+    assertThat(disabled.forEachEntry("Id-1", 0, 10, entry -> { })).isEqualTo(-1);
+  }
+}
@@ -0,0 +1,107 @@
+package com.dws.challenge.lock;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static java.util.concurrent.CompletableFuture.runAsync;
+import static com.dws.challenge.lock.LockedOperation.BATCH;
+import static com.dws.challenge.lock.LockedOperation.TRANSFER;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class AccountLockManagerTest {
+
+  @Test
+  void stripeCountIsRoundedUpToPowerOfTwo() {
+    assertThat(new AccountLockManager(1000).getStripeCount()).isEqualTo(1024);
+    assertThat(new AccountLockManager(1).getStripeCount()).isEqualTo(1);
+    assertThat(new AccountLockManager(1024).getStripeCount()).isEqualTo(1024);
+  }
+
+  @Test
+  void nonPositiveStripeCountIsRejected() {
+    assertThatThrownBy(() -> new AccountLockManager(0))
+      .isInstanceOf(IllegalArgumentException.class);
+  }
+
+  @Test
+  void stripeCountAboveTheMaximumIsRejected() {
+    assertThat(new AccountLockManager(AccountLockManager.MAX_STRIPES).getStripeCount())
+      .isEqualTo(AccountLockManager.MAX_STRIPES);
+    assertThatThrownBy(() -> new AccountLockManager(AccountLockManager.MAX_STRIPES + 1))
+      .isInstanceOf(IllegalArgumentException.class);
+    assertThatThrownBy(() -> new AccountLockManager(Integer.MAX_VALUE))
+      .isInstanceOf(IllegalArgumentException.class);
+  }
+
+  @Test
+  void sameStripeIsAcquiredOnce() {
+    final AccountLockManager lockManager = new AccountLockManager(1);
+    final boolean[] executed = {false};
+
+    lockManager.executeLocked(TRANSFER, "Id-1", "Id-2", () -> executed[0] = true);
+
+    assertThat(executed[0]).isTrue();
+    assertThat(lockManager.getContentionStats().getAcquisitions()).isEqualTo(1);
+  }
+
+  @Test
+  void oppositeOrderDoesNotDeadlock() {
+    final AccountLockManager lockManager = new AccountLockManager(64);
+    final int[] counter = {0};
+
+    CompletableFuture.allOf(
+      runAsync(() -> repeat(10_000, () -> lockManager.executeLocked(TRANSFER, "Id-1", "Id-2", () -> counter[0]++))),
+      runAsync(() -> repeat(10_000, () -> lockManager.executeLocked(TRANSFER, "Id-2", "Id-1", () -> counter[0]++))),
+      runAsync(() -> repeat(10_000, () -> lockManager.executeLocked(BATCH, List.of("Id-2", "Id-1"), () -> counter[0]++)))
+    ).orTimeout(30, TimeUnit.SECONDS).join();
+
+    assertThat(counter[0]).isEqualTo(30_000);
+  }
+
+  @Test
+  void contendedAcquisitionIsCounted() throws Exception {
+    final AccountLockManager lockManager = new AccountLockManager(16);
+    final CountDownLatch locked = new CountDownLatch(1);
+    final CountDownLatch release = new CountDownLatch(1);
+
+    final CompletableFuture<Void> holder = runAsync(() -> lockManager.executeLocked(TRANSFER, "Id-1", "Id-2", () -> {
+      locked.countDown();
+      await(release);
+    }));
+    locked.await();
+    final CompletableFuture<Void> waiter = runAsync(() -> lockManager.executeLocked(TRANSFER, "Id-1", "Id-2", () -> { }));
+    while (lockManager.getContentionStats().getContendedAcquisitions() == 0) {
+      Thread.onSpinWait();
+    }
+    release.countDown();
+    CompletableFuture.allOf(holder, waiter).join();
+
+    final LockContentionStats stats = lockManager.getContentionStats();
+    assertThat(stats.getContendedAcquisitions()).isPositive();
+    assertThat(stats.getContendedAcquisitionsPerStripe()[lockManager.stripeIndex("Id-1")]
+      + stats.getContendedAcquisitionsPerStripe()[lockManager.stripeIndex("Id-2")]).isPositive();
+
+    lockManager.resetContentionStats();
+    assertThat(lockManager.getContentionStats().getAcquisitions()).isZero();
+  }
+
+  private static void repeat(int times, Runnable action) {
+    for (int i = 0; i < times; i++) {
+      action.run();
+    }
+  }
+
+  private static void await(CountDownLatch latch) {
+    try {
+      latch.await();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new RuntimeException(e);
+    }
+  }
+}
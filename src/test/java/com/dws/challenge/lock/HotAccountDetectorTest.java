@@ -0,0 +1,59 @@
+package com.dws.challenge.lock;
+
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class HotAccountDetectorTest {
+
+  @Test
+  void reportsAccountOnceWhenItReachesTheRate() {
+    final HotAccountDetector detector = new HotAccountDetector(true, 1, 100, 60_000, 1024);
+
+    for (int i = 0; i < 5_999; i++) {
+      assertThat(detector.recordCredit("Id-hot")).isFalse();
+    }
+    assertThat(detector.recordCredit("Id-cold")).isFalse();
+    assertThat(detector.recordCredit("Id-hot")).isTrue();
+    assertThat(detector.recordCredit("Id-hot")).isFalse();
+    assertThat(detector.getHotAccounts()).containsExactly("Id-hot");
+  }
+
+  @Test
+  void forgetsAccountsThatCooledDown() {
+    final HotAccountDetector detector = new HotAccountDetector(true, 1, 100, 60_000, 1024);
+    for (int i = 0; i < 6_000; i++) {
+      detector.recordCredit("Id-hot");
+    }
+    assertThat(detector.getHotAccounts()).containsExactly("Id-hot");
+
+    // Still at the threshold when the first window ends, halved below it by the next
+    detector.decay();
+    assertThat(detector.getHotAccounts()).containsExactly("Id-hot");
+    detector.decay();
+    assertThat(detector.getHotAccounts()).isEmpty();
+
+    for (int i = 0; i < 4_499; i++) {
+      assertThat(detector.recordCredit("Id-hot")).isFalse();
+    }
+    assertThat(detector.recordCredit("Id-hot")).isTrue();
+  }
+
+  @Test
+  void disabledDetectorReportsNothing() {
+    final HotAccountDetector detector = HotAccountDetector.disabled();
+
+    for (int i = 0; i < 1_000; i++) {
+      assertThat(detector.recordCredit("Id-1")).isFalse();
+    }
+    assertThat(detector.isEnabled()).isFalse();
+    assertThat(detector.getHotAccounts()).isEmpty();
+  }
+
+  @Test
+  void rejectsInvalidSettings() {
+    assertThatThrownBy(() -> new HotAccountDetector(true, 0, 100, 1000, 1024))
+      .isInstanceOf(IllegalArgumentException.class);
+  }
+}
@@ -0,0 +1,51 @@
+package com.dws.challenge.logging;
+
+import com.dws.challenge.logging.RequestLogSampler.Endpoint;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.env.MockEnvironment;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class RequestLogSamplerTest {
+
+  @Test
+  void readsSampleRatesPerEndpoint() {
+    final RequestLogSampler sampler = new RequestLogSampler(new MockEnvironment()
+      .withProperty("challenge.request-log.default-sample-rate", "10")
+      .withProperty("challenge.request-log.sample-rate.get-account", "0")
+      .withProperty("challenge.request-log.sample-rate.create-account", "1"));
+
+    assertThat(sampler.getSampleRate(Endpoint.TRANSFER)).isEqualTo(10);
+    assertThat(sampler.getSampleRates()).containsEntry("get-account", 0).containsEntry("transfer-batch", 10);
+    for (int i = 0; i < 100; i++) {
+      assertThat(sampler.shouldLog(Endpoint.GET_ACCOUNT)).isFalse();
+      assertThat(sampler.shouldLog(Endpoint.CREATE_ACCOUNT)).isTrue();
+    }
+  }
+
+  @Test
+  void samplesOneInRate() {
+    final RequestLogSampler sampler = new RequestLogSampler(1);
+    sampler.setSampleRate(Endpoint.TRANSFER, 100);
+
+    int logged = 0;
+    for (int i = 0; i < 100_000; i++) {
+      if (sampler.shouldLog(Endpoint.TRANSFER)) {
+        logged++;
+      }
+    }
+    assertThat(logged).isBetween(700, 1300);
+    assertThat(sampler.shouldLog(Endpoint.GET_ACCOUNT)).isTrue();
+  }
+
+  @Test
+  void rejectsUnknownEndpointsAndNegativeRates() {
+    final RequestLogSampler sampler = RequestLogSampler.disabled();
+
+    assertThat(sampler.shouldLog(Endpoint.TRANSFER)).isFalse();
+    assertThatThrownBy(() -> Endpoint.of("unknown")).isInstanceOf(IllegalArgumentException.class);
+    assertThatThrownBy(() -> sampler.setSampleRate(Endpoint.TRANSFER, -1))
+      .isInstanceOf(IllegalArgumentException.class);
+  }
+}
@@ -0,0 +1,65 @@
+package com.dws.challenge.metrics;
+
+import com.dws.challenge.domain.TransferStatus;
+import com.dws.challenge.lock.AccountLockManager;
+import com.dws.challenge.lock.LockedOperation;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class TransferMetricsTest {
+
+  private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+
+  @Test
+  void transfersAreTimedPerOutcome() {
+    final TransferMetrics metrics = new TransferMetrics(this.registry, true);
+
+    metrics.recordTransfer(metrics.start(), TransferStatus.COMPLETED);
+    metrics.recordTransfer(metrics.start(), TransferStatus.COMPLETED);
+    metrics.recordTransfer(metrics.start(), TransferStatus.INSUFFICIENT_FUNDS);
+    metrics.recordTransfer(metrics.start(), null);
+
+    assertThat(this.registry.get("challenge.transfer").tag("outcome", "completed").timer().count()).isEqualTo(2);
+    assertThat(this.registry.get("challenge.transfer").tag("outcome", "insufficient_funds").timer().count())
+      .isEqualTo(1);
+    assertThat(this.registry.get("challenge.transfer").tag("outcome", "error").timer().count()).isEqualTo(1);
+  }
+
+  @Test
+  void lockWaitAndCriticalSectionAreTimedSeparatelyPerOperation() {
+    final TransferMetrics metrics = new TransferMetrics(this.registry, true);
+    final AccountLockManager lockManager = new AccountLockManager(16, metrics);
+
+    lockManager.executeLocked(LockedOperation.TRANSFER, "Id-1", "Id-2", () -> { });
+    lockManager.executeLocked(LockedOperation.TRANSFER, "Id-2", "Id-3", () -> { });
+    lockManager.executeLocked(LockedOperation.BATCH, List.of("Id-1", "Id-2", "Id-3"), () -> { });
+    lockManager.executeLocked(LockedOperation.AUTHORIZE_HOLD, "Id-1", () -> { });
+
+    assertThat(this.registry.get("challenge.transfer.lock.wait").tag("operation", "transfer").timer().count())
+      .isEqualTo(2);
+    assertThat(this.registry.get("challenge.transfer.critical.section").tag("operation", "transfer").timer().count())
+      .isEqualTo(2);
+    assertThat(this.registry.get("challenge.transfer.lock.wait").tag("operation", "batch").timer().count())
+      .isEqualTo(1);
+    assertThat(this.registry.get("challenge.transfer.critical.section").tag("operation", "authorize_hold").timer()
+      .count()).isEqualTo(1);
+    assertThat(this.registry.get("challenge.transfer.lock.wait").tag("operation", "capture_hold").timer().count())
+      .isZero();
+  }
+
+  @Test
+  void disabledMetricsRegisterNothing() {
+    final TransferMetrics metrics = new TransferMetrics(this.registry, false);
+
+    metrics.recordTransfer(metrics.start(), TransferStatus.COMPLETED);
+    metrics.recordCriticalSection(LockedOperation.TRANSFER,
+      metrics.recordLockWait(LockedOperation.TRANSFER, metrics.start()));
+
+    assertThat(metrics.start()).isZero();
+    assertThat(this.registry.getMeters()).isEmpty();
+  }
+}
@@ -0,0 +1,154 @@
+package com.dws.challenge.notification;
+
+import com.dws.challenge.domain.Account;
+import com.dws.challenge.metrics.TransferMetrics;
+import com.dws.challenge.repository.AccountsRepository;
+import com.dws.challenge.service.NotificationService;
+import com.dws.challenge.service.TransferDescription;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.math.BigDecimal;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+
+class AsyncNotificationServiceTest {
+
+  @TempDir
+  Path tempDir;
+
+  private final List<String> delivered = new CopyOnWriteArrayList<>();
+  private final CountDownLatch sinkEntered = new CountDownLatch(1);
+  private final CountDownLatch sinkReleased = new CountDownLatch(1);
+
+  @Test
+  void deliversNotificationsInOrderPerAccount() throws Exception {
+    final AsyncNotificationService service = newService(collectingSink(), 4, 100, BackpressurePolicy.BLOCK);
+
+    for (int i = 0; i < 50; i++) {
+      service.notifyAboutTransfer(new Account("Id-1"), "sent " + i);
+      service.notifyAboutTransfer(new Account("Id-2"), "received " + i);
+    }
+    service.destroy();
+
+    assertThat(delivered).hasSize(100);
+    assertThat(delivered.stream().filter(n -> n.startsWith("Id-1")))
+      .containsExactlyElementsOf(expected("Id-1: sent "));
+    assertThat(delivered.stream().filter(n -> n.startsWith("Id-2")))
+      .containsExactlyElementsOf(expected("Id-2: received "));
+  }
+
+  @Test
+  void dropsOldestWhenQueueIsFull() throws Exception {
+    final AsyncNotificationService service = newService(blockingSink(), 1, 1, BackpressurePolicy.DROP_OLDEST);
+
+    service.notifyAboutTransfer(new Account("Id-1"), "first");
+    sinkEntered.await();
+    service.notifyAboutTransfer(new Account("Id-1"), "second");
+    service.notifyAboutTransfer(new Account("Id-1"), "third");
+    sinkReleased.countDown();
+    service.destroy();
+
+    assertThat(delivered).containsExactly("Id-1: first", "Id-1: third");
+    assertThat(service.getDroppedNotifications()).isEqualTo(1);
+  }
+
+  @Test
+  void spillsToDiskWhenQueueIsFull() throws Exception {
+    final AsyncNotificationService service = newService(blockingSink(), 1, 1, BackpressurePolicy.SPILL_TO_DISK);
+
+    service.notifyAboutTransfer(new Account("Id-1"), "first");
+    sinkEntered.await();
+    service.notifyAboutTransfer(new Account("Id-1"), "second");
+    service.notifyAboutTransfer(new Account("Id-1"), "third");
+    sinkReleased.countDown();
+    waitUntil(() -> delivered.size() == 3);
+    service.destroy();
+
+    assertThat(delivered).containsExactly("Id-1: first", "Id-1: second", "Id-1: third");
+    assertThat(service.getSpilledNotifications()).isEqualTo(1);
+    assertThat(service.getDroppedNotifications()).isZero();
+  }
+
+  @Test
+  void keepsLaterNotificationsBehindSpilledOnes() throws Exception {
+    final AsyncNotificationService service = newService(blockingSink(), 1, 1, BackpressurePolicy.SPILL_TO_DISK);
+
+    service.notifyAboutTransfer(new Account("Id-1"), "first");
+    sinkEntered.await();
+    service.notifyAboutTransfer(new Account("Id-1"), "second");
+    service.notifyAboutTransfer(new Account("Id-1"), "third");
+    // The queue has room again, but the spilled notification comes first
+    sinkReleased.countDown();
+    waitUntil(() -> delivered.size() >= 2);
+    service.notifyAboutTransfer(new Account("Id-1"), "fourth");
+    waitUntil(() -> delivered.size() == 4);
+    service.destroy();
+
+    assertThat(delivered).containsExactly("Id-1: first", "Id-1: second", "Id-1: third", "Id-1: fourth");
+  }
+
+  @Test
+  void createsOneSpillFilePerWorker() throws Exception {
+    final AsyncNotificationService service = newService(collectingSink(), 2, 2, BackpressurePolicy.SPILL_TO_DISK);
+    service.destroy();
+
+    assertThat(this.tempDir.resolve("notifications.spill")).exists();
+    assertThat(this.tempDir.resolve("notifications.spill-1")).exists();
+  }
+
+  @Test
+  void deliversFormattedTransferDescriptions() throws Exception {
+    final AsyncNotificationService service = newService(collectingSink(), 1, 10, BackpressurePolicy.BLOCK);
+
+    service.notifyAboutTransfer(new Account("Id-1"), TransferDescription.sent(new BigDecimal("12.50"), "Id-2"));
+    service.notifyAboutTransfer(new Account("Id-2"), TransferDescription.received(new BigDecimal("12.50"), "Id-1"));
+    service.destroy();
+
+    assertThat(delivered).containsExactlyInAnyOrder("Id-1: sent 12.50 to Id-2", "Id-2: received 12.50 from Id-1");
+  }
+
+  private AsyncNotificationService newService(NotificationService sink, int workers, int capacity,
+                                              BackpressurePolicy policy) throws Exception {
+    return new AsyncNotificationService(sink, mock(AccountsRepository.class), TransferMetrics.disabled(), workers, capacity, 10, policy,
+      this.tempDir.resolve("notifications.spill"));
+  }
+
+  private NotificationService collectingSink() {
+    return (account, description) -> delivered.add(account.getAccountId() + ": " + description);
+  }
+
+  private NotificationService blockingSink() {
+    return (account, description) -> {
+      sinkEntered.countDown();
+      try {
+        sinkReleased.await();
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+      delivered.add(account.getAccountId() + ": " + description);
+    };
+  }
+
+  private static List<String> expected(String prefix) {
+    final List<String> expected = new CopyOnWriteArrayList<>();
+    for (int i = 0; i < 50; i++) {
+      expected.add(prefix + i);
+    }
+    return expected;
+  }
+
+  private static void waitUntil(BooleanSupplier condition) throws InterruptedException {
+    final long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+    while (!condition.getAsBoolean() && System.nanoTime() < deadline) {
+      Thread.sleep(10);
+    }
+  }
+}
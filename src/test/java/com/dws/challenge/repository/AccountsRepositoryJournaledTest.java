@@ -0,0 +1,204 @@
+package com.dws.challenge.repository;
+
+import com.dws.challenge.config.BalanceProperties;
+import com.dws.challenge.config.BalanceRepresentation;
+import com.dws.challenge.domain.Account;
+import com.dws.challenge.exception.DuplicateAccountIdException;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class AccountsRepositoryJournaledTest {
+
+  @TempDir
+  Path directory;
+
+  @Test
+  void restoresAccountsAndBalancesAfterRestart() throws Exception {
+    AccountsRepositoryJournaled repository = open(BalanceRepresentation.DECIMAL);
+    final Account first = new Account("Id-1", new BigDecimal("100.50"));
+    final Account second = new Account("Id-2", new BigDecimal("10"));
+    repository.createAccount(first);
+    repository.createAccount(second);
+    transfer(repository, first, second, "40.25");
+    transfer(repository, second, first, "0.75");
+    repository.destroy();
+
+    repository = open(BalanceRepresentation.DECIMAL);
+    assertThat(repository.getAccount("Id-1").getBalance()).isEqualByComparingTo("61.00");
+    assertThat(repository.getAccount("Id-2").getBalance()).isEqualByComparingTo("49.50");
+    repository.destroy();
+  }
+
+  @Test
+  void replaysJournalOnTopOfSnapshotAndDropsOldFiles() throws Exception {
+    AccountsRepositoryJournaled repository = open(BalanceRepresentation.DECIMAL);
+    final Account first = new Account("Id-1", new BigDecimal("100"));
+    final Account second = new Account("Id-2", new BigDecimal("0"));
+    repository.createAccount(first);
+    repository.createAccount(second);
+    transfer(repository, first, second, "10");
+    repository.snapshot();
+    transfer(repository, first, second, "20");
+    repository.destroy();
+
+    assertThat(files("snapshot-")).hasSize(1);
+    assertThat(files("journal-")).hasSize(1);
+
+    repository = open(BalanceRepresentation.DECIMAL);
+    assertThat(repository.getAccount("Id-1").getBalance()).isEqualByComparingTo("70");
+    assertThat(repository.getAccount("Id-2").getBalance()).isEqualByComparingTo("30");
+    repository.destroy();
+  }
+
+  @Test
+  void createsBatchOfAccountsAndReportsDuplicates() throws Exception {
+    AccountsRepositoryJournaled repository = open(BalanceRepresentation.DECIMAL);
+    repository.createAccount(new Account("Id-1", new BigDecimal("100")));
+
+    final List<DuplicateAccountIdException> failures = repository.createAccounts(List.of(
+      new Account("Id-2", new BigDecimal("20")),
+      new Account("Id-1", new BigDecimal("10")),
+      new Account("Id-3", new BigDecimal("30"))));
+    repository.destroy();
+
+    assertThat(failures).hasSize(3);
+    assertThat(failures.get(0)).isNull();
+    assertThat(failures.get(1)).hasMessage("Account id Id-1 already exists!");
+    assertThat(failures.get(2)).isNull();
+
+    repository = open(BalanceRepresentation.DECIMAL);
+    assertThat(repository.getAccount("Id-1").getBalance()).isEqualByComparingTo("100");
+    assertThat(repository.getAccount("Id-2").getBalance()).isEqualByComparingTo("20");
+    assertThat(repository.getAccount("Id-3").getBalance()).isEqualByComparingTo("30");
+    repository.destroy();
+  }
+
+  @Test
+  void ignoresTornRecordAtTheEndOfTheJournal() throws Exception {
+    AccountsRepositoryJournaled repository = open(BalanceRepresentation.DECIMAL);
+    repository.createAccount(new Account("Id-1", new BigDecimal("100")));
+    repository.destroy();
+
+    final Path journal = files("journal-").get(0);
+    final byte[] content = Files.readAllBytes(journal);
+    int end = 0;
+    while (end + 4 <= content.length && readInt(content, end) != 0) {
+      end += 8 + readInt(content, end);
+    }
+    // A record header promising more bytes than were written before the crash
+    content[end + 3] = 100;
+    content[end + 7] = 1;
+    Files.write(journal, content);
+
+    repository = open(BalanceRepresentation.DECIMAL);
+    assertThat(repository.getAccount("Id-1").getBalance()).isEqualByComparingTo("100");
+    repository.destroy();
+  }
+
+  @Test
+  void restoresFixedPointAccounts() throws Exception {
+    AccountsRepositoryJournaled repository = open(BalanceRepresentation.FIXED_POINT);
+    final Account first = new Account("Id-1", new BigDecimal("100"));
+    first.switchToFixedPoint(2);
+    final Account second = new Account("Id-2", new BigDecimal("0"));
+    second.switchToFixedPoint(2);
+    repository.createAccount(first);
+    repository.createAccount(second);
+    transfer(repository, first, second, "0.01");
+    repository.destroy();
+
+    repository = open(BalanceRepresentation.FIXED_POINT);
+    assertThat(repository.getAccount("Id-1").getFixedPointBalance().get()).isEqualTo(9999);
+    assertThat(repository.getAccount("Id-2").getFixedPointBalance().get()).isEqualTo(1);
+    repository.destroy();
+  }
+
+  @Test
+  void restoresCurrenciesFromSnapshotAndJournal() throws Exception {
+    AccountsRepositoryJournaled repository = open(BalanceRepresentation.FIXED_POINT);
+    repository.createAccount(new Account("Id-1", new BigDecimal("5000"), "JPY"));
+    repository.createAccount(new Account("Id-2", new BigDecimal("10")));
+    repository.snapshot();
+    repository.createAccount(new Account("Id-3", new BigDecimal("2.50"), "USD"));
+    repository.destroy();
+
+    repository = open(BalanceRepresentation.FIXED_POINT);
+    assertThat(repository.getAccount("Id-1").getCurrency()).isEqualTo("JPY");
+    assertThat(repository.getAccount("Id-1").getFixedPointBalance().getScale()).isZero();
+    assertThat(repository.getAccount("Id-2").getCurrency()).isEqualTo("EUR");
+    assertThat(repository.getAccount("Id-3").getCurrency()).isEqualTo("USD");
+    assertThat(repository.getAccount("Id-3").getFixedPointBalance().get()).isEqualTo(250);
+    repository.destroy();
+  }
+
+  @Test
+  void keepsAccountsCreatedWhileSnapshotting() throws Exception {
+    AccountsRepositoryJournaled repository = open(BalanceRepresentation.DECIMAL);
+    final AccountsRepositoryJournaled creating = repository;
+    final CompletableFuture<Void> creations = CompletableFuture.runAsync(() -> {
+      for (int i = 0; i < 2_000; i++) {
+        creating.createAccount(new Account("Id-" + i, BigDecimal.ONE, "USD"));
+      }
+    });
+    while (!creations.isDone()) {
+      repository.snapshot();
+    }
+    creations.join();
+    repository.destroy();
+
+    repository = open(BalanceRepresentation.DECIMAL);
+    assertThat(repository.countAccounts()).isEqualTo(2_000);
+    assertThat(repository.getAccount("Id-1999").getCurrency()).isEqualTo("USD");
+    repository.destroy();
+  }
+
+  @Test
+  void keepsClearAndDuplicateChecks() throws Exception {
+    AccountsRepositoryJournaled repository = open(BalanceRepresentation.DECIMAL);
+    repository.createAccount(new Account("Id-1", BigDecimal.ONE));
+    assertThatThrownBy(() -> repository.createAccount(new Account("Id-1", BigDecimal.TEN)))
+      .isInstanceOf(DuplicateAccountIdException.class);
+    repository.clearAccounts();
+    repository.destroy();
+
+    final AccountsRepositoryJournaled reopened = open(BalanceRepresentation.DECIMAL);
+    assertThat(reopened.getAccount("Id-1")).isNull();
+    reopened.destroy();
+  }
+
+  private AccountsRepositoryJournaled open(BalanceRepresentation representation) throws IOException {
+    final BalanceProperties balanceProperties = new BalanceProperties();
+    balanceProperties.setRepresentation(representation);
+    return new AccountsRepositoryJournaled(balanceProperties, this.directory, 1, 3600);
+  }
+
+  private static void transfer(AccountsRepository repository, Account from, Account to, String amount) {
+    from.setBalance(from.getBalance().subtract(new BigDecimal(amount)));
+    to.setBalance(to.getBalance().add(new BigDecimal(amount)));
+    repository.recordBalances(from, to);
+    repository.awaitDurable();
+  }
+
+  private List<Path> files(String prefix) throws IOException {
+    try (Stream<Path> files = Files.list(this.directory)) {
+      return files.filter(file -> file.getFileName().toString().startsWith(prefix)).collect(Collectors.toList());
+    }
+  }
+
+  private static int readInt(byte[] bytes, int offset) {
+    return ((bytes[offset] & 0xff) << 24) | ((bytes[offset + 1] & 0xff) << 16)
+      | ((bytes[offset + 2] & 0xff) << 8) | (bytes[offset + 3] & 0xff);
+  }
+}
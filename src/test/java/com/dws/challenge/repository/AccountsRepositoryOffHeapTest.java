@@ -0,0 +1,131 @@
+package com.dws.challenge.repository;
+
+import com.dws.challenge.config.BalanceProperties;
+import com.dws.challenge.domain.Account;
+import com.dws.challenge.exception.DuplicateAccountIdException;
+import com.dws.challenge.exception.InvalidAmountException;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.file.Path;
+import java.util.HashSet;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class AccountsRepositoryOffHeapTest {
+
+  @TempDir
+  Path directory;
+
+  @Test
+  void keepsBalancesWrittenThroughViewsAfterRestart() throws Exception {
+    AccountsRepositoryOffHeap repository = open(1000);
+    repository.createAccount(new Account("Id-1", new BigDecimal("100.50")));
+    repository.createAccount(new Account("Id-2", new BigDecimal("10")));
+
+    final Account first = repository.getAccount("Id-1");
+    first.setBalance(first.getBalance().subtract(new BigDecimal("40.25")));
+    assertThat(first.getFixedPointBalance().compareAndSet(6025, 6100)).isTrue();
+    repository.destroy();
+
+    repository = open(1000);
+    assertThat(repository.countAccounts()).isEqualTo(2);
+    assertThat(repository.getAccount("Id-1").getBalance()).isEqualByComparingTo("61.00");
+    assertThat(repository.getAccount("Id-2").getBalance()).isEqualByComparingTo("10");
+    assertThat(repository.getAccount("Id-3")).isNull();
+    repository.destroy();
+  }
+
+  @Test
+  void rejectsDuplicatesAndUnrepresentableBalances() throws Exception {
+    final AccountsRepositoryOffHeap repository = open(1000);
+    repository.createAccount(new Account("Id-1", BigDecimal.ONE));
+
+    assertThatThrownBy(() -> repository.createAccount(new Account("Id-1", BigDecimal.TEN)))
+      .isInstanceOf(DuplicateAccountIdException.class)
+      .hasMessage("Account id Id-1 already exists!");
+    assertThatThrownBy(() -> repository.createAccount(new Account("Id-2", new BigDecimal("0.001"))))
+      .isInstanceOf(InvalidAmountException.class);
+    assertThat(repository.getAccount("Id-1").getBalance()).isEqualByComparingTo("1");
+    assertThat(repository.countAccounts()).isEqualTo(1);
+    repository.destroy();
+  }
+
+  @Test
+  void storesManyAccountsUntilFull() throws Exception {
+    final AccountsRepositoryOffHeap repository = open(8_192);
+    for (int i = 0; i < 8_192; i++) {
+      repository.createAccount(new Account("Id-" + i, BigDecimal.valueOf(i)));
+    }
+    assertThatThrownBy(() -> repository.createAccount(new Account("Id-8192", BigDecimal.ONE)))
+      .isInstanceOf(IllegalStateException.class);
+
+    assertThat(repository.countAccounts()).isEqualTo(8_192);
+    assertThat(repository.getAccount("Id-1234").getBalance()).isEqualByComparingTo("1234");
+    final Set<String> accountIds = new HashSet<>();
+    repository.forEachAccount(account -> accountIds.add(account.getAccountId()));
+    assertThat(accountIds).hasSize(8_192);
+
+    repository.clearAccounts();
+    assertThat(repository.countAccounts()).isZero();
+    assertThat(repository.getAccount("Id-1234")).isNull();
+    repository.destroy();
+  }
+
+  @Test
+  void sharesSnapshotStateBetweenViews() throws Exception {
+    final AccountsRepositoryOffHeap repository = open(1000);
+    final Account created = new Account("Id-1", new BigDecimal("100"));
+    created.setCreatedEpoch(2);
+    repository.createAccount(created);
+
+    repository.getAccount("Id-1").preserveBalance(3);
+    repository.getAccount("Id-1").setBalance(new BigDecimal("70"));
+    repository.getAccount("Id-1").preserveBalance(3);
+    repository.getAccount("Id-1").setBalance(new BigDecimal("50"));
+
+    final Account account = repository.getAccount("Id-1");
+    assertThat(account.getCreatedEpoch()).isEqualTo(2);
+    assertThat(account.getBalanceAt(3)).isEqualByComparingTo("100");
+    assertThat(account.getBalanceAt(4)).isEqualByComparingTo("50");
+    repository.destroy();
+  }
+
+  @Test
+  void forgetsSnapshotEpochsOfEarlierRuns() throws Exception {
+    AccountsRepositoryOffHeap repository = open(1000);
+    final Account created = new Account("Id-1", new BigDecimal("100"));
+    created.setCreatedEpoch(5);
+    repository.createAccount(created);
+    repository.getAccount("Id-1").preserveBalance(5);
+    repository.getAccount("Id-1").setBalance(new BigDecimal("70"));
+    repository.destroy();
+
+    repository = open(1000);
+    final Account account = repository.getAccount("Id-1");
+    assertThat(account.getCreatedEpoch()).isZero();
+    assertThat(account.getBalanceAt(5)).isEqualByComparingTo("70");
+    repository.destroy();
+  }
+
+  @Test
+  void recountsAccountsAfterUncleanShutdown() throws Exception {
+    final AccountsRepositoryOffHeap crashed = open(1000);
+    crashed.createAccount(new Account("Id-1", BigDecimal.ONE));
+    crashed.createAccount(new Account("Id-2", BigDecimal.TEN));
+
+    final AccountsRepositoryOffHeap repository = open(1000);
+    assertThat(repository.countAccounts()).isEqualTo(2);
+    assertThat(repository.getAccount("Id-2").getBalance()).isEqualByComparingTo("10");
+    repository.destroy();
+  }
+
+  private AccountsRepositoryOffHeap open(long maxAccounts) throws IOException {
+    return new AccountsRepositoryOffHeap(new BalanceProperties(), this.directory.resolve("accounts.table"),
+      maxAccounts, 1);
+  }
+}
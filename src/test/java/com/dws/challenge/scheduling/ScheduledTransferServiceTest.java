@@ -0,0 +1,148 @@
+package com.dws.challenge.scheduling;
+
+import com.dws.challenge.domain.Account;
+import com.dws.challenge.domain.BatchMode;
+import com.dws.challenge.domain.MoneyTransfer;
+import com.dws.challenge.domain.ScheduledTransfer;
+import com.dws.challenge.domain.TransferResult;
+import com.dws.challenge.exception.AccountNotFoundException;
+import com.dws.challenge.exception.InsufficientFundsException;
+import com.dws.challenge.exception.InvalidScheduleException;
+import com.dws.challenge.service.AccountsService;
+import com.dws.challenge.service.BatchMoneyTransferService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.lenient;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class ScheduledTransferServiceTest {
+
+  @Mock
+  BatchMoneyTransferService batchMoneyTransferService;
+  @Mock
+  AccountsService accountsService;
+
+  ScheduledTransferService scheduledTransferService;
+
+  @BeforeEach
+  void createService() {
+    this.scheduledTransferService = ScheduledTransferService.manual(this.batchMoneyTransferService,
+      this.accountsService, 100, 2);
+    lenient().when(this.accountsService.getAccount(anyString()))
+      .thenAnswer(invocation -> new Account(invocation.getArgument(0), BigDecimal.TEN));
+  }
+
+  @Test
+  @SuppressWarnings("unchecked")
+  void executesDueTransfersInOrderAndInBatches() {
+    when(this.batchMoneyTransferService.transferMoney(anyList(), eq(BatchMode.BEST_EFFORT)))
+      .thenAnswer(invocation -> IntStream.range(0, invocation.<List<?>>getArgument(0).size())
+        .mapToObj(TransferResult::completed)
+        .collect(Collectors.toList()));
+    final Instant now = Instant.now();
+    final ScheduledTransfer third = schedule("Id-1", "Id-2", now.plusSeconds(3));
+    final ScheduledTransfer first = schedule("Id-2", "Id-3", now.plusSeconds(1));
+    final ScheduledTransfer second = schedule("Id-3", "Id-1", now.plusSeconds(2));
+
+    assertThat(this.scheduledTransferService.executeDue(now.plusMillis(900))).isZero();
+    verify(this.batchMoneyTransferService, never()).transferMoney(anyList(), any());
+    assertThat(this.scheduledTransferService.executeDue(now.plusSeconds(5))).isEqualTo(3);
+
+    final ArgumentCaptor<List<MoneyTransfer>> batches = ArgumentCaptor.forClass(List.class);
+    verify(this.batchMoneyTransferService, times(2)).transferMoney(batches.capture(), eq(BatchMode.BEST_EFFORT));
+    assertThat(batches.getAllValues()).containsExactly(
+      List.of(first.getTransfer(), second.getTransfer()), List.of(third.getTransfer()));
+    assertThat(this.scheduledTransferService.getPendingCount()).isZero();
+    assertThat(this.scheduledTransferService.getCompleted()).isEqualTo(3);
+  }
+
+  @Test
+  void countsTransfersFailingWhenExecuted() {
+    when(this.batchMoneyTransferService.transferMoney(anyList(), eq(BatchMode.BEST_EFFORT)))
+      .thenReturn(List.of(TransferResult.failed(0, new InsufficientFundsException("Id-1"))));
+    final Instant now = Instant.now();
+    schedule("Id-1", "Id-2", now);
+
+    assertThat(this.scheduledTransferService.executeDue(now.plusSeconds(1))).isEqualTo(1);
+    assertThat(this.scheduledTransferService.getFailed()).isEqualTo(1);
+    assertThat(this.scheduledTransferService.getCompleted()).isZero();
+  }
+
+  @Test
+  void batchFailingUnexpectedlyDoesNotStopTheFollowingBatches() {
+    when(this.batchMoneyTransferService.transferMoney(anyList(), eq(BatchMode.BEST_EFFORT)))
+      .thenThrow(new IllegalStateException("boom"))
+      .thenReturn(List.of(TransferResult.completed(0)));
+    final Instant now = Instant.now();
+    schedule("Id-1", "Id-2", now);
+    schedule("Id-2", "Id-3", now.plusMillis(100));
+    schedule("Id-3", "Id-1", now.plusMillis(200));
+
+    assertThat(this.scheduledTransferService.executeDue(now.plusSeconds(1))).isEqualTo(3);
+    verify(this.batchMoneyTransferService, times(2)).transferMoney(anyList(), eq(BatchMode.BEST_EFFORT));
+    assertThat(this.scheduledTransferService.getFailed()).isEqualTo(2);
+    assertThat(this.scheduledTransferService.getCompleted()).isEqualTo(1);
+    assertThat(this.scheduledTransferService.getPendingCount()).isZero();
+  }
+
+  @Test
+  void cancelledTransfersAreNotExecuted() {
+    final Instant now = Instant.now();
+    final ScheduledTransfer scheduled = schedule("Id-1", "Id-2", now.plusSeconds(1));
+
+    assertThat(this.scheduledTransferService.cancel(scheduled.getId())).contains(scheduled);
+    assertThat(this.scheduledTransferService.cancel(scheduled.getId())).isEmpty();
+    assertThat(this.scheduledTransferService.executeDue(now.plusSeconds(2))).isZero();
+    verify(this.batchMoneyTransferService, never()).transferMoney(anyList(), any());
+  }
+
+  @Test
+  void listsPendingTransfersOfAnAccountInExecutionOrder() {
+    final Instant now = Instant.now();
+    final ScheduledTransfer later = schedule("Id-1", "Id-2", now.plus(Duration.ofDays(30)));
+    final ScheduledTransfer sooner = schedule("Id-3", "Id-1", now.plus(Duration.ofDays(1)));
+    final ScheduledTransfer other = schedule("Id-3", "Id-4", now.plus(Duration.ofHours(1)));
+
+    assertThat(this.scheduledTransferService.getPending("Id-1", 10)).containsExactly(sooner, later);
+    assertThat(this.scheduledTransferService.getPending(null, 2)).containsExactly(other, sooner);
+    assertThat(this.scheduledTransferService.getPendingCount()).isEqualTo(3);
+  }
+
+  @Test
+  void rejectsUnknownAccountsAndFarFutureTimes() {
+    when(this.accountsService.getAccount("Id-9")).thenReturn(null);
+
+    assertThatThrownBy(() -> schedule("Id-1", "Id-9", Instant.now()))
+      .isInstanceOf(AccountNotFoundException.class);
+    assertThatThrownBy(() -> schedule("Id-1", "Id-2", Instant.now().plus(Duration.ofDays(365 * 20))))
+      .isInstanceOf(InvalidScheduleException.class);
+    assertThat(this.scheduledTransferService.getPendingCount()).isZero();
+  }
+
+  private ScheduledTransfer schedule(String fromAccountId, String toAccountId, Instant executeAt) {
+    return this.scheduledTransferService.schedule(new MoneyTransfer(fromAccountId, toAccountId, BigDecimal.ONE),
+      executeAt);
+  }
+}
@@ -0,0 +1,91 @@
+package com.dws.challenge.scheduling;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class TimingWheelTest {
+
+  @Test
+  void expiresTimersOnTheirDeadlineAtEveryLevel() {
+    final TimingWheel<String> wheel = new TimingWheel<>(0);
+    final Map<String, Long> expiredAt = new HashMap<>();
+    final long[] deadlines = {1, 255, 256, 300, 65_535, 65_536, 70_000, 16_777_216, 20_000_000};
+    for (long deadline : deadlines) {
+      wheel.schedule("T-" + deadline, deadline);
+    }
+
+    for (long deadline : deadlines) {
+      wheel.advance(deadline - 1, timer -> expiredAt.put(timer.getValue(), wheel.getCurrentTick()));
+      assertThat(expiredAt).doesNotContainKey("T-" + deadline);
+      wheel.advance(deadline, timer -> expiredAt.put(timer.getValue(), wheel.getCurrentTick()));
+      assertThat(expiredAt).containsEntry("T-" + deadline, deadline);
+    }
+    assertThat(wheel.size()).isZero();
+  }
+
+  @Test
+  void expiresRandomTimersExactlyOnce() {
+    final Random random = new Random(42);
+    final TimingWheel<Long> wheel = new TimingWheel<>(1_000);
+    final List<Long> expired = new ArrayList<>();
+    for (int i = 0; i < 10_000; i++) {
+      wheel.schedule((long) i, 1_000 + 1 + random.nextInt(200_000));
+    }
+
+    long tick = 1_000;
+    while (wheel.size() > 0) {
+      tick += 1 + random.nextInt(5_000);
+      final long now = tick;
+      wheel.advance(now, timer -> {
+        assertThat(timer.getDeadlineTick()).isLessThanOrEqualTo(now);
+        assertThat(timer.getDeadlineTick()).isEqualTo(wheel.getCurrentTick());
+        expired.add(timer.getValue());
+      });
+    }
+    assertThat(expired).hasSize(10_000).doesNotHaveDuplicates();
+  }
+
+  @Test
+  void cancelledTimersNeverExpire() {
+    final TimingWheel<String> wheel = new TimingWheel<>(0);
+    final TimingWheel.Timer<String> cancelled = wheel.schedule("cancelled", 100_000);
+    wheel.schedule("kept", 100_000);
+
+    assertThat(wheel.cancel(cancelled)).isTrue();
+    assertThat(wheel.cancel(cancelled)).isFalse();
+    final List<String> expired = new ArrayList<>();
+    wheel.advance(100_000, timer -> expired.add(timer.getValue()));
+
+    assertThat(expired).containsExactly("kept");
+    assertThat(wheel.size()).isZero();
+  }
+
+  @Test
+  void expiresPastDeadlinesOnTheNextTick() {
+    final TimingWheel<String> wheel = new TimingWheel<>(500);
+    wheel.schedule("late", 10);
+    final List<String> expired = new ArrayList<>();
+
+    wheel.advance(500, timer -> expired.add(timer.getValue()));
+    assertThat(expired).isEmpty();
+    wheel.advance(501, timer -> expired.add(timer.getValue()));
+    assertThat(expired).containsExactly("late");
+  }
+
+  @Test
+  void rejectsDeadlinesBeyondTheLastLevel() {
+    final TimingWheel<String> wheel = new TimingWheel<>(0);
+    wheel.schedule("last", TimingWheel.MAX_DELAY_TICKS);
+
+    assertThatThrownBy(() -> wheel.schedule("too late", TimingWheel.MAX_DELAY_TICKS + 1))
+      .isInstanceOf(IllegalArgumentException.class);
+  }
+}
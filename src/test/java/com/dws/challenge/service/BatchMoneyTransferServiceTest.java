@@ -0,0 +1,38 @@
+package com.dws.challenge.service;
+
+import com.dws.challenge.domain.MoneyTransfer;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class BatchMoneyTransferServiceTest {
+
+  @Test
+  void groupsTransfersConnectedByAccounts() {
+    final List<List<Integer>> groups = BatchMoneyTransferService.groupByConnectedAccounts(List.of(
+      transfer("Id-1", "Id-2"),
+      transfer("Id-3", "Id-4"),
+      transfer("Id-5", "Id-6"),
+      transfer("Id-2", "Id-3"),
+      transfer("Id-7", "Id-8")));
+
+    assertThat(groups).containsExactly(List.of(0, 1, 3), List.of(2), List.of(4));
+  }
+
+  @Test
+  void keepsRequestOrderInsideGroup() {
+    final List<List<Integer>> groups = BatchMoneyTransferService.groupByConnectedAccounts(List.of(
+      transfer("Id-1", "Id-2"),
+      transfer("Id-2", "Id-1"),
+      transfer("Id-1", "Id-2")));
+
+    assertThat(groups).containsExactly(List.of(0, 1, 2));
+  }
+
+  private static MoneyTransfer transfer(String fromAccountId, String toAccountId) {
+    return new MoneyTransfer(fromAccountId, toAccountId, BigDecimal.ONE);
+  }
+}
@@ -1,17 +1,35 @@
 package com.dws.challenge.service;
 
+import com.dws.challenge.cache.AccountViewCache;
+import com.dws.challenge.config.BalanceProperties;
 import com.dws.challenge.domain.Account;
 import com.dws.challenge.domain.MoneyTransfer;
 import com.dws.challenge.exception.AccountNotFoundException;
 import com.dws.challenge.exception.DuplicateAccountIdException;
 import com.dws.challenge.exception.InsufficientFundsException;
+import com.dws.challenge.exception.InvalidAmountException;
+import com.dws.challenge.exception.UnsupportedCurrencyException;
+import com.dws.challenge.engine.LockingTransferEngine;
+import com.dws.challenge.engine.TransferEngine;
+import com.dws.challenge.fx.FxRateTable;
+import com.dws.challenge.index.AccountIndex;
+import com.dws.challenge.ledger.LedgerEntry;
+import com.dws.challenge.ledger.TransactionLedger;
+import com.dws.challenge.lock.AccountLockManager;
+import com.dws.challenge.metrics.TransferMetrics;
+import com.dws.challenge.repository.AccountsRepositoryInMemory;
+import com.dws.challenge.snapshot.SnapshotCoordinator;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
+import org.mockito.Spy;
 import org.mockito.junit.jupiter.MockitoExtension;
 
 import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
 
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.junit.jupiter.api.Assertions.*;
@@ -30,6 +48,21 @@ class MoneyTransferServiceTest {
   AccountsService accountsService;
   @Mock
   NotificationService notificationService;
+  @Spy
+  TransferEngine transferEngine = new LockingTransferEngine(new AccountLockManager(16), new AccountsRepositoryInMemory());
+  @Spy
+  TransferMetrics transferMetrics = TransferMetrics.disabled();
+  @Spy
+  TransactionLedger transactionLedger = new TransactionLedger(true);
+  @Spy
+  SnapshotCoordinator snapshotCoordinator = new SnapshotCoordinator();
+  @Spy
+  AccountViewCache accountViewCache = AccountViewCache.disabled();
+  @Spy
+  FxRateTable fxRateTable = new FxRateTable(new BalanceProperties(),
+    Map.of("EUR", BigDecimal.ONE, "USD", new BigDecimal("1.25")));
+  @Spy
+  AccountIndex accountIndex = AccountIndex.disabled();
 
   @Test
   void transferMoney_failsOnDuplicateId() {
@@ -41,7 +74,7 @@ class MoneyTransferServiceTest {
       fail();
     } catch (DuplicateAccountIdException ex) {
       assertThat(ex.getMessage()).isEqualTo("Cannot transfer money to the same account: Id-001");
-      verify(notificationService, never()).notifyAboutTransfer(any(), any());
+      verify(notificationService, never()).notifyAboutTransfer(any(), any(TransferDescription.class));
     }
   }
 
@@ -54,7 +87,7 @@ class MoneyTransferServiceTest {
       fail();
     } catch (AccountNotFoundException ex) {
       assertThat(ex.getMessage()).isEqualTo("Account Id-001 not found");
-      verify(notificationService, never()).notifyAboutTransfer(any(), any());
+      verify(notificationService, never()).notifyAboutTransfer(any(), any(TransferDescription.class));
     }
   }
 
@@ -69,7 +102,7 @@ class MoneyTransferServiceTest {
       fail();
     } catch (AccountNotFoundException ex) {
       assertThat(ex.getMessage()).isEqualTo("Account Id-111 not found");
-      verify(notificationService, never()).notifyAboutTransfer(any(), any());
+      verify(notificationService, never()).notifyAboutTransfer(any(), any(TransferDescription.class));
     }
   }
 
@@ -102,10 +135,12 @@ class MoneyTransferServiceTest {
     assertThat(fromAccount.getBalance()).isEqualByComparingTo("50");
     assertThat(toAccount.getBalance()).isEqualByComparingTo("110");
 
+    verify(this.transactionLedger)
+            .record(fromAccount.getAccountId(), toAccount.getAccountId(), new BigDecimal(100), null, new BigDecimal(100), null);
     verify(this.notificationService)
-            .notifyAboutTransfer(eq(fromAccount), eq("sent 100 to " + toAccount.getAccountId()));
+            .notifyAboutTransfer(eq(fromAccount), eq(TransferDescription.sent(new BigDecimal(100), toAccount.getAccountId())));
     verify(this.notificationService)
-            .notifyAboutTransfer(eq(toAccount), eq("received 100 from " + fromAccount.getAccountId()));
+            .notifyAboutTransfer(eq(toAccount), eq(TransferDescription.received(new BigDecimal(100), fromAccount.getAccountId())));
   }
 
   @Test
@@ -122,9 +157,103 @@ class MoneyTransferServiceTest {
     assertThat(toAccount.getBalance()).isEqualByComparingTo("160");
 
     verify(this.notificationService)
-      .notifyAboutTransfer(eq(fromAccount), eq("sent 150 to " + toAccount.getAccountId()));
+      .notifyAboutTransfer(eq(fromAccount), eq(TransferDescription.sent(new BigDecimal(150), toAccount.getAccountId())));
     verify(this.notificationService)
-      .notifyAboutTransfer(eq(toAccount), eq("received 150 from " + fromAccount.getAccountId()));
+      .notifyAboutTransfer(eq(toAccount), eq(TransferDescription.received(new BigDecimal(150), fromAccount.getAccountId())));
+  }
+
+  @Test
+  void transferMoneyInFixedPoint() {
+    final Account fromAccount = mockNewFixedPointAccount("150.25");
+    final Account toAccount = mockNewFixedPointAccount("10");
+
+    this.moneyTransferService.transferMoney(new MoneyTransfer(
+      fromAccount.getAccountId(), toAccount.getAccountId(), new BigDecimal("100.5")));
+
+    assertThat(fromAccount.getFixedPointBalance().get()).isEqualTo(4975);
+    assertThat(toAccount.getFixedPointBalance().get()).isEqualTo(11050);
+    assertThat(fromAccount.getBalance()).isEqualTo(new BigDecimal("49.75"));
+  }
+
+  @Test
+  void transferMoneyInFixedPoint_failsOnInsufficientFunds() {
+    final Account fromAccount = mockNewFixedPointAccount("50");
+    final Account toAccount = mockNewFixedPointAccount("10");
+
+    final MoneyTransfer moneyTransfer = new MoneyTransfer(
+      fromAccount.getAccountId(), toAccount.getAccountId(), new BigDecimal("50.01"));
+
+    assertThrows(InsufficientFundsException.class, () -> this.moneyTransferService.transferMoney(moneyTransfer));
+    assertThat(fromAccount.getFixedPointBalance().get()).isEqualTo(5000);
+    assertThat(toAccount.getFixedPointBalance().get()).isEqualTo(1000);
+  }
+
+  @Test
+  void transferMoneyInFixedPoint_failsOnScaleViolation() {
+    final Account fromAccount = mockNewFixedPointAccount("50");
+    final Account toAccount = mockNewFixedPointAccount("10");
+
+    final MoneyTransfer moneyTransfer = new MoneyTransfer(
+      fromAccount.getAccountId(), toAccount.getAccountId(), new BigDecimal("0.001"));
+
+    assertThrows(InvalidAmountException.class, () -> this.moneyTransferService.transferMoney(moneyTransfer));
+    verify(notificationService, never()).notifyAboutTransfer(any(), any(TransferDescription.class));
+  }
+
+  @Test
+  void transferMoneyAcrossCurrencies() {
+    final Account fromAccount = mockNewAccount(150);
+    fromAccount.setCurrency("EUR");
+    final Account toAccount = mockNewAccount(10);
+    toAccount.setCurrency("USD");
+
+    this.moneyTransferService.transferMoney(new MoneyTransfer(
+      fromAccount.getAccountId(), toAccount.getAccountId(), new BigDecimal("100.01")));
+
+    assertThat(fromAccount.getBalance()).isEqualByComparingTo("49.99");
+    assertThat(toAccount.getBalance()).isEqualByComparingTo("135.01");
+    verify(this.notificationService).notifyAboutTransfer(eq(toAccount),
+      eq(TransferDescription.received(new BigDecimal("125.01"), fromAccount.getAccountId())));
+  }
+
+  @Test
+  void transferMoneyAcrossCurrencies_recordsBothAmountsInHistory() {
+    final Account fromAccount = mockNewAccount(150);
+    fromAccount.setCurrency("EUR");
+    final Account toAccount = mockNewAccount(10);
+    toAccount.setCurrency("USD");
+
+    this.moneyTransferService.transferMoney(new MoneyTransfer(
+      fromAccount.getAccountId(), toAccount.getAccountId(), new BigDecimal("100.01")));
+
+    final List<LedgerEntry> entries = new ArrayList<>();
+    this.transactionLedger.forEachEntry(toAccount.getAccountId(), 0, 10, entries::add);
+    assertThat(entries).hasSize(1);
+    assertThat(entries.get(0).getAmount()).isEqualByComparingTo("100.01");
+    assertThat(entries.get(0).getCurrency()).isEqualTo("EUR");
+    assertThat(entries.get(0).getCreditedAmount()).isEqualByComparingTo("125.01");
+    assertThat(entries.get(0).getCreditedCurrency()).isEqualTo("USD");
+  }
+
+  @Test
+  void transferMoneyAcrossCurrencies_failsWithoutRate() {
+    final Account fromAccount = mockNewAccount(150);
+    fromAccount.setCurrency("EUR");
+    final Account toAccount = mockNewAccount(10);
+    toAccount.setCurrency("GBP");
+
+    assertThrows(UnsupportedCurrencyException.class, () -> this.moneyTransferService.transferMoney(
+      new MoneyTransfer(fromAccount.getAccountId(), toAccount.getAccountId(), new BigDecimal("100"))));
+    assertThat(fromAccount.getBalance()).isEqualByComparingTo("150");
+    assertThat(toAccount.getBalance()).isEqualByComparingTo("10");
+  }
+
+  private Account mockNewFixedPointAccount(String balance) {
+    final String accountId = "Id-" + System.nanoTime();
+    final Account account = new Account(accountId, new BigDecimal(balance));
+    account.switchToFixedPoint(2);
+    when(this.accountsService.getAccount(accountId)).thenReturn(account);
+    return account;
   }
 
   private Account mockNewAccount(int balance) {
@@ -0,0 +1,101 @@
+package com.dws.challenge.snapshot;
+
+import com.dws.challenge.domain.Account;
+import com.dws.challenge.engine.LockingTransferEngine;
+import com.dws.challenge.exception.InsufficientFundsException;
+import com.dws.challenge.lock.AccountLockManager;
+import com.dws.challenge.repository.AccountsRepositoryInMemory;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class SnapshotCoordinatorTest {
+
+  private final SnapshotCoordinator coordinator = new SnapshotCoordinator();
+  private final AccountsRepositoryInMemory accountsRepository = new AccountsRepositoryInMemory();
+
+  @Test
+  void snapshotKeepsBalancesAsOfTheCut() throws Exception {
+    final Account first = create("Id-1", "100");
+    final Account second = create("Id-2", "0");
+
+    try (SnapshotCoordinator.Snapshot snapshot = this.coordinator.open(this.accountsRepository)) {
+      this.coordinator.execute(first, second, () -> {
+        first.setBalance(new BigDecimal("40"));
+        second.setBalance(new BigDecimal("60"));
+      });
+      create("Id-3", "500");
+
+      assertThat(read(snapshot)).containsOnlyKeys("Id-1", "Id-2");
+      assertThat(read(snapshot).get("Id-1")).isEqualByComparingTo("100");
+      assertThat(read(snapshot).get("Id-2")).isEqualByComparingTo("0");
+    }
+
+    try (SnapshotCoordinator.Snapshot snapshot = this.coordinator.open(this.accountsRepository)) {
+      assertThat(read(snapshot)).hasSize(3);
+      assertThat(read(snapshot).get("Id-1")).isEqualByComparingTo("40");
+    }
+  }
+
+  @Test
+  void snapshotsDuringConcurrentTransfersKeepTotal() throws Exception {
+    final List<Account> accounts = new ArrayList<>();
+    for (int i = 0; i < 16; i++) {
+      accounts.add(create("Id-" + i, "100"));
+    }
+    final LockingTransferEngine engine = new LockingTransferEngine(new AccountLockManager(16), this.accountsRepository);
+
+    final AtomicBoolean running = new AtomicBoolean(true);
+    final List<CompletableFuture<Void>> workers = new ArrayList<>();
+    for (int worker = 0; worker < 4; worker++) {
+      workers.add(CompletableFuture.runAsync(() -> {
+        final ThreadLocalRandom random = ThreadLocalRandom.current();
+        while (running.get()) {
+          final Account from = accounts.get(random.nextInt(accounts.size()));
+          final Account to = accounts.get(random.nextInt(accounts.size()));
+          if (from != to) {
+            try {
+              this.coordinator.execute(from, to,
+                () -> engine.transfer(from, to, BigDecimal.valueOf(random.nextInt(1, 5000), 2)));
+            } catch (InsufficientFundsException expected) {
+              // Part of the workload
+            }
+          }
+        }
+      }));
+    }
+
+    try {
+      for (int i = 0; i < 200; i++) {
+        try (SnapshotCoordinator.Snapshot snapshot = this.coordinator.open(this.accountsRepository)) {
+          final BigDecimal total = read(snapshot).values().stream().reduce(BigDecimal.ZERO, BigDecimal::add);
+          assertThat(total).isEqualByComparingTo("1600");
+        }
+      }
+    } finally {
+      running.set(false);
+      CompletableFuture.allOf(workers.toArray(new CompletableFuture[0])).join();
+    }
+  }
+
+  private Account create(String accountId, String balance) {
+    final Account account = new Account(accountId, new BigDecimal(balance));
+    this.coordinator.create(account, () -> this.accountsRepository.createAccount(account));
+    return account;
+  }
+
+  private static Map<String, BigDecimal> read(SnapshotCoordinator.Snapshot snapshot) {
+    final Map<String, BigDecimal> balances = new HashMap<>();
+    snapshot.forEach((accountId, currency, balance) -> balances.put(accountId, balance));
+    return balances;
+  }
+}
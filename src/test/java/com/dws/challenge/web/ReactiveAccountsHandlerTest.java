@@ -0,0 +1,94 @@
+package com.dws.challenge.web;
+
+import com.dws.challenge.domain.Account;
+import com.dws.challenge.service.AccountsService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.reactive.AutoConfigureWebTestClient;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.reactive.server.WebTestClient;
+
+import java.math.BigDecimal;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT,
+  properties = "spring.main.web-application-type=reactive")
+@AutoConfigureWebTestClient
+class ReactiveAccountsHandlerTest {
+
+  @Autowired
+  private WebTestClient webTestClient;
+
+  @Autowired
+  private AccountsService accountsService;
+
+  @BeforeEach
+  void clearAccounts() {
+    this.accountsService.getAccountsRepository().clearAccounts();
+  }
+
+  @Test
+  void createAccount() {
+    post("/v1/accounts", "{\"accountId\":\"Id-123\",\"balance\":1000}").expectStatus().isCreated();
+
+    assertThat(this.accountsService.getAccount("Id-123").getBalance()).isEqualByComparingTo("1000");
+  }
+
+  @Test
+  void createDuplicateAccount() {
+    post("/v1/accounts", "{\"accountId\":\"Id-123\",\"balance\":1000}").expectStatus().isCreated();
+    post("/v1/accounts", "{\"accountId\":\"Id-123\",\"balance\":1000}").expectStatus().isBadRequest();
+  }
+
+  @Test
+  void createAccountNegativeBalance() {
+    post("/v1/accounts", "{\"accountId\":\"Id-123\",\"balance\":-1000}").expectStatus().isBadRequest();
+  }
+
+  @Test
+  void createAccountNoBody() {
+    this.webTestClient.post().uri("/v1/accounts").contentType(MediaType.APPLICATION_JSON).exchange()
+      .expectStatus().isBadRequest();
+  }
+
+  @Test
+  void getAccount() {
+    this.accountsService.createAccount(new Account("Id-123", new BigDecimal("123.45")));
+
+    this.webTestClient.get().uri("/v1/accounts/Id-123").exchange()
+      .expectStatus().isOk()
+      .expectBody().json("{\"accountId\":\"Id-123\",\"balance\":123.45}");
+  }
+
+  @Test
+  void transferMoney() {
+    this.accountsService.createAccount(new Account("Id-123", new BigDecimal("500")));
+    this.accountsService.createAccount(new Account("Id-456", new BigDecimal("200")));
+
+    post("/v1/accounts/transferMoney", "{\"fromAccountId\":\"Id-123\",\"toAccountId\":\"Id-456\",\"amount\":400}")
+      .expectStatus().isOk();
+
+    assertThat(this.accountsService.getAccount("Id-123").getBalance()).isEqualByComparingTo("100");
+    assertThat(this.accountsService.getAccount("Id-456").getBalance()).isEqualByComparingTo("600");
+  }
+
+  @Test
+  void transferMoneyErrors() {
+    this.accountsService.createAccount(new Account("Id-123", new BigDecimal("500")));
+
+    post("/v1/accounts/transferMoney", "{\"fromAccountId\":\"Id-123\",\"toAccountId\":\"Id-999\",\"amount\":400}")
+      .expectStatus().isNotFound()
+      .expectBody(String.class).isEqualTo("Account Id-999 not found");
+    post("/v1/accounts/transferMoney", "{\"fromAccountId\":\"Id-123\",\"toAccountId\":\"Id-123\",\"amount\":400}")
+      .expectStatus().isBadRequest();
+    post("/v1/accounts/transferMoney", "{\"fromAccountId\":\"Id-123\",\"toAccountId\":\"Id-456\",\"amount\":-1}")
+      .expectStatus().isBadRequest();
+  }
+
+  private WebTestClient.ResponseSpec post(String uri, String body) {
+    return this.webTestClient.post().uri(uri).contentType(MediaType.APPLICATION_JSON).bodyValue(body).exchange();
+  }
+}